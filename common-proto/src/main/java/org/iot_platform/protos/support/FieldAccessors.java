@@ -0,0 +1,166 @@
+package org.iot_platform.protos.support;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Compiles protobuf field paths ("temperature_c", "power_quality.voltage") into plain lambdas
+ * over the generated getters. Resolution happens once; calling the accessor is a direct
+ * getter call - unlike Message.getField(), which goes through reflection and boxes the value.
+ */
+public final class FieldAccessors {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private FieldAccessors() {
+    }
+
+    /**
+     * Numeric view of a scalar field: numbers as is, bool as 0/1, enums as their number
+     */
+    public static ToDoubleFunction<Message> numeric(Class<? extends Message> messageType, String path) {
+        FieldPath fieldPath = resolve(messageType, path);
+        FieldDescriptor field = fieldPath.leaf();
+        Class<?> owner = fieldPath.leafOwner();
+
+        ToDoubleFunction<Object> leaf = switch (field.getJavaType()) {
+            case INT, LONG, FLOAT, DOUBLE -> compileToDouble(owner, getterName(field, ""));
+            case ENUM -> compileToDouble(owner, getterName(field, "Value"));
+            case BOOLEAN -> {
+                Predicate<Object> predicate = compile(Predicate.class, "test", owner, getterName(field, ""),
+                        MethodType.methodType(boolean.class, Object.class));
+                yield value -> predicate.test(value) ? 1.0 : 0.0;
+            }
+            default -> throw new IllegalArgumentException(
+                    "Field " + path + " of " + messageType.getSimpleName() + " is not numeric: " + field.getJavaType());
+        };
+
+        Function<Object, Object> parent = fieldPath.parent();
+        return parent == null
+                ? leaf::applyAsDouble
+                : message -> leaf.applyAsDouble(parent.apply(message));
+    }
+
+    /**
+     * Object view of a field: String, ByteString, nested Message or enum constant
+     */
+    public static Function<Message, Object> object(Class<? extends Message> messageType, String path) {
+        FieldPath fieldPath = resolve(messageType, path);
+        Function<Object, Object> leaf = compileToObject(fieldPath.leafOwner(), getterName(fieldPath.leaf(), ""));
+
+        Function<Object, Object> parent = fieldPath.parent();
+        return parent == null
+                ? leaf::apply
+                : message -> leaf.apply(parent.apply(message));
+    }
+
+    public static FieldDescriptor field(Class<? extends Message> messageType, String path) {
+        return resolve(messageType, path).leaf();
+    }
+
+    public static Descriptor descriptor(Class<? extends Message> messageType) {
+        try {
+            return (Descriptor) messageType.getMethod("getDescriptor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Not a generated protobuf message: " + messageType, e);
+        }
+    }
+
+    private static FieldPath resolve(Class<? extends Message> messageType, String path) {
+        String[] names = path.split("\\.");
+        Class<?> owner = messageType;
+        Descriptor descriptor = descriptor(messageType);
+        Function<Object, Object> parent = null;
+
+        for (int i = 0; i < names.length; i++) {
+            FieldDescriptor field = descriptor.findFieldByName(names[i]);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field " + names[i] + " in " + descriptor.getFullName());
+            }
+            if (field.isRepeated() || field.isMapField()) {
+                throw new IllegalArgumentException("Repeated field " + path + " is not supported");
+            }
+            if (i == names.length - 1) {
+                return new FieldPath(field, owner, parent);
+            }
+            if (field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+                throw new IllegalArgumentException("Field " + names[i] + " of " + descriptor.getFullName() + " is not a message");
+            }
+
+            Function<Object, Object> getter = compileToObject(owner, getterName(field, ""));
+            Function<Object, Object> previous = parent;
+            parent = previous == null ? getter : previous.andThen(getter);
+
+            owner = returnType(owner, getterName(field, ""));
+            descriptor = field.getMessageType();
+        }
+        throw new IllegalArgumentException("Empty field path");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ToDoubleFunction<Object> compileToDouble(Class<?> owner, String getter) {
+        return compile(ToDoubleFunction.class, "applyAsDouble", owner, getter,
+                MethodType.methodType(double.class, Object.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> compileToObject(Class<?> owner, String getter) {
+        return compile(Function.class, "apply", owner, getter,
+                MethodType.methodType(Object.class, Object.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T compile(Class<?> functionalInterface, String methodName, Class<?> owner, String getter,
+                                 MethodType samType) {
+        try {
+            MethodHandle handle = LOOKUP.unreflect(owner.getMethod(getter));
+            MethodType instantiated = MethodType.methodType(samType.returnType(), owner);
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, methodName,
+                    MethodType.methodType(functionalInterface), samType, handle, instantiated);
+            return (T) site.getTarget().invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to compile accessor " + owner.getSimpleName() + "." + getter, e);
+        }
+    }
+
+    private static Class<?> returnType(Class<?> owner, String getter) {
+        try {
+            return owner.getMethod(getter).getReturnType();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("No getter " + getter + " in " + owner, e);
+        }
+    }
+
+    /**
+     * protoc java naming: "co2_ppm" -> getCo2Ppm, "pm2_5" -> getPm25
+     */
+    private static String getterName(FieldDescriptor field, String suffix) {
+        StringBuilder name = new StringBuilder("get");
+        boolean capitalizeNext = true;
+        for (char c : field.getName().toCharArray()) {
+            if (c == '_') {
+                capitalizeNext = true;
+            } else if (Character.isDigit(c)) {
+                name.append(c);
+                capitalizeNext = true;
+            } else {
+                name.append(capitalizeNext ? Character.toUpperCase(c) : c);
+                capitalizeNext = false;
+            }
+        }
+        return name.append(suffix).toString();
+    }
+
+    private record FieldPath(FieldDescriptor leaf, Class<?> leafOwner, Function<Object, Object> parent) {
+    }
+}
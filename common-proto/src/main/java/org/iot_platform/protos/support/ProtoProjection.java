@@ -0,0 +1,203 @@
+package org.iot_platform.protos.support;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a fixed set of scalar fields ("header.device_id", "temperature_c") straight from the wire,
+ * without building the message. Fields that are not selected - repeated events, maps, nested messages
+ * nobody reads - are skipped by length, without decoding their content.
+ * <p>
+ * Each path gets a slot (its index in the list). Numeric slots hold the value as double (bool 0/1,
+ * enums as their number, like FieldAccessors.numeric), string slots the text. A field that is absent
+ * keeps the proto3 default, 0 or "". Values agree with parseFrom: a field written twice keeps the last
+ * value, and a nested message written twice is merged. The record is therefore always read to the end -
+ * the edge forwards device bytes verbatim, so a repeated scalar cannot be ruled out.
+ */
+public final class ProtoProjection {
+
+    private final Descriptor type;
+    private final List<String> paths;
+    private final FieldDescriptor[] leaves;
+    private final Node root = new Node();
+
+    private ProtoProjection(Descriptor type, List<String> paths) {
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("Projection of " + type.getFullName() + " needs at least one field");
+        }
+        this.type = type;
+        this.paths = List.copyOf(paths);
+        this.leaves = new FieldDescriptor[paths.size()];
+        for (int slot = 0; slot < leaves.length; slot++) {
+            leaves[slot] = add(slot, paths.get(slot));
+        }
+    }
+
+    /**
+     * @param paths scalar fields to read, slot = index in the list
+     */
+    public static ProtoProjection of(Descriptor type, List<String> paths) {
+        return new ProtoProjection(type, paths);
+    }
+
+    public int size() {
+        return leaves.length;
+    }
+
+    public String path(int slot) {
+        return paths.get(slot);
+    }
+
+    public FieldDescriptor field(int slot) {
+        return leaves[slot];
+    }
+
+    public boolean isString(int slot) {
+        return leaves[slot].getJavaType() == FieldDescriptor.JavaType.STRING;
+    }
+
+    /**
+     * Decodes the selected fields of a serialized message into numbers (numeric slots) and strings
+     * (string slots); both arrays need size() elements
+     *
+     * @throws InvalidProtocolBufferException when the data is malformed or truncated; the content of
+     *                                        skipped length-delimited fields is not checked
+     */
+    public void decode(byte[] data, double[] numbers, String[] strings) throws InvalidProtocolBufferException {
+        for (int slot = 0; slot < leaves.length; slot++) {
+            if (isString(slot)) {
+                strings[slot] = "";
+            } else {
+                numbers[slot] = 0;
+            }
+        }
+        try {
+            read(CodedInputStream.newInstance(data), root, numbers, strings);
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e);
+        }
+    }
+
+    private void read(CodedInputStream in, Node node, double[] numbers, String[] strings) throws IOException {
+        while (true) {
+            int tag = in.readTag();
+            if (tag == 0) {
+                return; // конец данных или вложенного сообщения (limit)
+            }
+            int number = WireFormat.getTagFieldNumber(tag);
+            int wireType = WireFormat.getTagWireType(tag);
+            int slot = node.slot(number);
+            Node child = node.child(number);
+            if (slot >= 0 && wireType == leaves[slot].getLiteType().getWireType()) {
+                readLeaf(in, slot, numbers, strings); // повтор перезаписывает - последнее значение, как у parseFrom
+            } else if (child != null && wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                int limit = in.pushLimit(in.readRawVarint32());
+                read(in, child, numbers, strings);
+                if (in.getBytesUntilLimit() != 0) {
+                    // данные кончились раньше вложенного сообщения
+                    throw new InvalidProtocolBufferException("Truncated field " + number + " of " + type.getFullName());
+                }
+                in.popLimit(limit);
+            } else if (!in.skipField(tag)) {
+                throw new InvalidProtocolBufferException("Unexpected end-group tag in " + type.getFullName());
+            }
+        }
+    }
+
+    private void readLeaf(CodedInputStream in, int slot, double[] numbers, String[] strings) throws IOException {
+        switch (leaves[slot].getType()) {
+            case STRING -> strings[slot] = in.readStringRequireUtf8();
+            case DOUBLE -> numbers[slot] = in.readDouble();
+            case FLOAT -> numbers[slot] = in.readFloat();
+            case INT64 -> numbers[slot] = in.readInt64();
+            case UINT64 -> numbers[slot] = in.readUInt64();
+            case INT32 -> numbers[slot] = in.readInt32();
+            case UINT32 -> numbers[slot] = in.readUInt32();
+            case FIXED64 -> numbers[slot] = in.readFixed64();
+            case FIXED32 -> numbers[slot] = in.readFixed32();
+            case SFIXED64 -> numbers[slot] = in.readSFixed64();
+            case SFIXED32 -> numbers[slot] = in.readSFixed32();
+            case SINT64 -> numbers[slot] = in.readSInt64();
+            case SINT32 -> numbers[slot] = in.readSInt32();
+            case BOOL -> numbers[slot] = in.readBool() ? 1 : 0;
+            case ENUM -> numbers[slot] = in.readEnum();
+            default -> throw new IllegalStateException("Unsupported leaf " + leaves[slot].getType());
+        }
+    }
+
+    private FieldDescriptor add(int slot, String path) {
+        String[] names = path.split("\\.");
+        Descriptor descriptor = type;
+        Node node = root;
+        for (int i = 0; i < names.length; i++) {
+            FieldDescriptor field = descriptor.findFieldByName(names[i]);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field " + names[i] + " in " + descriptor.getFullName());
+            }
+            if (field.isRepeated() || field.isMapField()) {
+                throw new IllegalArgumentException("Repeated field " + path + " is not supported");
+            }
+            if (i == names.length - 1) {
+                if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE || field.getJavaType() == FieldDescriptor.JavaType.BYTE_STRING) {
+                    throw new IllegalArgumentException("Field " + path + " of " + type.getFullName() + " is not a scalar");
+                }
+                if (node.slot(field.getNumber()) >= 0) {
+                    throw new IllegalArgumentException("Field " + path + " is selected twice");
+                }
+                node.slot(field.getNumber(), slot);
+                return field;
+            }
+            if (field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+                throw new IllegalArgumentException("Field " + names[i] + " of " + descriptor.getFullName() + " is not a message");
+            }
+            node = node.childOrNew(field.getNumber());
+            descriptor = field.getMessageType();
+        }
+        throw new IllegalArgumentException("Empty field path");
+    }
+
+    /**
+     * Selected fields of one message level, indexed by field number
+     */
+    private static final class Node {
+
+        private int[] slots = new int[0];
+        private Node[] children = new Node[0];
+
+        int slot(int number) {
+            return number < slots.length ? slots[number] : -1;
+        }
+
+        Node child(int number) {
+            return number < children.length ? children[number] : null;
+        }
+
+        void slot(int number, int slot) {
+            if (number >= slots.length) {
+                int from = slots.length;
+                slots = Arrays.copyOf(slots, number + 1);
+                Arrays.fill(slots, from, slots.length, -1);
+            }
+            slots[number] = slot;
+        }
+
+        Node childOrNew(int number) {
+            if (number >= children.length) {
+                children = Arrays.copyOf(children, number + 1);
+            }
+            if (children[number] == null) {
+                children[number] = new Node();
+            }
+            return children[number];
+        }
+    }
+}
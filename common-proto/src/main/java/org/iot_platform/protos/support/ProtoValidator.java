@@ -0,0 +1,222 @@
+package org.iot_platform.protos.support;
+
+import com.google.protobuf.DescriptorProtos.FieldOptions;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import org.iot_platform.protos.validation.Range;
+import org.iot_platform.protos.validation.Validation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Field constraints of a message type, declared as options in the .proto files (validation.proto):
+ * (validation.range), (validation.required), (validation.defined_enum). Singular nested messages are
+ * walked too, so a reading is checked together with its header.
+ * <p>
+ * Compiled once per type: every constraint is a FieldAccessors getter plus a primitive test, so
+ * checking a reading allocates nothing. Constraints are numbered in declaration order; the same
+ * numbers identify them when the values come from a ProtoProjection instead of a parsed message.
+ */
+public final class ProtoValidator {
+
+    private static final ConcurrentMap<Class<? extends Message>, ProtoValidator> COMPILED = new ConcurrentHashMap<>();
+    private static final int MAX_DEPTH = 8;
+
+    private final Constraint[] constraints;
+
+    private ProtoValidator(Class<? extends Message> type) {
+        List<Constraint> list = new ArrayList<>();
+        collect(type, FieldAccessors.descriptor(type), "", list, 0);
+        this.constraints = list.toArray(Constraint[]::new);
+    }
+
+    public static ProtoValidator of(Class<? extends Message> type) {
+        return COMPILED.computeIfAbsent(type, ProtoValidator::new);
+    }
+
+    public int size() {
+        return constraints.length;
+    }
+
+    public String path(int constraint) {
+        return constraints[constraint].path;
+    }
+
+    /**
+     * @return range | required | defined_enum
+     */
+    public String kind(int constraint) {
+        return constraints[constraint].kind.tag;
+    }
+
+    public boolean isString(int constraint) {
+        return constraints[constraint].object != null;
+    }
+
+    /**
+     * Human-readable form for logs, e.g. "temperature_c in [-50.0, 80.0]"
+     */
+    public String describe(int constraint) {
+        return constraints[constraint].describe();
+    }
+
+    /**
+     * @return index of the first violated constraint, -1 when the message is valid
+     */
+    public int firstViolation(Message message) {
+        for (int i = 0; i < constraints.length; i++) {
+            Constraint constraint = constraints[i];
+            boolean valid = constraint.object != null
+                    ? constraint.test((String) constraint.object.apply(message))
+                    : constraint.test(constraint.number.applyAsDouble(message));
+            if (!valid) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean test(int constraint, double value) {
+        return constraints[constraint].test(value);
+    }
+
+    public boolean test(int constraint, String value) {
+        return constraints[constraint].test(value);
+    }
+
+    private static void collect(Class<? extends Message> type, Descriptor descriptor, String prefix,
+                                List<Constraint> out, int depth) {
+        for (FieldDescriptor field : descriptor.getFields()) {
+            String path = prefix + field.getName();
+            if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+                if (!field.isRepeated() && depth < MAX_DEPTH) {
+                    collect(type, field.getMessageType(), path + ".", out, depth + 1);
+                }
+                continue;
+            }
+            FieldOptions options = field.getOptions();
+            boolean required = options.getExtension(Validation.required);
+            boolean range = options.hasExtension(Validation.range);
+            boolean definedEnum = options.getExtension(Validation.definedEnum);
+            if (!required && !range && !definedEnum) {
+                continue;
+            }
+            if (field.isRepeated()) {
+                throw new IllegalArgumentException("Constraint on repeated field " + path + " of " + type.getSimpleName() + " is not supported");
+            }
+            if (required) {
+                out.add(Constraint.required(type, path, field));
+            }
+            if (range) {
+                out.add(Constraint.range(type, path, field, options.getExtension(Validation.range)));
+            }
+            if (definedEnum) {
+                out.add(Constraint.definedEnum(type, path, field));
+            }
+        }
+    }
+
+    private enum Kind {
+        RANGE("range"), REQUIRED("required"), DEFINED_ENUM("defined_enum");
+
+        private final String tag;
+
+        Kind(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static final class Constraint {
+
+        private final String path;
+        private final Kind kind;
+        private final ToDoubleFunction<Message> number;
+        private final Function<Message, Object> object;
+        private final double min;
+        private final double max;
+        private final boolean[] defined; // enum number -> объявлен; отрицательные номера не объявляем
+
+        private Constraint(String path, Kind kind, ToDoubleFunction<Message> number, Function<Message, Object> object,
+                           double min, double max, boolean[] defined) {
+            this.path = path;
+            this.kind = kind;
+            this.number = number;
+            this.object = object;
+            this.min = min;
+            this.max = max;
+            this.defined = defined;
+        }
+
+        static Constraint required(Class<? extends Message> type, String path, FieldDescriptor field) {
+            return switch (field.getJavaType()) {
+                case STRING -> new Constraint(path, Kind.REQUIRED, null, FieldAccessors.object(type, path), 0, 0, null);
+                case BYTE_STRING -> throw new IllegalArgumentException("required is not supported on bytes field " + path);
+                default -> new Constraint(path, Kind.REQUIRED, FieldAccessors.numeric(type, path), null, 0, 0, null);
+            };
+        }
+
+        static Constraint range(Class<? extends Message> type, String path, FieldDescriptor field, Range range) {
+            if (!isNumber(field)) {
+                throw new IllegalArgumentException("range needs a numeric field, " + path + " is " + field.getJavaType());
+            }
+            double min = range.hasMin() ? range.getMin() : Double.NEGATIVE_INFINITY;
+            double max = range.hasMax() ? range.getMax() : Double.POSITIVE_INFINITY;
+            if (min > max) {
+                throw new IllegalArgumentException("empty range [" + min + ", " + max + "] on " + path);
+            }
+            return new Constraint(path, Kind.RANGE, FieldAccessors.numeric(type, path), null, min, max, null);
+        }
+
+        static Constraint definedEnum(Class<? extends Message> type, String path, FieldDescriptor field) {
+            if (field.getJavaType() != FieldDescriptor.JavaType.ENUM) {
+                throw new IllegalArgumentException("defined_enum needs an enum field, " + path + " is " + field.getJavaType());
+            }
+            int highest = 0;
+            for (EnumValueDescriptor value : field.getEnumType().getValues()) {
+                highest = Math.max(highest, value.getNumber());
+            }
+            boolean[] defined = new boolean[highest + 1];
+            for (EnumValueDescriptor value : field.getEnumType().getValues()) {
+                if (value.getNumber() >= 0) {
+                    defined[value.getNumber()] = true;
+                }
+            }
+            return new Constraint(path, Kind.DEFINED_ENUM, FieldAccessors.numeric(type, path), null, 0, 0, defined);
+        }
+
+        boolean test(double value) {
+            return switch (kind) {
+                // NaN не проходит ни одно сравнение
+                case RANGE -> value >= min && value <= max;
+                case REQUIRED -> value != 0;
+                case DEFINED_ENUM -> value >= 0 && value < defined.length && defined[(int) value];
+            };
+        }
+
+        boolean test(String value) {
+            return kind != Kind.REQUIRED || !value.isEmpty();
+        }
+
+        String describe() {
+            return switch (kind) {
+                case RANGE -> path + " in [" + min + ", " + max + "]";
+                case REQUIRED -> path + " required";
+                case DEFINED_ENUM -> path + " is a declared enum value";
+            };
+        }
+
+        private static boolean isNumber(FieldDescriptor field) {
+            return switch (field.getJavaType()) {
+                case INT, LONG, FLOAT, DOUBLE -> true;
+                default -> false;
+            };
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.iot_platform.protos.support;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import org.iot_platform.protos.climate_data.ClimateData;
+import org.iot_platform.protos.climate_data.ComfortLevel;
+import org.iot_platform.protos.sensor_common.SensorHeader;
+import org.iot_platform.protos.sensor_common.SignalStrength;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Hand-written wire bytes decoded by the projection and by ClimateData.parseFrom: every slot must agree
+ */
+class ProtoProjectionTest {
+
+    private static final List<String> PATHS = List.of(
+            "header.hotel_id", "header.device_id", "header.room_number", "header.timestamp",
+            "header.battery_level", "temperature_c", "humidity_percent", "comfort_level", "heating_required");
+
+    private final ProtoProjection projection = ProtoProjection.of(ClimateData.getDescriptor(), PATHS);
+
+    @Test
+    void serializedMessage() throws IOException {
+        ClimateData reading = ClimateData.newBuilder()
+                .setHeader(SensorHeader.newBuilder()
+                        .setDeviceId("dev-1").setDeviceType("CLIMATE").setTimestamp(1_700_000_000_000L)
+                        .setHotelId("h1").setRoomNumber("101").setBatteryLevel(87.5f)
+                        .setSignalStrength(SignalStrength.GOOD))
+                .setTemperatureC(21.5f)
+                .setHumidityPercent(40)
+                .setComfortLevel(ComfortLevel.UNCOMFORTABLE)
+                .setHeatingRequired(true)
+                .build();
+
+        assertMatchesParse(reading.toByteArray());
+    }
+
+    @Test
+    void fieldsInReverseOrder() throws IOException {
+        Wire header = new Wire()
+                .floatField(6, 50f)
+                .string(5, "202")
+                .string(4, "h2")
+                .int64(3, 42L)
+                .string(1, "dev-2");
+        byte[] data = new Wire()
+                .varint(10, 1)
+                .varint(7, 1)
+                .varint(6, 2)
+                .floatField(3, 55f)
+                .floatField(2, -3.25f)
+                .message(1, header)
+                .bytes();
+
+        assertMatchesParse(data);
+    }
+
+    @Test
+    void nestedHeaderWrittenTwiceIsMerged() throws IOException {
+        byte[] data = new Wire()
+                .message(1, new Wire().string(1, "dev-1").string(4, "h1").int64(3, 1L))
+                .floatField(2, 20f)
+                .message(1, new Wire().string(5, "305").int64(3, 2L).string(1, "dev-9"))
+                .bytes();
+
+        assertMatchesParse(data);
+        assertThat(decode(data).strings()[slot("header.hotel_id")]).isEqualTo("h1");
+        assertThat(decode(data).strings()[slot("header.device_id")]).isEqualTo("dev-9");
+        assertThat(decode(data).numbers()[slot("header.timestamp")]).isEqualTo(2);
+    }
+
+    @Test
+    void repeatedScalarKeepsTheLastValue() throws IOException {
+        byte[] data = new Wire()
+                .floatField(2, 10f)
+                .message(1, new Wire().string(1, "dev-1").string(1, "dev-2"))
+                .varint(6, 1)
+                .floatField(2, 30f)
+                .varint(6, 2)
+                .bytes();
+
+        assertMatchesParse(data);
+        assertThat(decode(data).numbers()[slot("temperature_c")]).isEqualTo(30);
+        assertThat(decode(data).strings()[slot("header.device_id")]).isEqualTo("dev-2");
+    }
+
+    @Test
+    void unknownFieldsOfEveryWireTypeAreSkipped() throws IOException {
+        byte[] data = unknownFieldsEverywhere();
+
+        assertMatchesParse(data);
+        assertThat(decode(data).numbers()[slot("temperature_c")]).isEqualTo(19.5);
+    }
+
+    @Test
+    void selectedFieldWithAnotherWireTypeIsSkipped() throws IOException {
+        // parseFrom тоже уводит такое поле в unknown fields
+        byte[] data = new Wire()
+                .floatField(2, 25f)
+                .varint(2, 7)
+                .string(3, "not a float")
+                .message(1, new Wire().varint(4, 1).string(1, "dev-1"))
+                .bytes();
+
+        assertMatchesParse(data);
+    }
+
+    @Test
+    void emptyInputKeepsDefaults() throws IOException {
+        Decoded decoded = decode(new byte[0]);
+
+        assertMatchesParse(new byte[0]);
+        assertThat(decoded.strings()[slot("header.device_id")]).isEmpty();
+        assertThat(decoded.numbers()[slot("temperature_c")]).isZero();
+    }
+
+    @Test
+    void truncatedInputFailsWhereParseFromFails() throws IOException {
+        byte[] data = unknownFieldsEverywhere();
+
+        for (int length = 0; length < data.length; length++) {
+            byte[] cut = Arrays.copyOf(data, length);
+            boolean parses = parses(cut);
+            if (parses) {
+                assertMatchesParse(cut);
+            } else {
+                assertThatExceptionOfType(InvalidProtocolBufferException.class)
+                        .as("cut at %d of %d", length, data.length)
+                        .isThrownBy(() -> decode(cut));
+            }
+        }
+    }
+
+    @Test
+    void strayEndGroupIsRejected() throws IOException {
+        byte[] data = new Wire().floatField(2, 1f).tag(20, WireFormat.WIRETYPE_END_GROUP).bytes();
+
+        assertThat(parses(data)).isFalse();
+        assertThatThrownBy(() -> decode(data)).isInstanceOf(InvalidProtocolBufferException.class);
+    }
+
+    private static byte[] unknownFieldsEverywhere() throws IOException {
+        Wire header = new Wire()
+                .string(1, "dev-7")
+                .varint(50, 300)
+                .string(2, "CLIMATE")
+                .int64(3, 1_700_000_000_123L)
+                .group(51, new Wire().string(1, "nested").varint(2, 5))
+                .string(4, "h7")
+                .string(5, "707")
+                .varint(7, 3);
+        return new Wire()
+                .varint(40, 123_456_789L)
+                .message(1, header)
+                .fixed64(41, 0x0102030405060708L)
+                .floatField(2, 19.5f)
+                .string(42, "opaque")
+                .group(43, new Wire().fixed32(1, 9).group(2, new Wire().varint(1, 1)))
+                .fixed32(44, 0xCAFEBABE)
+                .floatField(3, 61f)
+                .varint(6, 1)
+                .varint(7, 1)
+                .bytes();
+    }
+
+    private void assertMatchesParse(byte[] data) throws IOException {
+        ClimateData parsed = ClimateData.parseFrom(data);
+        Decoded decoded = decode(data);
+
+        for (int slot = 0; slot < projection.size(); slot++) {
+            String path = projection.path(slot);
+            if (projection.isString(slot)) {
+                assertThat(decoded.strings()[slot]).as(path)
+                        .isEqualTo(FieldAccessors.object(ClimateData.class, path).apply(parsed));
+            } else {
+                assertThat(decoded.numbers()[slot]).as(path)
+                        .isEqualTo(FieldAccessors.numeric(ClimateData.class, path).applyAsDouble(parsed));
+            }
+        }
+    }
+
+    private Decoded decode(byte[] data) throws InvalidProtocolBufferException {
+        Decoded decoded = new Decoded(new double[projection.size()], new String[projection.size()]);
+        projection.decode(data, decoded.numbers(), decoded.strings());
+        return decoded;
+    }
+
+    private static boolean parses(byte[] data) {
+        try {
+            ClimateData.parseFrom(data);
+            return true;
+        } catch (InvalidProtocolBufferException e) {
+            return false;
+        }
+    }
+
+    private static int slot(String path) {
+        return PATHS.indexOf(path);
+    }
+
+    private record Decoded(double[] numbers, String[] strings) {
+    }
+
+    /**
+     * Raw protobuf writer: fields in any order, repeated, unknown or of the wrong wire type
+     */
+    private static final class Wire {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final CodedOutputStream out = CodedOutputStream.newInstance(buffer);
+
+        Wire tag(int number, int wireType) throws IOException {
+            out.writeTag(number, wireType);
+            return this;
+        }
+
+        Wire varint(int number, long value) throws IOException {
+            out.writeUInt64(number, value);
+            return this;
+        }
+
+        Wire int64(int number, long value) throws IOException {
+            out.writeInt64(number, value);
+            return this;
+        }
+
+        Wire floatField(int number, float value) throws IOException {
+            out.writeFloat(number, value);
+            return this;
+        }
+
+        Wire fixed32(int number, int value) throws IOException {
+            out.writeFixed32(number, value);
+            return this;
+        }
+
+        Wire fixed64(int number, long value) throws IOException {
+            out.writeFixed64(number, value);
+            return this;
+        }
+
+        Wire string(int number, String value) throws IOException {
+            out.writeString(number, value);
+            return this;
+        }
+
+        Wire message(int number, Wire content) throws IOException {
+            out.writeByteArray(number, content.bytes());
+            return this;
+        }
+
+        Wire group(int number, Wire content) throws IOException {
+            out.writeTag(number, WireFormat.WIRETYPE_START_GROUP);
+            out.writeRawBytes(content.bytes());
+            out.writeTag(number, WireFormat.WIRETYPE_END_GROUP);
+            return this;
+        }
+
+        byte[] bytes() throws IOException {
+            out.flush();
+            return buffer.toByteArray();
+        }
+    }
+}
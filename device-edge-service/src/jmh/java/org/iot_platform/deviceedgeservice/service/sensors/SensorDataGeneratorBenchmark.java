@@ -0,0 +1,76 @@
+package org.iot_platform.deviceedgeservice.service.sensors;
+
+import org.iot_platform.deviceedgeservice.service.sensors.common.DeviceIdentity;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.deviceedgeservice.service.state.CumulativeCounters;
+import org.iot_platform.protos.air_quality_sensor.AirQualityData;
+import org.iot_platform.protos.climate_data.ClimateData;
+import org.iot_platform.protos.energy_meter_data.EnergyMeterData;
+import org.iot_platform.protos.motion_sensor_data.MotionSensorData;
+import org.iot_platform.protos.water_leak_data.WaterLeakData;
+import org.iot_platform.protos.water_meter_data.WaterMeterData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building one reading per generator. Run with the gc profiler (configured in build.gradle)
+ * to get gc.alloc.rate.norm - bytes allocated per generateData() call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SensorDataGeneratorBenchmark {
+
+    private final AirQualityDataGenerator airQualityGenerator = new AirQualityDataGenerator();
+    private final ClimateDataGenerator climateGenerator = new ClimateDataGenerator();
+    private final EnergyMeterDataGenerator energyGenerator = new EnergyMeterDataGenerator(new CumulativeCounters("energy", 1024));
+    private final MotionSensorDataGenerator motionGenerator = new MotionSensorDataGenerator();
+    private final WaterLeakDataGenerator waterLeakGenerator = new WaterLeakDataGenerator();
+    private final WaterMeterDataGenerator waterMeterGenerator = new WaterMeterDataGenerator(new CumulativeCounters("water", 1024));
+
+    private final DeviceIdentity device = DeviceIdentity.of(1, 1, SensorType.CLIMATE);
+
+    @Benchmark
+    public AirQualityData airQuality() {
+        return airQualityGenerator.generateData(device);
+    }
+
+    @Benchmark
+    public ClimateData climate() {
+        return climateGenerator.generateData(device);
+    }
+
+    @Benchmark
+    public EnergyMeterData energyMeter() {
+        return energyGenerator.generateData(device);
+    }
+
+    @Benchmark
+    public MotionSensorData motion() {
+        return motionGenerator.generateData(device);
+    }
+
+    @Benchmark
+    public WaterLeakData waterLeak() {
+        return waterLeakGenerator.generateData(device);
+    }
+
+    @Benchmark
+    public WaterMeterData waterMeter() {
+        return waterMeterGenerator.generateData(device);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ClimateData climateContended() {
+        return climateGenerator.generateData(device);
+    }
+
+    // все потоки крутят один и тот же слот - худший случай для CAS
+    @Benchmark
+    @Threads(4)
+    public EnergyMeterData energyMeterContended() {
+        return energyGenerator.generateData(device);
+    }
+}
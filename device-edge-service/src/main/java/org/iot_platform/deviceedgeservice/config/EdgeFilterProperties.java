@@ -0,0 +1,78 @@
+package org.iot_platform.deviceedgeservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * device-edge.filter.* - per sensor type deadband / windowed downsampling applied before publish
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "device-edge.filter")
+public class EdgeFilterProperties {
+
+    private boolean enabled;
+
+    /**
+     * A reading is sent even when nothing moved past its deadband once this much time passed
+     */
+    private Duration heartbeat = Duration.ofSeconds(60);
+
+    /**
+     * Devices tracked per sensor type; readings of devices beyond it pass unfiltered
+     */
+    private int maxDevices = 1 << 20;
+
+    private Map<SensorType, Sensor> sensors = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Sensor {
+
+        /**
+         * Overrides the global heartbeat
+         */
+        private Duration heartbeat;
+
+        /**
+         * 0 - every reading is checked on its own, otherwise one aggregated reading per window
+         */
+        private Duration window = Duration.ZERO;
+
+        private List<Field> fields = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    public static class Field {
+
+        /**
+         * Protobuf field name, nested fields separated by dots
+         */
+        private String name;
+
+        /**
+         * Minimal change that is worth a message, 0 - any change
+         */
+        private double deadband;
+
+        private Aggregate aggregate = Aggregate.LAST;
+    }
+
+    public enum Aggregate {
+        LAST,
+        MIN,
+        MAX,
+        AVG
+    }
+}
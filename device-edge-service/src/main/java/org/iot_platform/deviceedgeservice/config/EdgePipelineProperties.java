@@ -0,0 +1,102 @@
+package org.iot_platform.deviceedgeservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.iot_platform.deviceedgeservice.service.pipeline.ReadingSource;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * device-edge.pipeline.* - ordered edge processors applied to every outgoing reading
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "device-edge.pipeline")
+public class EdgePipelineProperties {
+
+    /**
+     * Stages in order; without a deadband stage the edge filter runs last
+     */
+    private List<Stage> stages = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Stage {
+
+        /**
+         * Used in logs and as the stage tag of the metrics
+         */
+        private String name;
+
+        private StageType type;
+
+        /**
+         * Empty - every sensor type
+         */
+        private List<SensorType> sensors = new ArrayList<>();
+
+        /**
+         * Empty - readings of every source, generated and pushed by devices
+         */
+        private List<ReadingSource> sources = new ArrayList<>();
+
+        /**
+         * drop: reading is dropped when it holds; gate: reading passes only when it holds;
+         * route / enrich: stage applies only when it holds (optional)
+         */
+        private Condition when;
+
+        /**
+         * enrich: header field name -> value
+         */
+        private Map<String, String> header = new LinkedHashMap<>();
+
+        /**
+         * enrich: false - only fields the device left empty are filled
+         */
+        private boolean overwrite;
+
+        /**
+         * route: target topic
+         */
+        private String topic;
+    }
+
+    @Getter
+    @Setter
+    public static class Condition {
+
+        /**
+         * Protobuf field name, nested fields separated by dots; bool reads as 0/1, enums as their number
+         */
+        private String field;
+
+        private Operator operator = Operator.EQ;
+
+        private double value;
+    }
+
+    public enum StageType {
+        DROP,
+        GATE,
+        ENRICH,
+        ROUTE,
+        DEADBAND
+    }
+
+    public enum Operator {
+        LT,
+        LE,
+        GT,
+        GE,
+        EQ,
+        NE
+    }
+}
@@ -0,0 +1,21 @@
+package org.iot_platform.deviceedgeservice.config;
+
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+public class GeneratorConfig {
+
+    @Bean
+    public Map<SensorType, SensorDataGenerator<?>> sensorDataGenerators(List<SensorDataGenerator<?>> generatorList) {
+        Map<SensorType, SensorDataGenerator<?>> generators = new EnumMap<>(SensorType.class);
+        generatorList.forEach(generator -> generators.put(generator.getSensorType(), generator));
+        return generators;
+    }
+}
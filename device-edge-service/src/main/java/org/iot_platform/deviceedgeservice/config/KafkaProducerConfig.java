@@ -1,18 +1,21 @@
 package org.iot_platform.deviceedgeservice.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.iot_platform.deviceedgeservice.kafka.partition.SensorKeyPartitioner;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.kafka.support.ProducerListener;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -24,8 +27,59 @@ public class KafkaProducerConfig {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${device-edge.kafka.max-block-ms:60000}")
+    private long maxBlockMs;
+
+    @Value("${device-edge.spool.enabled:false}")
+    private boolean spoolEnabled;
+
+    @Value("${device-edge.spool.max-block-ms:1000}") // с spool: быстро отказать и уйти в spool
+    private long spoolMaxBlockMs;
+
+    @Value("${device-edge.kafka.partitioning:device}")
+    private String partitioning;
+
+    @Value("${device-edge.kafka.transactions.id-prefix:edge-tx-}")
+    private String transactionIdPrefix;
+
     @Bean
-    public ProducerFactory<String, byte[]> producerFactory() {
+    @Primary
+    public ProducerFactory<String, byte[]> producerFactory(MeterRegistry meterRegistry) {
+        long maxBlock = spoolEnabled ? Math.min(maxBlockMs, spoolMaxBlockMs) : maxBlockMs;
+        DefaultKafkaProducerFactory<String, byte[]> factory = new DefaultKafkaProducerFactory<>(producerProperties(maxBlock));
+        // native producer metrics (kafka.producer.*) -> actuator/prometheus
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    @Bean
+    @Primary
+    public KafkaTemplate<String, byte[]> kafkaTemplate(ProducerFactory<String, byte[]> producerFactory) {
+        return new KafkaTemplate<>(producerFactory);
+    }
+
+    /**
+     * Separate factory for sweep transactions: a transactional factory would force every send of
+     * the main template into a transaction. Keeps the full max-block-ms - it also bounds the commit;
+     * an aborted sweep falls back to the main template and the spool.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "device-edge.kafka.transactions.enabled", havingValue = "true")
+    public ProducerFactory<String, byte[]> transactionalProducerFactory(MeterRegistry meterRegistry) {
+        DefaultKafkaProducerFactory<String, byte[]> factory = new DefaultKafkaProducerFactory<>(producerProperties(maxBlockMs));
+        factory.setTransactionIdPrefix(transactionIdPrefix);
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "device-edge.kafka.transactions.enabled", havingValue = "true")
+    public KafkaTemplate<String, byte[]> transactionalKafkaTemplate(
+            @Qualifier("transactionalProducerFactory") ProducerFactory<String, byte[]> transactionalProducerFactory) {
+        return new KafkaTemplate<>(transactionalProducerFactory);
+    }
+
+    private Map<String, Object> producerProperties(long maxBlock) {
         Map<String, Object> props = new HashMap<>();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
@@ -44,28 +98,11 @@ public class KafkaProducerConfig {
         // Timeouts
         props.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 30000);
         props.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, 60000);
-        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 60000);
-
-        return new DefaultKafkaProducerFactory<>(props);
-    }
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlock);
 
-    @Bean
-    public KafkaTemplate<String, byte[]> kafkaTemplate() {
-        KafkaTemplate<String, byte[]> template = new KafkaTemplate<>(producerFactory());
-
-        template.setProducerListener(new ProducerListener<String, byte[]>() {
-            @Override
-            public void onSuccess(ProducerRecord<String, byte[]> producerRecord, RecordMetadata recordMetadata) {
-                log.info("Message sent successfully to topic: {}, partition: {}, offset: {}",
-                        producerRecord.topic(), recordMetadata.partition(), recordMetadata.offset());
-            }
-
-            @Override
-            public void onError(ProducerRecord<String, byte[]> producerRecord, RecordMetadata recordMetadata, Exception exception) {
-                log.error("Failed to send message to topic: {}, error: {}",
-                        producerRecord.topic(), exception.getMessage());
-            }
-        });
-        return template;
+        // Partitioning by hotelId/roomNumber/deviceId key
+        props.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, SensorKeyPartitioner.class);
+        props.put(SensorKeyPartitioner.STRATEGY_CONFIG, partitioning);
+        return props;
     }
 }
@@ -0,0 +1,76 @@
+package org.iot_platform.deviceedgeservice.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.iot_platform.deviceedgeservice.kafka.metrics.ProducerMetrics;
+import org.iot_platform.deviceedgeservice.payload.IngestRequest;
+import org.iot_platform.deviceedgeservice.payload.IngestResponse;
+import org.iot_platform.deviceedgeservice.service.ingest.BatchIngestService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Batched telemetry ingest for devices and gateways (routed here by the API gateway)
+ */
+@RestController
+@RequestMapping("/api/v1/telemetry")
+public class TelemetryIngestController {
+
+    public static final String PROTOBUF_DELIMITED = "application/x-protobuf";
+
+    private final BatchIngestService batchIngestService;
+    private final ProducerMetrics producerMetrics;
+    private final Counter throttled;
+
+    @Value("${device-edge.ingest.http.max-batch-size:5000}")
+    private int maxBatchSize;
+
+    @Value("${device-edge.ingest.http.min-buffer-available:0.1}")
+    private double minBufferAvailable;
+
+    @Value("${device-edge.ingest.http.retry-after:1s}")
+    private Duration retryAfter;
+
+    public TelemetryIngestController(BatchIngestService batchIngestService, ProducerMetrics producerMetrics,
+                                     MeterRegistry meterRegistry) {
+        this.batchIngestService = batchIngestService;
+        this.producerMetrics = producerMetrics;
+        this.throttled = meterRegistry.counter("edge.ingest.http.throttled");
+    }
+
+    @PostMapping(path = "/ingest", consumes = PROTOBUF_DELIMITED)
+    public Mono<ResponseEntity<IngestResponse>> ingestProtobuf(@RequestBody Mono<byte[]> body) {
+        return ingest(body, bytes -> batchIngestService.ingestDelimited(bytes, maxBatchSize));
+    }
+
+    @PostMapping(path = "/ingest", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<IngestResponse>> ingestJson(@RequestBody Mono<IngestRequest> body) {
+        return ingest(body, request -> batchIngestService.ingestJson(request, maxBatchSize));
+    }
+
+    private <T> Mono<ResponseEntity<IngestResponse>> ingest(Mono<T> body, Function<T, Mono<IngestResponse>> batch) {
+        if (producerMetrics.bufferAvailableRatio() < minBufferAvailable) {
+            throttled.increment();
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())))
+                    .build());
+        }
+        // send() может блокироваться до max.block.ms - не на event loop
+        return body
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(batch)
+                .map(ResponseEntity::ok);
+    }
+}
@@ -3,31 +3,106 @@ package org.iot_platform.deviceedgeservice.kafka;
 import com.google.protobuf.Message;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.kafka.capture.CaptureRecorder;
+import org.iot_platform.deviceedgeservice.kafka.metrics.PartitionLoadMonitor;
+import org.iot_platform.deviceedgeservice.kafka.metrics.ProducerMetrics;
+import org.iot_platform.deviceedgeservice.kafka.spool.DiskSpool;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 @RequiredArgsConstructor
 @Component
 public class KafkaProducer {
 
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final ProducerMetrics producerMetrics;
+    private final PartitionLoadMonitor partitionLoadMonitor;
+    private final DiskSpool diskSpool;
+    private final CaptureRecorder captureRecorder;
+    private final ObjectProvider<TransactionalBatchSender> transactionalSender;
+
+    public <T extends Message> CompletableFuture<SendResult<String, byte[]>> sendData(String topic, String key, T protobufMessage) {
+        return send(topic, key, protobufMessage.toByteArray());
+    }
+
+    /**
+     * Sends an already serialized protobuf payload.
+     * The future completes with null when the record was handed over to the disk spool.
+     */
+    public CompletableFuture<SendResult<String, byte[]>> send(String topic, String key, byte[] serializedData) {
+        long timestamp = System.currentTimeMillis();
+        captureRecorder.record(topic, key, timestamp, serializedData);
+        return send(topic, key, timestamp, serializedData);
+    }
 
-    public <T extends Message> void sendData(String topic, String key, T protobufMessage) {
-        byte[] serializedData = protobufMessage.toByteArray();
-
-        kafkaTemplate.send(topic, key, serializedData)
-                .whenComplete((result, ex) -> {
-                    if (ex != null) {
-                        log.error("Failed to send message to topic: {}, error: {}", topic, ex.getMessage());
-                    } else {
-                        log.info("Sent to topic: {}, partition: {}, offset: {}",
-                                topic,
-                                result.getRecordMetadata().partition(),
-                                result.getRecordMetadata().offset()
-                        );
-                    }
-                });
+    /**
+     * Sends with an explicit record timestamp and without capturing - used by replay
+     */
+    public CompletableFuture<SendResult<String, byte[]>> send(String topic, String key, long timestamp, byte[] serializedData) {
+        if (diskSpool.isActive()) {
+            diskSpool.append(topic, key, timestamp, serializedData);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<SendResult<String, byte[]>> future;
+        try {
+            future = kafkaTemplate.send(topic, null, timestamp, key, serializedData);
+        } catch (RuntimeException e) {
+            // metadata / max.block.ms timeout, buffer exhausted - как раз недоступный брокер
+            producerMetrics.recordError(topic, e);
+            if (diskSpool.spoolFailedSend(topic, key, timestamp, serializedData, e)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            throw e;
+        }
+
+        CompletableFuture<SendResult<String, byte[]>> delivered = new CompletableFuture<>();
+        future.whenComplete((result, ex) -> {
+            if (ex == null) {
+                producerMetrics.recordSuccess(topic, System.nanoTime() - startNanos);
+                partitionLoadMonitor.record(topic, result.getRecordMetadata().partition());
+                delivered.complete(result);
+                return;
+            }
+            producerMetrics.recordError(topic, ex);
+            if (diskSpool.spoolFailedSend(topic, key, timestamp, serializedData, ex)) {
+                delivered.complete(null);
+            } else {
+                delivered.completeExceptionally(ex);
+            }
+        });
+        return delivered;
     }
 
+    /**
+     * Sends the records of one sweep. With transactions enabled they are committed atomically;
+     * otherwise (or while the spool is active - it keeps order, not atomicity) they go one by one.
+     * An aborted transaction is not lost: its records are re-sent one by one, spooled if the broker is down.
+     */
+    public CompletableFuture<Void> sendBatch(List<OutgoingRecord> records) {
+        TransactionalBatchSender sender = transactionalSender.getIfAvailable();
+        if (sender != null && !diskSpool.isActive()) {
+            return sender.send(records).exceptionallyCompose(ex -> {
+                log.warn("Sweep transaction of {} records aborted ({}), sending them one by one", records.size(), ex.getMessage());
+                return sendEach(records);
+            });
+        }
+        return sendEach(records);
+    }
+
+    private CompletableFuture<Void> sendEach(List<OutgoingRecord> records) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[records.size()];
+        for (int i = 0; i < futures.length; i++) {
+            OutgoingRecord record = records.get(i);
+            futures[i] = send(record.topic(), record.key(), record.payload());
+        }
+        return CompletableFuture.allOf(futures);
+    }
 }
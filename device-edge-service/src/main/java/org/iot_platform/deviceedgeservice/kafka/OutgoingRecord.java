@@ -0,0 +1,7 @@
+package org.iot_platform.deviceedgeservice.kafka;
+
+/**
+ * Serialized reading ready for Kafka
+ */
+public record OutgoingRecord(String topic, String key, byte[] payload) {
+}
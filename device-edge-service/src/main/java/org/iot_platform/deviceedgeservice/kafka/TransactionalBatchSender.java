@@ -0,0 +1,107 @@
+package org.iot_platform.deviceedgeservice.kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.kafka.capture.CaptureRecorder;
+import org.iot_platform.deviceedgeservice.kafka.metrics.PartitionLoadMonitor;
+import org.iot_platform.deviceedgeservice.kafka.metrics.ProducerMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the records of one sweep (any mix of topics) in a single Kafka transaction, so
+ * read_committed consumers see a room snapshot completely or not at all.
+ * <p>
+ * send() blocks the caller until the commit: the commit flushes the whole batch anyway,
+ * and the transactional producer is only returned to the factory cache afterwards.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "device-edge.kafka.transactions.enabled", havingValue = "true")
+public class TransactionalBatchSender {
+
+    private final KafkaTemplate<String, byte[]> transactionalKafkaTemplate;
+    private final ProducerMetrics producerMetrics;
+    private final PartitionLoadMonitor partitionLoadMonitor;
+    private final CaptureRecorder captureRecorder;
+
+    private final Timer commitLatency;
+    private final Counter committed;
+    private final Counter aborted;
+    private final DistributionSummary batchSize;
+
+    public TransactionalBatchSender(@Qualifier("transactionalKafkaTemplate") KafkaTemplate<String, byte[]> transactionalKafkaTemplate,
+                                    ProducerMetrics producerMetrics,
+                                    PartitionLoadMonitor partitionLoadMonitor,
+                                    CaptureRecorder captureRecorder,
+                                    MeterRegistry meterRegistry) {
+        this.transactionalKafkaTemplate = transactionalKafkaTemplate;
+        this.producerMetrics = producerMetrics;
+        this.partitionLoadMonitor = partitionLoadMonitor;
+        this.captureRecorder = captureRecorder;
+        this.commitLatency = Timer.builder("edge.kafka.transaction.latency")
+                .description("Begin to commit of one sweep transaction")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.committed = meterRegistry.counter("edge.kafka.transactions", "result", "committed");
+        this.aborted = meterRegistry.counter("edge.kafka.transactions", "result", "aborted");
+        this.batchSize = DistributionSummary.builder("edge.kafka.transaction.records")
+                .description("Records per committed transaction")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return completes once the transaction is committed, exceptionally if it was aborted
+     */
+    public CompletableFuture<Void> send(List<OutgoingRecord> records) {
+        if (records.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long timestamp = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        List<CompletableFuture<SendResult<String, byte[]>>> futures;
+        try {
+            futures = transactionalKafkaTemplate.executeInTransaction(operations -> {
+                List<CompletableFuture<SendResult<String, byte[]>>> sent = new ArrayList<>(records.size());
+                for (OutgoingRecord record : records) {
+                    sent.add(operations.send(record.topic(), null, timestamp, record.key(), record.payload()));
+                }
+                return sent;
+            });
+        } catch (RuntimeException e) {
+            aborted.increment();
+            for (OutgoingRecord record : records) {
+                producerMetrics.recordError(record.topic(), e);
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long latencyNanos = System.nanoTime() - startNanos;
+        commitLatency.record(latencyNanos, TimeUnit.NANOSECONDS);
+        committed.increment();
+        batchSize.record(records.size());
+
+        // после commit все отправки уже подтверждены
+        for (int i = 0; i < records.size(); i++) {
+            OutgoingRecord record = records.get(i);
+            captureRecorder.record(record.topic(), record.key(), timestamp, record.payload());
+            producerMetrics.recordSuccess(record.topic(), latencyNanos);
+            SendResult<String, byte[]> result = futures.get(i).getNow(null);
+            if (result != null) {
+                partitionLoadMonitor.record(record.topic(), result.getRecordMetadata().partition());
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+}
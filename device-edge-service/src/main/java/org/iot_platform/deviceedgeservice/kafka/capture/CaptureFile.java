@@ -0,0 +1,86 @@
+package org.iot_platform.deviceedgeservice.kafka.capture;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Capture file layout:
+ * <pre>
+ * header: int magic | int version
+ * record: int length | long timestamp | short topicLen | topic | short keyLen (-1 = null) | key | payload
+ * </pre>
+ * length covers everything after itself. A record cut off by a crash ends the capture.
+ */
+final class CaptureFile {
+
+    static final int MAGIC = 0x45444743; // "EDGC"
+    static final int VERSION = 1;
+
+    private static final int FIXED_SIZE = Long.BYTES + Short.BYTES + Short.BYTES;
+
+    private CaptureFile() {
+    }
+
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    static void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a capture file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported capture version " + version);
+        }
+    }
+
+    /**
+     * @return bytes written
+     */
+    static int write(DataOutputStream out, String topic, String key, long timestamp, byte[] payload) throws IOException {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = key != null ? key.getBytes(StandardCharsets.UTF_8) : null;
+        int length = FIXED_SIZE + topicBytes.length + (keyBytes != null ? keyBytes.length : 0) + payload.length;
+
+        out.writeInt(length);
+        out.writeLong(timestamp);
+        out.writeShort(topicBytes.length);
+        out.write(topicBytes);
+        if (keyBytes != null) {
+            out.writeShort(keyBytes.length);
+            out.write(keyBytes);
+        } else {
+            out.writeShort(-1);
+        }
+        out.write(payload);
+        return Integer.BYTES + length;
+    }
+
+    /**
+     * @return next record, null at the end of the capture
+     */
+    static CapturedRecord read(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            long timestamp = in.readLong();
+            byte[] topic = new byte[in.readShort()];
+            in.readFully(topic);
+            short keyLength = in.readShort();
+            byte[] key = keyLength >= 0 ? new byte[keyLength] : null;
+            if (key != null) {
+                in.readFully(key);
+            }
+            byte[] payload = new byte[length - FIXED_SIZE - topic.length - (key != null ? key.length : 0)];
+            in.readFully(payload);
+            return new CapturedRecord(new String(topic, StandardCharsets.UTF_8),
+                    key != null ? new String(key, StandardCharsets.UTF_8) : null, timestamp, payload);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.iot_platform.deviceedgeservice.kafka.capture;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Capture mode: every record the producer sends (topic, key, timestamp, exact protobuf bytes)
+ * is appended to capture-&lt;start time&gt;.bin for a later replay. Stops at max-size.
+ */
+@Slf4j
+@Component
+public class CaptureRecorder {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Value("${device-edge.capture.enabled:false}")
+    private boolean enabled;
+
+    @Value("${device-edge.capture.directory:capture}")
+    private String directoryPath;
+
+    @Value("${device-edge.capture.max-size:1GB}")
+    private DataSize maxSize;
+
+    private volatile boolean active;
+    private Path file;
+    private DataOutputStream out;
+    private long written;
+    private long records;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path directory = Path.of(directoryPath);
+        Files.createDirectories(directory);
+        file = directory.resolve("capture-" + LocalDateTime.now().format(FILE_TIME) + ".bin");
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 256 * 1024));
+        CaptureFile.writeHeader(out);
+        active = true;
+        log.info("Capturing produced records to {} (max {})", file.toAbsolutePath(), maxSize);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (out == null) {
+            return;
+        }
+        active = false;
+        try {
+            out.close();
+            log.info("Capture {} closed: {} records, {} bytes", file, records, written);
+        } catch (IOException e) {
+            log.error("Failed to close capture {}", file, e);
+        }
+        out = null;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void record(String topic, String key, long timestamp, byte[] payload) {
+        if (!active) {
+            return;
+        }
+        synchronized (this) {
+            if (out == null) {
+                return;
+            }
+            try {
+                written += CaptureFile.write(out, topic, key, timestamp, payload);
+                records++;
+                if (written >= maxSize.toBytes()) {
+                    log.warn("Capture {} reached {}, capturing stopped", file, maxSize);
+                    stop();
+                }
+            } catch (IOException e) {
+                log.error("Capture write failed, capturing stopped", e);
+                stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.iot_platform.deviceedgeservice.kafka.capture;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.kafka.KafkaProducer;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorHeaders;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replay mode: re-publishes a capture file keeping its traffic shape. speed 1 - original pace,
+ * N - N times faster, 0 - as fast as the producer accepts. With rewrite-timestamps the record
+ * timestamp and header.timestamp are moved to replay time (compressed by speed), otherwise the
+ * captured bytes go out unchanged.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "device-edge.replay.enabled", havingValue = "true")
+public class CaptureReplayer {
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final KafkaProducer producerService;
+
+    @Value("${device-edge.replay.file}")
+    private String file;
+
+    @Value("${device-edge.replay.speed:1}")
+    private double speed;
+
+    @Value("${device-edge.replay.loops:1}")
+    private int loops;
+
+    @Value("${device-edge.replay.rewrite-timestamps:true}")
+    private boolean rewriteTimestamps;
+
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private Thread worker;
+
+    @PostConstruct
+    public void start() {
+        worker = new Thread(this::replay, "capture-replay");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void replay() {
+        Path path = Path.of(file);
+        log.info("Replaying {} at {}, {} loop(s), timestamps {}", path.toAbsolutePath(),
+                speed > 0 ? speed + "x" : "max speed", loops, rewriteTimestamps ? "rewritten" : "as captured");
+        long startNanos = System.nanoTime();
+        long sent = 0;
+        try {
+            for (int loop = 0; loop < loops && !Thread.currentThread().isInterrupted(); loop++) {
+                sent += replayOnce(path);
+            }
+        } catch (IOException e) {
+            log.error("Replay of {} failed", path, e);
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000d;
+        log.info("Replay finished: sent={} in {}s ({} msg/s), acked={}, failed={}",
+                sent, String.format("%.1f", seconds), String.format("%.0f", sent / seconds),
+                acknowledged.sum(), failed.sum());
+    }
+
+    private long replayOnce(Path path) throws IOException {
+        long sent = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 256 * 1024))) {
+            CaptureFile.readHeader(in);
+
+            long firstTimestamp = -1;
+            long startNanos = System.nanoTime();
+            long startMillis = System.currentTimeMillis();
+            long nextReportNanos = startNanos + REPORT_INTERVAL_NANOS;
+
+            CapturedRecord record;
+            while ((record = CaptureFile.read(in)) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                if (firstTimestamp < 0) {
+                    firstTimestamp = record.timestamp();
+                }
+                long offsetMillis = record.timestamp() - firstTimestamp;
+                long dueOffsetNanos = speed > 0 ? (long) (TimeUnit.MILLISECONDS.toNanos(offsetMillis) / speed) : 0;
+                waitUntil(startNanos + dueOffsetNanos);
+
+                long timestamp = record.timestamp();
+                byte[] payload = record.payload();
+                if (rewriteTimestamps) {
+                    timestamp = startMillis + TimeUnit.NANOSECONDS.toMillis(speed > 0 ? dueOffsetNanos : System.nanoTime() - startNanos);
+                    payload = withHeaderTimestamp(record.topic(), payload, timestamp);
+                }
+                send(record, timestamp, payload);
+                sent++;
+
+                long now = System.nanoTime();
+                if (now >= nextReportNanos) {
+                    nextReportNanos = now + REPORT_INTERVAL_NANOS;
+                    log.info("Replay progress: sent={}, acked={}, failed={}, capture time +{}s",
+                            sent, acknowledged.sum(), failed.sum(), offsetMillis / 1000);
+                }
+            }
+        }
+        return sent;
+    }
+
+    private void send(CapturedRecord record, long timestamp, byte[] payload) {
+        try {
+            producerService.send(record.topic(), record.key(), timestamp, payload)
+                    .whenComplete((result, ex) -> (ex == null ? acknowledged : failed).increment());
+        } catch (RuntimeException e) {
+            failed.increment();
+        }
+    }
+
+    // reflection + пересериализация, но только при rewrite-timestamps
+    private static byte[] withHeaderTimestamp(String topic, byte[] payload, long timestamp) {
+        SensorType type = SensorType.fromTopic(topic);
+        if (type == null) {
+            return payload;
+        }
+        try {
+            Message data = type.getParser().parseFrom(payload);
+            FieldDescriptor headerField = data.getDescriptorForType().findFieldByName("header");
+            return data.toBuilder()
+                    .setField(headerField, SensorHeaders.of(type, data).toBuilder().setTimestamp(timestamp).build())
+                    .build()
+                    .toByteArray();
+        } catch (InvalidProtocolBufferException e) {
+            return payload;
+        }
+    }
+
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
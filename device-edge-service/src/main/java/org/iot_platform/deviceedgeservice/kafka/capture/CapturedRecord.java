@@ -0,0 +1,4 @@
+package org.iot_platform.deviceedgeservice.kafka.capture;
+
+public record CapturedRecord(String topic, String key, long timestamp, byte[] payload) {
+}
@@ -0,0 +1,145 @@
+package org.iot_platform.deviceedgeservice.kafka.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Acknowledged records per topic partition (edge.kafka.partition.records) and a skew gauge per topic:
+ * busiest partition rate / mean partition rate over the last skew-interval. 1.0 - perfectly even.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitionLoadMonitor {
+
+    // partitions beyond this are counted in the Micrometer counter only
+    private static final int MAX_TRACKED_PARTITIONS = 1024;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${device-edge.kafka.skew-interval:30s}")
+    private Duration skewInterval;
+
+    @Value("${device-edge.kafka.skew-warn-ratio:2.0}")
+    private double skewWarnRatio;
+
+    private final ConcurrentMap<String, TopicLoad> topics = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("partition-skew-"));
+        scheduler.scheduleAtFixedRate(this::updateSkew,
+                skewInterval.toMillis(), skewInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void record(String topic, int partition) {
+        if (partition < 0) {
+            return;
+        }
+        TopicLoad load = topics.get(topic);
+        if (load == null) {
+            load = topics.computeIfAbsent(topic, TopicLoad::new);
+        }
+        load.record(partition);
+    }
+
+    private void updateSkew() {
+        for (TopicLoad load : topics.values()) {
+            try {
+                load.updateSkew();
+            } catch (Exception e) {
+                log.error("Failed to compute partition skew of {}", load.topic, e);
+            }
+        }
+    }
+
+    private final class TopicLoad {
+
+        private final String topic;
+        private final AtomicLongArray counts = new AtomicLongArray(MAX_TRACKED_PARTITIONS);
+        private final ConcurrentMap<Integer, Counter> counters = new ConcurrentHashMap<>();
+        private final long[] previous = new long[MAX_TRACKED_PARTITIONS];
+        private volatile int partitions;
+        private volatile double skew = 1.0;
+
+        private TopicLoad(String topic) {
+            this.topic = topic;
+            Gauge.builder("edge.kafka.partition.skew", this, load -> load.skew)
+                    .description("Busiest partition send rate divided by the mean partition rate")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+        }
+
+        private void record(int partition) {
+            Counter counter = counters.get(partition);
+            if (counter == null) {
+                counter = counters.computeIfAbsent(partition, p -> Counter.builder("edge.kafka.partition.records")
+                        .tag("topic", topic)
+                        .tag("partition", String.valueOf(p))
+                        .register(meterRegistry));
+            }
+            counter.increment();
+
+            if (partition < MAX_TRACKED_PARTITIONS) {
+                counts.incrementAndGet(partition);
+                if (partition >= partitions) {
+                    partitions = Math.max(partitions, partition + 1);
+                }
+            }
+        }
+
+        // только поток планировщика
+        private void updateSkew() {
+            int n = partitions;
+            if (n == 0) {
+                return;
+            }
+            long total = 0;
+            long max = 0;
+            int busiest = 0;
+            for (int p = 0; p < n; p++) {
+                long current = counts.get(p);
+                long delta = current - previous[p];
+                previous[p] = current;
+                total += delta;
+                if (delta > max) {
+                    max = delta;
+                    busiest = p;
+                }
+            }
+            if (total == 0) {
+                return;
+            }
+            // партиции, куда за интервал ничего не пришло, тоже считаются - они и есть перекос
+            skew = max / ((double) total / n);
+            if (skew >= skewWarnRatio) {
+                log.warn("Partition skew {} on {}: partition {} got {} of {} records in the last {}",
+                        String.format("%.2f", skew), topic, busiest, max, total, skewInterval);
+            }
+        }
+    }
+}
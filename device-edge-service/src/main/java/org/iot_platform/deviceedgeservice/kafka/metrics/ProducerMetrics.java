@@ -0,0 +1,166 @@
+package org.iot_platform.deviceedgeservice.kafka.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-topic send metrics of the edge producer. Successful sends are only counted,
+ * failures are logged at most once per error-log-interval per topic.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProducerMetrics {
+
+    private static final long BUFFER_SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final MeterRegistry meterRegistry;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    private final ConcurrentMap<String, TopicMeters> topics = new ConcurrentHashMap<>();
+
+    @Value("${device-edge.metrics.error-log-interval:10s}")
+    private Duration errorLogInterval;
+
+    private double batchSize;
+    private double bufferMemory;
+
+    private volatile double bufferAvailable = 1.0;
+    private volatile long bufferSampledAtNanos = System.nanoTime() - BUFFER_SAMPLE_INTERVAL_NANOS;
+
+    @PostConstruct
+    public void registerProducerGauges() {
+        Map<String, Object> config = kafkaTemplate.getProducerFactory().getConfigurationProperties();
+        batchSize = toDouble(config.get(ProducerConfig.BATCH_SIZE_CONFIG), 16384);
+        bufferMemory = toDouble(config.get(ProducerConfig.BUFFER_MEMORY_CONFIG), 33554432);
+
+        Gauge.builder("edge.kafka.batch.fill.ratio", this, metrics -> metrics.producerMetric("batch-size-avg") / metrics.batchSize)
+                .description("Average batch size relative to batch.size")
+                .register(meterRegistry);
+        Gauge.builder("edge.kafka.buffer.available.ratio", this, ProducerMetrics::bufferAvailableRatio)
+                .description("Free part of the producer buffer.memory")
+                .register(meterRegistry);
+        // накопительный счётчик клиента - counter, чтобы rate()/increase() в Prometheus считались верно
+        FunctionCounter.builder("edge.kafka.buffer.exhausted", this, metrics -> metrics.producerTotal("buffer-exhausted-total"))
+                .description("Sends dropped because the producer buffer pool was exhausted")
+                .register(meterRegistry);
+        Gauge.builder("edge.kafka.buffer.pool.wait.ratio", this, metrics -> metrics.producerMetric("bufferpool-wait-ratio"))
+                .description("Fraction of time appenders wait for buffer space")
+                .register(meterRegistry);
+    }
+
+    public void recordSuccess(String topic, long latencyNanos) {
+        TopicMeters meters = meters(topic);
+        meters.sent.increment();
+        meters.latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordError(String topic, Throwable ex) {
+        TopicMeters meters = meters(topic);
+        meters.failed.increment();
+
+        long now = System.nanoTime();
+        long last = meters.lastErrorLogNanos.get();
+        if (now - last >= errorLogInterval.toNanos() && meters.lastErrorLogNanos.compareAndSet(last, now)) {
+            long suppressed = meters.suppressedErrors.sumThenReset();
+            log.error("Failed to send message to topic: {}, error: {} ({} more errors since last report)",
+                    topic, ex.getMessage(), suppressed);
+        } else {
+            meters.suppressedErrors.increment();
+        }
+    }
+
+    /**
+     * Free part of buffer.memory, 1.0 - producer buffer empty.
+     * Sampled at most every 100ms, so it is cheap enough to check per record on ingest paths.
+     */
+    public double bufferAvailableRatio() {
+        long now = System.nanoTime();
+        if (now - bufferSampledAtNanos >= BUFFER_SAMPLE_INTERVAL_NANOS) {
+            bufferSampledAtNanos = now;
+            double available = producerMetric("buffer-available-bytes");
+            bufferAvailable = Double.isNaN(available) ? 1.0 : available / bufferMemory;
+        }
+        return bufferAvailable;
+    }
+
+    private TopicMeters meters(String topic) {
+        TopicMeters meters = topics.get(topic);
+        if (meters == null) {
+            meters = topics.computeIfAbsent(topic, this::createMeters);
+        }
+        return meters;
+    }
+
+    private TopicMeters createMeters(String topic) {
+        return new TopicMeters(
+                Counter.builder("edge.kafka.records.sent")
+                        .tag("topic", topic)
+                        .register(meterRegistry),
+                Counter.builder("edge.kafka.records.failed")
+                        .tag("topic", topic)
+                        .register(meterRegistry),
+                Timer.builder("edge.kafka.send.latency")
+                        .description("Time from send() to broker acknowledgement")
+                        .tag("topic", topic)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofSeconds(60))
+                        .register(meterRegistry)
+        );
+    }
+
+    private double producerMetric(String name) {
+        for (Map.Entry<MetricName, ? extends Metric> entry : kafkaTemplate.metrics().entrySet()) {
+            MetricName metricName = entry.getKey();
+            if ("producer-metrics".equals(metricName.group()) && name.equals(metricName.name())) {
+                Object value = entry.getValue().metricValue();
+                return value instanceof Number number ? number.doubleValue() : Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Cumulative producer metric, 0 until the producer has been created
+     */
+    private double producerTotal(String name) {
+        double total = producerMetric(name);
+        return Double.isNaN(total) ? 0 : total;
+    }
+
+    private static double toDouble(Object value, double defaultValue) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        return value != null ? Double.parseDouble(value.toString()) : defaultValue;
+    }
+
+    private record TopicMeters(Counter sent, Counter failed, Timer latency,
+                               AtomicLong lastErrorLogNanos, LongAdder suppressedErrors) {
+
+        private TopicMeters(Counter sent, Counter failed, Timer latency) {
+            this(sent, failed, latency, new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2), new LongAdder());
+        }
+    }
+}
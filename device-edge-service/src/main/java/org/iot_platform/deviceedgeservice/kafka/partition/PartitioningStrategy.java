@@ -0,0 +1,42 @@
+package org.iot_platform.deviceedgeservice.kafka.partition;
+
+/**
+ * Which part of the hotelId/roomNumber/deviceId key decides the partition. Every strategy keeps
+ * per-device ordering; coarser ones co-locate more devices at the cost of evenness.
+ */
+public enum PartitioningStrategy {
+
+    /**
+     * Whole key - the most even spread
+     */
+    DEVICE(3),
+
+    /**
+     * hotelId/roomNumber - all sensors of a room land on one partition (room-level correlation)
+     */
+    ROOM(2),
+
+    /**
+     * hotelId - only for small fleets, a large hotel becomes a hot partition
+     */
+    HOTEL(1);
+
+    private final int keyParts;
+
+    PartitioningStrategy(int keyParts) {
+        this.keyParts = keyParts;
+    }
+
+    /**
+     * @return length of the key prefix to hash, the whole key if it has fewer parts
+     */
+    int prefixLength(byte[] key) {
+        int parts = 0;
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] == RecordKeys.SEPARATOR && ++parts == keyParts) {
+                return i;
+            }
+        }
+        return key.length;
+    }
+}
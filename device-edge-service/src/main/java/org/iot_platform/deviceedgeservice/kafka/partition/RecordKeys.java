@@ -0,0 +1,23 @@
+package org.iot_platform.deviceedgeservice.kafka.partition;
+
+import org.iot_platform.protos.sensor_common.SensorHeader;
+
+/**
+ * Record key of edge telemetry: hotelId/roomNumber/deviceId. Hotel and room lead, so a partitioner
+ * can hash a prefix of the key to co-locate a hotel's or a room's devices.
+ */
+public final class RecordKeys {
+
+    public static final char SEPARATOR = '/';
+
+    private RecordKeys() {
+    }
+
+    public static String of(SensorHeader header) {
+        return of(header.getHotelId(), header.getRoomNumber(), header.getDeviceId());
+    }
+
+    public static String of(String hotelId, String roomNumber, String deviceId) {
+        return hotelId + SEPARATOR + roomNumber + SEPARATOR + deviceId;
+    }
+}
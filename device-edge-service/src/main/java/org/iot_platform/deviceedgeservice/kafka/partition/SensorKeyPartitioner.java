@@ -0,0 +1,75 @@
+package org.iot_platform.deviceedgeservice.kafka.partition;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * murmur2 over the strategy's prefix of the hotelId/roomNumber/deviceId key (same hash as the
+ * default partitioner, so DEVICE places records exactly where a plain keyed send would).
+ * Strategy comes from the {@value #STRATEGY_CONFIG} producer property.
+ */
+public class SensorKeyPartitioner implements Partitioner {
+
+    public static final String STRATEGY_CONFIG = "edge.partitioning.strategy";
+
+    private PartitioningStrategy strategy = PartitioningStrategy.DEVICE;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object value = configs.get(STRATEGY_CONFIG);
+        if (value != null) {
+            strategy = PartitioningStrategy.valueOf(value.toString().trim().toUpperCase());
+        }
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        int partitions = cluster.partitionCountForTopic(topic);
+        if (keyBytes == null) {
+            return ThreadLocalRandom.current().nextInt(partitions);
+        }
+        return Utils.toPositive(murmur2(keyBytes, strategy.prefixLength(keyBytes))) % partitions;
+    }
+
+    /**
+     * Utils.murmur2 over the first length bytes, without copying the prefix out of the key
+     */
+    static int murmur2(byte[] data, int length) {
+        final int m = 0x5bd1e995;
+        final int r = 24;
+        int h = 0x9747b28c ^ length;
+
+        int length4 = length & ~3;
+        for (int i = 0; i < length4; i += 4) {
+            int k = (data[i] & 0xff) + ((data[i + 1] & 0xff) << 8) + ((data[i + 2] & 0xff) << 16) + ((data[i + 3] & 0xff) << 24);
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+            h *= m;
+            h ^= k;
+        }
+
+        switch (length & 3) {
+            case 3:
+                h ^= (data[length4 + 2] & 0xff) << 16;
+            case 2:
+                h ^= (data[length4 + 1] & 0xff) << 8;
+            case 1:
+                h ^= data[length4] & 0xff;
+                h *= m;
+        }
+
+        h ^= h >>> 13;
+        h *= m;
+        h ^= h >>> 15;
+        return h;
+    }
+
+    @Override
+    public void close() {
+    }
+}
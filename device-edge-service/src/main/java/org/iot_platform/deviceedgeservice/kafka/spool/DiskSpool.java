@@ -0,0 +1,387 @@
+package org.iot_platform.deviceedgeservice.kafka.spool;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.RetriableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Store-and-forward spool for the edge producer.
+ * <p>
+ * While the broker is unreachable (or the spool still holds older records) sends are appended to
+ * memory-mapped segments instead of blocking in KafkaTemplate.send. A single drainer thread
+ * replays them in order at drain-rate once the producer recovers. Delivery is at-least-once:
+ * a batch that fails half-way is re-sent from its first record.
+ * <p>
+ * Every append goes through one appender thread, so records land in the segments in the order they were
+ * handed over. Sends that already failed are queued without waiting: they are reported on the producer
+ * I/O thread, which must not wait for the spool lock or for a new segment to be mapped. New sends
+ * (append) queue behind them and wait for their own record; the spool stays active while the queue is
+ * not empty.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DiskSpool {
+
+    private static final long DRAIN_INTERVAL_MILLIS = 100;
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${device-edge.spool.enabled:false}")
+    private boolean enabled;
+
+    @Value("${device-edge.spool.directory:spool}")
+    private String directoryPath;
+
+    @Value("${device-edge.spool.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @Value("${device-edge.spool.max-segments:32}")
+    private int maxSegments;
+
+    @Value("${device-edge.spool.retention:24h}")
+    private Duration retention;
+
+    @Value("${device-edge.spool.drain-rate:2000}") // records/sec
+    private int drainRate;
+
+    @Value("${device-edge.spool.retry-backoff:5s}")
+    private Duration retryBackoff;
+
+    @Value("${device-edge.spool.send-timeout:30s}")
+    private Duration sendTimeout;
+
+    private final Deque<SpoolSegment> segments = new ArrayDeque<>();
+    private Path directory;
+    private long nextSegmentId;
+
+    private volatile boolean producerAvailable = true;
+    private volatile boolean empty = true;
+    private volatile long nextProbeNanos; // пишет и I/O поток продюсера, читает drainer
+    private final AtomicInteger queuedAppends = new AtomicInteger();
+
+    private Counter appended;
+    private Counter drained;
+    private Counter dropped;
+    private ScheduledExecutorService drainer;
+    private ExecutorService appender;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = Path.of(directoryPath);
+        recover();
+
+        appended = meterRegistry.counter("edge.spool.records.appended");
+        drained = meterRegistry.counter("edge.spool.records.drained");
+        dropped = meterRegistry.counter("edge.spool.records.dropped");
+        Gauge.builder("edge.spool.records", this, DiskSpool::pendingRecords)
+                .description("Records waiting in the spool")
+                .register(meterRegistry);
+        Gauge.builder("edge.spool.bytes", this, DiskSpool::pendingBytes)
+                .description("Bytes waiting in the spool")
+                .register(meterRegistry);
+        Gauge.builder("edge.spool.segments", this, DiskSpool::segmentCount)
+                .register(meterRegistry);
+
+        // очередь ограничена на деле buffer.memory продюсера - упасть могут только записи из буфера
+        appender = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("spool-append-"));
+        drainer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("spool-drain-"));
+        drainer.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (drainer != null) {
+            drainer.shutdownNow();
+        }
+        if (appender != null) {
+            // дописать уже принятые упавшие отправки; вне монитора - им он нужен
+            appender.shutdown();
+            appender.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        synchronized (this) {
+            for (SpoolSegment segment : segments) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close spool segment {}", segment.id(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * True when new records must go to the spool: the broker is down, or older records are still
+     * waiting and sending around them would break ordering.
+     */
+    public boolean isActive() {
+        return enabled && (!producerAvailable || !empty || queuedAppends.get() > 0);
+    }
+
+    /**
+     * Appends a new record behind the failed sends still queued and waits until it is written
+     */
+    public void append(String topic, String key, long timestamp, byte[] payload) {
+        Future<?> queued = enqueue(() -> appendNow(topic, key, timestamp, payload));
+        if (queued == null) {
+            appendNow(topic, key, timestamp, payload); // остановка: appender уже дописал свою очередь
+            return;
+        }
+        try {
+            queued.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // запись остаётся в очереди и будет дописана
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private synchronized void appendNow(String topic, String key, long timestamp, byte[] payload) {
+        SpoolSegment tail = segments.peekLast();
+        if (tail == null || !tail.append(topic, key, timestamp, payload)) {
+            tail = rollSegment();
+            if (!tail.append(topic, key, timestamp, payload)) {
+                dropped.increment();
+                log.error("Record of {} bytes for topic {} does not fit into a spool segment", payload.length, topic);
+                return;
+            }
+        }
+        appended.increment();
+        empty = false;
+    }
+
+    /**
+     * Spools a record whose live send failed because the broker is unreachable. Safe to call from the
+     * producer I/O thread: the record is appended asynchronously, by the spool's own thread.
+     *
+     * @return true if the record was taken over by the spool
+     */
+    public boolean spoolFailedSend(String topic, String key, long timestamp, byte[] payload, Throwable ex) {
+        if (!enabled || !isBrokerUnavailable(ex)) {
+            return false;
+        }
+        if (producerAvailable) {
+            log.warn("Kafka unavailable ({}), spooling records to {}", ex.getMessage(), directory.toAbsolutePath());
+            producerAvailable = false;
+            nextProbeNanos = System.nanoTime() + retryBackoff.toNanos();
+        }
+        return enqueue(() -> appendFailedSend(topic, key, timestamp, payload)) != null; // null - остановка
+    }
+
+    /**
+     * @return null when the appender is stopped
+     */
+    private Future<?> enqueue(Runnable append) {
+        // счётчик растёт до постановки в очередь: isActive() не увидит "пусто" между ними
+        queuedAppends.incrementAndGet();
+        try {
+            return appender.submit(() -> {
+                try {
+                    append.run();
+                } finally {
+                    queuedAppends.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queuedAppends.decrementAndGet();
+            return null;
+        }
+    }
+
+    private void appendFailedSend(String topic, String key, long timestamp, byte[] payload) {
+        try {
+            appendNow(topic, key, timestamp, payload);
+        } catch (RuntimeException e) {
+            dropped.increment();
+            log.error("Failed to spool record for topic {}", topic, e);
+        }
+    }
+
+    private void drain() {
+        try {
+            if (empty || (!producerAvailable && System.nanoTime() < nextProbeNanos)) {
+                return;
+            }
+
+            int budget = Math.max(1, (int) (drainRate * DRAIN_INTERVAL_MILLIS / 1000));
+            List<SpooledRecord> batch = new ArrayList<>(budget);
+            SpoolSegment segment;
+            int endPosition;
+
+            synchronized (this) {
+                dropExpiredSegments();
+                segment = segments.peekFirst();
+                if (segment == null) {
+                    return;
+                }
+                endPosition = segment.readPosition();
+                while (batch.size() < budget && endPosition < segment.writePosition()) {
+                    batch.add(segment.readAt(endPosition));
+                    endPosition += segment.recordSize(endPosition);
+                }
+            }
+
+            if (!batch.isEmpty() && !sendBatch(batch)) {
+                return;
+            }
+
+            synchronized (this) {
+                // голову могли выкинуть (retention / max-segments), пока мы отправляли
+                if (segments.peekFirst() == segment) {
+                    segment.commitRead(endPosition, batch.size());
+                    if (segment.isDrained() && segments.size() > 1) {
+                        segments.pollFirst();
+                        segment.delete();
+                    }
+                }
+                updateEmpty();
+            }
+            drained.increment(batch.size());
+
+            if (!producerAvailable) {
+                producerAvailable = true;
+                log.info("Kafka is reachable again, draining spool ({} records left)", pendingRecords());
+            }
+        } catch (Exception e) {
+            log.error("Spool drain failed", e);
+        }
+    }
+
+    private boolean sendBatch(List<SpooledRecord> batch) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[batch.size()];
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                SpooledRecord record = batch.get(i);
+                futures[i] = kafkaTemplate.send(record.topic(), null, record.timestamp(), record.key(), record.payload());
+            }
+            CompletableFuture.allOf(futures).get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            producerAvailable = false;
+            nextProbeNanos = System.nanoTime() + retryBackoff.toNanos();
+            log.warn("Spool drain paused for {}: {}", retryBackoff, e.getMessage());
+            return false;
+        }
+    }
+
+    private SpoolSegment rollSegment() {
+        while (segments.size() >= maxSegments) {
+            dropSegment(segments.peekFirst(), "max-segments exceeded");
+        }
+        try {
+            SpoolSegment segment = SpoolSegment.create(directory, nextSegmentId++, (int) segmentSize.toBytes());
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create spool segment in " + directory, e);
+        }
+    }
+
+    private void dropExpiredSegments() {
+        long expiredBefore = System.currentTimeMillis() - retention.toMillis();
+        while (segments.size() > 1 && segments.peekFirst().createdAtMillis() < expiredBefore) {
+            dropSegment(segments.peekFirst(), "retention expired");
+        }
+    }
+
+    private void dropSegment(SpoolSegment segment, String reason) {
+        segments.remove(segment);
+        dropped.increment(segment.pendingRecords());
+        log.warn("Dropping spool segment {} with {} undelivered records: {}", segment.id(), segment.pendingRecords(), reason);
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            log.warn("Failed to delete spool segment {}", segment.id(), e);
+        }
+        updateEmpty();
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(SpoolSegment::isSegmentFile).sorted(Comparator.naturalOrder()).toList();
+        }
+
+        for (Path file : files) {
+            try {
+                SpoolSegment segment = SpoolSegment.open(file);
+                segments.addLast(segment);
+                nextSegmentId = segment.id() + 1;
+            } catch (IOException | RuntimeException e) {
+                log.error("Skipping unreadable spool segment {}", file, e);
+            }
+        }
+        updateEmpty();
+
+        if (!empty) {
+            log.info("Recovered spool with {} segments, {} records pending", segments.size(), pendingRecords());
+        }
+    }
+
+    private void updateEmpty() {
+        empty = segments.stream().allMatch(SpoolSegment::isDrained);
+    }
+
+    private synchronized long pendingRecords() {
+        return segments.stream().mapToLong(SpoolSegment::pendingRecords).sum();
+    }
+
+    private synchronized long pendingBytes() {
+        return segments.stream().mapToLong(SpoolSegment::pendingBytes).sum();
+    }
+
+    private synchronized long segmentCount() {
+        return segments.size();
+    }
+
+    private static boolean isBrokerUnavailable(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetriableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,200 @@
+package org.iot_platform.deviceedgeservice.kafka.spool;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only memory-mapped spool file.
+ * <pre>
+ * header:  long writePosition | long readPosition | long createdAtMillis
+ * record:  int length | long timestamp | short topicLength | topic | short keyLength (-1 = null) | key | payload
+ * </pre>
+ * Positions live in the mapped header, so a restarted edge node continues draining where it stopped.
+ * Not thread-safe - guarded by DiskSpool.
+ */
+final class SpoolSegment {
+
+    static final int HEADER_SIZE = 24;
+    private static final int WRITE_POSITION = 0;
+    private static final int READ_POSITION = 8;
+    private static final int CREATED_AT = 16;
+    private static final int RECORD_OVERHEAD = 4 + 8 + 2 + 2;
+    private static final String SUFFIX = ".spool";
+
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long createdAtMillis;
+
+    private int writePosition;
+    private int readPosition;
+    private int pendingRecords;
+
+    private SpoolSegment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.writePosition = (int) buffer.getLong(WRITE_POSITION);
+        this.readPosition = (int) buffer.getLong(READ_POSITION);
+        this.createdAtMillis = buffer.getLong(CREATED_AT);
+    }
+
+    static SpoolSegment create(Path directory, long id, int size) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", id, SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putLong(WRITE_POSITION, HEADER_SIZE);
+        buffer.putLong(READ_POSITION, HEADER_SIZE);
+        buffer.putLong(CREATED_AT, System.currentTimeMillis());
+        return new SpoolSegment(id, path, channel, buffer);
+    }
+
+    static SpoolSegment open(Path path) throws IOException {
+        String fileName = path.getFileName().toString();
+        long id = Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length()));
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        SpoolSegment segment = new SpoolSegment(id, path, channel, buffer);
+
+        if (segment.writePosition < HEADER_SIZE || segment.writePosition > buffer.capacity()
+                || segment.readPosition < HEADER_SIZE || segment.readPosition > segment.writePosition) {
+            channel.close();
+            throw new IOException("Corrupted spool segment header: " + path);
+        }
+
+        for (int position = segment.readPosition; position < segment.writePosition; position += segment.recordSize(position)) {
+            segment.pendingRecords++;
+        }
+        return segment;
+    }
+
+    static boolean isSegmentFile(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    /**
+     * @return false if the record does not fit into the rest of this segment
+     */
+    boolean append(String topic, String key, long timestamp, byte[] payload) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = key != null ? key.getBytes(StandardCharsets.UTF_8) : null;
+        int keyLength = keyBytes != null ? keyBytes.length : 0;
+
+        int size = RECORD_OVERHEAD + topicBytes.length + keyLength + payload.length;
+        if ((long) writePosition + size > buffer.capacity()) {
+            return false;
+        }
+
+        int position = writePosition;
+        buffer.putInt(position, size - 4);
+        position += 4;
+        buffer.putLong(position, timestamp);
+        position += 8;
+        buffer.putShort(position, (short) topicBytes.length);
+        position += 2;
+        buffer.put(position, topicBytes);
+        position += topicBytes.length;
+        buffer.putShort(position, (short) (keyBytes != null ? keyBytes.length : -1));
+        position += 2;
+        if (keyBytes != null) {
+            buffer.put(position, keyBytes);
+            position += keyBytes.length;
+        }
+        buffer.put(position, payload);
+        position += payload.length;
+
+        // header is updated last - a torn write is never visible after restart
+        writePosition = position;
+        buffer.putLong(WRITE_POSITION, writePosition);
+        pendingRecords++;
+        return true;
+    }
+
+    SpooledRecord readAt(int position) {
+        int end = position + recordSize(position);
+        position += 4;
+
+        long timestamp = buffer.getLong(position);
+        position += 8;
+
+        byte[] topic = new byte[buffer.getShort(position)];
+        position += 2;
+        buffer.get(position, topic);
+        position += topic.length;
+
+        short keyLength = buffer.getShort(position);
+        position += 2;
+        String key = null;
+        if (keyLength >= 0) {
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(position, keyBytes);
+            position += keyLength;
+            key = new String(keyBytes, StandardCharsets.UTF_8);
+        }
+
+        byte[] payload = new byte[end - position];
+        buffer.get(position, payload);
+
+        return new SpooledRecord(new String(topic, StandardCharsets.UTF_8), key, timestamp, payload);
+    }
+
+    int recordSize(int position) {
+        return 4 + buffer.getInt(position);
+    }
+
+    /**
+     * Marks records up to {@code position} as delivered
+     */
+    void commitRead(int position, int records) {
+        readPosition = position;
+        pendingRecords -= records;
+        buffer.putLong(READ_POSITION, readPosition);
+    }
+
+    boolean isDrained() {
+        return readPosition >= writePosition;
+    }
+
+    void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    long id() {
+        return id;
+    }
+
+    int readPosition() {
+        return readPosition;
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    int pendingRecords() {
+        return pendingRecords;
+    }
+
+    long pendingBytes() {
+        return writePosition - readPosition;
+    }
+
+    long createdAtMillis() {
+        return createdAtMillis;
+    }
+}
@@ -0,0 +1,7 @@
+package org.iot_platform.deviceedgeservice.kafka.spool;
+
+/**
+ * Record kept on disk while Kafka is unreachable: exactly what would have been sent
+ */
+public record SpooledRecord(String topic, String key, long timestamp, byte[] payload) {
+}
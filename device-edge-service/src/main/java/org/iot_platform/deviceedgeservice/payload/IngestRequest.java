@@ -0,0 +1,15 @@
+package org.iot_platform.deviceedgeservice.payload;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * JSON ingest batch, data is the protobuf JSON mapping of the sensor type message:
+ * {"readings": [{"type": "CLIMATE", "data": {"header": {...}, "temperatureC": 21.5}}]}
+ */
+public record IngestRequest(List<Reading> readings) {
+
+    public record Reading(String type, JsonNode data) {
+    }
+}
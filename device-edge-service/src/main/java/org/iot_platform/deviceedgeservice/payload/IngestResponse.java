@@ -0,0 +1,18 @@
+package org.iot_platform.deviceedgeservice.payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Per-reading outcome of an ingest batch, items are in request order. Dropped readings are accepted
+ * (not to be retried) but were filtered out by the edge pipeline instead of being published.
+ */
+public record IngestResponse(int accepted, int dropped, int rejected, List<Item> results) {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Item(int index, boolean accepted,
+                       @JsonInclude(JsonInclude.Include.NON_DEFAULT) boolean dropped,
+                       String error) {
+    }
+}
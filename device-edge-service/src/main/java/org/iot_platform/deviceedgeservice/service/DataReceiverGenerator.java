@@ -1,15 +1,114 @@
 package org.iot_platform.deviceedgeservice.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.iot_platform.deviceedgeservice.kafka.metrics.ProducerMetrics;
+import org.iot_platform.deviceedgeservice.service.ingest.TelemetryIngestService;
+import org.iot_platform.deviceedgeservice.service.ingest.tcp.TcpIngestChannelInitializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
+
+/**
+ * TCP listener for real devices: long-lived connections carrying length-delimited protobuf frames
+ * (see TelemetryFrame). Frames are validated and published to Kafka with their original bytes, off the
+ * event loops: on a publish group whose threads may block in KafkaTemplate.send.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@ConditionalOnProperty(name = "device-edge.ingest.tcp.enabled", havingValue = "true")
 public class DataReceiverGenerator {
 
+    private final TelemetryIngestService ingestService;
+    private final ProducerMetrics producerMetrics;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${device-edge.ingest.tcp.port:7070}")
+    private int port;
+
+    @Value("${device-edge.ingest.tcp.worker-threads:0}") // 0 - 2 x cores
+    private int workerThreads;
+
+    @Value("${device-edge.ingest.tcp.publish-threads:16}")
+    private int publishThreads;
+
+    @Value("${device-edge.ingest.tcp.publish-queue:65536}") // per publish thread, frames over it fail
+    private int publishQueue;
+
+    @Value("${device-edge.ingest.tcp.max-connections:50000}")
+    private int maxConnections;
+
+    @Value("${device-edge.ingest.tcp.max-frame-size:64KB}")
+    private DataSize maxFrameSize;
+
+    @Value("${device-edge.ingest.tcp.max-in-flight:256}") // per connection
+    private int maxInFlight;
+
+    @Value("${device-edge.ingest.tcp.min-buffer-available:0.1}")
+    private double minBufferAvailable;
+
+    @Value("${device-edge.ingest.tcp.idle-timeout:5m}")
+    private Duration idleTimeout;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private EventExecutorGroup publishGroup;
+
+    @PostConstruct
+    public void start() throws InterruptedException {
+        bossGroup = new NioEventLoopGroup(1, new CustomizableThreadFactory("ingest-accept-"));
+        workerGroup = new NioEventLoopGroup(workerThreads, new CustomizableThreadFactory("ingest-io-"));
+        publishGroup = new DefaultEventExecutorGroup(publishThreads, new CustomizableThreadFactory("ingest-publish-"),
+                publishQueue, RejectedExecutionHandlers.reject());
+
+        ChannelInitializer<SocketChannel> initializer = new TcpIngestChannelInitializer(
+                ingestService, publishGroup, producerMetrics, meterRegistry,
+                maxConnections, (int) maxFrameSize.toBytes(), maxInFlight, minBufferAvailable, idleTimeout);
+
+        ChannelFuture bind = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, 4096)
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childHandler(initializer)
+                .bind(port)
+                .sync();
 
+        log.info("Device TCP ingest listening on {} (max {} connections, {} in-flight per connection)",
+                bind.channel().localAddress(), maxConnections, maxInFlight);
+    }
 
+    @PreDestroy
+    public void stop() {
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully();
+        }
+        if (publishGroup != null) {
+            publishGroup.shutdownGracefully();
+        }
+    }
 }
@@ -1,105 +1,120 @@
 package org.iot_platform.deviceedgeservice.service;
 
+import com.google.protobuf.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.iot_platform.deviceedgeservice.kafka.KafkaProducer;
-import org.iot_platform.deviceedgeservice.service.sensors.*;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.iot_platform.deviceedgeservice.service.pipeline.ReadingSource;
+import org.iot_platform.deviceedgeservice.service.publish.TelemetryPublisher;
+import org.iot_platform.deviceedgeservice.service.schedule.Cadence;
+import org.iot_platform.deviceedgeservice.service.schedule.CadenceScheduler;
+import org.iot_platform.deviceedgeservice.service.sensors.common.DeviceIdentity;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Mock traffic on per-device cadences of the CadenceScheduler.
+ * <p>
+ * With devices-per-type = 0 every sensor type is a single stream of readings for random rooms;
+ * otherwise each type gets that many stable devices, each on its own cadence.
+ * In room-sweep mode every room instead publishes all its sensors at once, as one batch
+ * (one Kafka transaction when transactions are enabled).
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
-@EnableScheduling
+// mock traffic is off while load or replay mode drives the producer
+@ConditionalOnExpression("!${device-edge.load.enabled:false} && !${device-edge.replay.enabled:false} && !${device-edge.scenario.enabled:false}")
 public class SensorDataMockGenerator {
 
-    private final AirQualityDataGenerator airQualityGenerator;
-    private final ClimateDataGenerator climateGenerator;
-    private final EnergyMeterDataGenerator energyGenerator;
-    private final MotionSensorDataGenerator motionGenerator;
-    private final WaterLeakDataGenerator waterLeakGenerator;
-    private final WaterMeterDataGenerator waterMeterGenerator;
+    private static final Map<SensorType, Duration> DEFAULT_INTERVALS = new EnumMap<>(Map.of(
+            SensorType.CLIMATE, Duration.ofMillis(1500),
+            SensorType.AIR_QUALITY, Duration.ofMillis(2500),
+            SensorType.MOTION, Duration.ofMillis(4000),
+            SensorType.ENERGY_METER, Duration.ofMillis(3000),
+            SensorType.WATER_METER, Duration.ofMillis(3500),
+            SensorType.WATER_LEAK, Duration.ofMillis(2000)
+    ));
+    private static final SensorType[] SWEEP_TYPES = DEFAULT_INTERVALS.keySet().toArray(SensorType[]::new);
 
-    private final KafkaProducer producerService;
+    private final Map<SensorType, SensorDataGenerator<?>> sensorDataGenerators;
+    private final TelemetryPublisher telemetryPublisher;
+    private final CadenceScheduler cadenceScheduler;
 
-    @Async
-    @Scheduled(fixedRate = 1500)
-    public void generateClimateData() {
-        try {
-            var data = climateGenerator.generateData();
-            producerService.sendData("climate_data", data.getHeader().getRoomNumber(), data);
-            log.debug("Generated climate data for room: {}", data.getHeader().getRoomNumber());
-        } catch (Exception e) {
-            log.error("Error generating climate data", e.getStackTrace());
-        }
-    }
+    @Value("${device-edge.mock.devices-per-type:0}")
+    private int devicesPerType;
 
-    @Async
-    @Scheduled(fixedRate = 2500)
-    public void generateAirQualityData() {
-        try {
-            var data = airQualityGenerator.generateData();
-            producerService.sendData("air_quality_data", data.getHeader().getRoomNumber(), data);
-            log.debug("Generated air quality data for room: {}", data.getHeader().getRoomNumber());
-        } catch (Exception e) {
-            log.error("Error generating air quality data", e);
-        }
-    }
+    @Value("${device-edge.mock.jitter:0.1}") // доля периода
+    private double jitter;
+
+    @Value("${device-edge.mock.room-sweep:false}")
+    private boolean roomSweep;
+
+    @Value("${device-edge.mock.sweep-interval:5s}")
+    private Duration sweepInterval;
+
+    private final List<Cadence> cadences = new ArrayList<>();
 
-    @Async
-    @Scheduled(fixedRate = 4000)
-    public void generateMotionData() {
-        try {
-            var data = motionGenerator.generateData();
-            producerService.sendData("motion_data", data.getHeader().getRoomNumber(), data);
-            log.debug("Generated motion data for room: {}", data.getHeader().getRoomNumber());
-        } catch (Exception e) {
-            log.error("Error generating motion data", e);
+    @PostConstruct
+    public void start() {
+        if (roomSweep) {
+            for (int room = 1; room <= Math.max(1, devicesPerType); room++) {
+                // identity - name-based UUID, считаем один раз на устройство, а не на каждый sweep
+                DeviceIdentity[] devices = new DeviceIdentity[SWEEP_TYPES.length];
+                for (int i = 0; i < devices.length; i++) {
+                    devices[i] = DeviceIdentity.of(1, room, SWEEP_TYPES[i]);
+                }
+                cadences.add(cadenceScheduler.schedule("room/" + room, sweepInterval, jitter, () -> sweep(devices)));
+            }
+            log.info("Mock generator started: {} room sweeps every {}", cadences.size(), sweepInterval);
+            return;
         }
+        DEFAULT_INTERVALS.forEach((type, interval) -> {
+            SensorDataGenerator<?> generator = sensorDataGenerators.get(type);
+            if (devicesPerType <= 0) {
+                cadences.add(cadenceScheduler.schedule(type.name(), interval, jitter,
+                        () -> emit(type, generator.generateData())));
+                return;
+            }
+            for (int room = 1; room <= devicesPerType; room++) {
+                DeviceIdentity device = DeviceIdentity.of(1, room, type);
+                cadences.add(cadenceScheduler.schedule(type.name() + "/" + device.deviceId(), interval, jitter,
+                        () -> emit(type, generator.generateData(device))));
+            }
+        });
+        log.info("Mock generator started: {} cadences", cadences.size());
     }
 
-    @Async
-    @Scheduled(fixedRate = 3000)
-    public void generateEnergyData() {
-        try {
-            var data = energyGenerator.generateData();
-            producerService.sendData("energy_data", data.getHeader().getRoomNumber(), data);
-            log.debug("Generated energy data for room: {}", data.getHeader().getRoomNumber());
-        } catch (Exception e) {
-            log.error("Error generating energy data", e);
-        }
+    @PreDestroy
+    public void stop() {
+        cadences.forEach(Cadence::cancel);
     }
 
-    @Async
-    @Scheduled(fixedRate = 3500)
-    public void generateWaterMeterData() {
-        try {
-            var data = waterMeterGenerator.generateData();
-            producerService.sendData("water_meter_data", data.getHeader().getRoomNumber(), data);
-            log.debug("Generated water meter data for room: {}", data.getHeader().getRoomNumber());
-        } catch (Exception e) {
-            log.error("Error generating water meter data", e);
+    /**
+     * @param devices identities of the room's sensors, one per SWEEP_TYPES entry
+     */
+    private void sweep(DeviceIdentity[] devices) {
+        List<TelemetryPublisher.Reading> readings = new ArrayList<>(SWEEP_TYPES.length);
+        for (int i = 0; i < SWEEP_TYPES.length; i++) {
+            SensorType type = SWEEP_TYPES[i];
+            readings.add(new TelemetryPublisher.Reading(type, sensorDataGenerators.get(type).generateData(devices[i])));
         }
+        telemetryPublisher.publishSweep(ReadingSource.MOCK, readings);
     }
 
-    @Async
-    @Scheduled(fixedRate = 2000)
-    public void generateWaterLeakData() {
-        try {
-            var data = waterLeakGenerator.generateData();
-            // Отправляем только если обнаружена протечка
-            if (data.getLeakDetected()) {
-                producerService.sendData("water_leak_data", data.getHeader().getRoomNumber(), data);
-                log.warn("Generated water leak alert for room: {}", data.getHeader().getRoomNumber());
-            }
-        } catch (Exception e) {
-            log.error("Error generating water leak data", e);
-        }
+    // что из этого уйдёт в Kafka, решает edge pipeline (device-edge.pipeline)
+    private void emit(SensorType type, Message data) {
+        telemetryPublisher.publish(ReadingSource.MOCK, type, data);
+        log.debug("Generated {} data", type);
     }
 }
@@ -0,0 +1,247 @@
+package org.iot_platform.deviceedgeservice.service.filter;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import org.iot_platform.deviceedgeservice.config.EdgeFilterProperties;
+import org.iot_platform.deviceedgeservice.config.EdgeFilterProperties.Aggregate;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorHeaders;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.deviceedgeservice.service.state.DeviceIndex;
+import org.iot_platform.protos.sensor_common.SensorHeader;
+import org.iot_platform.protos.support.FieldAccessors;
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Deadband + heartbeat suppression for one sensor type, optionally on top of min/max/avg windows.
+ * <p>
+ * Per-device state lives in primitive arrays addressed by a {@link DeviceIndex} slot. Arrays are
+ * allocated in pages of {@value #PAGE_SIZE} devices on first use, so memory follows the number of
+ * devices actually seen rather than max-devices. Time is the header timestamp, not the wall clock.
+ */
+final class DeltaFilter {
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int LOCK_STRIPES = 64;
+
+    private final SensorType sensorType;
+    private final ToDoubleFunction<Message>[] fields;
+    private final FieldDescriptor[] descriptors;
+    private final double[] deadbands;
+    private final Aggregate[] aggregates;
+    private final boolean aggregating;
+    private final long heartbeatMillis;
+    private final long windowMillis;
+
+    private final DeviceIndex devices;
+    private final Page[] pages;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    // значения полей текущего показания; apply() вызывают потоки публикации, у каждого свой буфер
+    private final ThreadLocal<double[]> scratch;
+
+    @SuppressWarnings("unchecked")
+    DeltaFilter(SensorType sensorType, EdgeFilterProperties.Sensor config, long defaultHeartbeatMillis, int maxDevices) {
+        Class<? extends Message> messageType = sensorType.getMessageType();
+        List<EdgeFilterProperties.Field> fieldConfigs = config.getFields();
+        if (fieldConfigs.isEmpty()) {
+            throw new IllegalArgumentException("Filter for " + sensorType + " has no fields");
+        }
+
+        this.sensorType = sensorType;
+        this.fields = new ToDoubleFunction[fieldConfigs.size()];
+        this.descriptors = new FieldDescriptor[fieldConfigs.size()];
+        this.deadbands = new double[fieldConfigs.size()];
+        this.aggregates = new Aggregate[fieldConfigs.size()];
+
+        boolean anyAggregate = false;
+        for (int i = 0; i < fieldConfigs.size(); i++) {
+            EdgeFilterProperties.Field field = fieldConfigs.get(i);
+            fields[i] = FieldAccessors.numeric(messageType, field.getName());
+            descriptors[i] = FieldAccessors.field(messageType, field.getName());
+            deadbands[i] = field.getDeadband();
+            aggregates[i] = field.getAggregate();
+
+            if (aggregates[i] != Aggregate.LAST) {
+                if (field.getName().contains(".") || !isNumber(descriptors[i])) {
+                    throw new IllegalArgumentException("Field " + field.getName() + " of " + sensorType
+                            + " can't be aggregated: only top-level numeric fields are supported");
+                }
+                anyAggregate = true;
+            }
+        }
+
+        this.windowMillis = config.getWindow().toMillis();
+        this.aggregating = windowMillis > 0 && anyAggregate;
+        this.heartbeatMillis = config.getHeartbeat() != null ? config.getHeartbeat().toMillis() : defaultHeartbeatMillis;
+        this.devices = new DeviceIndex(maxDevices);
+        this.pages = new Page[(maxDevices + PAGE_SIZE - 1) >>> PAGE_SHIFT];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        int fieldCount = fieldConfigs.size();
+        this.scratch = ThreadLocal.withInitial(() -> new double[fieldCount]);
+    }
+
+    SensorType sensorType() {
+        return sensorType;
+    }
+
+    int trackedDevices() {
+        return devices.size();
+    }
+
+    /**
+     * @return the reading (or the window aggregate) to publish, null if it is suppressed
+     */
+    Message apply(Message data) {
+        SensorHeader sensorHeader = SensorHeaders.of(sensorType, data);
+        int slot = devices.slotOf(sensorHeader.getDeviceId());
+        if (slot == DeviceIndex.NO_SLOT) {
+            return data;
+        }
+        long now = sensorHeader.getTimestamp();
+        Page page = page(slot);
+        int index = slot & (PAGE_SIZE - 1);
+        int base = index * fields.length;
+
+        double[] values = scratch.get();
+        for (int f = 0; f < fields.length; f++) {
+            values[f] = fields[f].applyAsDouble(data);
+        }
+
+        synchronized (locks[slot & (LOCK_STRIPES - 1)]) {
+            if (windowMillis > 0) {
+                if (!accumulate(page, index, base, values, now)) {
+                    return null;
+                }
+                if (aggregating) {
+                    aggregate(page, index, base, values);
+                }
+                page.windowStart[index] = 0;
+            }
+
+            long lastSent = page.lastSentAt[index];
+            if (lastSent != 0 && now - lastSent < heartbeatMillis && !moved(page, base, values)) {
+                return null;
+            }
+            page.lastSentAt[index] = now;
+            System.arraycopy(values, 0, page.lastSent, base, fields.length);
+        }
+        return aggregating ? withAggregates(data, values) : data;
+    }
+
+    /**
+     * Adds the reading to the device window
+     *
+     * @return true when the window is complete
+     */
+    private boolean accumulate(Page page, int index, int base, double[] values, long now) {
+        if (page.windowStart[index] == 0) {
+            page.windowStart[index] = now;
+            page.count[index] = 0;
+            for (int f = 0; f < fields.length; f++) {
+                page.min[base + f] = Double.POSITIVE_INFINITY;
+                page.max[base + f] = Double.NEGATIVE_INFINITY;
+                page.sum[base + f] = 0;
+            }
+        }
+        page.count[index]++;
+        for (int f = 0; f < fields.length; f++) {
+            page.min[base + f] = Math.min(page.min[base + f], values[f]);
+            page.max[base + f] = Math.max(page.max[base + f], values[f]);
+            page.sum[base + f] += values[f];
+        }
+        return now - page.windowStart[index] >= windowMillis;
+    }
+
+    private void aggregate(Page page, int index, int base, double[] values) {
+        for (int f = 0; f < fields.length; f++) {
+            switch (aggregates[f]) {
+                case MIN -> values[f] = page.min[base + f];
+                case MAX -> values[f] = page.max[base + f];
+                case AVG -> values[f] = page.sum[base + f] / page.count[index];
+                case LAST -> {
+                }
+            }
+        }
+    }
+
+    private boolean moved(Page page, int base, double[] values) {
+        for (int f = 0; f < fields.length; f++) {
+            double delta = Math.abs(values[f] - page.lastSent[base + f]);
+            if (deadbands[f] > 0 ? delta >= deadbands[f] : delta > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // reflection setField, но только раз на окно
+    private Message withAggregates(Message data, double[] values) {
+        Message.Builder builder = data.toBuilder();
+        for (int f = 0; f < fields.length; f++) {
+            if (aggregates[f] == Aggregate.LAST) {
+                continue;
+            }
+            FieldDescriptor descriptor = descriptors[f];
+            Object value = switch (descriptor.getJavaType()) {
+                case FLOAT -> (float) values[f];
+                case DOUBLE -> values[f];
+                case INT -> (int) Math.round(values[f]);
+                case LONG -> Math.round(values[f]);
+                default -> throw new IllegalStateException("Unexpected aggregate field type " + descriptor.getJavaType());
+            };
+            builder.setField(descriptor, value);
+        }
+        return builder.build();
+    }
+
+    private Page page(int slot) {
+        int pageIndex = slot >>> PAGE_SHIFT;
+        Page page = pages[pageIndex];
+        if (page == null) {
+            synchronized (pages) {
+                page = pages[pageIndex];
+                if (page == null) {
+                    page = new Page(fields.length, windowMillis > 0);
+                    pages[pageIndex] = page;
+                }
+            }
+        }
+        return page;
+    }
+
+    private static boolean isNumber(FieldDescriptor descriptor) {
+        return switch (descriptor.getJavaType()) {
+            case INT, LONG, FLOAT, DOUBLE -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * State of {@value #PAGE_SIZE} consecutive slots; per-field arrays are laid out slot-major
+     */
+    private static final class Page {
+
+        private final long[] lastSentAt = new long[PAGE_SIZE];
+        private final double[] lastSent;
+
+        private final long[] windowStart;
+        private final int[] count;
+        private final double[] min;
+        private final double[] max;
+        private final double[] sum;
+
+        private Page(int fieldCount, boolean windowed) {
+            lastSent = new double[PAGE_SIZE * fieldCount];
+            windowStart = windowed ? new long[PAGE_SIZE] : null;
+            count = windowed ? new int[PAGE_SIZE] : null;
+            min = windowed ? new double[PAGE_SIZE * fieldCount] : null;
+            max = windowed ? new double[PAGE_SIZE * fieldCount] : null;
+            sum = windowed ? new double[PAGE_SIZE * fieldCount] : null;
+        }
+    }
+}
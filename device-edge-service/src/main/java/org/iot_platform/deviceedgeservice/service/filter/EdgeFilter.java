@@ -0,0 +1,67 @@
+package org.iot_platform.deviceedgeservice.service.filter;
+
+import com.google.protobuf.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.config.EdgeFilterProperties;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Edge filter stage: drops readings that did not move past their deadband since the last sent one
+ * (unless the heartbeat is due) and downsamples windowed sensor types. Types without a configured
+ * filter pass through untouched.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EdgeFilter {
+
+    private final EdgeFilterProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final DeltaFilter[] filters = new DeltaFilter[SensorType.values().length];
+    private final Counter[] passed = new Counter[SensorType.values().length];
+    private final Counter[] suppressed = new Counter[SensorType.values().length];
+
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long heartbeatMillis = properties.getHeartbeat().toMillis();
+        for (Map.Entry<SensorType, EdgeFilterProperties.Sensor> entry : properties.getSensors().entrySet()) {
+            SensorType type = entry.getKey();
+            DeltaFilter filter = new DeltaFilter(type, entry.getValue(), heartbeatMillis, properties.getMaxDevices());
+            int i = type.ordinal();
+            filters[i] = filter;
+            passed[i] = meterRegistry.counter("edge.filter.readings", "sensor", type.name(), "result", "passed");
+            suppressed[i] = meterRegistry.counter("edge.filter.readings", "sensor", type.name(), "result", "suppressed");
+            Gauge.builder("edge.filter.devices", filter, DeltaFilter::trackedDevices)
+                    .tag("sensor", type.name())
+                    .register(meterRegistry);
+            log.info("Edge filter for {}: {} fields, window {}", type, entry.getValue().getFields().size(),
+                    entry.getValue().getWindow());
+        }
+    }
+
+    /**
+     * @return the message to publish, null if the reading is suppressed
+     */
+    public Message apply(SensorType type, Message data) {
+        int i = type.ordinal();
+        DeltaFilter filter = filters[i];
+        if (filter == null) {
+            return data;
+        }
+        Message result = filter.apply(data);
+        (result != null ? passed[i] : suppressed[i]).increment();
+        return result;
+    }
+}
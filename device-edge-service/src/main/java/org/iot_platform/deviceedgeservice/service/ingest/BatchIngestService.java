@@ -0,0 +1,178 @@
+package org.iot_platform.deviceedgeservice.service.ingest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.payload.IngestRequest;
+import org.iot_platform.deviceedgeservice.payload.IngestResponse;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decodes an HTTP ingest batch and publishes every reading in one pass. Both entry points block
+ * on producer send() at most, so callers run them off the event loop; the returned Mono completes
+ * once every accepted reading was acknowledged by Kafka (or spooled). A reading whose send fails
+ * synchronously is rejected on its own, the rest of the batch is still published.
+ */
+@Slf4j
+@Service
+public class BatchIngestService {
+
+    private static final JsonFormat.Parser JSON_PARSER = JsonFormat.parser();
+
+    private final TelemetryIngestService ingestService;
+    private final Counter accepted;
+    private final Counter dropped;
+    private final Counter rejected;
+
+    public BatchIngestService(TelemetryIngestService ingestService, MeterRegistry meterRegistry) {
+        this.ingestService = ingestService;
+        this.accepted = meterRegistry.counter("edge.ingest.http.readings", "result", "accepted");
+        this.dropped = meterRegistry.counter("edge.ingest.http.readings", "result", "dropped");
+        this.rejected = meterRegistry.counter("edge.ingest.http.readings", "result", "rejected");
+    }
+
+    /**
+     * Body is a sequence of frames: varint32 length | sensor type code (1 byte) | protobuf payload,
+     * the same framing as the TCP listener. A corrupt frame rejects the rest of the body.
+     */
+    public Mono<IngestResponse> ingestDelimited(byte[] body, int maxBatchSize) {
+        List<IngestResult> results = new ArrayList<>();
+        CodedInputStream in = CodedInputStream.newInstance(body);
+        try {
+            while (!in.isAtEnd()) {
+                if (results.size() == maxBatchSize) {
+                    results.add(IngestResult.rejected("batch exceeds " + maxBatchSize + " readings, rest of the body ignored"));
+                    break;
+                }
+                int length = in.readRawVarint32();
+                if (length < 1) {
+                    throw new InvalidProtocolBufferException("frame length " + length);
+                }
+                int code = in.readRawByte() & 0xFF;
+                byte[] payload = in.readRawBytes(length - 1);
+
+                SensorType type = SensorType.fromCode(code);
+                results.add(type != null
+                        ? ingest(type, payload)
+                        : IngestResult.rejected("unknown sensor type code " + code));
+            }
+        } catch (IOException e) {
+            results.add(IngestResult.rejected("malformed frame at offset " + in.getTotalBytesRead() + ", rest of the body ignored"));
+        }
+        return complete(results);
+    }
+
+    public Mono<IngestResponse> ingestJson(IngestRequest request, int maxBatchSize) {
+        List<IngestRequest.Reading> readings = request.readings() != null ? request.readings() : List.of();
+        List<IngestResult> results = new ArrayList<>(readings.size());
+        for (IngestRequest.Reading reading : readings) {
+            results.add(results.size() < maxBatchSize
+                    ? ingestJson(reading)
+                    : IngestResult.rejected("batch exceeds " + maxBatchSize + " readings"));
+        }
+        return complete(results);
+    }
+
+    private IngestResult ingestJson(IngestRequest.Reading reading) {
+        SensorType type = parseType(reading.type());
+        if (type == null) {
+            return IngestResult.rejected("unknown sensor type " + reading.type());
+        }
+        JsonNode data = reading.data();
+        if (data == null || !data.isObject()) {
+            return IngestResult.rejected("data must be an object");
+        }
+        Message message;
+        try {
+            Message.Builder builder = type.getDefaultInstance().newBuilderForType();
+            JSON_PARSER.merge(data.toString(), builder);
+            message = builder.build();
+        } catch (InvalidProtocolBufferException e) {
+            return IngestResult.rejected("invalid " + type + " JSON: " + e.getMessage());
+        }
+        try {
+            return ingestService.ingest(type, message, message.toByteArray());
+        } catch (RuntimeException e) {
+            return sendFailed(type, e);
+        }
+    }
+
+    private IngestResult ingest(SensorType type, byte[] payload) {
+        try {
+            return ingestService.ingest(type, payload);
+        } catch (RuntimeException e) {
+            return sendFailed(type, e);
+        }
+    }
+
+    /**
+     * send() threw instead of failing the future: serialization, record too large, spool off
+     */
+    private static IngestResult sendFailed(SensorType type, RuntimeException e) {
+        log.warn("Failed to publish {} reading: {}", type, e.toString());
+        return IngestResult.rejected("publish failed: " + e.getMessage());
+    }
+
+    private Mono<IngestResponse> complete(List<IngestResult> results) {
+        List<CompletableFuture<?>> deliveries = new ArrayList<>(results.size());
+        for (IngestResult result : results) {
+            if (result.accepted()) {
+                deliveries.add(result.delivery());
+            }
+        }
+        // ждём подтверждений без блокировок: allOf не падает раньше времени из-за одной ошибки
+        CompletableFuture<Void> all = CompletableFuture.allOf(deliveries.stream()
+                .map(future -> future.handle((sent, ex) -> null))
+                .toArray(CompletableFuture[]::new));
+        return Mono.fromFuture(all).then(Mono.fromSupplier(() -> toResponse(results)));
+    }
+
+    private IngestResponse toResponse(List<IngestResult> results) {
+        List<IngestResponse.Item> items = new ArrayList<>(results.size());
+        int acceptedCount = 0;
+        int droppedCount = 0;
+        for (int i = 0; i < results.size(); i++) {
+            IngestResult result = results.get(i);
+            String error = result.accepted() ? deliveryError(result.delivery()) : result.error();
+            if (error == null) {
+                acceptedCount++;
+            }
+            if (result.dropped()) {
+                droppedCount++;
+            }
+            items.add(new IngestResponse.Item(i, error == null, result.dropped(), error));
+        }
+        int rejectedCount = results.size() - acceptedCount;
+        accepted.increment(acceptedCount - droppedCount);
+        dropped.increment(droppedCount);
+        rejected.increment(rejectedCount);
+        return new IngestResponse(acceptedCount, droppedCount, rejectedCount, items);
+    }
+
+    private static String deliveryError(CompletableFuture<?> delivery) {
+        return delivery.isCompletedExceptionally() ? "delivery to Kafka failed, retry later" : null;
+    }
+
+    private static SensorType parseType(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return SensorType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
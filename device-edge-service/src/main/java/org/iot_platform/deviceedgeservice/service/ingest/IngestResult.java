@@ -0,0 +1,27 @@
+package org.iot_platform.deviceedgeservice.service.ingest;
+
+import org.springframework.kafka.support.SendResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Outcome of a single device reading: rejected with a reason, accepted with its delivery future, or
+ * accepted but dropped by the edge pipeline (nothing to retry, delivery is already complete)
+ */
+public record IngestResult(boolean accepted, boolean dropped, String error,
+                           CompletableFuture<SendResult<String, byte[]>> delivery) {
+
+    private static final IngestResult DROPPED = new IngestResult(true, true, null, CompletableFuture.completedFuture(null));
+
+    public static IngestResult accepted(CompletableFuture<SendResult<String, byte[]>> delivery) {
+        return new IngestResult(true, false, null, delivery);
+    }
+
+    public static IngestResult dropped() {
+        return DROPPED;
+    }
+
+    public static IngestResult rejected(String error) {
+        return new IngestResult(false, false, error, null);
+    }
+}
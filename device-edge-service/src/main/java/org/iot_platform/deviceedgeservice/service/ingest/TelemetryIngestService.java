@@ -0,0 +1,63 @@
+package org.iot_platform.deviceedgeservice.service.ingest;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import lombok.RequiredArgsConstructor;
+import org.iot_platform.deviceedgeservice.service.publish.TelemetryPublisher;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorHeaders;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.protos.sensor_common.SensorHeader;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Validates serialized readings pushed by devices against their common-proto type and publishes them
+ * without re-serializing. Shared by the TCP and HTTP ingest endpoints.
+ */
+@Service
+@RequiredArgsConstructor
+public class TelemetryIngestService {
+
+    private final TelemetryPublisher telemetryPublisher;
+
+    public IngestResult ingest(SensorType type, byte[] payload) {
+        Message data;
+        try {
+            data = type.getParser().parseFrom(payload);
+        } catch (InvalidProtocolBufferException e) {
+            return IngestResult.rejected("malformed " + type + " payload");
+        }
+        return ingest(type, data, payload);
+    }
+
+    /**
+     * @param payload serialized form of data, published as is
+     */
+    public IngestResult ingest(SensorType type, Message data, byte[] payload) {
+        String error = validate(SensorHeaders.of(type, data));
+        if (error != null) {
+            return IngestResult.rejected(error);
+        }
+        CompletableFuture<SendResult<String, byte[]>> delivery = telemetryPublisher.publish(type, data, payload);
+        return delivery != null ? IngestResult.accepted(delivery) : IngestResult.dropped();
+    }
+
+    private static String validate(SensorHeader header) {
+        if (header.getDeviceId().isEmpty()) {
+            return "header.device_id is missing";
+        }
+        if (header.getHotelId().isEmpty()) {
+            return "header.hotel_id is missing";
+        }
+        if (header.getRoomNumber().isEmpty()) {
+            return "header.room_number is missing";
+        }
+        if (header.getTimestamp() <= 0) {
+            return "header.timestamp is missing";
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,179 @@
+package org.iot_platform.deviceedgeservice.service.ingest.tcp;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.kafka.metrics.ProducerMetrics;
+import org.iot_platform.deviceedgeservice.service.ingest.IngestResult;
+import org.iot_platform.deviceedgeservice.service.ingest.TelemetryIngestService;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-connection handler. Stops reading from the socket (autoRead off) while the connection has
+ * max-in-flight unacknowledged records or the producer buffer is nearly full, and resumes once
+ * in-flight drops to half of the limit. TCP flow control then pushes back on the device itself.
+ * <p>
+ * Validation and publishing run on the connection's publisher (one executor of the ingest publish
+ * group, so frames of a connection keep their order): KafkaTemplate.send may block on metadata or a
+ * full buffer and must not stall the other connections of the event loop. A frame counts as in-flight
+ * from the hand-off until its delivery completes. All state is confined to the channel's event loop;
+ * publisher and delivery callbacks hop back onto it.
+ */
+@Slf4j
+class IngestConnectionHandler extends SimpleChannelInboundHandler<TelemetryFrame> {
+
+    private static final long BUFFER_RECHECK_MILLIS = 50;
+
+    private final TelemetryIngestService ingestService;
+    private final EventExecutor publisher;
+    private final ProducerMetrics producerMetrics;
+    private final TcpIngestMetrics metrics;
+    private final int maxInFlight;
+    private final double minBufferAvailable;
+
+    private int inFlight;
+    private boolean paused;
+    private boolean recheckScheduled;
+
+    IngestConnectionHandler(TelemetryIngestService ingestService, EventExecutor publisher, ProducerMetrics producerMetrics,
+                            TcpIngestMetrics metrics, int maxInFlight, double minBufferAvailable) {
+        this.ingestService = ingestService;
+        this.publisher = publisher;
+        this.producerMetrics = producerMetrics;
+        this.metrics = metrics;
+        this.maxInFlight = maxInFlight;
+        this.minBufferAvailable = minBufferAvailable;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, TelemetryFrame frame) {
+        metrics.bytes.increment(frame.payload().length + 1);
+        if (frame.type() == null) {
+            metrics.unknownType.increment();
+            log.debug("Unknown sensor type code {} from {}", frame.code(), ctx.channel().remoteAddress());
+            return;
+        }
+
+        inFlight++;
+        try {
+            publisher.execute(() -> publish(ctx, frame));
+        } catch (RejectedExecutionException e) {
+            inFlight--;
+            metrics.failed.increment();
+            pause(ctx);
+            return;
+        }
+
+        if (inFlight >= maxInFlight || producerMetrics.bufferAvailableRatio() < minBufferAvailable) {
+            pause(ctx);
+        }
+    }
+
+    // поток publisher'а
+    private void publish(ChannelHandlerContext ctx, TelemetryFrame frame) {
+        IngestResult result;
+        try {
+            result = ingestService.ingest(frame.type(), frame.payload());
+        } catch (RuntimeException e) {
+            // send() не смог даже поставить запись в буфер - соединение не рвём
+            metrics.failed.increment();
+            released(ctx, true);
+            return;
+        }
+        if (!result.accepted()) {
+            metrics.invalid.increment();
+            log.debug("Rejected frame from {}: {}", ctx.channel().remoteAddress(), result.error());
+            released(ctx, false);
+            return;
+        }
+        if (result.dropped()) {
+            metrics.dropped.increment(); // отфильтровано edge pipeline
+            released(ctx, false);
+            return;
+        }
+        metrics.accepted.increment();
+
+        result.delivery().whenComplete((sent, ex) -> {
+            if (ex != null) {
+                metrics.failed.increment();
+            }
+            released(ctx, false);
+        });
+    }
+
+    private void released(ChannelHandlerContext ctx, boolean producerFull) {
+        ctx.executor().execute(() -> {
+            inFlight--;
+            if (producerFull) {
+                pause(ctx);
+            } else {
+                tryResume(ctx);
+            }
+        });
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            log.debug("Closing idle device connection {}", ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (paused) {
+            paused = false;
+            metrics.pausedConnections.decrementAndGet();
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        metrics.connectionErrors.increment();
+        log.debug("Closing device connection {}: {}", ctx.channel().remoteAddress(), cause.getMessage());
+        ctx.close();
+    }
+
+    private void pause(ChannelHandlerContext ctx) {
+        if (!paused) {
+            paused = true;
+            ctx.channel().config().setAutoRead(false);
+            metrics.pauses.increment();
+            metrics.pausedConnections.incrementAndGet();
+        }
+        scheduleRecheck(ctx);
+    }
+
+    private void tryResume(ChannelHandlerContext ctx) {
+        if (!paused || !ctx.channel().isActive() || inFlight > maxInFlight / 2) {
+            return;
+        }
+        if (producerMetrics.bufferAvailableRatio() < minBufferAvailable) {
+            scheduleRecheck(ctx);
+            return;
+        }
+        paused = false;
+        metrics.pausedConnections.decrementAndGet();
+        ctx.channel().config().setAutoRead(true);
+    }
+
+    // буфер продюсера освобождается не нашими колбэками - при нуле in-flight некому будет разбудить
+    private void scheduleRecheck(ChannelHandlerContext ctx) {
+        if (recheckScheduled) {
+            return;
+        }
+        recheckScheduled = true;
+        ctx.executor().schedule(() -> {
+            recheckScheduled = false;
+            tryResume(ctx);
+        }, BUFFER_RECHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
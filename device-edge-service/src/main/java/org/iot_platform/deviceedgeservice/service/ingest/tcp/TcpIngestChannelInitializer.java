@@ -0,0 +1,67 @@
+package org.iot_platform.deviceedgeservice.service.ingest.tcp;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.EventExecutorGroup;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.kafka.metrics.ProducerMetrics;
+import org.iot_platform.deviceedgeservice.service.ingest.TelemetryIngestService;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline of an accepted device connection: idle timeout, frame decoder, ingest handler.
+ * Connections over max-connections are closed right away.
+ */
+@Slf4j
+public class TcpIngestChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+    private final TelemetryIngestService ingestService;
+    private final EventExecutorGroup publishGroup;
+    private final ProducerMetrics producerMetrics;
+    private final TcpIngestMetrics metrics;
+    private final int maxConnections;
+    private final int maxFrameSize;
+    private final int maxInFlight;
+    private final double minBufferAvailable;
+    private final long idleTimeoutMillis;
+
+    /**
+     * @param publishGroup executors the connections validate and publish their frames on, one per connection
+     */
+    public TcpIngestChannelInitializer(TelemetryIngestService ingestService, EventExecutorGroup publishGroup,
+                                       ProducerMetrics producerMetrics, MeterRegistry meterRegistry,
+                                       int maxConnections, int maxFrameSize, int maxInFlight,
+                                       double minBufferAvailable, Duration idleTimeout) {
+        this.ingestService = ingestService;
+        this.publishGroup = publishGroup;
+        this.producerMetrics = producerMetrics;
+        this.metrics = new TcpIngestMetrics(meterRegistry);
+        this.maxConnections = maxConnections;
+        this.maxFrameSize = maxFrameSize;
+        this.maxInFlight = maxInFlight;
+        this.minBufferAvailable = minBufferAvailable;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+    }
+
+    @Override
+    protected void initChannel(SocketChannel channel) {
+        if (metrics.connections.incrementAndGet() > maxConnections) {
+            metrics.connections.decrementAndGet();
+            metrics.rejectedConnections.increment();
+            log.debug("Connection limit {} reached, closing {}", maxConnections, channel.remoteAddress());
+            channel.close();
+            return;
+        }
+        channel.closeFuture().addListener(future -> metrics.connections.decrementAndGet());
+
+        channel.pipeline()
+                .addLast("idle", new IdleStateHandler(idleTimeoutMillis, 0, 0, TimeUnit.MILLISECONDS))
+                .addLast("frames", new TelemetryFrameDecoder(maxFrameSize))
+                .addLast("ingest", new IngestConnectionHandler(ingestService, publishGroup.next(), producerMetrics, metrics,
+                        maxInFlight, minBufferAvailable));
+    }
+}
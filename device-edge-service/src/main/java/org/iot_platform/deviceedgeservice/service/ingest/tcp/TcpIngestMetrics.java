@@ -0,0 +1,49 @@
+package org.iot_platform.deviceedgeservice.service.ingest.tcp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meters of the device TCP listener, shared by all connections
+ */
+final class TcpIngestMetrics {
+
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger pausedConnections = new AtomicInteger();
+
+    final Counter accepted;
+    final Counter dropped;
+    final Counter invalid;
+    final Counter unknownType;
+    final Counter failed;
+    final Counter bytes;
+    final Counter rejectedConnections;
+    final Counter connectionErrors;
+    final Counter pauses;
+
+    TcpIngestMetrics(MeterRegistry registry) {
+        accepted = frames(registry, "accepted");
+        dropped = frames(registry, "dropped");
+        invalid = frames(registry, "invalid");
+        unknownType = frames(registry, "unknown_type");
+        failed = frames(registry, "failed");
+        bytes = registry.counter("edge.ingest.tcp.bytes");
+        rejectedConnections = registry.counter("edge.ingest.tcp.connections.rejected");
+        connectionErrors = registry.counter("edge.ingest.tcp.connections.errors");
+        pauses = Counter.builder("edge.ingest.tcp.backpressure.pauses")
+                .description("Times a connection stopped reading because of in-flight limit or a full producer buffer")
+                .register(registry);
+
+        Gauge.builder("edge.ingest.tcp.connections", connections, AtomicInteger::get)
+                .register(registry);
+        Gauge.builder("edge.ingest.tcp.connections.paused", pausedConnections, AtomicInteger::get)
+                .register(registry);
+    }
+
+    private static Counter frames(MeterRegistry registry, String result) {
+        return registry.counter("edge.ingest.tcp.frames", "result", result);
+    }
+}
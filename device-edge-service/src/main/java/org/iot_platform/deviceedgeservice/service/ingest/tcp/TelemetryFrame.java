@@ -0,0 +1,10 @@
+package org.iot_platform.deviceedgeservice.service.ingest.tcp;
+
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+
+/**
+ * One frame of the device TCP protocol: varint32 length | sensor type code (1 byte) | protobuf payload.
+ * The length covers the type byte and the payload. Type is null for unknown codes.
+ */
+public record TelemetryFrame(SensorType type, int code, byte[] payload) {
+}
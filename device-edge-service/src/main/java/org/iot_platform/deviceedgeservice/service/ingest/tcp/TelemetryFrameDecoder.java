@@ -0,0 +1,63 @@
+package org.iot_platform.deviceedgeservice.service.ingest.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+
+import java.util.List;
+
+/**
+ * Splits the connection stream into {@link TelemetryFrame}s. Frame bytes are copied exactly once,
+ * into the array that is later handed to the Kafka producer.
+ */
+public class TelemetryFrameDecoder extends ByteToMessageDecoder {
+
+    private static final long INCOMPLETE = -1;
+
+    private final int maxFrameSize;
+
+    public TelemetryFrameDecoder(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        int start = in.readerIndex();
+        long length = readVarint32(in);
+        if (length == INCOMPLETE) {
+            in.readerIndex(start);
+            return;
+        }
+        if (length < 1 || length > maxFrameSize) {
+            // после битой длины поток не пересинхронизировать - соединение закрывается
+            throw new TooLongFrameException("Frame length " + length + " is outside 1.." + maxFrameSize);
+        }
+        if (in.readableBytes() < length) {
+            in.readerIndex(start);
+            return;
+        }
+
+        int code = in.readUnsignedByte();
+        byte[] payload = new byte[(int) length - 1];
+        in.readBytes(payload);
+        out.add(new TelemetryFrame(SensorType.fromCode(code), code, payload));
+    }
+
+    private static long readVarint32(ByteBuf in) {
+        long result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!in.isReadable()) {
+                return INCOMPLETE;
+            }
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new CorruptedFrameException("Malformed varint32 frame length");
+    }
+}
@@ -0,0 +1,264 @@
+package org.iot_platform.deviceedgeservice.service.load;
+
+import com.google.protobuf.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.service.pipeline.ReadingSource;
+import org.iot_platform.deviceedgeservice.service.publish.TelemetryPublisher;
+import org.iot_platform.deviceedgeservice.service.sensors.common.DeviceIdentity;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fleet-scale load mode: hotels x rooms x sensor types simulated devices with stable identities,
+ * paced to an aggregate target rate by a handful of dispatcher threads (no thread per device).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "device-edge.load.enabled", havingValue = "true")
+public class FleetLoadGenerator {
+
+    private static final long TICK_MILLIS = 10;
+    // не копим "долг" больше чем на 100мс - иначе после затыка продюсера получим лавину
+    private static final double MAX_BURST_SECONDS = 0.1;
+
+    private final Map<SensorType, SensorDataGenerator<?>> sensorDataGenerators;
+    private final TelemetryPublisher telemetryPublisher;
+
+    @Value("${device-edge.load.hotels:5}")
+    private int hotels;
+
+    @Value("${device-edge.load.rooms-per-hotel:100}")
+    private int roomsPerHotel;
+
+    @Value("${device-edge.load.sensor-types:CLIMATE,AIR_QUALITY,MOTION,ENERGY_METER,WATER_LEAK,WATER_METER}")
+    private List<SensorType> sensorTypes;
+
+    @Value("${device-edge.load.target-rate:1000}")
+    private double targetRate;
+
+    @Value("${device-edge.load.ramp-up:30s}")
+    private Duration rampUp;
+
+    @Value("${device-edge.load.steady-state:0s}") // 0 - until shutdown
+    private Duration steadyState;
+
+    @Value("${device-edge.load.dispatcher-threads:2}")
+    private int dispatcherThreads;
+
+    @Value("${device-edge.load.report-interval:10s}")
+    private Duration reportInterval;
+
+    private final LongAdder emitted = new LongAdder();
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private DeviceIdentity[] devices;
+    private SensorType[] deviceTypes;
+    private SensorDataGenerator<?>[] generatorsByType;
+    private Shard[] shards;
+    private ScheduledExecutorService scheduler;
+
+    private long startNanos;
+    private long lastReportNanos;
+    private long lastEmitted;
+    private long lastAcknowledged;
+    private long lastFailed;
+
+    @PostConstruct
+    public void start() {
+        buildFleet();
+
+        shards = new Shard[Math.min(dispatcherThreads, devices.length)];
+        scheduler = Executors.newScheduledThreadPool(shards.length + 1, new CustomizableThreadFactory("load-gen-"));
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = new Shard(i, startNanos);
+            shards[i] = shard;
+            scheduler.scheduleAtFixedRate(() -> tick(shard), 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleAtFixedRate(this::report,
+                reportInterval.toMillis(), reportInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        log.info("Load mode started: {} hotels x {} rooms x {} sensor types = {} devices, target {} msg/s, ramp-up {}, steady-state {}",
+                hotels, roomsPerHotel, sensorTypes.size(), devices.length, targetRate, rampUp,
+                steadyState.isZero() ? "unbounded" : steadyState);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void buildFleet() {
+        int types = sensorTypes.size();
+        if (hotels <= 0 || roomsPerHotel <= 0 || types == 0 || dispatcherThreads <= 0) {
+            throw new IllegalStateException("Load mode needs at least one hotel, room, sensor type and dispatcher thread");
+        }
+        devices = new DeviceIdentity[hotels * roomsPerHotel * types];
+        deviceTypes = new SensorType[devices.length];
+
+        int index = 0;
+        for (int hotel = 1; hotel <= hotels; hotel++) {
+            for (int room = 1; room <= roomsPerHotel; room++) {
+                for (SensorType type : sensorTypes) {
+                    devices[index] = DeviceIdentity.of(hotel, room, type);
+                    deviceTypes[index] = type;
+                    index++;
+                }
+            }
+        }
+
+        generatorsByType = new SensorDataGenerator<?>[SensorType.values().length];
+        for (SensorType type : sensorTypes) {
+            SensorDataGenerator<?> generator = sensorDataGenerators.get(type);
+            if (generator == null) {
+                throw new IllegalStateException("No generator registered for sensor type " + type);
+            }
+            generatorsByType[type.ordinal()] = generator;
+        }
+    }
+
+    private void tick(Shard shard) {
+        try {
+            long now = System.nanoTime();
+            if (phaseAt(now) == LoadPhase.FINISHED) {
+                return;
+            }
+
+            double shardRate = targetRateAt(now) / shards.length;
+            double maxCredit = Math.max(1.0, shardRate * MAX_BURST_SECONDS);
+            shard.credit = Math.min(shard.credit + shardRate * (now - shard.lastTickNanos) / 1_000_000_000d, maxCredit);
+            shard.lastTickNanos = now;
+
+            while (shard.credit >= 1.0) {
+                shard.credit -= 1.0;
+                emit(shard.nextDevice());
+            }
+        } catch (Exception e) {
+            // исключение из scheduleAtFixedRate отменит все следующие тики шарда
+            log.error("Load shard {} tick failed", shard.id, e);
+        }
+    }
+
+    private void emit(int deviceIndex) {
+        DeviceIdentity device = devices[deviceIndex];
+        SensorType type = deviceTypes[deviceIndex];
+        try {
+            Message data = generatorsByType[type.ordinal()].generateData(device);
+            emitted.increment();
+            telemetryPublisher.publish(ReadingSource.LOAD, type, data)
+                    .whenComplete((result, ex) -> {
+                        if (ex == null) {
+                            acknowledged.increment();
+                        } else {
+                            failed.increment();
+                        }
+                    });
+        } catch (Exception e) {
+            failed.increment();
+        }
+    }
+
+    private void report() {
+        long now = System.nanoTime();
+        LoadPhase phase = phaseAt(now);
+        double seconds = (now - lastReportNanos) / 1_000_000_000d;
+
+        long currentEmitted = emitted.sum();
+        long currentAcknowledged = acknowledged.sum();
+        long currentFailed = failed.sum();
+
+        log.info("Load [{}] devices={} target={} msg/s, emitted={} msg/s, acked={} msg/s, failed={} msg/s, in-flight={}",
+                phase,
+                devices.length,
+                String.format("%.0f", targetRateAt(now)),
+                String.format("%.0f", (currentEmitted - lastEmitted) / seconds),
+                String.format("%.0f", (currentAcknowledged - lastAcknowledged) / seconds),
+                String.format("%.0f", (currentFailed - lastFailed) / seconds),
+                currentEmitted - currentAcknowledged - currentFailed);
+
+        lastReportNanos = now;
+        lastEmitted = currentEmitted;
+        lastAcknowledged = currentAcknowledged;
+        lastFailed = currentFailed;
+
+        if (phase == LoadPhase.FINISHED) {
+            log.info("Load run finished: emitted={}, acked={}, failed={}", currentEmitted, currentAcknowledged, currentFailed);
+            scheduler.shutdown();
+        }
+    }
+
+    private double targetRateAt(long nowNanos) {
+        long elapsed = nowNanos - startNanos;
+        long ramp = rampUp.toNanos();
+        if (elapsed < ramp) {
+            return targetRate * elapsed / ramp;
+        }
+        return targetRate;
+    }
+
+    private LoadPhase phaseAt(long nowNanos) {
+        long elapsed = nowNanos - startNanos;
+        long ramp = rampUp.toNanos();
+        if (elapsed < ramp) {
+            return LoadPhase.RAMP_UP;
+        }
+        if (steadyState.isZero() || elapsed < ramp + steadyState.toNanos()) {
+            return LoadPhase.STEADY_STATE;
+        }
+        return LoadPhase.FINISHED;
+    }
+
+    private enum LoadPhase {
+        RAMP_UP,
+        STEADY_STATE,
+        FINISHED
+    }
+
+    /**
+     * Dispatcher-owned slice of the fleet: devices id, id + shards, id + 2 * shards, ...
+     * Only ever touched by the single scheduled task that owns it.
+     */
+    private final class Shard {
+
+        private final int id;
+        private long lastTickNanos;
+        private double credit;
+        private int cursor;
+
+        private Shard(int id, long startNanos) {
+            this.id = id;
+            this.lastTickNanos = startNanos;
+            this.cursor = id;
+        }
+
+        private int nextDevice() {
+            int device = cursor;
+            cursor += shards.length;
+            if (cursor >= devices.length) {
+                cursor = id;
+            }
+            return device;
+        }
+    }
+}
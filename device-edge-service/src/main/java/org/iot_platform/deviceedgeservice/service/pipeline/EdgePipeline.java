@@ -0,0 +1,116 @@
+package org.iot_platform.deviceedgeservice.service.pipeline;
+
+import com.google.protobuf.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.config.EdgePipelineProperties;
+import org.iot_platform.deviceedgeservice.service.filter.EdgeFilter;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Edge processing chain between the reading sources (generators, ingest) and Kafka: drop rules,
+ * threshold gates, header enrichment, routing overrides and the deadband filter.
+ * <p>
+ * The configured stages are compiled at startup into a flat array per reading source and sensor type
+ * holding only the stages that apply to it, so processing a reading is a loop over plain lambdas.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EdgePipeline {
+
+    private static final String DEADBAND = "deadband";
+
+    private final EdgePipelineProperties properties;
+    private final EdgeFilter edgeFilter;
+    private final MeterRegistry meterRegistry;
+
+    private final Stage[][][] stages = new Stage[ReadingSource.values().length][SensorType.values().length][];
+
+    @PostConstruct
+    public void compile() {
+        List<EdgePipelineProperties.Stage> definitions = new ArrayList<>(properties.getStages());
+        if (definitions.stream().noneMatch(stage -> stage.getType() == EdgePipelineProperties.StageType.DEADBAND)) {
+            EdgePipelineProperties.Stage deadband = new EdgePipelineProperties.Stage();
+            deadband.setName(DEADBAND);
+            deadband.setType(EdgePipelineProperties.StageType.DEADBAND);
+            definitions.add(deadband);
+        }
+
+        for (SensorType type : SensorType.values()) {
+            List<EdgePipelineProperties.Stage> selected = new ArrayList<>();
+            List<Stage> compiled = new ArrayList<>();
+            for (EdgePipelineProperties.Stage definition : definitions) {
+                if (definition.getType() == null) {
+                    throw new IllegalStateException("Pipeline stage " + definition.getName() + " has no type");
+                }
+                if (applies(definition.getSensors(), type)) {
+                    selected.add(definition);
+                    compiled.add(stage(definition, type));
+                }
+            }
+            for (ReadingSource source : ReadingSource.values()) {
+                List<Stage> forSource = new ArrayList<>(compiled.size());
+                for (int i = 0; i < compiled.size(); i++) {
+                    if (applies(selected.get(i).getSources(), source)) {
+                        forSource.add(compiled.get(i));
+                    }
+                }
+                stages[source.ordinal()][type.ordinal()] = forSource.toArray(Stage[]::new);
+            }
+        }
+        log.info("Edge pipeline: {}", definitions.stream()
+                .map(stage -> stage.getName() + "(" + stage.getType()
+                        + (stage.getSources().isEmpty() ? "" : " " + stage.getSources()) + ")")
+                .toList());
+    }
+
+    /**
+     * @return the record to publish, null if a stage dropped the reading
+     */
+    public EdgeRecord process(ReadingSource source, SensorType type, Message data) {
+        EdgeRecord record = new EdgeRecord(type, data);
+        for (Stage stage : stages[source.ordinal()][type.ordinal()]) {
+            long startNanos = System.nanoTime();
+            boolean keep = stage.processor.process(record);
+            stage.timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            if (!keep) {
+                stage.dropped.increment();
+                return null;
+            }
+        }
+        return record;
+    }
+
+    private static <T> boolean applies(List<T> selected, T value) {
+        return selected.isEmpty() || selected.contains(value);
+    }
+
+    private Stage stage(EdgePipelineProperties.Stage definition, SensorType type) {
+        String name = definition.getName() != null ? definition.getName() : definition.getType().name().toLowerCase();
+        EdgeProcessor processor;
+        try {
+            processor = EdgeProcessors.compile(definition, type, edgeFilter);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Pipeline stage " + name + " does not fit " + type + ": " + e.getMessage(), e);
+        }
+        Timer timer = Timer.builder("edge.pipeline.stage")
+                .description("Time spent in one edge pipeline stage")
+                .tag("stage", name)
+                .register(meterRegistry);
+        Counter dropped = meterRegistry.counter("edge.pipeline.dropped", "stage", name, "sensor", type.name());
+        return new Stage(processor, timer, dropped);
+    }
+
+    private record Stage(EdgeProcessor processor, Timer timer, Counter dropped) {
+    }
+}
@@ -0,0 +1,13 @@
+package org.iot_platform.deviceedgeservice.service.pipeline;
+
+/**
+ * One compiled stage of the edge pipeline
+ */
+@FunctionalInterface
+interface EdgeProcessor {
+
+    /**
+     * @return false to drop the reading
+     */
+    boolean process(EdgeRecord record);
+}
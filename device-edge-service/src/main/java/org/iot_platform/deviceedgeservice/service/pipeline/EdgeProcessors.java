@@ -0,0 +1,168 @@
+package org.iot_platform.deviceedgeservice.service.pipeline;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import org.iot_platform.deviceedgeservice.config.EdgePipelineProperties;
+import org.iot_platform.deviceedgeservice.service.filter.EdgeFilter;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.protos.support.FieldAccessors;
+
+import java.util.Map;
+import java.util.function.DoublePredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Compiles stage definitions into processors for one sensor type. Field paths and header patches
+ * are resolved here, once; the processors only call generated getters and typed mergeFrom.
+ */
+final class EdgeProcessors {
+
+    private EdgeProcessors() {
+    }
+
+    static EdgeProcessor compile(EdgePipelineProperties.Stage stage, SensorType type, EdgeFilter edgeFilter) {
+        return switch (stage.getType()) {
+            case DROP -> {
+                Predicate<Message> condition = condition(stage, type, true);
+                yield record -> !condition.test(record.data());
+            }
+            case GATE -> {
+                Predicate<Message> condition = condition(stage, type, true);
+                yield record -> condition.test(record.data());
+            }
+            case ROUTE -> {
+                if (stage.getTopic() == null || stage.getTopic().isBlank()) {
+                    throw new IllegalStateException("Route stage " + stage.getName() + " has no topic");
+                }
+                String topic = stage.getTopic();
+                Predicate<Message> condition = condition(stage, type, false);
+                yield record -> {
+                    if (condition.test(record.data())) {
+                        record.topic(topic);
+                    }
+                    return true;
+                };
+            }
+            case ENRICH -> enrich(stage, type);
+            case DEADBAND -> record -> {
+                Message filtered = edgeFilter.apply(record.type(), record.data());
+                if (filtered == null) {
+                    return false;
+                }
+                record.data(filtered);
+                return true;
+            };
+        };
+    }
+
+    private static Predicate<Message> condition(EdgePipelineProperties.Stage stage, SensorType type, boolean required) {
+        EdgePipelineProperties.Condition when = stage.getWhen();
+        if (when == null) {
+            if (required) {
+                throw new IllegalStateException(stage.getType() + " stage " + stage.getName() + " needs a 'when' condition");
+            }
+            return message -> true;
+        }
+        ToDoubleFunction<Message> field = FieldAccessors.numeric(type.getMessageType(), when.getField());
+        double value = when.getValue();
+        DoublePredicate test = switch (when.getOperator()) {
+            case LT -> v -> v < value;
+            case LE -> v -> v <= value;
+            case GT -> v -> v > value;
+            case GE -> v -> v >= value;
+            case EQ -> v -> v == value;
+            case NE -> v -> v != value;
+        };
+        return message -> test.test(field.applyAsDouble(message));
+    }
+
+    /**
+     * Each header value becomes a constant patch message of the sensor type, merged into the reading
+     * with its typed mergeFrom. Without overwrite a patch is only merged while the field is still empty.
+     */
+    private static EdgeProcessor enrich(EdgePipelineProperties.Stage stage, SensorType type) {
+        if (stage.getHeader().isEmpty()) {
+            throw new IllegalStateException("Enrich stage " + stage.getName() + " has no header values");
+        }
+        Predicate<Message> condition = condition(stage, type, false);
+        Descriptor descriptor = FieldAccessors.descriptor(type.getMessageType());
+        FieldDescriptor headerField = descriptor.findFieldByName("header");
+
+        int size = stage.getHeader().size();
+        Message[] patches = new Message[size];
+        Predicate<Message>[] empty = newPredicates(size);
+        int i = 0;
+        for (Map.Entry<String, String> entry : stage.getHeader().entrySet()) {
+            String path = "header." + entry.getKey();
+            FieldDescriptor field = FieldAccessors.field(type.getMessageType(), path);
+
+            Message.Builder builder = type.getDefaultInstance().newBuilderForType();
+            builder.getFieldBuilder(headerField).setField(field, convert(field, entry.getValue()));
+            patches[i] = builder.build();
+            empty[i] = stage.isOverwrite() ? message -> true : isDefault(type, path, field);
+            i++;
+        }
+
+        return record -> {
+            Message data = record.data();
+            if (!condition.test(data)) {
+                return true;
+            }
+            Message.Builder builder = null;
+            for (int p = 0; p < patches.length; p++) {
+                if (empty[p].test(data)) {
+                    if (builder == null) {
+                        builder = data.toBuilder();
+                    }
+                    builder.mergeFrom(patches[p]);
+                }
+            }
+            if (builder != null) {
+                record.data(builder.build());
+            }
+            return true;
+        };
+    }
+
+    private static Predicate<Message> isDefault(SensorType type, String path, FieldDescriptor field) {
+        return switch (field.getJavaType()) {
+            case INT, LONG, FLOAT, DOUBLE, BOOLEAN, ENUM -> {
+                ToDoubleFunction<Message> numeric = FieldAccessors.numeric(type.getMessageType(), path);
+                yield message -> numeric.applyAsDouble(message) == 0;
+            }
+            case STRING -> {
+                Function<Message, Object> string = FieldAccessors.object(type.getMessageType(), path);
+                yield message -> ((String) string.apply(message)).isEmpty();
+            }
+            default -> throw new IllegalStateException("Header field " + field.getName() + " can not be enriched");
+        };
+    }
+
+    private static Object convert(FieldDescriptor field, String value) {
+        return switch (field.getJavaType()) {
+            case STRING -> value;
+            case INT -> Integer.parseInt(value);
+            case LONG -> Long.parseLong(value);
+            case FLOAT -> Float.parseFloat(value);
+            case DOUBLE -> Double.parseDouble(value);
+            case BOOLEAN -> Boolean.parseBoolean(value);
+            case ENUM -> {
+                EnumValueDescriptor enumValue = field.getEnumType().findValueByName(value);
+                if (enumValue == null) {
+                    throw new IllegalStateException("Unknown " + field.getEnumType().getName() + " value " + value);
+                }
+                yield enumValue;
+            }
+            default -> throw new IllegalStateException("Header field " + field.getName() + " can not be enriched");
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Predicate<Message>[] newPredicates(int size) {
+        return new Predicate[size];
+    }
+}
@@ -0,0 +1,51 @@
+package org.iot_platform.deviceedgeservice.service.pipeline;
+
+import com.google.protobuf.Message;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+
+/**
+ * A reading on its way through the edge pipeline. Stages may replace the message or the topic.
+ */
+public final class EdgeRecord {
+
+    private final SensorType type;
+    private Message data;
+    private String topic;
+    private boolean modified;
+
+    EdgeRecord(SensorType type, Message data) {
+        this.type = type;
+        this.data = data;
+        this.topic = type.getTopic();
+    }
+
+    public SensorType type() {
+        return type;
+    }
+
+    public Message data() {
+        return data;
+    }
+
+    public String topic() {
+        return topic;
+    }
+
+    /**
+     * True when a stage replaced the message, i.e. bytes received from a device are stale
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    void data(Message data) {
+        if (data != this.data) {
+            this.data = data;
+            this.modified = true;
+        }
+    }
+
+    void topic(String topic) {
+        this.topic = topic;
+    }
+}
@@ -0,0 +1,27 @@
+package org.iot_platform.deviceedgeservice.service.pipeline;
+
+/**
+ * Where a reading entering the edge pipeline comes from; stages may be limited to some sources
+ */
+public enum ReadingSource {
+
+    /**
+     * SensorDataMockGenerator
+     */
+    MOCK,
+
+    /**
+     * FleetLoadGenerator
+     */
+    LOAD,
+
+    /**
+     * ScenarioEngine
+     */
+    SCENARIO,
+
+    /**
+     * Readings pushed by devices over TCP / HTTP
+     */
+    INGEST
+}
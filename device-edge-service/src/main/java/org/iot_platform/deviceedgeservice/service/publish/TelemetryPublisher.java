@@ -0,0 +1,78 @@
+package org.iot_platform.deviceedgeservice.service.publish;
+
+import com.google.protobuf.Message;
+import lombok.RequiredArgsConstructor;
+import org.iot_platform.deviceedgeservice.kafka.KafkaProducer;
+import org.iot_platform.deviceedgeservice.kafka.OutgoingRecord;
+import org.iot_platform.deviceedgeservice.kafka.partition.RecordKeys;
+import org.iot_platform.deviceedgeservice.service.pipeline.EdgePipeline;
+import org.iot_platform.deviceedgeservice.service.pipeline.EdgeRecord;
+import org.iot_platform.deviceedgeservice.service.pipeline.ReadingSource;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorHeaders;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Single publish path for readings produced at the edge (generators, ingest): edge pipeline, then Kafka
+ */
+@Service
+@RequiredArgsConstructor
+public class TelemetryPublisher {
+
+    private final EdgePipeline edgePipeline;
+    private final KafkaProducer producerService;
+
+    /**
+     * Publishes a generated reading. Future completes with null when the reading was dropped by the
+     * edge pipeline or spooled
+     */
+    public CompletableFuture<SendResult<String, byte[]>> publish(ReadingSource source, SensorType type, Message data) {
+        EdgeRecord record = edgePipeline.process(source, type, data);
+        if (record == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return producerService.sendData(record.topic(), key(type, record.data()), record.data());
+    }
+
+    /**
+     * Publishes a reading received from a device. The original bytes go to Kafka as is,
+     * the message is only serialized again if a pipeline stage replaced it (aggregate, enrichment).
+     *
+     * @return null when the edge pipeline dropped the reading; the future completes with null when it was spooled
+     */
+    public CompletableFuture<SendResult<String, byte[]>> publish(SensorType type, Message data, byte[] serializedData) {
+        EdgeRecord record = edgePipeline.process(ReadingSource.INGEST, type, data);
+        if (record == null) {
+            return null;
+        }
+        byte[] payload = record.isModified() ? record.data().toByteArray() : serializedData;
+        return producerService.send(record.topic(), key(type, record.data()), payload);
+    }
+
+    /**
+     * Publishes the readings of one sweep (e.g. every sensor of a room) as a batch - a single Kafka
+     * transaction when device-edge.kafka.transactions.enabled. Readings dropped by the pipeline are left out.
+     */
+    public CompletableFuture<Void> publishSweep(ReadingSource source, List<Reading> readings) {
+        List<OutgoingRecord> records = new ArrayList<>(readings.size());
+        for (Reading reading : readings) {
+            EdgeRecord record = edgePipeline.process(source, reading.type(), reading.data());
+            if (record != null) {
+                records.add(new OutgoingRecord(record.topic(), key(reading.type(), record.data()), record.data().toByteArray()));
+            }
+        }
+        return producerService.sendBatch(records);
+    }
+
+    private static String key(SensorType type, Message data) {
+        return RecordKeys.of(SensorHeaders.of(type, data));
+    }
+
+    public record Reading(SensorType type, Message data) {
+    }
+}
@@ -0,0 +1,63 @@
+package org.iot_platform.deviceedgeservice.service.scenario;
+
+import java.time.LocalTime;
+import java.util.Map;
+
+/**
+ * Piecewise linear load factor over the time of day
+ */
+final class DailyCurve {
+
+    static final DailyCurve FLAT = new DailyCurve(new int[]{0}, new double[]{1.0});
+
+    private static final int DAY_SECONDS = 24 * 60 * 60;
+
+    private final int[] seconds;
+    private final double[] values;
+
+    private DailyCurve(int[] seconds, double[] values) {
+        this.seconds = seconds;
+        this.values = values;
+    }
+
+    static DailyCurve of(Map<String, Double> points) {
+        if (points == null || points.isEmpty()) {
+            return FLAT;
+        }
+        int[] seconds = points.keySet().stream()
+                .mapToInt(time -> LocalTime.parse(time).toSecondOfDay())
+                .sorted()
+                .toArray();
+        double[] values = new double[seconds.length];
+        for (Map.Entry<String, Double> point : points.entrySet()) {
+            int second = LocalTime.parse(point.getKey()).toSecondOfDay();
+            for (int i = 0; i < seconds.length; i++) {
+                if (seconds[i] == second) {
+                    values[i] = point.getValue();
+                }
+            }
+        }
+        return new DailyCurve(seconds, values);
+    }
+
+    double at(long epochMillis) {
+        if (seconds.length == 1) {
+            return values[0];
+        }
+        int second = (int) Math.floorMod(epochMillis / 1000, (long) DAY_SECONDS);
+
+        int next = 0;
+        while (next < seconds.length && seconds[next] <= second) {
+            next++;
+        }
+        int prev = next - 1;
+        // до первой точки и после последней - интерполяция через полночь
+        int prevSecond = prev >= 0 ? seconds[prev] : seconds[seconds.length - 1] - DAY_SECONDS;
+        double prevValue = prev >= 0 ? values[prev] : values[values.length - 1];
+        int nextSecond = next < seconds.length ? seconds[next] : seconds[0] + DAY_SECONDS;
+        double nextValue = next < seconds.length ? values[next] : values[0];
+
+        double position = (double) (second - prevSecond) / (nextSecond - prevSecond);
+        return prevValue + (nextValue - prevValue) * position;
+    }
+}
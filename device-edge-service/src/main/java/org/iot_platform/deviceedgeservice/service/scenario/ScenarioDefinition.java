@@ -0,0 +1,52 @@
+package org.iot_platform.deviceedgeservice.service.scenario;
+
+import org.iot_platform.deviceedgeservice.service.sensors.common.Anomaly;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scenario file model (YAML, kebab-case keys). Durations use the Spring style: 30s, 5m, 2h.
+ * Curve points map "HH:mm" time of day (UTC) to a load factor, 1.0 - normal level; values in between
+ * are interpolated linearly, wrapping around midnight.
+ */
+public record ScenarioDefinition(
+        String name,
+        long seed,
+        String start,
+        String duration,
+        Double speed,
+        List<HotelSpec> hotels,
+        Map<SensorType, String> intervals,
+        Map<String, Double> occupancy,
+        Map<SensorType, Map<String, Double>> activity,
+        List<AnomalySpec> anomalies
+) {
+
+    /**
+     * @param hotel          hotel number, devices get DeviceIdentity.of(hotel, room, type)
+     * @param loadMultiplier scales activity of every device of the hotel
+     */
+    public record HotelSpec(int hotel, int rooms, Double loadMultiplier) {
+    }
+
+    /**
+     * @param at              offset from the scenario start
+     * @param hotel           null - every hotel
+     * @param rooms           explicit rooms, otherwise a seeded fraction of the hotel's rooms
+     * @param cascadeInterval rooms join one after another with this step (leak cascades)
+     * @param sensors         null - every sensor type of the room
+     */
+    public record AnomalySpec(
+            Anomaly type,
+            String at,
+            String duration,
+            Integer hotel,
+            List<Integer> rooms,
+            Double fraction,
+            String cascadeInterval,
+            List<SensorType> sensors
+    ) {
+    }
+}
@@ -0,0 +1,339 @@
+package org.iot_platform.deviceedgeservice.service.scenario;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.google.protobuf.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.service.pipeline.ReadingSource;
+import org.iot_platform.deviceedgeservice.service.publish.TelemetryPublisher;
+import org.iot_platform.deviceedgeservice.service.sensors.EnergyMeterDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.WaterMeterDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.Anomaly;
+import org.iot_platform.deviceedgeservice.service.sensors.common.DeviceIdentity;
+import org.iot_platform.deviceedgeservice.service.sensors.common.GenerationContext;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.deviceedgeservice.service.state.CumulativeCounters;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Scenario mode: drives all six generators from a declarative scenario file on a virtual clock.
+ * <p>
+ * Every reading is a pure function of (seed, device, virtual time): its random comes from a
+ * SplittableRandom seeded with those three, timestamps are virtual and emission happens on one
+ * thread in (due time, device) order. Meter totals start from zero per run. The same file and
+ * seed therefore always produce the same sequence of payloads, whatever the speed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "device-edge.scenario.enabled", havingValue = "true")
+public class ScenarioEngine {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Map<SensorType, SensorDataGenerator<?>> sensorDataGenerators;
+    private final TelemetryPublisher telemetryPublisher;
+
+    @Value("${device-edge.scenario.file:classpath:scenarios/weekday-peaks.yml}")
+    private Resource scenarioFile;
+
+    @Value("${device-edge.scenario.seed:}") // overrides the file's seed
+    private Long seedOverride;
+
+    @Value("${device-edge.scenario.speed:}") // overrides the file's speed
+    private Double speedOverride;
+
+    private ScenarioDefinition scenario;
+    private long seed;
+    private double speed;
+    private long startMillis;
+    private long endMillis;
+
+    private SimDevice[] devices;
+    private ScheduledAnomaly[] anomalies;
+    private DailyCurve occupancy;
+    private final DailyCurve[] activityCurves = new DailyCurve[SensorType.values().length];
+    private final SensorDataGenerator<?>[] generators = new SensorDataGenerator<?>[SensorType.values().length];
+
+    private Thread worker;
+
+    @PostConstruct
+    public void start() throws IOException {
+        scenario = load(scenarioFile);
+        seed = seedOverride != null ? seedOverride : scenario.seed();
+        speed = speedOverride != null ? speedOverride : (scenario.speed() != null ? scenario.speed() : 1.0);
+        startMillis = scenario.start() != null ? Instant.parse(scenario.start()).toEpochMilli() : 0;
+        endMillis = startMillis + parseDuration(scenario.duration(), "24h");
+
+        occupancy = DailyCurve.of(scenario.occupancy());
+        for (SensorType type : SensorType.values()) {
+            Map<String, Double> points = scenario.activity() != null ? scenario.activity().get(type) : null;
+            activityCurves[type.ordinal()] = DailyCurve.of(points);
+        }
+        buildGenerators();
+        buildDevices();
+        buildAnomalies();
+
+        worker = new Thread(this::run, "scenario");
+        worker.setDaemon(true);
+        worker.start();
+
+        log.info("Scenario '{}' started: seed {}, {} devices, {} anomalies, {} virtual time at {}",
+                scenario.name(), seed, devices.length, anomalies.length,
+                TimeUnit.MILLISECONDS.toMinutes(endMillis - startMillis) + "m",
+                speed > 0 ? speed + "x" : "max speed");
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void run() {
+        PriorityQueue<SimDevice> queue = new PriorityQueue<>(Math.max(1, devices.length),
+                (a, b) -> a.due != b.due ? Long.compare(a.due, b.due) : Integer.compare(a.index, b.index));
+        for (SimDevice device : devices) {
+            queue.add(device);
+        }
+
+        long realStartNanos = System.nanoTime();
+        long nextReportNanos = realStartNanos + REPORT_INTERVAL_NANOS;
+        long emitted = 0;
+        long anomalous = 0;
+
+        try {
+            while (!queue.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                SimDevice device = queue.poll();
+                long due = device.due;
+                if (due >= endMillis) {
+                    break;
+                }
+                if (speed > 0) {
+                    waitUntil(realStartNanos + (long) (TimeUnit.MILLISECONDS.toNanos(due - startMillis) / speed));
+                }
+
+                Anomaly anomaly = anomalyAt(device, due);
+                if (anomaly != Anomaly.DROPOUT) {
+                    GenerationContext context = new GenerationContext(
+                            new SplittableRandom(mix(seed, device.index, due)), due, activity(device, due), anomaly);
+                    Message data = generators[device.type.ordinal()].generateData(device.identity, context);
+                    telemetryPublisher.publish(ReadingSource.SCENARIO, device.type, data);
+                    emitted++;
+                    if (anomaly != Anomaly.NONE) {
+                        anomalous++;
+                    }
+                }
+
+                device.due = due + device.intervalMillis;
+                queue.add(device);
+
+                long now = System.nanoTime();
+                if (now >= nextReportNanos) {
+                    nextReportNanos = now + REPORT_INTERVAL_NANOS;
+                    log.info("Scenario '{}' at {}: emitted={}, anomalous={}",
+                            scenario.name(), Instant.ofEpochMilli(due), emitted, anomalous);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Scenario '{}' failed", scenario.name(), e);
+        }
+        log.info("Scenario '{}' finished: emitted={}, anomalous={}, took {}s", scenario.name(), emitted, anomalous,
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - realStartNanos));
+    }
+
+    private double activity(SimDevice device, long time) {
+        return occupancy.at(time) * activityCurves[device.type.ordinal()].at(time) * device.loadMultiplier;
+    }
+
+    private Anomaly anomalyAt(SimDevice device, long time) {
+        for (ScheduledAnomaly anomaly : anomalies) {
+            if (anomaly.appliesTo(device, time)) {
+                return anomaly.type;
+            }
+        }
+        return Anomaly.NONE;
+    }
+
+    private void buildGenerators() {
+        for (Map.Entry<SensorType, SensorDataGenerator<?>> entry : sensorDataGenerators.entrySet()) {
+            generators[entry.getKey().ordinal()] = entry.getValue();
+        }
+        // накопленные итоги счётчиков - часть потока байт, каждый прогон начинает с нуля
+        generators[SensorType.ENERGY_METER.ordinal()] = new EnergyMeterDataGenerator(
+                new CumulativeCounters("scenario_energy", 1 << 20));
+        generators[SensorType.WATER_METER.ordinal()] = new WaterMeterDataGenerator(
+                new CumulativeCounters("scenario_water", 1 << 20));
+    }
+
+    private void buildDevices() {
+        Map<SensorType, Long> intervals = new EnumMap<>(SensorType.class);
+        if (scenario.intervals() == null || scenario.intervals().isEmpty()) {
+            throw new IllegalStateException("Scenario " + scenario.name() + " defines no sensor intervals");
+        }
+        scenario.intervals().forEach((type, interval) -> intervals.put(type, parseDuration(interval, null)));
+
+        List<SimDevice> list = new ArrayList<>();
+        for (ScenarioDefinition.HotelSpec hotel : scenario.hotels()) {
+            double multiplier = hotel.loadMultiplier() != null ? hotel.loadMultiplier() : 1.0;
+            for (int room = 1; room <= hotel.rooms(); room++) {
+                for (Map.Entry<SensorType, Long> entry : intervals.entrySet()) {
+                    int index = list.size();
+                    long interval = entry.getValue();
+                    SimDevice device = new SimDevice(index, hotel.hotel(), room, entry.getKey(),
+                            DeviceIdentity.of(hotel.hotel(), room, entry.getKey()), interval, multiplier);
+                    // устройства не должны тикать синхронно - фаза от seed
+                    device.due = startMillis + Math.floorMod(mix(seed, index, 0), interval);
+                    list.add(device);
+                }
+            }
+        }
+        devices = list.toArray(SimDevice[]::new);
+    }
+
+    private void buildAnomalies() {
+        List<ScenarioDefinition.AnomalySpec> specs = scenario.anomalies() != null ? scenario.anomalies() : List.of();
+        anomalies = new ScheduledAnomaly[specs.size()];
+        for (int i = 0; i < specs.size(); i++) {
+            ScenarioDefinition.AnomalySpec spec = specs.get(i);
+            long from = startMillis + parseDuration(spec.at(), "0s");
+            long duration = parseDuration(spec.duration(), "1h");
+            long cascade = parseDuration(spec.cascadeInterval(), "0s");
+            double fraction = spec.fraction() != null ? spec.fraction() : 1.0;
+
+            // выбор комнат детерминирован: по хэшу (seed, аномалия, отель, комната)
+            List<long[]> targets = new ArrayList<>();
+            for (ScenarioDefinition.HotelSpec hotel : scenario.hotels()) {
+                if (spec.hotel() != null && spec.hotel() != hotel.hotel()) {
+                    continue;
+                }
+                for (int room = 1; room <= hotel.rooms(); room++) {
+                    boolean selected = spec.rooms() != null
+                            ? spec.rooms().contains(room)
+                            : unitInterval(mix(seed, i, ((long) hotel.hotel() << 32) | room)) < fraction;
+                    if (selected) {
+                        targets.add(new long[]{hotel.hotel(), room});
+                    }
+                }
+            }
+
+            anomalies[i] = new ScheduledAnomaly(spec.type(), spec.sensors(), from, duration, cascade, targets);
+        }
+    }
+
+    private static ScenarioDefinition load(Resource resource) throws IOException {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory())
+                .setPropertyNamingStrategy(PropertyNamingStrategies.KEBAB_CASE)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+        try (InputStream in = resource.getInputStream()) {
+            return mapper.readValue(in, ScenarioDefinition.class);
+        }
+    }
+
+    private static long parseDuration(String value, String defaultValue) {
+        String duration = value != null ? value : defaultValue;
+        if (duration == null) {
+            throw new IllegalStateException("Missing duration in scenario");
+        }
+        return DurationStyle.detectAndParse(duration).toMillis();
+    }
+
+    private static long mix(long seed, long a, long b) {
+        long z = seed + a * GOLDEN_GAMMA + Long.rotateLeft(b, 31) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static double unitInterval(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static final class SimDevice {
+
+        private final int index;
+        private final int hotel;
+        private final int room;
+        private final SensorType type;
+        private final DeviceIdentity identity;
+        private final long intervalMillis;
+        private final double loadMultiplier;
+        private long due;
+
+        private SimDevice(int index, int hotel, int room, SensorType type, DeviceIdentity identity,
+                          long intervalMillis, double loadMultiplier) {
+            this.index = index;
+            this.hotel = hotel;
+            this.room = room;
+            this.type = type;
+            this.identity = identity;
+            this.intervalMillis = intervalMillis;
+            this.loadMultiplier = loadMultiplier;
+        }
+    }
+
+    /**
+     * Anomaly window; with a cascade the n-th target room joins n * cascade after the start
+     */
+    private static final class ScheduledAnomaly {
+
+        private final Anomaly type;
+        private final List<SensorType> sensors;
+        private final long from;
+        private final long until;
+        private final long cascade;
+        private final Map<Long, Integer> order = new HashMap<>();
+
+        private ScheduledAnomaly(Anomaly type, List<SensorType> sensors, long from, long duration, long cascade,
+                                 List<long[]> targets) {
+            this.type = type;
+            this.sensors = sensors;
+            this.from = from;
+            this.until = from + duration;
+            this.cascade = cascade;
+            for (int i = 0; i < targets.size(); i++) {
+                order.put((targets.get(i)[0] << 32) | targets.get(i)[1], i);
+            }
+        }
+
+        private boolean appliesTo(SimDevice device, long time) {
+            if (time < from || time >= until || (sensors != null && !sensors.contains(device.type))) {
+                return false;
+            }
+            Integer position = order.get(((long) device.hotel << 32) | device.room);
+            return position != null && time >= from + position * cascade;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.iot_platform.deviceedgeservice.service.schedule;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodic task registered in the CadenceScheduler. Runs on a fixed grid (start + n * period)
+ * shifted by per-tick jitter, so the long-run rate stays exactly 1 / period.
+ */
+public final class Cadence {
+
+    final String name;
+    final Runnable task;
+    final long periodNanos;
+    final long jitterNanos;
+
+    final AtomicBoolean running = new AtomicBoolean();
+    volatile boolean cancelled;
+
+    // принадлежат потоку колеса
+    long gridNanos;
+    long deadlineNanos;
+    long remainingRounds;
+
+    Cadence(String name, Runnable task, long periodNanos, long jitterNanos) {
+        this.name = name;
+        this.task = task;
+        this.periodNanos = periodNanos;
+        this.jitterNanos = jitterNanos;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
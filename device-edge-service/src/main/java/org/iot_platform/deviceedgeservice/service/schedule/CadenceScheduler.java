@@ -0,0 +1,282 @@
+package org.iot_platform.deviceedgeservice.service.schedule;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel for per-device cadences.
+ * <p>
+ * One wheel thread advances a tick every tick-duration and hands due cadences to a bounded worker
+ * pool. Overload never queues up unbounded work:
+ * <ul>
+ *     <li>a cadence whose previous run is still in flight skips the tick;</li>
+ *     <li>a full worker queue drops the tick;</li>
+ *     <li>ticks missed by more than a period (wheel stalled, GC) are coalesced into one run.</li>
+ * </ul>
+ * The grid of a cadence is never shifted by delays, so per-device rates recover as soon as
+ * the overload ends.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CadenceScheduler {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${device-edge.scheduler.tick-duration:10ms}")
+    private Duration tickDuration;
+
+    @Value("${device-edge.scheduler.wheel-size:512}") // округляется до степени двойки
+    private int wheelSize;
+
+    @Value("${device-edge.scheduler.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${device-edge.scheduler.queue-capacity:1024}")
+    private int queueCapacity;
+
+    private final Queue<Cadence> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger active = new AtomicInteger();
+
+    private List<Cadence>[] buckets;
+    private int mask;
+    private long tickNanos;
+    private long startNanos;
+    private long tick;
+
+    private ThreadPoolExecutor workers;
+    private Thread wheelThread;
+    private volatile boolean running;
+
+    private Timer tickLag;
+    private Counter executed;
+    private Counter coalesced;
+    private Counter droppedInFlight;
+    private Counter droppedQueueFull;
+
+    @PostConstruct
+    public void start() {
+        init();
+        running = true;
+        wheelThread = new CustomizableThreadFactory("cadence-wheel-").newThread(this::runWheel);
+        wheelThread.start();
+        log.info("Cadence scheduler started: tick {}, wheel of {} buckets, {} workers, queue {}",
+                tickDuration, buckets.length, workerThreads, queueCapacity);
+    }
+
+    /**
+     * Wheel, workers and meters without the wheel thread; ticks are then driven by advance()
+     */
+    @SuppressWarnings("unchecked")
+    void init() {
+        tickNanos = tickDuration.toNanos();
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        mask = size - 1;
+        buckets = new List[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("cadence-worker-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        tickLag = Timer.builder("edge.scheduler.tick.lag")
+                .description("Delay between the due time of a tick and the start of its run")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        executed = ticks("executed");
+        coalesced = ticks("coalesced");
+        droppedInFlight = ticks("dropped_in_flight");
+        droppedQueueFull = ticks("dropped_queue_full");
+        Gauge.builder("edge.scheduler.cadences", active, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("edge.scheduler.queue", workers, executor -> executor.getQueue().size()).register(meterRegistry);
+
+        startNanos = System.nanoTime();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (wheelThread != null) {
+            wheelThread.interrupt();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers a periodic task. The first run happens at a random phase within the first period,
+     * so cadences registered together do not fire in lockstep.
+     *
+     * @param jitter fraction of the period (0..0.5) each tick may randomly shift by
+     */
+    public Cadence schedule(String name, Duration period, double jitter, Runnable task) {
+        long periodNanos = period.toNanos();
+        if (periodNanos < tickNanos) {
+            throw new IllegalArgumentException("Cadence " + name + " period " + period + " is shorter than the tick " + tickDuration);
+        }
+        Cadence cadence = new Cadence(name, task, periodNanos, (long) (periodNanos * Math.min(Math.max(jitter, 0), 0.5)));
+        cadence.gridNanos = System.nanoTime() + ThreadLocalRandom.current().nextLong(periodNanos);
+        cadence.deadlineNanos = cadence.gridNanos;
+        pending.add(cadence);
+        active.incrementAndGet();
+        return cadence;
+    }
+
+    private void runWheel() {
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(sleep);
+                if (!running) {
+                    return;
+                }
+            }
+            advance();
+        }
+    }
+
+    /**
+     * One tick of the wheel: new cadences are placed, the bucket of the tick is expired
+     *
+     * @return cadences that were due in this tick
+     */
+    List<Cadence> advance() {
+        List<Cadence> due = null;
+        try {
+            transferPending();
+            due = expire(buckets[(int) (tick & mask)]);
+        } catch (Exception e) {
+            log.error("Cadence wheel tick failed", e);
+        }
+        tick++;
+        return due != null ? due : List.of();
+    }
+
+    private void transferPending() {
+        Cadence cadence;
+        while ((cadence = pending.poll()) != null) {
+            place(cadence, tick);
+        }
+    }
+
+    /**
+     * @param firstTick first tick whose bucket is still to be processed: the current one for new
+     *                  cadences, the next one for cadences re-placed while their bucket is expired
+     */
+    private void place(Cadence cadence, long firstTick) {
+        long ticks = Math.max(ceilDiv(cadence.deadlineNanos - startNanos, tickNanos), firstTick);
+        cadence.remainingRounds = (ticks - firstTick) / buckets.length;
+        buckets[(int) (ticks & mask)].add(cadence);
+    }
+
+    private List<Cadence> expire(List<Cadence> bucket) {
+        List<Cadence> due = null;
+        for (int i = 0; i < bucket.size(); ) {
+            Cadence cadence = bucket.get(i);
+            if (cadence.cancelled) {
+                removeAt(bucket, i);
+                active.decrementAndGet();
+            } else if (cadence.remainingRounds > 0) {
+                cadence.remainingRounds--;
+                i++;
+            } else {
+                removeAt(bucket, i);
+                if (due == null) {
+                    due = new ArrayList<>();
+                }
+                due.add(cadence);
+            }
+        }
+        if (due == null) {
+            return null;
+        }
+
+        long now = System.nanoTime();
+        for (Cadence cadence : due) {
+            long overdue = now - cadence.gridNanos;
+            if (overdue >= cadence.periodNanos) {
+                // пропущенные тики не догоняем пачкой - схлопываем в один запуск
+                long missed = overdue / cadence.periodNanos;
+                coalesced.increment(missed);
+                cadence.gridNanos += missed * cadence.periodNanos;
+            }
+            dispatch(cadence, cadence.deadlineNanos);
+
+            cadence.gridNanos += cadence.periodNanos;
+            long jitter = cadence.jitterNanos > 0
+                    ? ThreadLocalRandom.current().nextLong(-cadence.jitterNanos, cadence.jitterNanos + 1)
+                    : 0;
+            cadence.deadlineNanos = Math.max(cadence.gridNanos + jitter, now + 1);
+            // корзина этого тика уже обработана
+            place(cadence, tick + 1);
+        }
+        return due;
+    }
+
+    private void dispatch(Cadence cadence, long dueNanos) {
+        if (!cadence.running.compareAndSet(false, true)) {
+            droppedInFlight.increment();
+            return;
+        }
+        try {
+            workers.execute(() -> run(cadence, dueNanos));
+        } catch (RejectedExecutionException e) {
+            cadence.running.set(false);
+            droppedQueueFull.increment();
+        }
+    }
+
+    private void run(Cadence cadence, long dueNanos) {
+        tickLag.record(Math.max(0, System.nanoTime() - dueNanos), TimeUnit.NANOSECONDS);
+        try {
+            cadence.task.run();
+            executed.increment();
+        } catch (Exception e) {
+            log.error("Cadence {} failed", cadence.name, e);
+        } finally {
+            cadence.running.set(false);
+        }
+    }
+
+    private Counter ticks(String result) {
+        return Counter.builder("edge.scheduler.ticks")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static void removeAt(List<Cadence> bucket, int index) {
+        int last = bucket.size() - 1;
+        bucket.set(index, bucket.get(last));
+        bucket.remove(last);
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+}
@@ -2,79 +2,79 @@ package org.iot_platform.deviceedgeservice.service.sensors;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.service.sensors.common.Anomaly;
+import org.iot_platform.deviceedgeservice.service.sensors.common.DeviceIdentity;
+import org.iot_platform.deviceedgeservice.service.sensors.common.GenerationContext;
 import org.iot_platform.deviceedgeservice.service.sensors.common.SensorDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorValues;
 import org.iot_platform.protos.air_quality_sensor.*;
 import org.iot_platform.protos.sensor_common.SensorHeader;
-import org.iot_platform.protos.sensor_common.SignalStrength;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Random;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class AirQualityDataGenerator implements SensorDataGenerator<AirQualityData> {
 
-    private final Random random = new Random();
+    private static final AirQualityLevel[] AIR_QUALITY_LEVELS = SensorValues.known(AirQualityLevel.values());
+    private static final AlertSeverity[] ALERT_SEVERITIES = SensorValues.known(AlertSeverity.values());
+    private static final String[] PARAMETERS = {"co2", "tvoc", "pm2_5"};
+    private static final String[] RECOMMENDATIONS = {"Ventilation needed", "Everything is ok", "Too much smoke!"};
 
-    private SignalStrength getRandomSignalStrength() {
-        List<SignalStrength> values = Arrays.stream(SignalStrength.values())
-                .filter(level -> level != SignalStrength.UNRECOGNIZED)
-                .toList();
-        return values.get(random.nextInt(values.size()));
-    }
+    private final DeviceIdentity[] devices = SensorValues.devicePool(SensorType.AIR_QUALITY);
 
-    private AirQualityLevel getRandomAirQualityLevel() {
-        List<AirQualityLevel> values = Arrays.stream(AirQualityLevel.values())
-                .filter(level -> level != AirQualityLevel.UNRECOGNIZED)
-                .toList();
-        return values.get(random.nextInt(values.size()));
+    public AirQualityData generateData() {
+        return generateData(devices[ThreadLocalRandom.current().nextInt(devices.length)]);
     }
 
-    private AlertSeverity getRandomAlertSeverity() {
-        List<AlertSeverity> values = Arrays.stream(AlertSeverity.values())
-                .filter(level -> level != AlertSeverity.UNRECOGNIZED)
-                .toList();
-        return values.get(random.nextInt(values.size()));
-    }
+    @Override
+    public AirQualityData generateData(DeviceIdentity device, GenerationContext context) {
+        RandomGenerator random = context.random();
 
-    public AirQualityData generateData() {
         SensorHeader header = SensorHeader.newBuilder()
-                .setDeviceId(UUID.randomUUID().toString())
+                .setDeviceId(device.deviceId())
                 .setDeviceType("CLIMATE_SENSOR")
-                .setTimestamp(System.currentTimeMillis())
-                .setHotelId("HOTEL_" + (random.nextInt(5) + 1))
-                .setRoomNumber(String.valueOf(random.nextInt(100) + 1))
+                .setTimestamp(context.timestamp())
+                .setHotelId(device.hotelId())
+                .setRoomNumber(device.roomNumber())
                 .setBatteryLevel(80.0f + random.nextFloat() * 20.0f)
-                .setSignalStrength(getRandomSignalStrength())
+                .setSignalStrength(SensorValues.randomSignalStrength(random))
                 .build();
 
         VentilationRecommendation ventilationRecommendation = VentilationRecommendation.newBuilder()
                 .setVentilationNeeded(true)
                 .setRecommendedDurationMin(random.nextInt(5) + 1)
-                .setCurrentLevel(getRandomAirQualityLevel())
-                .setTargetLevel(getRandomAirQualityLevel())
+                .setCurrentLevel(AIR_QUALITY_LEVELS[random.nextInt(AIR_QUALITY_LEVELS.length)])
+                .setTargetLevel(AIR_QUALITY_LEVELS[random.nextInt(AIR_QUALITY_LEVELS.length)])
                 .build();
 
-        String[] myArray = {"co2", "tvoc", "pm2_5"};
-        String[] myRecommendations = {"Ventilation needed", "Everything is ok", "Too much smoke!"};
-
         AirQualityAlert airQualityAlert = AirQualityAlert.newBuilder()
-                .setSeverity(getRandomAlertSeverity())
-                .setParameter(myArray[random.nextInt(myArray.length)])
+                .setSeverity(ALERT_SEVERITIES[random.nextInt(ALERT_SEVERITIES.length)])
+                .setParameter(PARAMETERS[random.nextInt(PARAMETERS.length)])
                 .setCurrentValue(10.0f + random.nextFloat() * 5.0f)
                 .setThreshold(10.0f + random.nextFloat() * 5.0f)
-                .setRecommendation(myRecommendations[random.nextInt(myRecommendations.length)])
+                .setRecommendation(RECOMMENDATIONS[random.nextInt(RECOMMENDATIONS.length)])
                 .build();
 
+        // CO2 растёт с числом людей в комнате
+        int co2 = (int) Math.round((random.nextInt(90) + 5) * context.activity());
+        float tvoc = 12.0f + random.nextFloat() * 4.0f;
+        float pm25 = 10.0f + random.nextFloat() * 5.0f;
+        if (context.anomaly() == Anomaly.AIR_POLLUTION) {
+            co2 += 1200 + random.nextInt(800);
+            tvoc += 300.0f + random.nextFloat() * 200.0f;
+            pm25 += 50.0f + random.nextFloat() * 100.0f;
+        }
+
         AirQualityData airData = AirQualityData.newBuilder()
                 .setHeader(header)
-                .setCo2Ppm(random.nextInt(90) + 5)
-                .setTvocPpb(12.0f + random.nextFloat() * 4.0f)
-                .setPm25(10.0f + random.nextFloat() * 5.0f)
+                .setCo2Ppm(co2)
+                .setTvocPpb(tvoc)
+                .setPm25(pm25)
                 .setPm10(7.0f + random.nextFloat() * 3.0f)
                 .setOxygenPercent(80.0f + random.nextFloat() * 20.0f)
                 .setAirQualityIndex(random.nextInt(90) + 5)
@@ -84,4 +84,9 @@ public class AirQualityDataGenerator implements SensorDataGenerator<AirQualityDa
 
         return airData;
     }
+
+    @Override
+    public SensorType getSensorType() {
+        return SensorType.AIR_QUALITY;
+    }
 }
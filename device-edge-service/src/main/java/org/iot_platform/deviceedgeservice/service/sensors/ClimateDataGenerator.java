@@ -2,38 +2,55 @@ package org.iot_platform.deviceedgeservice.service.sensors;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.service.sensors.common.Anomaly;
+import org.iot_platform.deviceedgeservice.service.sensors.common.DeviceIdentity;
+import org.iot_platform.deviceedgeservice.service.sensors.common.GenerationContext;
 import org.iot_platform.deviceedgeservice.service.sensors.common.SensorDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorValues;
 import org.iot_platform.protos.climate_data.*;
 import org.iot_platform.protos.sensor_common.SensorHeader;
-import org.iot_platform.protos.sensor_common.SignalStrength;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Random;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ClimateDataGenerator implements SensorDataGenerator<ClimateData> {
 
-    private final Random random = new Random();
+    private final DeviceIdentity[] devices = SensorValues.devicePool(SensorType.CLIMATE);
 
     public ClimateData generateData() {
+        return generateData(devices[ThreadLocalRandom.current().nextInt(devices.length)]);
+    }
+
+    @Override
+    public ClimateData generateData(DeviceIdentity device, GenerationContext context) {
+        RandomGenerator random = context.random();
+
         SensorHeader header = SensorHeader.newBuilder()
-                .setDeviceId(UUID.randomUUID().toString())
+                .setDeviceId(device.deviceId())
                 .setDeviceType("CLIMATE_SENSOR")
-                .setTimestamp(System.currentTimeMillis())
-                .setHotelId("HOTEL_" + (random.nextInt(5) + 1))
-                .setRoomNumber(String.valueOf(random.nextInt(100) + 1))
+                .setTimestamp(context.timestamp())
+                .setHotelId(device.hotelId())
+                .setRoomNumber(device.roomNumber())
                 .setBatteryLevel(80.0f + random.nextFloat() * 20.0f)
-                .setSignalStrength(getRandomSignalStrength())
+                .setSignalStrength(SensorValues.randomSignalStrength(random))
                 .build();
 
         float temperature = 18.0f + random.nextFloat() * 12.0f; // 18-30°C
         float humidity = 30.0f + random.nextFloat() * 50.0f;    // 30-80%
 
+        // душ и готовка поднимают влажность в часы пик
+        humidity = Math.min(100.0f, Math.max(0.0f, humidity + (float) (context.activity() - 1.0) * 5.0f));
+        if (context.anomaly() == Anomaly.OVERHEAT) {
+            temperature += 8.0f + random.nextFloat() * 4.0f;
+        } else if (context.anomaly() == Anomaly.HVAC_SURGE) {
+            temperature -= 2.0f + random.nextFloat() * 2.0f;
+        }
+
         ComfortLevel comfortLevel = calculateComfortLevel(temperature, humidity);
 
         return ClimateData.newBuilder()
@@ -71,10 +88,8 @@ public class ClimateDataGenerator implements SensorDataGenerator<ClimateData> {
         return temp - (100 - humidity) / 5;
     }
 
-    private SignalStrength getRandomSignalStrength() {
-        List<SignalStrength> values = Arrays.stream(SignalStrength.values())
-                .filter(level -> level != SignalStrength.UNRECOGNIZED)
-                .toList();
-        return values.get(random.nextInt(values.size()));
+    @Override
+    public SensorType getSensorType() {
+        return SensorType.CLIMATE;
     }
-}
\ No newline at end of file
+}
@@ -1,49 +1,72 @@
 package org.iot_platform.deviceedgeservice.service.sensors;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.service.sensors.common.Anomaly;
+import org.iot_platform.deviceedgeservice.service.sensors.common.DeviceIdentity;
+import org.iot_platform.deviceedgeservice.service.sensors.common.GenerationContext;
 import org.iot_platform.deviceedgeservice.service.sensors.common.SensorDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorValues;
+import org.iot_platform.deviceedgeservice.service.state.CumulativeCounters;
+import org.iot_platform.deviceedgeservice.service.state.DeviceStateStore;
 import org.iot_platform.protos.energy_meter_data.*;
 import org.iot_platform.protos.sensor_common.SensorHeader;
-import org.iot_platform.protos.sensor_common.SignalStrength;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class EnergyMeterDataGenerator implements SensorDataGenerator<EnergyMeterData> {
 
-    private final Random random = new Random();
-    private final Map<String, Double> totalEnergyMap = new HashMap<>();
+    private static final EnergyAlert NO_ALERT = EnergyAlert.newBuilder()
+            .setType(AlertType.NO_ALERT)
+            .build();
+
+    private final DeviceIdentity[] devices = SensorValues.devicePool(SensorType.ENERGY_METER);
+    private final CumulativeCounters energyTotals;
+
+    @Autowired
+    public EnergyMeterDataGenerator(DeviceStateStore stateStore) {
+        this(stateStore.counters("energy_total_kwh"));
+    }
+
+    public EnergyMeterDataGenerator(CumulativeCounters energyTotals) {
+        this.energyTotals = energyTotals;
+    }
 
     public EnergyMeterData generateData() {
-        String roomNumber = String.valueOf(random.nextInt(100) + 1);
-        String hotelId = "HOTEL_" + (random.nextInt(5) + 1);
+        return generateData(devices[ThreadLocalRandom.current().nextInt(devices.length)]);
+    }
+
+    @Override
+    public EnergyMeterData generateData(DeviceIdentity device, GenerationContext context) {
+        RandomGenerator random = context.random();
+        String roomNumber = device.roomNumber();
+        String hotelId = device.hotelId();
 
         SensorHeader header = SensorHeader.newBuilder()
-                .setDeviceId(UUID.randomUUID().toString())
+                .setDeviceId(device.deviceId())
                 .setDeviceType("ENERGY_METER")
-                .setTimestamp(System.currentTimeMillis())
+                .setTimestamp(context.timestamp())
                 .setHotelId(hotelId)
                 .setRoomNumber(roomNumber)
                 .setBatteryLevel(85.0f + random.nextFloat() * 15.0f)
-                .setSignalStrength(getRandomSignalStrength())
+                .setSignalStrength(SensorValues.randomSignalStrength(random))
                 .build();
 
-        String energyKey = hotelId + "_" + roomNumber;
-        double baseConsumption = totalEnergyMap.getOrDefault(energyKey, 0.0);
-        double hourlyConsumption = 0.1 + random.nextDouble() * 2.0; // 0.1-2.1 kWh
-        double totalEnergy = baseConsumption + hourlyConsumption;
-        totalEnergyMap.put(energyKey, totalEnergy);
-
-        // Circuit consumption
-        Map<String, Double> circuits = new HashMap<>();
-        circuits.put("lighting", 0.1 + random.nextDouble() * 0.5);
-        circuits.put("hvac", 0.2 + random.nextDouble() * 1.1);
-        circuits.put("outlets", 0.05 + random.nextDouble() * 0.3);
-        circuits.put("appliances", 0.1 + random.nextDouble() * 0.4);
+        double hourlyConsumption = (0.1 + random.nextDouble() * 2.0) * context.activity(); // 0.1-2.1 kWh at normal activity
+        boolean hvacSurge = context.anomaly() == Anomaly.HVAC_SURGE;
+        double hvacConsumption = 0.2 + random.nextDouble() * 1.1;
+        if (hvacSurge) {
+            double surge = hvacConsumption * (3.0 + random.nextDouble() * 2.0);
+            hourlyConsumption += surge - hvacConsumption;
+            hvacConsumption = surge;
+        }
+        double totalEnergy = energyTotals.add(device.deviceId(), hourlyConsumption);
 
         PowerQuality powerQuality = PowerQuality.newBuilder()
                 .setVoltage(220.0f + (random.nextFloat() * 10 - 5))
@@ -68,9 +91,7 @@ public class EnergyMeterDataGenerator implements SensorDataGenerator<EnergyMeter
                     .setCurrentValue(215.0 + random.nextDouble() * 15)
                     .build();
         } else {
-            alert = EnergyAlert.newBuilder()
-                    .setType(AlertType.NO_ALERT)
-                    .build();
+            alert = NO_ALERT;
         }
 
         return EnergyMeterData.newBuilder()
@@ -78,16 +99,18 @@ public class EnergyMeterDataGenerator implements SensorDataGenerator<EnergyMeter
                 .setTotalEnergyKwh(totalEnergy)
                 .setCurrentPowerW(hourlyConsumption * 1000)
                 .setHourlyConsumptionKwh(hourlyConsumption)
-                .putAllCircuitConsumption(circuits)
+                // Circuit consumption
+                .putCircuitConsumption("lighting", 0.1 + random.nextDouble() * 0.5)
+                .putCircuitConsumption("hvac", hvacConsumption)
+                .putCircuitConsumption("outlets", 0.05 + random.nextDouble() * 0.3)
+                .putCircuitConsumption("appliances", 0.1 + random.nextDouble() * 0.4)
                 .setPowerQuality(powerQuality)
                 .setAlert(alert)
                 .build();
     }
 
-    private SignalStrength getRandomSignalStrength() {
-        List<SignalStrength> values = Arrays.stream(SignalStrength.values())
-                .filter(level -> level != SignalStrength.UNRECOGNIZED)
-                .toList();
-        return values.get(random.nextInt(values.size()));
+    @Override
+    public SensorType getSensorType() {
+        return SensorType.ENERGY_METER;
     }
-}
\ No newline at end of file
+}
@@ -2,67 +2,74 @@ package org.iot_platform.deviceedgeservice.service.sensors;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.service.sensors.common.DeviceIdentity;
+import org.iot_platform.deviceedgeservice.service.sensors.common.GenerationContext;
 import org.iot_platform.deviceedgeservice.service.sensors.common.SensorDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorValues;
 import org.iot_platform.protos.motion_sensor_data.*;
 import org.iot_platform.protos.sensor_common.SensorHeader;
-import org.iot_platform.protos.sensor_common.SignalStrength;
 import org.springframework.stereotype.Service;
 
-import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class MotionSensorDataGenerator implements SensorDataGenerator<MotionSensorData> {
 
-    private final Random random = new Random();
+    private static final String[] ZONES = {"entrance", "bed", "bathroom", "desk"};
+
+    private final DeviceIdentity[] devices = SensorValues.devicePool(SensorType.MOTION);
 
     public MotionSensorData generateData() {
+        return generateData(devices[ThreadLocalRandom.current().nextInt(devices.length)]);
+    }
+
+    @Override
+    public MotionSensorData generateData(DeviceIdentity device, GenerationContext context) {
+        RandomGenerator random = context.random();
+        long now = context.timestamp();
+
         SensorHeader header = SensorHeader.newBuilder()
-                .setDeviceId(UUID.randomUUID().toString())
+                .setDeviceId(device.deviceId())
                 .setDeviceType("MOTION_SENSOR")
-                .setTimestamp(System.currentTimeMillis())
-                .setHotelId("HOTEL_" + (random.nextInt(5) + 1))
-                .setRoomNumber(String.valueOf(random.nextInt(100) + 1))
+                .setTimestamp(now)
+                .setHotelId(device.hotelId())
+                .setRoomNumber(device.roomNumber())
                 .setBatteryLevel(75.0f + random.nextFloat() * 25.0f)
-                .setSignalStrength(getRandomSignalStrength())
+                .setSignalStrength(SensorValues.randomSignalStrength(random))
                 .build();
 
-        boolean motionDetected = random.nextDouble() < 0.3; // 30% chance of motion
+        boolean motionDetected = random.nextDouble() < 0.3 * context.activity(); // 30% chance of motion at normal activity
         int detectionCount = motionDetected ? random.nextInt(10) + 1 : 0;
         float detectionConfidence = motionDetected ? 0.7f + random.nextFloat() * 0.3f : 0.0f;
 
-        // Generate motion events
-        List<MotionEvent> events = new ArrayList<>();
-        if (motionDetected) {
-            String[] zones = {"entrance", "bed", "bathroom", "desk"};
-            for (int i = 0; i < detectionCount; i++) {
-                MotionEvent event = MotionEvent.newBuilder()
-                        .setEventTimestamp(System.currentTimeMillis() - random.nextInt(60000))
-                        .setMotionType(MotionType.MOVEMENT_DETECTED)
-                        .setZone(zones[random.nextInt(zones.length)])
-                        .build();
-                events.add(event);
-            }
-        }
-
         RoomStatus roomStatus = motionDetected ? RoomStatus.ROOM_OCCUPIED :
                 (random.nextDouble() < 0.1 ? RoomStatus.ROOM_CLEANING_NEEDED : RoomStatus.ROOM_EMPTY);
 
-        return MotionSensorData.newBuilder()
+        MotionSensorData.Builder data = MotionSensorData.newBuilder()
                 .setHeader(header)
                 .setMotionDetected(motionDetected)
                 .setDetectionCount(detectionCount)
                 .setDetectionConfidence(detectionConfidence)
-                .addAllEvents(events)
-                .setRoomStatus(roomStatus)
-                .build();
+                .setRoomStatus(roomStatus);
+
+        // Generate motion events
+        for (int i = 0; i < detectionCount; i++) {
+            data.addEvents(MotionEvent.newBuilder()
+                    .setEventTimestamp(now - random.nextInt(60000))
+                    .setMotionType(MotionType.MOVEMENT_DETECTED)
+                    .setZone(ZONES[random.nextInt(ZONES.length)])
+                    .build());
+        }
+
+        return data.build();
     }
 
-    private SignalStrength getRandomSignalStrength() {
-        List<SignalStrength> values = Arrays.stream(SignalStrength.values())
-                .filter(level -> level != SignalStrength.UNRECOGNIZED)
-                .toList();
-        return values.get(random.nextInt(values.size()));
+    @Override
+    public SensorType getSensorType() {
+        return SensorType.MOTION;
     }
-}
\ No newline at end of file
+}
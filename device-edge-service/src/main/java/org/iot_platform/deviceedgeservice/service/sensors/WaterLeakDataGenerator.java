@@ -2,69 +2,97 @@ package org.iot_platform.deviceedgeservice.service.sensors;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.service.sensors.common.Anomaly;
+import org.iot_platform.deviceedgeservice.service.sensors.common.DeviceIdentity;
+import org.iot_platform.deviceedgeservice.service.sensors.common.GenerationContext;
 import org.iot_platform.deviceedgeservice.service.sensors.common.SensorDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorValues;
 import org.iot_platform.protos.water_leak_data.*;
 import org.iot_platform.protos.sensor_common.SensorHeader;
-import org.iot_platform.protos.sensor_common.SignalStrength;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class WaterLeakDataGenerator implements SensorDataGenerator<WaterLeakData> {
 
-    private final Random random = new Random();
+    private static final String[] LOCATIONS = {"bathroom", "kitchen", "corridor", "laundry"};
+    private static final LeakSeverity[] SEVERITIES = {LeakSeverity.MINOR, LeakSeverity.MODERATE, LeakSeverity.SEVERE, LeakSeverity.CRITICAL};
+
+    // affected zones per location index: just the location / location + neighbours for severe leaks
+    private static final List<String>[] LOCAL_ZONES = zones(false);
+    private static final List<String>[] SPREAD_ZONES = zones(true);
+
+    private final DeviceIdentity[] devices = SensorValues.devicePool(SensorType.WATER_LEAK);
 
     public WaterLeakData generateData() {
+        return generateData(devices[ThreadLocalRandom.current().nextInt(devices.length)]);
+    }
+
+    @Override
+    public WaterLeakData generateData(DeviceIdentity device, GenerationContext context) {
+        RandomGenerator random = context.random();
+
         SensorHeader header = SensorHeader.newBuilder()
-                .setDeviceId(UUID.randomUUID().toString())
+                .setDeviceId(device.deviceId())
                 .setDeviceType("WATER_LEAK_SENSOR")
-                .setTimestamp(System.currentTimeMillis())
-                .setHotelId("HOTEL_" + (random.nextInt(5) + 1))
-                .setRoomNumber(String.valueOf(random.nextInt(100) + 1))
+                .setTimestamp(context.timestamp())
+                .setHotelId(device.hotelId())
+                .setRoomNumber(device.roomNumber())
                 .setBatteryLevel(90.0f + random.nextFloat() * 10.0f)
-                .setSignalStrength(getRandomSignalStrength())
+                .setSignalStrength(SensorValues.randomSignalStrength(random))
                 .build();
 
         // 5% chance of leak for testing
-        boolean leakDetected = random.nextDouble() < 0.05;
+        boolean forcedLeak = context.anomaly() == Anomaly.LEAK;
+        boolean leakDetected = forcedLeak || random.nextDouble() < 0.05;
 
-        String[] locations = {"bathroom", "kitchen", "corridor", "laundry"};
-        String location = locations[random.nextInt(locations.length)];
+        int locationIndex = random.nextInt(LOCATIONS.length);
 
         LeakSeverity severity;
-        if (leakDetected) {
-            LeakSeverity[] severities = {LeakSeverity.MINOR, LeakSeverity.MODERATE, LeakSeverity.SEVERE, LeakSeverity.CRITICAL};
-            severity = severities[random.nextInt(severities.length)];
+        if (forcedLeak) {
+            // каскад протечки - сразу серьёзная, с соседними зонами
+            severity = SEVERITIES[SEVERITIES.length - 2 + random.nextInt(2)];
+        } else if (leakDetected) {
+            severity = SEVERITIES[random.nextInt(SEVERITIES.length)];
         } else {
             severity = LeakSeverity.NO_LEAK;
         }
 
-        List<String> affectedZones = Arrays.asList(location);
+        List<String> affectedZones = LOCAL_ZONES[locationIndex];
         if (severity == LeakSeverity.SEVERE || severity == LeakSeverity.CRITICAL) {
-            affectedZones = Arrays.asList(location, "corridor", "adjacent_room");
+            affectedZones = SPREAD_ZONES[locationIndex];
         }
 
         return WaterLeakData.newBuilder()
                 .setHeader(header)
                 .setLeakDetected(leakDetected)
                 .setSeverity(severity)
-                .setLocation(location)
+                .setLocation(LOCATIONS[locationIndex])
                 .setDurationSeconds(leakDetected ? random.nextInt(3600) : 0)
                 .setDetectionConfidence(leakDetected ? 0.8f + random.nextFloat() * 0.2f : 0.0f)
                 .addAllAffectedZones(affectedZones)
                 .build();
     }
 
-    private SignalStrength getRandomSignalStrength() {
-        List<SignalStrength> values = Arrays.stream(SignalStrength.values())
-                .filter(level -> level != SignalStrength.UNRECOGNIZED)
-                .toList();
-        return values.get(random.nextInt(values.size()));
+    @Override
+    public SensorType getSensorType() {
+        return SensorType.WATER_LEAK;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String>[] zones(boolean spread) {
+        List<String>[] zones = new List[LOCATIONS.length];
+        for (int i = 0; i < LOCATIONS.length; i++) {
+            zones[i] = spread
+                    ? List.of(LOCATIONS[i], "corridor", "adjacent_room")
+                    : List.of(LOCATIONS[i]);
+        }
+        return zones;
     }
-}
\ No newline at end of file
+}
@@ -1,60 +1,90 @@
 package org.iot_platform.deviceedgeservice.service.sensors;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.deviceedgeservice.service.sensors.common.Anomaly;
+import org.iot_platform.deviceedgeservice.service.sensors.common.DeviceIdentity;
+import org.iot_platform.deviceedgeservice.service.sensors.common.GenerationContext;
 import org.iot_platform.deviceedgeservice.service.sensors.common.SensorDataGenerator;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorValues;
+import org.iot_platform.deviceedgeservice.service.state.CumulativeCounters;
+import org.iot_platform.deviceedgeservice.service.state.DeviceStateStore;
 import org.iot_platform.protos.water_meter_data.*;
 import org.iot_platform.protos.sensor_common.SensorHeader;
-import org.iot_platform.protos.sensor_common.SignalStrength;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class WaterMeterDataGenerator implements SensorDataGenerator<WaterMeterData> {
 
-    private final Random random = new Random();
-    private final Map<String, Double> totalConsumptionMap = new HashMap<>();
+    private static final UsageType[] USAGE_TYPES = {UsageType.SHOWER, UsageType.FAUCET, UsageType.TOILET, UsageType.BATH};
+
+    private final DeviceIdentity[] devices = SensorValues.devicePool(SensorType.WATER_METER);
+    private final CumulativeCounters waterTotals;
+
+    @Autowired
+    public WaterMeterDataGenerator(DeviceStateStore stateStore) {
+        this(stateStore.counters("water_total_liters"));
+    }
+
+    public WaterMeterDataGenerator(CumulativeCounters waterTotals) {
+        this.waterTotals = waterTotals;
+    }
 
     public WaterMeterData generateData() {
-        String roomNumber = String.valueOf(random.nextInt(100) + 1);
-        String hotelId = "HOTEL_" + (random.nextInt(5) + 1);
+        return generateData(devices[ThreadLocalRandom.current().nextInt(devices.length)]);
+    }
+
+    @Override
+    public WaterMeterData generateData(DeviceIdentity device, GenerationContext context) {
+        RandomGenerator random = context.random();
+        String roomNumber = device.roomNumber();
+        String hotelId = device.hotelId();
+        long now = context.timestamp();
 
         SensorHeader header = SensorHeader.newBuilder()
-                .setDeviceId(UUID.randomUUID().toString())
+                .setDeviceId(device.deviceId())
                 .setDeviceType("WATER_METER")
-                .setTimestamp(System.currentTimeMillis())
+                .setTimestamp(now)
                 .setHotelId(hotelId)
                 .setRoomNumber(roomNumber)
                 .setBatteryLevel(88.0f + random.nextFloat() * 12.0f)
-                .setSignalStrength(getRandomSignalStrength())
+                .setSignalStrength(SensorValues.randomSignalStrength(random))
                 .build();
 
-        String waterKey = hotelId + "_" + roomNumber;
-        double baseConsumption = totalConsumptionMap.getOrDefault(waterKey, 0.0);
-        double hourlyConsumption = 5.0 + random.nextDouble() * 50.0; // 5-55 liters
-        double totalConsumption = baseConsumption + hourlyConsumption;
-        totalConsumptionMap.put(waterKey, totalConsumption);
+        boolean leak = context.anomaly() == Anomaly.LEAK;
+        double leakRate = leak ? 5.0 + random.nextDouble() * 20.0 : random.nextDouble() * 2.0; // l/h
+        double hourlyConsumption = (5.0 + random.nextDouble() * 50.0) * context.activity(); // 5-55 liters at normal activity
+        if (leak) {
+            hourlyConsumption += leakRate;
+        }
+        double totalConsumption = waterTotals.add(device.deviceId(), hourlyConsumption);
+
+        WaterMeterData.Builder data = WaterMeterData.newBuilder()
+                .setHeader(header)
+                .setTotalConsumptionL(totalConsumption)
+                .setFlowRateLpm(random.nextDouble() * 3.0 + (leak ? leakRate / 60.0 : 0.0))
+                .setHourlyConsumptionL(hourlyConsumption);
 
         // Generate usage events
-        List<WaterUsageEvent> usageEvents = new ArrayList<>();
-        int eventCount = random.nextInt(5);
+        int eventCount = (int) Math.round(random.nextInt(5) * context.activity());
         for (int i = 0; i < eventCount; i++) {
-            UsageType[] usageTypes = {UsageType.SHOWER, UsageType.FAUCET, UsageType.TOILET, UsageType.BATH};
-            WaterUsageEvent event = WaterUsageEvent.newBuilder()
-                    .setStartTime(System.currentTimeMillis() - random.nextInt(3600000))
-                    .setEndTime(System.currentTimeMillis() - random.nextInt(1800000))
+            data.addUsageEvents(WaterUsageEvent.newBuilder()
+                    .setStartTime(now - random.nextInt(3600000))
+                    .setEndTime(now - random.nextInt(1800000))
                     .setVolumeL(2.0 + random.nextDouble() * 15.0)
-                    .setType(usageTypes[random.nextInt(usageTypes.length)])
-                    .build();
-            usageEvents.add(event);
+                    .setType(USAGE_TYPES[random.nextInt(USAGE_TYPES.length)])
+                    .build());
         }
 
         LeakDetection leakDetection = LeakDetection.newBuilder()
-                .setPossibleLeak(random.nextDouble() < 0.02) // 2% chance of possible leak
-                .setLeakRateLph(random.nextDouble() * 2.0)
+                .setPossibleLeak(leak || random.nextDouble() < 0.02) // 2% chance of possible leak
+                .setLeakRateLph(leakRate)
                 .setSuspectedLocation("bathroom")
                 .build();
 
@@ -64,21 +94,14 @@ public class WaterMeterDataGenerator implements SensorDataGenerator<WaterMeterDa
                 .setTurbidity(random.nextFloat() * 1.0f)
                 .build();
 
-        return WaterMeterData.newBuilder()
-                .setHeader(header)
-                .setTotalConsumptionL(totalConsumption)
-                .setFlowRateLpm(random.nextDouble() * 3.0)
-                .setHourlyConsumptionL(hourlyConsumption)
-                .addAllUsageEvents(usageEvents)
+        return data
                 .setLeakDetection(leakDetection)
                 .setQuality(waterQuality)
                 .build();
     }
 
-    private SignalStrength getRandomSignalStrength() {
-        List<SignalStrength> values = Arrays.stream(SignalStrength.values())
-                .filter(level -> level != SignalStrength.UNRECOGNIZED)
-                .toList();
-        return values.get(random.nextInt(values.size()));
+    @Override
+    public SensorType getSensorType() {
+        return SensorType.WATER_METER;
     }
-}
\ No newline at end of file
+}
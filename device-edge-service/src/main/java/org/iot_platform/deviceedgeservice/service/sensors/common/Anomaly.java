@@ -0,0 +1,34 @@
+package org.iot_platform.deviceedgeservice.service.sensors.common;
+
+/**
+ * Abnormal condition a scenario can force on a device
+ */
+public enum Anomaly {
+
+    NONE,
+
+    /**
+     * Leak sensors report a leak, water meters a possible leak and a raised flow
+     */
+    LEAK,
+
+    /**
+     * HVAC circuit draws several times its normal power, rooms are being cooled hard
+     */
+    HVAC_SURGE,
+
+    /**
+     * Room temperature 8-12°C above normal
+     */
+    OVERHEAT,
+
+    /**
+     * CO2, TVOC and particulates far above normal
+     */
+    AIR_POLLUTION,
+
+    /**
+     * The device stops sending altogether
+     */
+    DROPOUT
+}
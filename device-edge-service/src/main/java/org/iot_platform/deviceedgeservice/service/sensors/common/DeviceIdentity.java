@@ -0,0 +1,22 @@
+package org.iot_platform.deviceedgeservice.service.sensors.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Identity of a single physical device, written into every SensorHeader it produces
+ */
+public record DeviceIdentity(String deviceId, String hotelId, String roomNumber) {
+
+    /**
+     * Stable identity: the same hotel, room and sensor type always yield the same device id
+     */
+    public static DeviceIdentity of(int hotel, int room, SensorType type) {
+        String hotelId = "HOTEL_" + hotel;
+        String roomNumber = String.valueOf(room);
+        String deviceId = UUID.nameUUIDFromBytes(
+                (hotelId + "/" + roomNumber + "/" + type.name()).getBytes(StandardCharsets.UTF_8)
+        ).toString();
+        return new DeviceIdentity(deviceId, hotelId, roomNumber);
+    }
+}
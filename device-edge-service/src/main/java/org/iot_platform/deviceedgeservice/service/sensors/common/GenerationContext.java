@@ -0,0 +1,22 @@
+package org.iot_platform.deviceedgeservice.service.sensors.common;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Inputs of one generateData() call.
+ *
+ * @param random    source of all randomness of the reading
+ * @param timestamp reading time, header.timestamp and event times derive from it
+ * @param activity  load factor from occupancy curves, 1.0 - the generators' plain random ranges
+ * @param anomaly   forced abnormal condition
+ */
+public record GenerationContext(RandomGenerator random, long timestamp, double activity, Anomaly anomaly) {
+
+    /**
+     * Wall clock, thread-local random, neutral activity - the mock generator's behaviour
+     */
+    public static GenerationContext live() {
+        return new GenerationContext(ThreadLocalRandom.current(), System.currentTimeMillis(), 1.0, Anomaly.NONE);
+    }
+}
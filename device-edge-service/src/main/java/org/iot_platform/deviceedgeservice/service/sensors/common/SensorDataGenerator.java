@@ -1,10 +1,29 @@
 package org.iot_platform.deviceedgeservice.service.sensors.common;
 
-public interface SensorDataGenerator<T> {
+import com.google.protobuf.Message;
+
+public interface SensorDataGenerator<T extends Message> {
 
     /**
      * Data generator
      * */
     T generateData();
 
+    /**
+     * Data generator for a known device (stable device id, hotel and room)
+     */
+    default T generateData(DeviceIdentity device) {
+        return generateData(device, GenerationContext.live());
+    }
+
+    /**
+     * Same, driven by the context only (randomness, time, activity, anomaly) - deterministic for a seeded random
+     */
+    T generateData(DeviceIdentity device, GenerationContext context);
+
+    /**
+     * sensor type, which this generator produces
+     */
+    SensorType getSensorType();
+
 }
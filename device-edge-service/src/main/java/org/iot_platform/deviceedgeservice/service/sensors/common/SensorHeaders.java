@@ -0,0 +1,31 @@
+package org.iot_platform.deviceedgeservice.service.sensors.common;
+
+import com.google.protobuf.Message;
+import org.iot_platform.protos.sensor_common.SensorHeader;
+import org.iot_platform.protos.support.FieldAccessors;
+
+import java.util.function.Function;
+
+/**
+ * Typed access to the SensorHeader of any sensor message without protobuf reflection
+ */
+public final class SensorHeaders {
+
+    private static final Function<Message, Object>[] ACCESSORS = accessors();
+
+    private SensorHeaders() {
+    }
+
+    public static SensorHeader of(SensorType type, Message data) {
+        return (SensorHeader) ACCESSORS[type.ordinal()].apply(data);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Message, Object>[] accessors() {
+        Function<Message, Object>[] accessors = new Function[SensorType.values().length];
+        for (SensorType type : SensorType.values()) {
+            accessors[type.ordinal()] = FieldAccessors.object(type.getMessageType(), "header");
+        }
+        return accessors;
+    }
+}
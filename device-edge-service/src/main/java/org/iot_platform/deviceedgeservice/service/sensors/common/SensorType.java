@@ -0,0 +1,67 @@
+package org.iot_platform.deviceedgeservice.service.sensors.common;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import lombok.Getter;
+import org.iot_platform.protos.air_quality_sensor.AirQualityData;
+import org.iot_platform.protos.climate_data.ClimateData;
+import org.iot_platform.protos.energy_meter_data.EnergyMeterData;
+import org.iot_platform.protos.motion_sensor_data.MotionSensorData;
+import org.iot_platform.protos.water_leak_data.WaterLeakData;
+import org.iot_platform.protos.water_meter_data.WaterMeterData;
+
+/**
+ * Sensor kinds emitted by the edge, the Kafka topic each one is published to and its protobuf message.
+ * The code identifies the type on the device wire protocols and must never change.
+ */
+@Getter
+public enum SensorType {
+
+    CLIMATE(1, "climate_data", ClimateData.getDefaultInstance()),
+    AIR_QUALITY(2, "air_quality_data", AirQualityData.getDefaultInstance()),
+    MOTION(3, "motion_data", MotionSensorData.getDefaultInstance()),
+    ENERGY_METER(4, "energy_data", EnergyMeterData.getDefaultInstance()),
+    WATER_LEAK(5, "water_leak_data", WaterLeakData.getDefaultInstance()),
+    WATER_METER(6, "water_meter_data", WaterMeterData.getDefaultInstance());
+
+    private static final SensorType[] BY_CODE = new SensorType[8];
+
+    static {
+        for (SensorType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final int code;
+    private final String topic;
+    private final Message defaultInstance;
+    private final Class<? extends Message> messageType;
+    private final Parser<? extends Message> parser;
+
+    SensorType(int code, String topic, Message defaultInstance) {
+        this.code = code;
+        this.topic = topic;
+        this.defaultInstance = defaultInstance;
+        this.messageType = defaultInstance.getClass();
+        this.parser = defaultInstance.getParserForType();
+    }
+
+    /**
+     * @return the type with the given wire code, null if unknown
+     */
+    public static SensorType fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * @return the type published to the topic, null if none
+     */
+    public static SensorType fromTopic(String topic) {
+        for (SensorType type : values()) {
+            if (type.topic.equals(topic)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package org.iot_platform.deviceedgeservice.service.sensors.common;
+
+import org.iot_platform.protos.sensor_common.SignalStrength;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Lookup tables shared by the generators, built once instead of on every generateData() call
+ */
+public final class SensorValues {
+
+    public static final int HOTELS = 5;
+    public static final int ROOMS_PER_HOTEL = 100;
+
+    private static final SignalStrength[] SIGNAL_STRENGTHS = known(SignalStrength.values());
+
+    private SensorValues() {
+    }
+
+    public static SignalStrength randomSignalStrength(RandomGenerator random) {
+        return SIGNAL_STRENGTHS[random.nextInt(SIGNAL_STRENGTHS.length)];
+    }
+
+    /**
+     * Stable devices of one sensor type, one per hotel room - the mock generator picks from them
+     */
+    public static DeviceIdentity[] devicePool(SensorType type) {
+        DeviceIdentity[] devices = new DeviceIdentity[HOTELS * ROOMS_PER_HOTEL];
+        int index = 0;
+        for (int hotel = 1; hotel <= HOTELS; hotel++) {
+            for (int room = 1; room <= ROOMS_PER_HOTEL; room++) {
+                devices[index++] = DeviceIdentity.of(hotel, room, type);
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * Protobuf enum values without UNRECOGNIZED
+     */
+    public static <E extends Enum<E>> E[] known(E[] values) {
+        return Arrays.stream(values)
+                .filter(value -> !"UNRECOGNIZED".equals(value.name()))
+                .toArray(size -> Arrays.copyOf(values, size));
+    }
+}
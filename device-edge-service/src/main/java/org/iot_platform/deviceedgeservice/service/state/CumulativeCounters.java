@@ -0,0 +1,108 @@
+package org.iot_platform.deviceedgeservice.service.state;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-device cumulative totals (kWh, liters) in primitive double slots.
+ * <p>
+ * Values are stored as raw long bits in pages of AtomicLongArray and updated with a CAS loop,
+ * so concurrent updates of one device never lose an increment and no Double is boxed.
+ * Pages of {@value #PAGE_SIZE} slots are allocated on first use.
+ */
+public class CumulativeCounters {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final String name;
+    private final DeviceIndex devices;
+    private final AtomicReferenceArray<AtomicLongArray> pages;
+
+    public CumulativeCounters(String name, int maxDevices) {
+        this.name = name;
+        this.devices = new DeviceIndex(maxDevices);
+        this.pages = new AtomicReferenceArray<>((maxDevices + PAGE_SIZE - 1) >>> PAGE_SHIFT);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int size() {
+        return devices.size();
+    }
+
+    /**
+     * @return the new total; just delta when max-devices is exhausted and the device has no slot
+     */
+    public double add(String deviceId, double delta) {
+        int slot = devices.slotOf(deviceId);
+        if (slot == DeviceIndex.NO_SLOT) {
+            return delta;
+        }
+        AtomicLongArray page = page(slot);
+        int index = slot & PAGE_MASK;
+        long current;
+        long updated;
+        do {
+            current = page.get(index);
+            updated = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + delta);
+        } while (!page.compareAndSet(index, current, updated));
+        return Double.longBitsToDouble(updated);
+    }
+
+    public double get(String deviceId) {
+        int slot = devices.slotOf(deviceId);
+        return slot == DeviceIndex.NO_SLOT ? 0 : Double.longBitsToDouble(page(slot).get(slot & PAGE_MASK));
+    }
+
+    /**
+     * Writes count | (deviceId, total)*. Each total is read atomically, the set as a whole is not
+     * a point-in-time image - fine for monotonic counters.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        // слот выделяется раньше, чем публикуется его id - фиксируем набор один раз
+        String[] deviceIds = new String[devices.size()];
+        int count = 0;
+        for (int slot = 0; slot < deviceIds.length; slot++) {
+            deviceIds[slot] = devices.deviceId(slot);
+            if (deviceIds[slot] != null) {
+                count++;
+            }
+        }
+        out.writeInt(count);
+        for (int slot = 0; slot < deviceIds.length; slot++) {
+            if (deviceIds[slot] != null) {
+                out.writeUTF(deviceIds[slot]);
+                out.writeDouble(Double.longBitsToDouble(page(slot).get(slot & PAGE_MASK)));
+            }
+        }
+    }
+
+    public void readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String deviceId = in.readUTF();
+            double total = in.readDouble();
+            int slot = devices.slotOf(deviceId);
+            if (slot != DeviceIndex.NO_SLOT) {
+                page(slot).set(slot & PAGE_MASK, Double.doubleToRawLongBits(total));
+            }
+        }
+    }
+
+    private AtomicLongArray page(int slot) {
+        int pageIndex = slot >>> PAGE_SHIFT;
+        AtomicLongArray page = pages.get(pageIndex);
+        if (page == null) {
+            pages.compareAndSet(pageIndex, null, new AtomicLongArray(PAGE_SIZE));
+            page = pages.get(pageIndex);
+        }
+        return page;
+    }
+}
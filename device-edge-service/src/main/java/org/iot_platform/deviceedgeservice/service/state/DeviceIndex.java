@@ -0,0 +1,59 @@
+package org.iot_platform.deviceedgeservice.service.state;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interns device ids into dense int slots, so per-device state can live in primitive arrays
+ * instead of maps keyed by strings. Slots are never reused.
+ */
+public class DeviceIndex {
+
+    public static final int NO_SLOT = -1;
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Integer> slots = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> deviceIds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public DeviceIndex(int capacity) {
+        this.capacity = capacity;
+        this.deviceIds = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @return slot of the device, or {@link #NO_SLOT} once the index is full
+     */
+    public int slotOf(String deviceId) {
+        Integer slot = slots.get(deviceId);
+        if (slot == null) {
+            if (next.get() >= capacity) {
+                return NO_SLOT;
+            }
+            slot = slots.computeIfAbsent(deviceId, this::allocate);
+        }
+        return slot != null ? slot : NO_SLOT;
+    }
+
+    public String deviceId(int slot) {
+        return deviceIds.get(slot);
+    }
+
+    public int size() {
+        return Math.min(next.get(), capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private Integer allocate(String deviceId) {
+        int slot = next.getAndIncrement();
+        if (slot >= capacity) {
+            return null; // не запоминаем - иначе map растёт на отвергнутых id
+        }
+        deviceIds.set(slot, deviceId);
+        return slot;
+    }
+}
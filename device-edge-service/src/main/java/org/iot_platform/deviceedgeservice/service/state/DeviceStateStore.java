@@ -0,0 +1,119 @@
+package org.iot_platform.deviceedgeservice.service.state;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owner of the edge per-device state. Each named {@link CumulativeCounters} set is restored from
+ * its snapshot file on first access and written back every snapshot-interval and on shutdown
+ * (write to a temp file, then atomic rename).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeviceStateStore {
+
+    private static final int SNAPSHOT_MAGIC = 0x45444753; // "EDGS"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${device-edge.state.directory:state}")
+    private String directoryPath;
+
+    @Value("${device-edge.state.snapshot-interval:60s}")
+    private Duration snapshotInterval;
+
+    @Value("${device-edge.state.max-devices:1048576}")
+    private int maxDevices;
+
+    private final ConcurrentMap<String, CumulativeCounters> counters = new ConcurrentHashMap<>();
+    private Path directory;
+    private ScheduledExecutorService snapshotter;
+
+    @PostConstruct
+    public void start() throws IOException {
+        directory = Path.of(directoryPath);
+        Files.createDirectories(directory);
+
+        snapshotter = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("state-snapshot-"));
+        snapshotter.scheduleWithFixedDelay(this::snapshot,
+                snapshotInterval.toMillis(), snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        snapshot();
+    }
+
+    public CumulativeCounters counters(String name) {
+        return counters.computeIfAbsent(name, this::restore);
+    }
+
+    private CumulativeCounters restore(String name) {
+        CumulativeCounters store = new CumulativeCounters(name, maxDevices);
+        Path file = snapshotFile(name);
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                    throw new IOException("not a device state snapshot");
+                }
+                store.readFrom(in);
+                log.info("Restored {} device totals of {} from {}", store.size(), name, file);
+            } catch (IOException e) {
+                // лучше начать с нуля, чем не подняться
+                log.error("Failed to restore {} from {}, starting from zero", name, file, e);
+            }
+        }
+        Gauge.builder("edge.state.devices", store, CumulativeCounters::size)
+                .tag("store", name)
+                .register(meterRegistry);
+        return store;
+    }
+
+    private void snapshot() {
+        for (CumulativeCounters store : counters.values()) {
+            Path file = snapshotFile(store.name());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(SNAPSHOT_MAGIC);
+                    out.writeInt(SNAPSHOT_VERSION);
+                    store.writeTo(out);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.error("Failed to snapshot {} to {}", store.name(), file, e);
+            }
+        }
+    }
+
+    private Path snapshotFile(String name) {
+        return directory.resolve(name + ".snapshot");
+    }
+}
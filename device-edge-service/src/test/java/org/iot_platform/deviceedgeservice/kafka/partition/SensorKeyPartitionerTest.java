@@ -0,0 +1,36 @@
+package org.iot_platform.deviceedgeservice.kafka.partition;
+
+import org.apache.kafka.common.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The in-place prefix hash must place records exactly where Utils.murmur2 of the copied prefix did
+ */
+class SensorKeyPartitionerTest {
+
+    private static final byte[] KEY = "hotel-7/1204/9f1c2a3e-5b6d-4e7f-8a9b-0c1d2e3f4a5b".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void prefixHashMatchesMurmur2OfTheCopiedPrefix() {
+        for (int length = 0; length <= KEY.length; length++) {
+            assertThat(SensorKeyPartitioner.murmur2(KEY, length))
+                    .as("prefix of %d bytes", length)
+                    .isEqualTo(Utils.murmur2(Arrays.copyOf(KEY, length)));
+        }
+    }
+
+    @Test
+    void strategiesHashTheirPartOfTheKey() {
+        assertThat(SensorKeyPartitioner.murmur2(KEY, PartitioningStrategy.ROOM.prefixLength(KEY)))
+                .isEqualTo(Utils.murmur2("hotel-7/1204".getBytes(StandardCharsets.UTF_8)));
+        assertThat(SensorKeyPartitioner.murmur2(KEY, PartitioningStrategy.HOTEL.prefixLength(KEY)))
+                .isEqualTo(Utils.murmur2("hotel-7".getBytes(StandardCharsets.UTF_8)));
+        assertThat(SensorKeyPartitioner.murmur2(KEY, PartitioningStrategy.DEVICE.prefixLength(KEY)))
+                .isEqualTo(Utils.murmur2(KEY));
+    }
+}
@@ -0,0 +1,140 @@
+package org.iot_platform.deviceedgeservice.kafka.spool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Append, recovery after restart and replay order of the spool, against a mocked KafkaTemplate
+ */
+class DiskSpoolTest {
+
+    private static final TimeoutException BROKER_DOWN = new TimeoutException("Topic climate_data not present in metadata");
+
+    @TempDir
+    Path dir;
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final List<DiskSpool> started = new ArrayList<>();
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), any(), anyLong(), any(), any())).thenAnswer(invocation -> {
+            sent.add(invocation.getArgument(3));
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (DiskSpool spool : started) {
+            spool.stop();
+        }
+    }
+
+    @Test
+    void recordsRollOverSegmentsAndSurviveARestart() throws IOException, InterruptedException {
+        DiskSpool spool = spool(Duration.ofHours(1));
+        // брокер недоступен: drainer ждёт retry-backoff и ничего не отправляет
+        assertThat(spool.spoolFailedSend("climate_data", "key-0", 0, new byte[100], BROKER_DOWN)).isTrue();
+        for (int i = 1; i < 10; i++) {
+            spool.append("climate_data", "key-" + i, i, new byte[100]);
+        }
+
+        assertThat(spool.isActive()).isTrue();
+        assertThat(gauge("edge.spool.records")).isEqualTo(10);
+        assertThat(gauge("edge.spool.segments")).isEqualTo(4); // по 3 записи в сегменте
+        spool.stop();
+        started.remove(spool);
+        verify(kafkaTemplate, never()).send(anyString(), any(), anyLong(), any(), any());
+
+        DiskSpool restarted = spool(Duration.ZERO);
+
+        assertThat(restarted.isActive()).isTrue();
+        verify(kafkaTemplate, timeout(5_000).times(10)).send(anyString(), any(), anyLong(), any(), any());
+        assertThat(sent).containsExactly(keys(0, 10));
+    }
+
+    @Test
+    void newSendsQueueBehindFailedSends() throws IOException {
+        DiskSpool spool = spool(Duration.ZERO);
+        for (int i = 0; i < 200; i++) {
+            spool.spoolFailedSend("climate_data", "key-" + i, i, new byte[16], BROKER_DOWN);
+        }
+        assertThat(spool.isActive()).isTrue();
+        // новые записи встают в очередь appender'а за упавшими, а не пишутся мимо неё
+        for (int i = 200; i < 210; i++) {
+            spool.append("climate_data", "key-" + i, i, new byte[16]);
+        }
+
+        verify(kafkaTemplate, timeout(5_000).times(210)).send(anyString(), any(), anyLong(), any(), any());
+        assertThat(sent).containsExactly(keys(0, 210));
+    }
+
+    @Test
+    void onlyUnreachableBrokerIsSpooled() throws IOException {
+        DiskSpool spool = spool(Duration.ZERO);
+
+        assertThat(spool.spoolFailedSend("climate_data", "key", 0, new byte[16],
+                new IllegalArgumentException("Record too large"))).isFalse();
+        assertThat(spool.isActive()).isFalse();
+    }
+
+    private DiskSpool spool(Duration retryBackoff) throws IOException {
+        registry = new SimpleMeterRegistry();
+        DiskSpool spool = new DiskSpool(kafkaTemplate, registry);
+        ReflectionTestUtils.setField(spool, "enabled", true);
+        ReflectionTestUtils.setField(spool, "directoryPath", dir.toString());
+        // заголовок 24 + 3 записи по 16 + 12 + 5 + 100
+        ReflectionTestUtils.setField(spool, "segmentSize", DataSize.ofBytes(24 + 3 * 133));
+        ReflectionTestUtils.setField(spool, "maxSegments", 32);
+        ReflectionTestUtils.setField(spool, "retention", Duration.ofHours(24));
+        ReflectionTestUtils.setField(spool, "drainRate", 1_000);
+        ReflectionTestUtils.setField(spool, "retryBackoff", retryBackoff);
+        ReflectionTestUtils.setField(spool, "sendTimeout", Duration.ofSeconds(5));
+        spool.start();
+        started.add(spool);
+        return spool;
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+
+    private static String[] keys(int from, int to) {
+        String[] keys = new String[to - from];
+        for (int i = from; i < to; i++) {
+            keys[i - from] = "key-" + i;
+        }
+        return keys;
+    }
+}
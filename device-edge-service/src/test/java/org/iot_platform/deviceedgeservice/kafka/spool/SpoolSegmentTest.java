@@ -0,0 +1,92 @@
+package org.iot_platform.deviceedgeservice.kafka.spool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+class SpoolSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendedRecordsAreReadBackInOrder() throws IOException {
+        SpoolSegment segment = SpoolSegment.create(dir, 1, 4096);
+
+        assertThat(segment.append("climate_data", "h1/101/dev-1", 1_000, bytes("first"))).isTrue();
+        assertThat(segment.append("alerts", null, 2_000, bytes("second"))).isTrue();
+
+        int position = segment.readPosition();
+        SpooledRecord first = segment.readAt(position);
+        SpooledRecord second = segment.readAt(position + segment.recordSize(position));
+        assertThat(first.topic()).isEqualTo("climate_data");
+        assertThat(first.key()).isEqualTo("h1/101/dev-1");
+        assertThat(first.timestamp()).isEqualTo(1_000);
+        assertThat(first.payload()).isEqualTo(bytes("first"));
+        assertThat(second.key()).isNull();
+        assertThat(second.payload()).isEqualTo(bytes("second"));
+        assertThat(segment.pendingRecords()).isEqualTo(2);
+        segment.close();
+    }
+
+    @Test
+    void recordThatDoesNotFitIsRefused() throws IOException {
+        SpoolSegment segment = SpoolSegment.create(dir, 1, SpoolSegment.HEADER_SIZE + 64);
+
+        assertThat(segment.append("t", "k", 0, new byte[40])).isTrue();
+        assertThat(segment.append("t", "k", 0, new byte[40])).isFalse();
+
+        // отказ ничего не дописал
+        assertThat(segment.pendingRecords()).isEqualTo(1);
+        assertThat(segment.pendingBytes()).isEqualTo(segment.recordSize(SpoolSegment.HEADER_SIZE));
+        segment.close();
+    }
+
+    @Test
+    void reopenedSegmentContinuesFromTheCommittedPosition() throws IOException {
+        SpoolSegment segment = SpoolSegment.create(dir, 7, 4096);
+        for (int i = 0; i < 3; i++) {
+            segment.append("climate_data", "dev-" + i, i, bytes("r" + i));
+        }
+        int second = segment.readPosition() + segment.recordSize(segment.readPosition());
+        segment.commitRead(second, 1);
+        segment.close();
+
+        SpoolSegment reopened = SpoolSegment.open(dir.resolve(String.format("%020d.spool", 7)));
+
+        assertThat(reopened.id()).isEqualTo(7);
+        assertThat(reopened.pendingRecords()).isEqualTo(2);
+        assertThat(reopened.readAt(reopened.readPosition()).key()).isEqualTo("dev-1");
+        assertThat(reopened.isDrained()).isFalse();
+        reopened.commitRead(reopened.writePosition(), 2);
+        assertThat(reopened.isDrained()).isTrue();
+        reopened.close();
+    }
+
+    @Test
+    void corruptedHeaderIsRejected() throws IOException {
+        SpoolSegment segment = SpoolSegment.create(dir, 1, 4096);
+        segment.close();
+        Path file = dir.resolve(String.format("%020d.spool", 1));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // writePosition за концом файла
+            channel.write(ByteBuffer.allocate(8).putLong(0, 1 << 20), 0);
+        }
+
+        assertThatIOException().isThrownBy(() -> SpoolSegment.open(file))
+                .withMessageContaining("Corrupted spool segment header");
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
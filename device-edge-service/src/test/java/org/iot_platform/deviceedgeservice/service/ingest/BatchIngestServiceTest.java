@@ -0,0 +1,107 @@
+package org.iot_platform.deviceedgeservice.service.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.iot_platform.deviceedgeservice.payload.IngestRequest;
+import org.iot_platform.deviceedgeservice.payload.IngestResponse;
+import org.iot_platform.deviceedgeservice.service.sensors.common.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-reading results of a batch: a reading whose send() throws, a reading dropped by the edge pipeline
+ */
+class BatchIngestServiceTest {
+
+    private TelemetryIngestService ingestService;
+    private BatchIngestService batchIngestService;
+
+    @BeforeEach
+    void setUp() {
+        ingestService = mock(TelemetryIngestService.class);
+        batchIngestService = new BatchIngestService(ingestService, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void delimitedBatchKeepsGoingAfterASynchronousSendFailure() throws IOException {
+        when(ingestService.ingest(eq(SensorType.CLIMATE), any(byte[].class)))
+                .thenReturn(delivered())
+                .thenThrow(new RecordTooLargeException("The message is 2000000 bytes"))
+                .thenReturn(delivered());
+
+        IngestResponse response = batchIngestService.ingestDelimited(frames(3), 100).block();
+
+        assertRejectedSecond(response);
+        verify(ingestService, times(3)).ingest(eq(SensorType.CLIMATE), any(byte[].class));
+    }
+
+    @Test
+    void jsonBatchKeepsGoingAfterASynchronousSendFailure() throws IOException {
+        when(ingestService.ingest(eq(SensorType.CLIMATE), any(Message.class), any(byte[].class)))
+                .thenReturn(delivered())
+                .thenThrow(new IllegalStateException("Failed to serialize"))
+                .thenReturn(delivered());
+        IngestRequest.Reading reading = new IngestRequest.Reading("CLIMATE",
+                new ObjectMapper().readTree("{\"header\": {\"deviceId\": \"dev-1\"}, \"temperatureC\": 21.5}"));
+
+        IngestResponse response = batchIngestService.ingestJson(new IngestRequest(List.of(reading, reading, reading)), 100).block();
+
+        assertRejectedSecond(response);
+    }
+
+    @Test
+    void droppedReadingIsAcceptedAndReportedAsDropped() throws IOException {
+        when(ingestService.ingest(eq(SensorType.CLIMATE), any(byte[].class)))
+                .thenReturn(delivered())
+                .thenReturn(IngestResult.dropped());
+
+        IngestResponse response = batchIngestService.ingestDelimited(frames(2), 100).block();
+
+        assertThat(response.accepted()).isEqualTo(2);
+        assertThat(response.dropped()).isEqualTo(1);
+        assertThat(response.rejected()).isZero();
+        assertThat(response.results()).extracting(IngestResponse.Item::dropped).containsExactly(false, true);
+    }
+
+    private static void assertRejectedSecond(IngestResponse response) {
+        assertThat(response.accepted()).isEqualTo(2);
+        assertThat(response.rejected()).isEqualTo(1);
+        assertThat(response.results()).extracting(IngestResponse.Item::accepted).containsExactly(true, false, true);
+        assertThat(response.results().get(1).error()).startsWith("publish failed: ");
+    }
+
+    private static IngestResult delivered() {
+        return IngestResult.accepted(CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * varint32 length | type code | payload, payload itself is not parsed by the mocked ingest
+     */
+    private static byte[] frames(int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        for (int i = 0; i < count; i++) {
+            out.writeUInt32NoTag(3);
+            out.writeRawByte(SensorType.CLIMATE.getCode());
+            out.writeRawBytes(new byte[]{8, (byte) i});
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,90 @@
+package org.iot_platform.deviceedgeservice.service.schedule;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Wheel math driven tick by tick (advance()), without the wheel thread
+ */
+class CadenceSchedulerTest {
+
+    private static final int WHEEL = 8;
+    // длинный тик: реальное время не догонит тики, которые прогоняет тест, coalescing не сработает
+    private static final Duration TICK = Duration.ofSeconds(1);
+
+    private CadenceScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new CadenceScheduler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "tickDuration", TICK);
+        ReflectionTestUtils.setField(scheduler, "wheelSize", WHEEL);
+        ReflectionTestUtils.setField(scheduler, "workerThreads", 1);
+        ReflectionTestUtils.setField(scheduler, "queueCapacity", 16);
+        scheduler.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, WHEEL - 1, WHEEL, WHEEL + 1, 2 * WHEEL})
+    void firstRunFallsOnTheDeadlineTick(int delayTicks) {
+        Cadence cadence = cadence(TICK.multipliedBy(100), delayTicks);
+
+        assertThat(dueTicks(cadence, 3 * WHEEL)).containsExactly((long) delayTicks);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, WHEEL - 1, WHEEL, WHEEL + 1, 2 * WHEEL})
+    void rescheduledRunsDoNotLoseARotation(int periodTicks) {
+        Cadence cadence = cadence(TICK.multipliedBy(periodTicks), 0);
+
+        List<Long> expected = new ArrayList<>();
+        for (long tick = 0; tick < 8 * WHEEL; tick += periodTicks) {
+            expected.add(tick);
+        }
+        assertThat(dueTicks(cadence, 8 * WHEEL)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, WHEEL - 1, WHEEL, WHEEL + 1, 2 * WHEEL})
+    void cancelledCadenceNeverRuns(int delayTicks) {
+        Cadence cadence = cadence(TICK.multipliedBy(100), delayTicks);
+        cadence.cancel();
+
+        assertThat(dueTicks(cadence, 3 * WHEEL)).isEmpty();
+    }
+
+    private Cadence cadence(Duration period, int delayTicks) {
+        Cadence cadence = scheduler.schedule("test", period, 0, () -> {
+        });
+        // фаза вместо случайной; в колесо попадёт на первом advance()
+        long startNanos = (Long) ReflectionTestUtils.getField(scheduler, "startNanos");
+        cadence.gridNanos = startNanos + delayTicks * TICK.toNanos();
+        cadence.deadlineNanos = cadence.gridNanos;
+        return cadence;
+    }
+
+    private List<Long> dueTicks(Cadence cadence, int ticks) {
+        List<Long> due = new ArrayList<>();
+        for (long tick = 0; tick < ticks; tick++) {
+            if (scheduler.advance().contains(cadence)) {
+                due.add(tick);
+            }
+        }
+        return due;
+    }
+}
@@ -0,0 +1,106 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full parseFrom vs header-first decoding (TopicSchema / ProtoProjection) of one reading per sensor
+ * topic. Payloads have every field set, repeated ones and maps with a few entries, so the skipped
+ * tail is as long as in production. gc.alloc.rate.norm shows the bytes allocated per reading.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SensorDecodingBenchmark {
+
+    // поля условий правил из rules.yml по умолчанию
+    private static final Map<String, List<String>> RULE_FIELDS = Map.of(
+            "climate_data", List.of("temperature_c", "humidity_percent", "comfort_level"),
+            "air_quality_data", List.of("co2_ppm", "pm2_5"),
+            "motion_data", List.of("motion_detected", "room_status"),
+            "energy_data", List.of("current_power_w", "hourly_consumption_kwh"),
+            "water_leak_data", List.of("leak_detected", "severity"),
+            "water_meter_data", List.of("leak_detection.possible_leak", "flow_rate_lpm")
+    );
+
+    @Param({"climate_data", "air_quality_data", "motion_data", "energy_data", "water_leak_data", "water_meter_data"})
+    public String topic;
+
+    private Message prototype;
+    private byte[] payload;
+    private TopicSchema headerSchema;
+    private TopicSchema ruleSchema;
+    private int lastSlot;
+
+    @Setup
+    public void setUp() {
+        prototype = SensorMessages.prototypeOf(topic);
+        Message.Builder builder = prototype.newBuilderForType();
+        fill(builder);
+        payload = builder.build().toByteArray();
+
+        headerSchema = new TopicSchema(topic).freeze();
+        ruleSchema = new TopicSchema(topic);
+        for (String field : RULE_FIELDS.get(topic)) {
+            lastSlot = ruleSchema.slot(field);
+        }
+        ruleSchema.freeze();
+    }
+
+    @Benchmark
+    public double fullParse() throws InvalidProtocolBufferException {
+        Message message = prototype.getParserForType().parseFrom(payload);
+        return ruleSchema.view(message).number(lastSlot);
+    }
+
+    @Benchmark
+    public String headerOnly() throws InvalidProtocolBufferException {
+        return headerSchema.decode(payload).deviceId();
+    }
+
+    @Benchmark
+    public double headerAndRuleFields() throws InvalidProtocolBufferException {
+        return ruleSchema.decode(payload).number(lastSlot);
+    }
+
+    private static void fill(Message.Builder builder) {
+        for (FieldDescriptor field : builder.getDescriptorForType().getFields()) {
+            if (field.isRepeated()) {
+                for (int i = 0; i < 4; i++) {
+                    builder.addRepeatedField(field, value(builder, field, i));
+                }
+            } else {
+                builder.setField(field, value(builder, field, 0));
+            }
+        }
+    }
+
+    private static Object value(Message.Builder builder, FieldDescriptor field, int n) {
+        return switch (field.getJavaType()) {
+            case INT -> 42 + n;
+            case LONG -> 1_700_000_000_000L + n;
+            case FLOAT -> 21.5f + n;
+            case DOUBLE -> 1234.5 + n;
+            case BOOLEAN -> true;
+            // разные строки - разные ключи map-полей
+            case STRING -> field.getName() + "-" + n;
+            case BYTE_STRING -> ByteString.copyFromUtf8(field.getName());
+            case ENUM -> field.getEnumType().getValues().get(Math.min(1, field.getEnumType().getValues().size() - 1));
+            case MESSAGE -> {
+                Message.Builder child = builder.newBuilderForField(field);
+                fill(child);
+                if (field.getMessageType().getOptions().getMapEntry()) {
+                    child.setField(field.getMessageType().findFieldByNumber(1), value(child, field.getMessageType().findFieldByNumber(1), n));
+                }
+                yield child.build();
+            }
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package org.iot_platform.ruleengineservice.alert;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.protos.alert.Alert;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes alerts (protobuf Alert) keyed by hotelId/roomNumber/deviceId, like the sensor topics
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AlertPublisher {
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Value("${rule-engine.alerts.topic:alerts}")
+    private String topic;
+
+    public void publish(Alert alert) {
+        String key = alert.getHeader().getHotelId() + "/" + alert.getHeader().getRoomNumber() + "/" + alert.getHeader().getDeviceId();
+        kafkaTemplate.send(topic, key, alert.toByteArray())
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        log.error("Failed to publish alert {} for device {}", alert.getRuleId(), alert.getHeader().getDeviceId(), ex);
+                    }
+                });
+    }
+}
@@ -0,0 +1,76 @@
+package org.iot_platform.ruleengineservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * rule-engine.listeners.* - one listener container per sensor topic; topics without an entry use the defaults
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "rule-engine.listeners")
+public class ListenerProperties {
+
+    /**
+     * false - single shared @KafkaListener for all topics (SensorDataConsumer / SensorDataBatchConsumer)
+     */
+    private boolean perTopic = true;
+
+    private Listener defaults = Listener.standard();
+
+    private Map<String, Listener> topics = new LinkedHashMap<>();
+
+    public Listener forTopic(String topic) {
+        Listener listener = topics.get(topic);
+        return listener != null ? listener.withDefaults(defaults) : defaults;
+    }
+
+    /**
+     * Unset values of a topic entry fall back to the defaults
+     */
+    @Getter
+    @Setter
+    public static class Listener {
+
+        private Integer concurrency;
+        private Integer maxPollRecords;
+        private Duration fetchMaxWait;
+        private Duration pollTimeout;
+
+        /**
+         * Quick in-place retries of a failed record before it goes to the retry topics (rule-engine.retry).
+         * Every in-place retry holds up the partition, so keep them few and short.
+         */
+        private Duration retryInterval;
+        private Long retryAttempts;
+
+        private static Listener standard() {
+            Listener listener = new Listener();
+            listener.concurrency = 1;
+            listener.maxPollRecords = 500;
+            listener.fetchMaxWait = Duration.ofMillis(500);
+            listener.pollTimeout = Duration.ofSeconds(3);
+            listener.retryInterval = Duration.ofSeconds(1);
+            listener.retryAttempts = 0L;
+            return listener;
+        }
+
+        private Listener withDefaults(Listener defaults) {
+            Listener merged = new Listener();
+            merged.concurrency = concurrency != null ? concurrency : defaults.concurrency;
+            merged.maxPollRecords = maxPollRecords != null ? maxPollRecords : defaults.maxPollRecords;
+            merged.fetchMaxWait = fetchMaxWait != null ? fetchMaxWait : defaults.fetchMaxWait;
+            merged.pollTimeout = pollTimeout != null ? pollTimeout : defaults.pollTimeout;
+            merged.retryInterval = retryInterval != null ? retryInterval : defaults.retryInterval;
+            merged.retryAttempts = retryAttempts != null ? retryAttempts : defaults.retryAttempts;
+            return merged;
+        }
+    }
+}
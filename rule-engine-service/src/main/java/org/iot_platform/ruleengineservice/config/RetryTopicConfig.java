@@ -0,0 +1,50 @@
+package org.iot_platform.ruleengineservice.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.iot_platform.ruleengineservice.retry.RetryTopics;
+import org.iot_platform.ruleengineservice.rules.SensorMessages;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retry tier and dead-letter topics of every sensor topic, created on startup when missing
+ */
+@Configuration
+public class RetryTopicConfig {
+
+    @Value("${rule-engine.retry.partitions:3}")
+    private int partitions;
+
+    @Value("${rule-engine.retry.replicas:1}")
+    private short replicas;
+
+    @Value("${rule-engine.retry.dlt-retention:14d}")
+    private Duration dltRetention;
+
+    @Bean
+    public KafkaAdmin.NewTopics retryTierTopics(RetryTopics retryTopics) {
+        List<NewTopic> topics = new ArrayList<>();
+        for (String topic : SensorMessages.topics()) {
+            for (int tier = 1; tier <= retryTopics.tiers(); tier++) {
+                topics.add(TopicBuilder.name(retryTopics.retryTopic(topic, tier))
+                        .partitions(partitions)
+                        .replicas(replicas)
+                        .build());
+            }
+            topics.add(TopicBuilder.name(retryTopics.dltTopic(topic))
+                    .partitions(partitions)
+                    .replicas(replicas)
+                    .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(dltRetention.toMillis()))
+                    .build());
+        }
+        return new KafkaAdmin.NewTopics(topics.toArray(NewTopic[]::new));
+    }
+}
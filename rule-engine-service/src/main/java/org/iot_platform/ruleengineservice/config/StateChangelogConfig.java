@@ -0,0 +1,43 @@
+package org.iot_platform.ruleengineservice.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.iot_platform.ruleengineservice.rules.SensorMessages;
+import org.iot_platform.ruleengineservice.rules.StateChangelog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compacted changelog topics of the window state, created on startup when missing.
+ * Partition N of a changelog belongs to partition N of its sensor topic, so it needs at least
+ * as many partitions as the sensor topic.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rule-engine.state.durable", havingValue = "true", matchIfMissing = true)
+public class StateChangelogConfig {
+
+    @Value("${rule-engine.state.changelog-partitions:12}")
+    private int partitions;
+
+    @Value("${rule-engine.state.changelog-replicas:1}")
+    private short replicas;
+
+    @Bean
+    public KafkaAdmin.NewTopics stateChangelogTopics(StateChangelog changelog) {
+        List<NewTopic> topics = new ArrayList<>();
+        for (String topic : SensorMessages.topics()) {
+            topics.add(TopicBuilder.name(changelog.topic(topic))
+                    .partitions(partitions)
+                    .replicas(replicas)
+                    .compact()
+                    .build());
+        }
+        return new KafkaAdmin.NewTopics(topics.toArray(NewTopic[]::new));
+    }
+}
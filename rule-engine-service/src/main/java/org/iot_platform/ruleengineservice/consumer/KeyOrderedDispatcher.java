@@ -0,0 +1,165 @@
+package org.iot_platform.ruleengineservice.consumer;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.iot_platform.ruleengineservice.handler.common.BatchOutcome;
+import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key-ordered parallel processing of a poll (rule-engine.parallel): the records are grouped by key and
+ * every group runs through the handler on a worker, in poll order. Readings of one device (or room) stay
+ * ordered, different devices of the same partition run side by side - throughput is no longer capped by
+ * partitions x concurrency while alerts are published.
+ * <p>
+ * dispatch() returns once every record of the poll has finished, so the listener commits only behind
+ * completed records. A failed record stops its own group; the outcome points at the lowest failed
+ * position and everything from there is redelivered, including records of other keys that already
+ * completed (at-least-once, as in batch mode).
+ * <p>
+ * Workers are a bounded pool of platform threads shared by all sensor topics.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "rule-engine.parallel.enabled", havingValue = "true")
+public class KeyOrderedDispatcher {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rule-engine.parallel.workers:32}")
+    private int workers;
+
+    @Value("${rule-engine.parallel.order-by:key}") // key - record key (hotel/room/device), room - hotel/room
+    private String orderBy;
+
+    private ThreadPoolExecutor executor;
+    private boolean byRoom;
+    private DistributionSummary groups;
+
+    @PostConstruct
+    public void start() {
+        byRoom = "room".equalsIgnoreCase(orderBy);
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("rule-worker-"));
+        executor.allowCoreThreadTimeOut(true);
+        Gauge.builder("rule.engine.parallel.queue", executor, pool -> pool.getQueue().size())
+                .description("Key groups waiting for a worker")
+                .register(meterRegistry);
+        groups = DistributionSummary.builder("rule.engine.parallel.groups")
+                .description("Key groups a poll was split into")
+                .register(meterRegistry);
+        log.info("Key-ordered parallel processing: {} workers, ordered per {}", workers, byRoom ? "room" : "record key");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Runs the records of one poll through the handler, in order per key, and waits for all of them
+     */
+    public BatchOutcome dispatch(List<ConsumerRecord<String, byte[]>> records, SensorDataHandler<?> handler) {
+        Map<String, List<Integer>> byKey = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            byKey.computeIfAbsent(key(records.get(i)), key -> new ArrayList<>()).add(i);
+        }
+        groups.record(byKey.size());
+
+        List<GroupResult> results = new ArrayList<>(byKey.size());
+        if (byKey.size() == 1) {
+            // один ключ - нечего распараллеливать, без передачи в пул
+            results.add(run(records, byKey.values().iterator().next(), handler));
+        } else {
+            List<CompletableFuture<GroupResult>> futures = new ArrayList<>(byKey.size());
+            for (List<Integer> positions : byKey.values()) {
+                futures.add(CompletableFuture.supplyAsync(() -> run(records, positions, handler), executor));
+            }
+            futures.forEach(future -> results.add(future.join()));
+        }
+
+        int processed = 0;
+        int failedIndex = -1;
+        Exception failure = null;
+        for (GroupResult result : results) {
+            processed += result.processed;
+            if (result.failedIndex >= 0 && (failedIndex < 0 || result.failedIndex < failedIndex)) {
+                failedIndex = result.failedIndex;
+                failure = result.failure;
+            }
+        }
+        // битые записи после точки отказа придут снова - их отправит в DLT следующая доставка
+        List<Integer> malformed = new ArrayList<>(0);
+        for (GroupResult result : results) {
+            for (int index : result.malformed) {
+                if (failedIndex < 0 || index < failedIndex) {
+                    malformed.add(index);
+                }
+            }
+        }
+        malformed.sort(null);
+        return failedIndex < 0
+                ? BatchOutcome.completed(processed, malformed.size(), malformed)
+                : BatchOutcome.failed(processed, malformed.size(), malformed, failedIndex, failure);
+    }
+
+    private static GroupResult run(List<ConsumerRecord<String, byte[]>> records, List<Integer> positions,
+                                   SensorDataHandler<?> handler) {
+        GroupResult result = new GroupResult();
+        for (int index : positions) {
+            ConsumerRecord<String, byte[]> record = records.get(index);
+            try {
+                handler.handle(record.value(), record.partition());
+                result.processed++;
+            } catch (InvalidProtocolBufferException e) {
+                result.malformed.add(index);
+            } catch (Exception e) {
+                // дальше по этому ключу нельзя - порядок; остальное будет доставлено заново
+                result.failedIndex = index;
+                result.failure = e;
+                break;
+            }
+        }
+        return result;
+    }
+
+    private String key(ConsumerRecord<String, byte[]> record) {
+        String key = record.key();
+        if (key == null) {
+            return "partition-" + record.partition();
+        }
+        int device = byRoom ? key.lastIndexOf('/') : -1;
+        return device > 0 ? key.substring(0, device) : key;
+    }
+
+    private static final class GroupResult {
+
+        private int processed;
+        private final List<Integer> malformed = new ArrayList<>(0);
+        private int failedIndex = -1;
+        private Exception failure;
+    }
+}
@@ -0,0 +1,123 @@
+package org.iot_platform.ruleengineservice.consumer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.iot_platform.ruleengineservice.handler.common.BatchOutcome;
+import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.iot_platform.ruleengineservice.retry.FailureRouter;
+import org.iot_platform.ruleengineservice.retry.PoisonRecordException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch mode: a whole poll is split by topic and partition, every handler gets the records of
+ * a partition in one handleBatch() call. Partitions are handled in poll order (of their first record).
+ * Offsets are committed once per poll.
+ * <p>
+ * When a handler fails, the listener throws BatchListenerFailedException with the lowest failed
+ * position in the poll: the error handler commits everything before it and redelivers the rest.
+ * Records of other topics after that position may therefore be processed twice; malformed ones
+ * among them are dead-lettered by the redelivery, not by this poll.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+@ConditionalOnExpression("!${rule-engine.listeners.per-topic:true} && ${rule-engine.consumer.batch:false}")
+public class SensorDataBatchConsumer {
+
+    private final Map<String, SensorDataHandler<?>> handlers;
+    private final FailureRouter failureRouter;
+
+    @KafkaListener(
+            topics = {
+                    "climate_data",
+                    "air_quality_data",
+                    "motion_data",
+                    "energy_data",
+                    "water_leak_data",
+                    "water_meter_data"
+            },
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "kafkaListenerContainerFactory"
+    )
+    public void consumeSensorData(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        Map<TopicPartition, TopicBatch> batches = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            batches.computeIfAbsent(new TopicPartition(record.topic(), record.partition()), tp -> new TopicBatch())
+                    .add(i, record.value());
+        }
+
+        int processed = 0;
+        int skipped = 0;
+        int failedPosition = -1;
+        Exception failure = null;
+        List<Integer> malformed = new ArrayList<>(0);
+
+        for (Map.Entry<TopicPartition, TopicBatch> entry : batches.entrySet()) {
+            String topic = entry.getKey().topic();
+            TopicBatch batch = entry.getValue();
+            if (failedPosition >= 0 && batch.positions.get(0) > failedPosition) {
+                continue; // вся партиция после точки отказа - придёт снова
+            }
+            SensorDataHandler<?> handler = handlers.get(topic);
+            if (handler == null) {
+                log.warn("No handler found for topic: {}, skipping {} records", topic, batch.payloads.size());
+                continue;
+            }
+
+            BatchOutcome outcome = handler.handleBatch(batch.payloads, entry.getKey().partition());
+            processed += outcome.processed();
+            skipped += outcome.skipped();
+            for (int index : outcome.malformed()) {
+                malformed.add(batch.positions.get(index));
+            }
+            if (outcome.isFailed()) {
+                int position = batch.positions.get(outcome.failedIndex());
+                if (failedPosition < 0 || position < failedPosition) {
+                    failedPosition = position;
+                    failure = outcome.failure();
+                }
+            }
+        }
+
+        // битые записи после точки отказа придут снова - их отправит в DLT следующая доставка
+        malformed.sort(null);
+        for (int position : malformed) {
+            if (failedPosition >= 0 && position >= failedPosition) {
+                break;
+            }
+            ConsumerRecord<String, byte[]> record = records.get(position);
+            failureRouter.deadLetter(record, new PoisonRecordException("Malformed " + record.topic() + " record", null));
+        }
+
+        if (failedPosition >= 0) {
+            throw new BatchListenerFailedException("Processing failed in topic " + records.get(failedPosition).topic(),
+                    failure, records.get(failedPosition));
+        }
+
+        acknowledgment.acknowledge();
+        log.debug("Batch of {} records: processed={}, skipped={}, partitions={}", records.size(), processed, skipped, batches.size());
+    }
+
+    private static final class TopicBatch {
+
+        private final List<Integer> positions = new ArrayList<>();
+        private final List<byte[]> payloads = new ArrayList<>();
+
+        private void add(int position, byte[] payload) {
+            positions.add(position);
+            payloads.add(payload);
+        }
+    }
+}
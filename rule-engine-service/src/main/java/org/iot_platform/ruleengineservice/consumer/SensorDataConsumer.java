@@ -1,8 +1,10 @@
 package org.iot_platform.ruleengineservice.consumer;
 
+import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
@@ -15,6 +17,8 @@ import java.util.Map;
 @RequiredArgsConstructor
 @Slf4j
 @Component
+// общий listener на все топики - только когда контейнеры по топикам выключены
+@ConditionalOnExpression("!${rule-engine.listeners.per-topic:true} && !${rule-engine.consumer.batch:false}")
 public class SensorDataConsumer {
 
     private final Map<String, SensorDataHandler<?>> handlers;
@@ -35,26 +39,24 @@ public class SensorDataConsumer {
             @Payload byte[] data,
             @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
             @Header(KafkaHeaders.RECEIVED_KEY) String key,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
             Acknowledgment acknowledgment
-    ) {
-        try {
-            log.debug("Received message from topic: {}, key: {}", topic, key);
-
-            SensorDataHandler<?> handler = handlers.get(topic);
-
-            if (handler == null) {
-                log.warn("No handler found for topic: {}", topic);
-                if (acknowledgment != null) {
-                    acknowledgment.acknowledge();
-                }
-                return;
-            }
+    ) throws InvalidProtocolBufferException {
+        log.debug("Received message from topic: {}, key: {}", topic, key);
 
-            handler.handle(data);
+        SensorDataHandler<?> handler = handlers.get(topic);
 
-            acknowledgment.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing message from topic: {}", topic, e);
+        if (handler == null) {
+            log.warn("No handler found for topic: {}", topic);
+            if (acknowledgment != null) {
+                acknowledgment.acknowledge();
+            }
+            return;
         }
+
+        // исключения уходят в error handler: retry-топики, битые записи - сразу в DLT
+        handler.handle(data, partition);
+
+        acknowledgment.acknowledge();
     }
 }
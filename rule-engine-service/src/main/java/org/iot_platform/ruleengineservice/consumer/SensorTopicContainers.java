@@ -0,0 +1,252 @@
+package org.iot_platform.ruleengineservice.consumer;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.iot_platform.ruleengineservice.config.ListenerProperties;
+import org.iot_platform.ruleengineservice.handler.common.BatchOutcome;
+import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.iot_platform.ruleengineservice.retry.FailureRouter;
+import org.iot_platform.ruleengineservice.retry.PoisonRecordException;
+import org.iot_platform.ruleengineservice.rules.WindowStateStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.BatchAcknowledgingMessageListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One listener container per handler topic, built from the sensorDataHandlers map: a flood of
+ * climate readings no longer delays water leak records, and every topic gets its own concurrency,
+ * poll settings and retry policy (rule-engine.listeners.*).
+ * <p>
+ * Consumers run with client id rule-engine-&lt;topic&gt;, so the native records-lag metrics are per topic too.
+ * With rule-engine.parallel.enabled every poll is handed to the KeyOrderedDispatcher instead: ordered per
+ * device, parallel across devices, committed once the whole poll has completed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "rule-engine.listeners.per-topic", havingValue = "true", matchIfMissing = true)
+public class SensorTopicContainers implements SmartLifecycle {
+
+    private final Map<String, SensorDataHandler<?>> handlers;
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final ListenerProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final WindowStateStore windowStateStore;
+    private final FailureRouter failureRouter;
+    private final ObjectProvider<KeyOrderedDispatcher> dispatcherProvider;
+
+    @Value("${spring.kafka.consumer.group-id}")
+    private String groupId;
+
+    @Value("${rule-engine.consumer.batch:false}")
+    private boolean batch;
+
+    private final List<ConcurrentMessageListenerContainer<String, byte[]>> containers = new ArrayList<>();
+    private volatile boolean running;
+
+    @Override
+    public synchronized void start() {
+        handlers.forEach((topic, handler) -> {
+            ConcurrentMessageListenerContainer<String, byte[]> container = container(topic, handler);
+            container.start();
+            containers.add(container);
+        });
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        containers.forEach(ConcurrentMessageListenerContainer::stop);
+        containers.clear();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private ConcurrentMessageListenerContainer<String, byte[]> container(String topic, SensorDataHandler<?> handler) {
+        ListenerProperties.Listener settings = properties.forTopic(topic);
+        TopicMeters meters = new TopicMeters(topic, meterRegistry);
+
+        ContainerProperties containerProperties = new ContainerProperties(topic);
+        containerProperties.setGroupId(groupId);
+        containerProperties.setClientId("rule-engine-" + topic);
+        containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        containerProperties.setConsumerRebalanceListener(windowStateStore); // window state follows the partitions
+        containerProperties.setPollTimeout(settings.getPollTimeout().toMillis());
+        Properties consumerProperties = new Properties();
+        consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(settings.getMaxPollRecords()));
+        consumerProperties.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, String.valueOf(settings.getFetchMaxWait().toMillis()));
+        containerProperties.setKafkaConsumerProperties(consumerProperties);
+        KeyOrderedDispatcher dispatcher = dispatcherProvider.getIfAvailable();
+        String mode = dispatcher != null ? "key-parallel" : batch ? "batch" : "record";
+        if (dispatcher != null) {
+            windowStateStore.deferCheckpoints();
+            containerProperties.setMessageListener(parallelListener(handler, meters, dispatcher, windowStateStore, failureRouter));
+        } else {
+            containerProperties.setMessageListener(batch ? batchListener(handler, meters, failureRouter) : recordListener(handler, meters));
+        }
+
+        ConcurrentMessageListenerContainer<String, byte[]> container =
+                new ConcurrentMessageListenerContainer<>(consumerFactory, containerProperties);
+        container.setBeanName("sensor-listener-" + topic);
+        container.setConcurrency(settings.getConcurrency());
+        // упавшая запись уходит в retry-топик, партиция идёт дальше
+        container.setCommonErrorHandler(failureRouter.errorHandler(settings.getRetryInterval(), settings.getRetryAttempts()));
+
+        log.info("Listener container for {}: concurrency {}, max-poll-records {}, {} mode",
+                topic, settings.getConcurrency(), settings.getMaxPollRecords(), mode);
+        return container;
+    }
+
+    private static AcknowledgingMessageListener<String, byte[]> recordListener(SensorDataHandler<?> handler, TopicMeters meters) {
+        return (record, acknowledgment) -> {
+            meters.age(record);
+            long startNanos = System.nanoTime();
+            try {
+                handler.handle(record.value(), record.partition());
+                meters.processed.increment();
+            } catch (InvalidProtocolBufferException e) {
+                // повтор не поможет - сразу в DLT
+                meters.skipped.increment();
+                throw new PoisonRecordException("Malformed " + handler.getTopicName() + " record", e);
+            } finally {
+                meters.processing.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+            acknowledge(acknowledgment, meters);
+        };
+    }
+
+    private static BatchAcknowledgingMessageListener<String, byte[]> batchListener(SensorDataHandler<?> handler, TopicMeters meters,
+                                                                                  FailureRouter failureRouter) {
+        return (records, acknowledgment) -> {
+            long startNanos = System.nanoTime();
+            // записи одного poll идут подряд по партициям - режем на куски без перестановок
+            int from = 0;
+            while (from < records.size()) {
+                int partition = records.get(from).partition();
+                int to = from;
+                List<byte[]> payloads = new ArrayList<>();
+                while (to < records.size() && records.get(to).partition() == partition) {
+                    meters.age(records.get(to));
+                    payloads.add(records.get(to).value());
+                    to++;
+                }
+                BatchOutcome outcome = handler.handleBatch(payloads, partition);
+                meters.processed.increment(outcome.processed());
+                meters.skipped.increment(outcome.skipped());
+                for (int index : outcome.malformed()) {
+                    failureRouter.deadLetter(records.get(from + index),
+                            new PoisonRecordException("Malformed " + handler.getTopicName() + " record", null));
+                }
+                if (outcome.isFailed()) {
+                    meters.processing.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                    throw new BatchListenerFailedException("Processing failed in topic " + handler.getTopicName(),
+                            outcome.failure(), records.get(from + outcome.failedIndex()));
+                }
+                from = to;
+            }
+            meters.processing.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            acknowledge(acknowledgment, meters);
+        };
+    }
+
+    private static BatchAcknowledgingMessageListener<String, byte[]> parallelListener(SensorDataHandler<?> handler, TopicMeters meters,
+                                                                                     KeyOrderedDispatcher dispatcher,
+                                                                                     WindowStateStore windowStateStore,
+                                                                                     FailureRouter failureRouter) {
+        return (records, acknowledgment) -> {
+            long startNanos = System.nanoTime();
+            records.forEach(meters::age);
+            BatchOutcome outcome = dispatcher.dispatch(records, handler);
+            // воркеры закончили poll - снапшот и flush changelog уже никого не держат
+            checkpoint(windowStateStore, records);
+            meters.processed.increment(outcome.processed());
+            meters.skipped.increment(outcome.skipped());
+            for (int index : outcome.malformed()) {
+                failureRouter.deadLetter(records.get(index),
+                        new PoisonRecordException("Malformed " + handler.getTopicName() + " record", null));
+            }
+            meters.processing.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            if (outcome.isFailed()) {
+                // коммит до упавшей записи - всё до неё уже завершено
+                throw new BatchListenerFailedException("Processing failed in topic " + handler.getTopicName(),
+                        outcome.failure(), records.get(outcome.failedIndex()));
+            }
+            acknowledge(acknowledgment, meters);
+        };
+    }
+
+    private static void checkpoint(WindowStateStore windowStateStore, List<ConsumerRecord<String, byte[]>> records) {
+        int partition = -1;
+        for (ConsumerRecord<String, byte[]> record : records) {
+            if (record.partition() != partition) {
+                partition = record.partition();
+                windowStateStore.checkpoint(record.topic(), partition);
+            }
+        }
+    }
+
+    private static void acknowledge(Acknowledgment acknowledgment, TopicMeters meters) {
+        if (acknowledgment != null) {
+            long startNanos = System.nanoTime();
+            acknowledgment.acknowledge();
+            meters.ack.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class TopicMeters {
+
+        private final Timer processing;
+        private final Timer recordAge;
+        private final Timer ack;
+        private final Counter processed;
+        private final Counter skipped;
+
+        private TopicMeters(String topic, MeterRegistry registry) {
+            processing = Timer.builder("rule.engine.listener.processing")
+                    .description("Handler time per delivered record or batch")
+                    .tag("topic", topic)
+                    .register(registry);
+            recordAge = Timer.builder("rule.engine.listener.record.age")
+                    .description("Kafka record timestamp to delivery")
+                    .tag("topic", topic)
+                    .register(registry);
+            // та же метрика, что у стадий handler'а
+            ack = Timer.builder("rule.engine.handler.stage")
+                    .description("Time per reading in one stage of the handler pipeline")
+                    .tag("topic", topic)
+                    .tag("stage", "ack")
+                    .register(registry);
+            processed = registry.counter("rule.engine.listener.records", "topic", topic, "result", "processed");
+            skipped = registry.counter("rule.engine.listener.records", "topic", topic, "result", "skipped");
+        }
+
+        private void age(ConsumerRecord<?, ?> record) {
+            recordAge.record(Math.max(0, System.currentTimeMillis() - record.timestamp()), TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -4,21 +4,28 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.iot_platform.protos.air_quality_sensor.AirQualityData;
-import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.iot_platform.ruleengineservice.handler.common.AbstractSensorDataHandler;
 import org.springframework.stereotype.Component;
 
 @Component("air_quality_data")
 @Slf4j
 @RequiredArgsConstructor
-public class AirQualityDataHandler implements SensorDataHandler<AirQualityData> {
-    @Override
-    public void handle(byte[] data) throws InvalidProtocolBufferException {
+public class AirQualityDataHandler extends AbstractSensorDataHandler<AirQualityData> {
 
+    @Override
+    protected AirQualityData deserialize(byte[] data) throws InvalidProtocolBufferException {
+        return AirQualityData.parseFrom(data);
     }
 
+    // алерты - декларативные правила (rules.yml), здесь только своя обработка показания
     @Override
     public void process(AirQualityData sensorData) {
+    }
 
+    // правилам хватает заголовка и полей условий - полный разбор только для сработавшего правила
+    @Override
+    protected boolean headerFirst() {
+        return true;
     }
 
     @Override
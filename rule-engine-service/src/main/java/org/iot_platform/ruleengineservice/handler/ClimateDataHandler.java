@@ -19,32 +19,17 @@ public class ClimateDataHandler extends AbstractSensorDataHandler<ClimateData> {
 
     @Override
     public void process(ClimateData sensorData) {
-        log.info("Processing climate data: deviceId={}, room={}, temp={}°C, humidity={}%",
-                sensorData.getHeader().getDeviceId(),
-                sensorData.getHeader().getRoomNumber(),
-                sensorData.getTemperatureC(),
-                sensorData.getHumidityPercent());
+        if (sampled(log)) {
+            log.debug("Processing climate data: deviceId={}, room={}, temp={}°C, humidity={}%",
+                    sensorData.getHeader().getDeviceId(),
+                    sensorData.getHeader().getRoomNumber(),
+                    sensorData.getTemperatureC(),
+                    sensorData.getHumidityPercent());
+        }
     }
 
     @Override
     public String getTopicName() {
         return "climate_data";
     }
-
-    @Override
-    protected boolean validate(ClimateData sensorData) {
-        float temp = sensorData.getTemperatureC();
-        float humidity = sensorData.getHumidityPercent();
-
-        if (temp < -50 || temp > 80) {
-            log.warn("Invalid temperature: {}°C", temp);
-            return false;
-        }
-
-        if (humidity < 0 || humidity > 100) {
-            log.warn("Invalid humidity: {}%", humidity);
-            return false;
-        }
-        return true;
-    }
 }
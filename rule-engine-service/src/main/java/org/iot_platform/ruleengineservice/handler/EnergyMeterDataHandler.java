@@ -4,21 +4,28 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.iot_platform.protos.energy_meter_data.EnergyMeterData;
-import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.iot_platform.ruleengineservice.handler.common.AbstractSensorDataHandler;
 import org.springframework.stereotype.Component;
 
 @Component("energy_data")
 @Slf4j
 @RequiredArgsConstructor
-public class EnergyMeterDataHandler implements SensorDataHandler<EnergyMeterData> {
-    @Override
-    public void handle(byte[] data) throws InvalidProtocolBufferException {
+public class EnergyMeterDataHandler extends AbstractSensorDataHandler<EnergyMeterData> {
 
+    @Override
+    protected EnergyMeterData deserialize(byte[] data) throws InvalidProtocolBufferException {
+        return EnergyMeterData.parseFrom(data);
     }
 
+    // алерты - декларативные правила (rules.yml), здесь только своя обработка показания
     @Override
     public void process(EnergyMeterData sensorData) {
+    }
 
+    // правилам хватает заголовка и полей условий - полный разбор только для сработавшего правила
+    @Override
+    protected boolean headerFirst() {
+        return true;
     }
 
     @Override
@@ -4,21 +4,28 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.iot_platform.protos.motion_sensor_data.MotionSensorData;
-import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.iot_platform.ruleengineservice.handler.common.AbstractSensorDataHandler;
 import org.springframework.stereotype.Component;
 
 @Component("motion_data")
 @Slf4j
 @RequiredArgsConstructor
-public class MotionSensorDataHandler implements SensorDataHandler<MotionSensorData> {
-    @Override
-    public void handle(byte[] data) throws InvalidProtocolBufferException {
+public class MotionSensorDataHandler extends AbstractSensorDataHandler<MotionSensorData> {
 
+    @Override
+    protected MotionSensorData deserialize(byte[] data) throws InvalidProtocolBufferException {
+        return MotionSensorData.parseFrom(data);
     }
 
+    // алерты - декларативные правила (rules.yml), здесь только своя обработка показания
     @Override
     public void process(MotionSensorData sensorData) {
+    }
 
+    // правилам хватает заголовка и полей условий - полный разбор только для сработавшего правила
+    @Override
+    protected boolean headerFirst() {
+        return true;
     }
 
     @Override
@@ -4,21 +4,28 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.iot_platform.protos.water_leak_data.WaterLeakData;
-import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.iot_platform.ruleengineservice.handler.common.AbstractSensorDataHandler;
 import org.springframework.stereotype.Component;
 
 @Component("water_leak_data")
 @Slf4j
 @RequiredArgsConstructor
-public class WaterLeakDataHandler implements SensorDataHandler<WaterLeakData> {
-    @Override
-    public void handle(byte[] data) throws InvalidProtocolBufferException {
+public class WaterLeakDataHandler extends AbstractSensorDataHandler<WaterLeakData> {
 
+    @Override
+    protected WaterLeakData deserialize(byte[] data) throws InvalidProtocolBufferException {
+        return WaterLeakData.parseFrom(data);
     }
 
+    // алерты - декларативные правила (rules.yml), здесь только своя обработка показания
     @Override
     public void process(WaterLeakData sensorData) {
+    }
 
+    // правилам хватает заголовка и полей условий - полный разбор только для сработавшего правила
+    @Override
+    protected boolean headerFirst() {
+        return true;
     }
 
     @Override
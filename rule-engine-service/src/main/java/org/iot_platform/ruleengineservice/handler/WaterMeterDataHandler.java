@@ -4,21 +4,28 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.iot_platform.protos.water_meter_data.WaterMeterData;
-import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.iot_platform.ruleengineservice.handler.common.AbstractSensorDataHandler;
 import org.springframework.stereotype.Component;
 
 @Component("water_meter_data")
 @Slf4j
 @RequiredArgsConstructor
-public class WaterMeterDataHandler implements SensorDataHandler<WaterMeterData> {
-    @Override
-    public void handle(byte[] data) throws InvalidProtocolBufferException {
+public class WaterMeterDataHandler extends AbstractSensorDataHandler<WaterMeterData> {
 
+    @Override
+    protected WaterMeterData deserialize(byte[] data) throws InvalidProtocolBufferException {
+        return WaterMeterData.parseFrom(data);
     }
 
+    // алерты - декларативные правила (rules.yml), здесь только своя обработка показания
     @Override
     public void process(WaterMeterData sensorData) {
+    }
 
+    // правилам хватает заголовка и полей условий - полный разбор только для сработавшего правила
+    @Override
+    protected boolean headerFirst() {
+        return true;
     }
 
     @Override
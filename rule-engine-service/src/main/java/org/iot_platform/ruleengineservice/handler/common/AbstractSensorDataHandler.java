@@ -2,24 +2,81 @@ package org.iot_platform.ruleengineservice.handler.common;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.protos.support.ProtoValidator;
+import org.iot_platform.ruleengineservice.rules.DecodedReading;
+import org.iot_platform.ruleengineservice.rules.RuleEngine;
+import org.iot_platform.ruleengineservice.rules.SensorMessages;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipeline deserialize -> validate -> process -> rules, every stage timed per topic
+ * (rule.engine.handler.stage). Validation checks the constraints declared in the .proto files,
+ * compiled once per message type (ProtoValidator), then the handler's own validate(). Per-reading
+ * debug output is sampled: one reading in rule-engine.handlers.log-sample-rate, and only with debug
+ * enabled.
+ */
 @Slf4j
 public abstract class AbstractSensorDataHandler<T extends Message> implements SensorDataHandler<T> {
 
+    private RuleEngine ruleEngine;
+    private HandlerMeters meters = HandlerMeters.NONE;
+    private ProtoValidator validator;
+    private int logSampleRate = 1000;
+    private final AtomicLong logTicks = new AtomicLong();
+
+    @Autowired
+    public void setRuleEngine(RuleEngine ruleEngine) {
+        this.ruleEngine = ruleEngine;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meters = new HandlerMeters(getTopicName(), validator(), meterRegistry);
+    }
+
+    @Value("${rule-engine.handlers.log-sample-rate:1000}")
+    public void setLogSampleRate(int logSampleRate) {
+        this.logSampleRate = Math.max(1, logSampleRate);
+    }
+
     @Override
     public void handle(byte[] data) throws InvalidProtocolBufferException {
+        handle(data, NO_PARTITION);
+    }
+
+    @Override
+    public void handle(byte[] data, int partition) throws InvalidProtocolBufferException {
         try {
-            T sensorData = deserialize(data);
+            if (headerFirst() && ruleEngine != null) {
+                if (!handleHeaderFirst(data, partition)) {
+                    log.warn("Invalid sensor data received for topic: {}", getTopicName());
+                }
+                return;
+            }
 
-            if (!validate(sensorData)) {
+            T sensorData = deserializeTimed(data);
+
+            if (!validateTimed(sensorData)) {
                 log.warn("Invalid sensor data received for topic: {}", getTopicName());
                 return;
             }
 
-            log.debug("Processing {} data: {}", getTopicName(), sensorData);
+            if (sampled(log)) {
+                log.debug("Processing {} data: {}", getTopicName(), sensorData);
+            }
 
-            process(sensorData);
+            processTimed(sensorData);
+            evaluateRules(sensorData, partition);
 
         } catch (InvalidProtocolBufferException e) {
             log.error("Failed to deserialize data from topic: {}", getTopicName(), e);
@@ -30,13 +87,198 @@ public abstract class AbstractSensorDataHandler<T extends Message> implements Se
         }
     }
 
+    /**
+     * Tight loop without per-record debug logging: deserialize, validate, process
+     */
+    @Override
+    public BatchOutcome handleBatch(List<byte[]> records, int partition) {
+        int processed = 0;
+        List<Integer> malformed = new ArrayList<>(0);
+        int invalid = 0;
+        boolean headerFirst = headerFirst() && ruleEngine != null;
+        for (int i = 0; i < records.size(); i++) {
+            if (headerFirst) {
+                try {
+                    if (handleHeaderFirst(records.get(i), partition)) {
+                        processed++;
+                    } else {
+                        invalid++;
+                    }
+                } catch (InvalidProtocolBufferException e) {
+                    malformed.add(i);
+                } catch (Exception e) {
+                    log.error("Error processing data from topic: {} at batch index {}", getTopicName(), i, e);
+                    return BatchOutcome.failed(processed, malformed.size() + invalid, malformed, i, e);
+                }
+                continue;
+            }
+            T sensorData;
+            try {
+                sensorData = deserializeTimed(records.get(i));
+            } catch (InvalidProtocolBufferException e) {
+                malformed.add(i);
+                continue;
+            }
+            if (!validateTimed(sensorData)) {
+                invalid++;
+                continue;
+            }
+            try {
+                processTimed(sensorData);
+                evaluateRules(sensorData, partition);
+                processed++;
+            } catch (Exception e) {
+                log.error("Error processing data from topic: {} at batch index {}", getTopicName(), i, e);
+                return BatchOutcome.failed(processed, malformed.size() + invalid, malformed, i, e);
+            }
+        }
+        if (!malformed.isEmpty() || invalid > 0) {
+            log.warn("Skipped {} malformed and {} invalid records of {} from topic: {}",
+                    malformed.size(), invalid, records.size(), getTopicName());
+        }
+        return BatchOutcome.completed(processed, malformed.size() + invalid, malformed);
+    }
+
+    private void evaluateRules(T sensorData, int partition) {
+        if (ruleEngine != null) {
+            long start = System.nanoTime();
+            ruleEngine.evaluate(getTopicName(), partition, sensorData);
+            record(meters.rules, start);
+        }
+    }
+
+    /**
+     * Decode, validate, rules without parsing the record (unless validatesParsed()). The
+     * projection decode is timed as the deserialize stage, the checks as validate; process() does not run.
+     *
+     * @return false when the reading was rejected
+     */
+    private boolean handleHeaderFirst(byte[] data, int partition) throws InvalidProtocolBufferException {
+        long start = System.nanoTime();
+        DecodedReading reading = ruleEngine.decode(getTopicName(), data);
+        record(meters.deserialize, start);
+
+        start = System.nanoTime();
+        boolean valid = validHeaderFirst(reading);
+        record(meters.validate, start);
+        if (!valid) {
+            return false;
+        }
+
+        start = System.nanoTime();
+        ruleEngine.evaluate(reading, partition);
+        record(meters.rules, start);
+        return true;
+    }
+
+    private boolean validHeaderFirst(DecodedReading reading) throws InvalidProtocolBufferException {
+        int violation = ruleEngine.violation(reading);
+        if (violation >= 0) {
+            reject(violation);
+            return false;
+        }
+        return !validatesParsed() || validateOwn(parsed(reading));
+    }
+
+    @SuppressWarnings("unchecked")
+    private T parsed(DecodedReading reading) throws InvalidProtocolBufferException {
+        return (T) ruleEngine.message(reading);
+    }
+
+    private T deserializeTimed(byte[] data) throws InvalidProtocolBufferException {
+        long start = System.nanoTime();
+        T sensorData = deserialize(data);
+        record(meters.deserialize, start);
+        return sensorData;
+    }
+
+    private boolean validateTimed(T sensorData) {
+        long start = System.nanoTime();
+        boolean valid = conforms(sensorData) && validateOwn(sensorData);
+        record(meters.validate, start);
+        return valid;
+    }
+
+    private boolean conforms(T sensorData) {
+        int violation = validator().firstViolation(sensorData);
+        if (violation >= 0) {
+            reject(violation);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean validateOwn(T sensorData) {
+        if (validate(sensorData)) {
+            return true;
+        }
+        meters.rejectedByHandler.increment();
+        return false;
+    }
+
+    private void processTimed(T sensorData) {
+        long start = System.nanoTime();
+        process(sensorData);
+        record(meters.process, start);
+    }
+
+    private static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void reject(int violation) {
+        meters.rejected(violation);
+        if (sampled(log)) {
+            log.debug("Rejected {} reading: {}", getTopicName(), validator().describe(violation));
+        }
+    }
+
+    /**
+     * Compiled on first use, shared by all handlers of the message type
+     */
+    protected ProtoValidator validator() {
+        if (validator == null) {
+            validator = ProtoValidator.of(SensorMessages.typeOf(getTopicName()));
+        }
+        return validator;
+    }
+
+    /**
+     * Sampled per-reading logging: true for one call in log-sample-rate while debug is enabled on the logger
+     */
+    protected boolean sampled(Logger logger) {
+        return logger.isDebugEnabled() && logTicks.getAndIncrement() % logSampleRate == 0;
+    }
+
+    /**
+     * Header-first decoding for handlers that need nothing of the reading but the rules: the record is
+     * not parsed, the rule engine decodes only the header, the constrained fields and the fields its
+     * rules read, and parses the message just for a rule that fires. deserialize() and process() are
+     * not called then; the constraints are checked on the decoded fields, validate() runs only with
+     * validatesParsed().
+     */
+    protected boolean headerFirst() {
+        return false;
+    }
+
+    /**
+     * Header-first handlers with checks of their own in validate(): every reading is parsed for it
+     */
+    protected boolean validatesParsed() {
+        return false;
+    }
+
     /**
      * Десериализует byte[] в конкретный Protobuf тип
      * Реализуется в каждом handler
      */
     protected abstract T deserialize(byte[] data) throws InvalidProtocolBufferException;
 
+    /**
+     * Checks of the handler's own, after the constraints of the .proto files have passed. A header-first
+     * handler calls it only with validatesParsed()
+     */
     protected boolean validate(T sensorData) {
-        return true;  // Можно переопределить в конкретных handlers
+        return true;
     }
 }
@@ -0,0 +1,27 @@
+package org.iot_platform.ruleengineservice.handler.common;
+
+import java.util.List;
+
+/**
+ * Result of one handleBatch() call.
+ *
+ * @param processed   records that went through process()
+ * @param skipped     records dropped as malformed or invalid, never retried
+ * @param malformed   indexes of the records that could not be parsed, the listener dead-letters them
+ * @param failedIndex index of the record processing stopped at, -1 if the whole batch was handled
+ * @param failure     cause of the failure at failedIndex
+ */
+public record BatchOutcome(int processed, int skipped, List<Integer> malformed, int failedIndex, Exception failure) {
+
+    public static BatchOutcome completed(int processed, int skipped, List<Integer> malformed) {
+        return new BatchOutcome(processed, skipped, malformed, -1, null);
+    }
+
+    public static BatchOutcome failed(int processed, int skipped, List<Integer> malformed, int failedIndex, Exception failure) {
+        return new BatchOutcome(processed, skipped, malformed, failedIndex, failure);
+    }
+
+    public boolean isFailed() {
+        return failedIndex >= 0;
+    }
+}
@@ -0,0 +1,61 @@
+package org.iot_platform.ruleengineservice.handler.common;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.iot_platform.protos.support.ProtoValidator;
+
+/**
+ * Meters of one handler: rule.engine.handler.stage{topic, stage} per pipeline stage
+ * (deserialize, validate, process, rules; ack is timed by the listener) and the validation rejects
+ * per violated constraint, plus those of the handler's own validate()
+ */
+final class HandlerMeters {
+
+    // пустой composite - no-op метры, пока реестр не внедрён
+    static final HandlerMeters NONE = new HandlerMeters("none", null, new CompositeMeterRegistry());
+
+    final Timer deserialize;
+    final Timer validate;
+    final Timer process;
+    final Timer rules;
+    final Counter rejectedByHandler;
+    private final Counter[] rejected;
+
+    HandlerMeters(String topic, ProtoValidator validator, MeterRegistry registry) {
+        deserialize = stage(topic, "deserialize", registry);
+        validate = stage(topic, "validate", registry);
+        process = stage(topic, "process", registry);
+        rules = stage(topic, "rules", registry);
+        rejected = new Counter[validator != null ? validator.size() : 0];
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = Counter.builder("rule.engine.handler.rejected")
+                    .description("Readings rejected by a constraint of the .proto files")
+                    .tag("topic", topic)
+                    .tag("field", validator.path(i))
+                    .tag("constraint", validator.kind(i))
+                    .register(registry);
+        }
+        rejectedByHandler = Counter.builder("rule.engine.handler.rejected")
+                .description("Readings rejected by validate() of the handler")
+                .tag("topic", topic)
+                .tag("field", "*")
+                .tag("constraint", "handler")
+                .register(registry);
+    }
+
+    void rejected(int constraint) {
+        if (constraint >= 0 && constraint < rejected.length) {
+            rejected[constraint].increment();
+        }
+    }
+
+    static Timer stage(String topic, String stage, MeterRegistry registry) {
+        return Timer.builder("rule.engine.handler.stage")
+                .description("Time per reading in one stage of the handler pipeline")
+                .tag("topic", topic)
+                .tag("stage", stage)
+                .register(registry);
+    }
+}
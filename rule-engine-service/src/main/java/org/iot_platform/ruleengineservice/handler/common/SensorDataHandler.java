@@ -2,13 +2,47 @@ package org.iot_platform.ruleengineservice.handler.common;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface SensorDataHandler<T> {
 
+    /**
+     * Partition unknown - per-device window rules are not evaluated
+     */
+    int NO_PARTITION = -1;
+
     /**
      * Process raw byte[] data
      */
     void handle(byte[] data) throws InvalidProtocolBufferException;
 
+    /**
+     * Process a record of the given partition; window rule state is owned per partition
+     */
+    default void handle(byte[] data, int partition) throws InvalidProtocolBufferException {
+        handle(data);
+    }
+
+    /**
+     * Process the records of one poll for this topic and partition, in order. Malformed records are skipped
+     * and reported, processing stops at the first record that fails - it goes to the retry topics and
+     * everything after it is redelivered.
+     */
+    default BatchOutcome handleBatch(List<byte[]> records, int partition) {
+        List<Integer> malformed = new ArrayList<>(0);
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                handle(records.get(i), partition);
+            } catch (InvalidProtocolBufferException e) {
+                malformed.add(i);
+            } catch (Exception e) {
+                return BatchOutcome.failed(i - malformed.size(), malformed.size(), malformed, i, e);
+            }
+        }
+        return BatchOutcome.completed(records.size() - malformed.size(), malformed.size(), malformed);
+    }
+
     /**
      * Process deserialized data
      */
@@ -0,0 +1,163 @@
+package org.iot_platform.ruleengineservice.retry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.iot_platform.ruleengineservice.rules.SensorMessages;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Replay mode: moves the records of the DLTs back into retry tier 1 (or the sensor topic when no tiers
+ * are configured), e.g. after the bug that failed them is fixed. Reads up to the DLT end at start and
+ * commits its progress in its own group, so a second run only replays what was dead-lettered since.
+ * Poison records are left in the DLT unless include-poison is set - they would only fail again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "rule-engine.dlt-replay.enabled", havingValue = "true")
+public class DltReplayer {
+
+    private static final String REPLAYED_FROM = "rule-engine-replayed-from";
+
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final RetryTopics retryTopics;
+
+    @Value("${rule-engine.dlt-replay.topics:}") // sensor topics, empty - all
+    private List<String> topics;
+
+    @Value("${rule-engine.dlt-replay.include-poison:false}")
+    private boolean includePoison;
+
+    @Value("${rule-engine.dlt-replay.group-id:rule-engine-dlt-replay}")
+    private String groupId;
+
+    private Thread worker;
+
+    @PostConstruct
+    public void start() {
+        worker = new Thread(this::replay, "dlt-replay");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void replay() {
+        List<String> sources = new ArrayList<>();
+        if (topics == null || topics.isEmpty()) {
+            SensorMessages.topics().forEach(sources::add);
+        } else {
+            topics.stream().filter(topic -> !topic.isBlank()).forEach(sources::add);
+        }
+
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        long replayed = 0;
+        long skipped = 0;
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(groupId, "rule-engine-dlt-replay", null, overrides)) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (String source : sources) {
+                List<PartitionInfo> infos = consumer.partitionsFor(retryTopics.dltTopic(source));
+                if (infos != null) {
+                    infos.forEach(info -> partitions.add(new TopicPartition(info.topic(), info.partition())));
+                }
+            }
+            consumer.assign(partitions);
+            Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions));
+            for (TopicPartition partition : partitions) {
+                OffsetAndMetadata offset = committed.get(partition);
+                if (offset != null) {
+                    consumer.seek(partition, offset);
+                } else {
+                    consumer.seekToBeginning(List.of(partition));
+                }
+            }
+            Map<TopicPartition, Long> end = consumer.endOffsets(partitions);
+            log.info("Replaying {} DLT partitions of {}", partitions.size(), sources);
+
+            while (!Thread.currentThread().isInterrupted() && !caughtUp(consumer, end)) {
+                List<CompletableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>();
+                Map<TopicPartition, OffsetAndMetadata> progress = new HashMap<>();
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(500))) {
+                    TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                    if (record.offset() >= end.get(partition)) {
+                        continue; // пришло после старта - до следующего запуска
+                    }
+                    progress.put(partition, new OffsetAndMetadata(record.offset() + 1));
+                    if (!includePoison && "poison".equals(FailureRouter.failure(record))) {
+                        skipped++;
+                        continue;
+                    }
+                    sends.add(kafkaTemplate.send(target(record)));
+                    replayed++;
+                }
+                CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+                if (!progress.isEmpty()) {
+                    consumer.commitSync(progress);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("DLT replay failed after {} records", replayed, e);
+            return;
+        }
+        log.info("DLT replay finished: replayed={}, poison left in DLT={}", replayed, skipped);
+    }
+
+    private ProducerRecord<String, byte[]> target(ConsumerRecord<String, byte[]> record) {
+        String source = FailureRouter.sourceTopic(record);
+        boolean retryTier = retryTopics.tiers() > 0;
+        ProducerRecord<String, byte[]> replay = new ProducerRecord<>(
+                retryTier ? retryTopics.retryTopic(source, 1) : source, record.key(), record.value());
+        if (retryTier) {
+            // новая попытка с первого уровня, без задержки
+            replay.headers().add(FailureRouter.SOURCE_TOPIC, bytes(source));
+            replay.headers().add(FailureRouter.ATTEMPT, bytes("1"));
+            replay.headers().add(FailureRouter.NOT_BEFORE, bytes("0"));
+        }
+        replay.headers().add(REPLAYED_FROM, bytes(record.topic() + "-" + record.partition() + "@" + record.offset()));
+        return replay;
+    }
+
+    private static boolean caughtUp(Consumer<String, byte[]> consumer, Map<TopicPartition, Long> end) {
+        for (Map.Entry<TopicPartition, Long> entry : end.entrySet()) {
+            if (consumer.position(entry.getKey()) < entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
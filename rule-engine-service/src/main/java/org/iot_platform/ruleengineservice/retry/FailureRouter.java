@@ -0,0 +1,151 @@
+package org.iot_platform.ruleengineservice.retry;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Moves failed records out of the way instead of retrying them in place: the next retry tier,
+ * or the DLT for poison records and records that failed every tier. Records keep their key, so
+ * a device's failed readings stay in order within a tier.
+ * <p>
+ * Besides the standard kafka_dlt-* headers (exception, original topic/partition/offset) every
+ * forwarded record carries:
+ * rule-engine-source-topic - sensor topic the record was first consumed from,
+ * rule-engine-attempt      - retry tiers passed so far,
+ * rule-engine-not-before   - epoch millis before which the retry tier must not process it,
+ * rule-engine-failure      - poison | error | exhausted.
+ */
+@Slf4j
+@Component
+public class FailureRouter {
+
+    public static final String SOURCE_TOPIC = "rule-engine-source-topic";
+    public static final String ATTEMPT = "rule-engine-attempt";
+    public static final String NOT_BEFORE = "rule-engine-not-before";
+    public static final String FAILURE = "rule-engine-failure";
+
+    private final RetryTopics retryTopics;
+    private final MeterRegistry meterRegistry;
+    private final DeadLetterPublishingRecoverer recoverer;
+
+    public FailureRouter(KafkaTemplate<String, byte[]> kafkaTemplate, RetryTopics retryTopics, MeterRegistry meterRegistry) {
+        this.retryTopics = retryTopics;
+        this.meterRegistry = meterRegistry;
+        this.recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate, this::destination);
+        this.recoverer.setHeadersFunction(this::headers);
+    }
+
+    /**
+     * Error handler for a listener container: optional quick in-place retries, then the record is
+     * forwarded and its offset committed, so the partition moves on. Poison records skip the retries.
+     */
+    public DefaultErrorHandler errorHandler(Duration retryInterval, long retryAttempts) {
+        DefaultErrorHandler handler = new DefaultErrorHandler(recoverer, new FixedBackOff(retryInterval.toMillis(), retryAttempts));
+        handler.addNotRetryableExceptions(PoisonRecordException.class, InvalidProtocolBufferException.class);
+        return handler;
+    }
+
+    /**
+     * Sends a record that was skipped without an exception reaching the container (batch mode) to the DLT
+     */
+    public void deadLetter(ConsumerRecord<?, ?> record, Exception cause) {
+        recoverer.accept(record, cause);
+    }
+
+    public static String sourceTopic(ConsumerRecord<?, ?> record) {
+        String source = text(record.headers(), SOURCE_TOPIC);
+        return source != null ? source : record.topic();
+    }
+
+    public static int attempt(ConsumerRecord<?, ?> record) {
+        String attempt = text(record.headers(), ATTEMPT);
+        return attempt != null ? Integer.parseInt(attempt) : 0;
+    }
+
+    public static long notBefore(ConsumerRecord<?, ?> record) {
+        String notBefore = text(record.headers(), NOT_BEFORE);
+        return notBefore != null ? Long.parseLong(notBefore) : 0;
+    }
+
+    public static String failure(ConsumerRecord<?, ?> record) {
+        return text(record.headers(), FAILURE);
+    }
+
+    static boolean isPoison(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PoisonRecordException || cause instanceof InvalidProtocolBufferException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TopicPartition destination(ConsumerRecord<?, ?> record, Exception exception) {
+        String source = sourceTopic(record);
+        String failure = failure(record, exception);
+        String destination = failure.equals("error")
+                ? retryTopics.retryTopic(source, attempt(record) + 1)
+                : retryTopics.dltTopic(source);
+        meterRegistry.counter("rule.engine.failures", "topic", source, "failure", failure).increment();
+        if (!failure.equals("error")) {
+            log.warn("Record {}-{}@{} ({}) sent to {}: {}", record.topic(), record.partition(), record.offset(),
+                    failure, destination, rootMessage(exception));
+        }
+        // -1: партицию выбирает ключ, порядок по устройству сохраняется
+        return new TopicPartition(destination, -1);
+    }
+
+    private Headers headers(ConsumerRecord<?, ?> record, Exception exception) {
+        String failure = failure(record, exception);
+        int attempt = attempt(record);
+        Headers headers = new RecordHeaders();
+        headers.add(SOURCE_TOPIC, bytes(sourceTopic(record)));
+        headers.add(FAILURE, bytes(failure));
+        if (failure.equals("error")) {
+            int tier = attempt + 1;
+            headers.add(ATTEMPT, bytes(String.valueOf(tier)));
+            headers.add(NOT_BEFORE, bytes(String.valueOf(System.currentTimeMillis() + retryTopics.delay(tier).toMillis())));
+        } else {
+            headers.add(ATTEMPT, bytes(String.valueOf(attempt)));
+        }
+        return headers;
+    }
+
+    private String failure(ConsumerRecord<?, ?> record, Exception exception) {
+        if (isPoison(exception)) {
+            return "poison";
+        }
+        return attempt(record) >= retryTopics.tiers() ? "exhausted" : "error";
+    }
+
+    private static String rootMessage(Throwable exception) {
+        Throwable root = exception;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return root.getClass().getSimpleName() + ": " + root.getMessage();
+    }
+
+    private static String text(Headers headers, String name) {
+        Header header = headers.lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,11 @@
+package org.iot_platform.ruleengineservice.retry;
+
+/**
+ * Record that can never be processed (e.g. not a valid protobuf): goes straight to the DLT, no retries
+ */
+public class PoisonRecordException extends RuntimeException {
+
+    public PoisonRecordException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
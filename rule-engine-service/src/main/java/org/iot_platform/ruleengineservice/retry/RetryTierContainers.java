@@ -0,0 +1,111 @@
+package org.iot_platform.ruleengineservice.retry;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One listener container per retry tier, subscribed to that tier of every sensor topic, in its own
+ * consumer group. A record that is not due yet is nack'ed: the consumer pauses until then without
+ * leaving the group, and healthy traffic of the sensor topics is never involved.
+ * <p>
+ * Retried readings run through the handler without a partition, so window rules (partition-owned
+ * state) skip them; stateless and room rules still apply.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RetryTierContainers implements SmartLifecycle {
+
+    private final Map<String, SensorDataHandler<?>> handlers;
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final RetryTopics retryTopics;
+    private final FailureRouter failureRouter;
+
+    @Value("${spring.kafka.consumer.group-id}")
+    private String groupId;
+
+    private final List<ConcurrentMessageListenerContainer<String, byte[]>> containers = new ArrayList<>();
+    private volatile boolean running;
+
+    @Override
+    public synchronized void start() {
+        for (int tier = 1; tier <= retryTopics.tiers(); tier++) {
+            ConcurrentMessageListenerContainer<String, byte[]> container = container(tier);
+            container.start();
+            containers.add(container);
+        }
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        containers.forEach(ConcurrentMessageListenerContainer::stop);
+        containers.clear();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private ConcurrentMessageListenerContainer<String, byte[]> container(int tier) {
+        int currentTier = tier;
+        String[] topics = handlers.keySet().stream()
+                .map(topic -> retryTopics.retryTopic(topic, currentTier))
+                .toArray(String[]::new);
+
+        ContainerProperties containerProperties = new ContainerProperties(topics);
+        containerProperties.setGroupId(groupId + "-retry");
+        containerProperties.setClientId("rule-engine-retry-" + tier);
+        containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        containerProperties.setMessageListener(listener());
+
+        ConcurrentMessageListenerContainer<String, byte[]> container =
+                new ConcurrentMessageListenerContainer<>(consumerFactory, containerProperties);
+        container.setBeanName("retry-listener-" + tier);
+        container.setCommonErrorHandler(failureRouter.errorHandler(Duration.ZERO, 0));
+
+        log.info("Retry tier {}: delay {}, topics {}", tier, retryTopics.delay(tier), String.join(", ", topics));
+        return container;
+    }
+
+    private AcknowledgingMessageListener<String, byte[]> listener() {
+        return (record, acknowledgment) -> {
+            long wait = FailureRouter.notBefore(record) - System.currentTimeMillis();
+            if (wait > 0) {
+                // запись и всё после неё придут снова после паузы
+                acknowledgment.nack(Duration.ofMillis(wait));
+                return;
+            }
+            String source = FailureRouter.sourceTopic(record);
+            SensorDataHandler<?> handler = handlers.get(source);
+            if (handler == null) {
+                log.warn("No handler for source topic {} of retried record {}-{}@{}, dropping it",
+                        source, record.topic(), record.partition(), record.offset());
+                acknowledgment.acknowledge();
+                return;
+            }
+            try {
+                handler.handle(record.value());
+            } catch (InvalidProtocolBufferException e) {
+                throw new PoisonRecordException("Malformed " + source + " record", e);
+            }
+            acknowledgment.acknowledge();
+        };
+    }
+}
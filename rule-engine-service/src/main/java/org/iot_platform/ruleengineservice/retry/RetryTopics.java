@@ -0,0 +1,40 @@
+package org.iot_platform.ruleengineservice.retry;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Names and delays of the retry tiers: &lt;topic&gt;-retry-1 .. &lt;topic&gt;-retry-N, then &lt;topic&gt;-dlt.
+ * Tier N is consumed no earlier than delays[N-1] after the failure that sent the record there.
+ */
+@Component
+public class RetryTopics {
+
+    @Value("${rule-engine.retry.delays:5s,1m,10m}")
+    private List<Duration> delays;
+
+    @Value("${rule-engine.retry.dlt-suffix:-dlt}")
+    private String dltSuffix;
+
+    public int tiers() {
+        return delays.size();
+    }
+
+    /**
+     * @param tier 1..tiers()
+     */
+    public String retryTopic(String source, int tier) {
+        return source + "-retry-" + tier;
+    }
+
+    public Duration delay(int tier) {
+        return delays.get(tier - 1);
+    }
+
+    public String dltTopic(String source) {
+        return source + dltSuffix;
+    }
+}
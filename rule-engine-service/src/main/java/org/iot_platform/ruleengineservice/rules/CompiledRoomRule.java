@@ -0,0 +1,49 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import org.iot_platform.protos.alert.AlertSeverity;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Room rule ready for evaluation; index is its position in RoomRules and in every RoomState
+ */
+final class CompiledRoomRule {
+
+    final String id;
+    final int index;
+    final List<String> hotels;
+    final AlertSeverity severity;
+    final Predicate<RoomState> condition;
+    final long holdForMillis;
+    private final String[] templateText;
+    private final Function<RoomState, Object>[] templateValues;
+    final long cooldownMillis; // время последнего алерта хранит RoomState - уходит вместе с комнатой
+
+    CompiledRoomRule(String id, int index, List<String> hotels, AlertSeverity severity, Predicate<RoomState> condition,
+                     long holdForMillis, String[] templateText, Function<RoomState, Object>[] templateValues,
+                     long cooldownMillis) {
+        this.id = id;
+        this.index = index;
+        this.hotels = hotels;
+        this.severity = severity;
+        this.condition = condition;
+        this.holdForMillis = holdForMillis;
+        this.templateText = templateText;
+        this.templateValues = templateValues;
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    boolean appliesTo(String hotelId) {
+        return hotels.isEmpty() || hotels.contains(hotelId);
+    }
+
+    String message(RoomState state) {
+        StringBuilder text = new StringBuilder(templateText[0]);
+        for (int i = 0; i < templateValues.length; i++) {
+            text.append(templateValues[i].apply(state)).append(templateText[i + 1]);
+        }
+        return text.toString();
+    }
+}
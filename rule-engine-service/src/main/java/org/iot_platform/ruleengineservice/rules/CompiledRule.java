@@ -0,0 +1,78 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.google.protobuf.Message;
+import org.iot_platform.protos.alert.AlertSeverity;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Rule ready for evaluation: the condition is a tree of lambdas over the slots of the topic's schema.
+ * With a window the condition only selects the readings that enter the per-device window.
+ */
+final class CompiledRule {
+
+    final String id;
+    final String topic;
+    final List<String> hotels;
+    final AlertSeverity severity;
+    final Predicate<SensorView> condition;
+    private final String[] templateText;
+    private final Function<Message, Object>[] templateValues;
+    private final long cooldownMillis;
+    final CompiledWindow window;
+
+    // deviceId -> время последнего алерта; истёкшие удаляет RuleEngine (expireCooldowns)
+    private final ConcurrentMap<String, Long> lastAlert = new ConcurrentHashMap<>();
+
+    CompiledRule(String id, String topic, List<String> hotels, AlertSeverity severity, Predicate<SensorView> condition,
+                 String[] templateText, Function<Message, Object>[] templateValues, long cooldownMillis,
+                 CompiledWindow window) {
+        this.id = id;
+        this.topic = topic;
+        this.hotels = hotels;
+        this.severity = severity;
+        this.condition = condition;
+        this.templateText = templateText;
+        this.templateValues = templateValues;
+        this.cooldownMillis = cooldownMillis;
+        this.window = window;
+    }
+
+    /**
+     * @return false while the device is within the cooldown of its previous alert
+     */
+    boolean tryFire(String deviceId, long now) {
+        if (cooldownMillis <= 0) {
+            return true;
+        }
+        Long previous = lastAlert.get(deviceId);
+        if (previous != null && now - previous < cooldownMillis) {
+            return false;
+        }
+        lastAlert.put(deviceId, now);
+        return true;
+    }
+
+    /**
+     * Drops the devices whose cooldown is over: they may fire again anyway, keeping them only grows the map
+     */
+    void expireCooldowns(long now) {
+        lastAlert.values().removeIf(previous -> now - previous >= cooldownMillis);
+    }
+
+    /**
+     * Renders the template; placeholders read the full message, so a header-first view is parsed here
+     */
+    String message(SensorView view) {
+        Message data = view.message();
+        StringBuilder text = new StringBuilder(templateText[0]);
+        for (int i = 0; i < templateValues.length; i++) {
+            text.append(templateValues[i].apply(data)).append(templateText[i + 1]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import java.util.function.DoublePredicate;
+
+/**
+ * Window part of a stateful rule.
+ * <p>
+ * Readings are downsampled into time buckets of size / (capacity - 1), one sample per bucket, so the
+ * ring of a device always covers the whole window whatever the reading rate. The sample of a bucket
+ * is merged by the aggregate: min / max of the bucket, its reading count for COUNT, otherwise its
+ * latest reading.
+ *
+ * @param key identifies the window state; changes whenever the window definition changes,
+ *            so a reloaded rule with a different window starts from empty series
+ * @param field slot of the windowed field in the topic's TopicSchema
+ */
+record CompiledWindow(
+        String key,
+        int field,
+        long sizeMillis,
+        RuleDefinition.WindowType type,
+        RuleDefinition.Aggregate aggregate,
+        DoublePredicate test,
+        long minSpanMillis,
+        int capacity
+) {
+
+    /**
+     * Adds the reading and evaluates the window
+     *
+     * @return true when the window condition holds
+     */
+    boolean update(DeviceSeries series, int slot, long time, SensorView view) {
+        double value = aggregate == RuleDefinition.Aggregate.COUNT ? 1 : view.number(field);
+        if (type == RuleDefinition.WindowType.TUMBLING) {
+            long start = time - Math.floorMod(time, sizeMillis);
+            long current = series.windowStart(slot);
+            boolean fired = false;
+            if (current != Long.MIN_VALUE && start > current && series.size(slot) > 0) {
+                // окно закрылось - оцениваем его и начинаем новое
+                fired = test.test(aggregate(series, slot));
+                series.clear(slot);
+            }
+            if (start >= current) {
+                series.windowStart(slot, start);
+                add(series, slot, time, value);
+            }
+            return fired;
+        }
+
+        add(series, slot, time, value);
+        series.evictBefore(slot, time - sizeMillis);
+        if (series.span(slot) < minSpanMillis) {
+            return false;
+        }
+        return test.test(aggregate(series, slot));
+    }
+
+    long bucketMillis() {
+        return bucketMillis(sizeMillis, capacity);
+    }
+
+    /**
+     * capacity - 1 buckets cover the window, the last sample is the bucket being filled
+     */
+    static long bucketMillis(long sizeMillis, int capacity) {
+        return (sizeMillis + capacity - 2) / (capacity - 1);
+    }
+
+    private void add(DeviceSeries series, int slot, long time, double value) {
+        if (series.size(slot) > 0) {
+            long last = series.lastTime(slot);
+            long bucket = bucketMillis();
+            // опоздавшее показание тоже сливается с последней корзиной
+            if (Math.floorDiv(time, bucket) <= Math.floorDiv(last, bucket)) {
+                series.replaceLast(slot, Math.max(time, last), merge(series.lastValue(slot), value));
+                return;
+            }
+        }
+        series.add(slot, time, value);
+    }
+
+    private double merge(double sample, double value) {
+        return switch (aggregate) {
+            case MIN -> Math.min(sample, value);
+            case MAX -> Math.max(sample, value);
+            case COUNT -> sample + value;
+            default -> value;
+        };
+    }
+
+    private double aggregate(DeviceSeries series, int slot) {
+        // для COUNT сэмпл корзины - число показаний в ней
+        return aggregate == RuleDefinition.Aggregate.COUNT ? series.sum(slot) : series.aggregate(slot, aggregate);
+    }
+}
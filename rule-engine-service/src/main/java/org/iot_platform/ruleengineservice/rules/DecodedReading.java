@@ -0,0 +1,23 @@
+package org.iot_platform.ruleengineservice.rules;
+
+/**
+ * Raw record decoded header-first by RuleEngine.decode(): the header, the constrained fields and the
+ * fields the rules read. Bound to the rules that were active when it was decoded, so a reload in
+ * between does not shift its slots.
+ */
+public final class DecodedReading {
+
+    final RuleSet rules;
+    final TopicSchema schema;
+    final SensorView view;
+
+    DecodedReading(RuleSet rules, TopicSchema schema, SensorView view) {
+        this.rules = rules;
+        this.schema = schema;
+        this.view = view;
+    }
+
+    public String topic() {
+        return schema.topic;
+    }
+}
@@ -0,0 +1,237 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-device ring buffers of (timestamp, value) for one window rule in one partition.
+ * Device ids are interned into slots; all samples live in two flat primitive arrays.
+ * Not thread-safe: guarded by the lock of its partition in WindowStateStore, which the key-parallel
+ * workers of the partition share.
+ */
+final class DeviceSeries {
+
+    private static final int INITIAL_DEVICES = 64;
+
+    private final int capacity;
+    private final int maxDevices;
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    private String[] deviceIds;
+    private long[] times;
+    private double[] values;
+    private int[] heads;
+    private int[] sizes;
+    // начало текущего окна для tumbling
+    private long[] windowStarts;
+
+    DeviceSeries(int capacity, int maxDevices) {
+        this.capacity = capacity;
+        this.maxDevices = maxDevices;
+        allocate(INITIAL_DEVICES);
+    }
+
+    /**
+     * @return slot of the device, -1 when the partition already tracks max-devices
+     */
+    int slot(String deviceId) {
+        Integer slot = slots.get(deviceId);
+        if (slot != null) {
+            return slot;
+        }
+        int next = slots.size();
+        if (next >= maxDevices) {
+            return -1;
+        }
+        if (next == heads.length) {
+            allocate(Math.min(heads.length * 2, maxDevices));
+        }
+        slots.put(deviceId, next);
+        deviceIds[next] = deviceId;
+        windowStarts[next] = Long.MIN_VALUE;
+        return next;
+    }
+
+    void add(int slot, long time, double value) {
+        int base = slot * capacity;
+        int size = sizes[slot];
+        int index = (heads[slot] + size) % capacity;
+        times[base + index] = time;
+        values[base + index] = value;
+        if (size < capacity) {
+            sizes[slot] = size + 1;
+        } else {
+            heads[slot] = (heads[slot] + 1) % capacity;
+        }
+    }
+
+    /**
+     * Replaces the newest sample, the slot must not be empty
+     */
+    void replaceLast(int slot, long time, double value) {
+        int index = slot * capacity + (heads[slot] + sizes[slot] - 1) % capacity;
+        times[index] = time;
+        values[index] = value;
+    }
+
+    long lastTime(int slot) {
+        return times[slot * capacity + (heads[slot] + sizes[slot] - 1) % capacity];
+    }
+
+    double lastValue(int slot) {
+        return values[slot * capacity + (heads[slot] + sizes[slot] - 1) % capacity];
+    }
+
+    void evictBefore(int slot, long time) {
+        int base = slot * capacity;
+        while (sizes[slot] > 0 && times[base + heads[slot]] < time) {
+            heads[slot] = (heads[slot] + 1) % capacity;
+            sizes[slot]--;
+        }
+    }
+
+    void clear(int slot) {
+        heads[slot] = 0;
+        sizes[slot] = 0;
+    }
+
+    int size(int slot) {
+        return sizes[slot];
+    }
+
+    /**
+     * Time covered by the samples of the device
+     */
+    long span(int slot) {
+        int size = sizes[slot];
+        if (size == 0) {
+            return 0;
+        }
+        int base = slot * capacity;
+        return times[base + (heads[slot] + size - 1) % capacity] - times[base + heads[slot]];
+    }
+
+    long windowStart(int slot) {
+        return windowStarts[slot];
+    }
+
+    void windowStart(int slot, long start) {
+        windowStarts[slot] = start;
+    }
+
+    double aggregate(int slot, RuleDefinition.Aggregate aggregate) {
+        int size = sizes[slot];
+        if (size == 0) {
+            return Double.NaN;
+        }
+        int base = slot * capacity;
+        int head = heads[slot];
+        if (aggregate == RuleDefinition.Aggregate.COUNT) {
+            return size;
+        }
+        if (aggregate == RuleDefinition.Aggregate.DELTA) {
+            return values[base + (head + size - 1) % capacity] - values[base + head];
+        }
+        if (aggregate == RuleDefinition.Aggregate.SLOPE) {
+            return slopePerMinute(base, head, size);
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            double value = values[base + (head + i) % capacity];
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+        }
+        return switch (aggregate) {
+            case MIN -> min;
+            case MAX -> max;
+            default -> sum / size;
+        };
+    }
+
+    double sum(int slot) {
+        int base = slot * capacity;
+        double sum = 0;
+        for (int i = 0; i < sizes[slot]; i++) {
+            sum += values[base + (heads[slot] + i) % capacity];
+        }
+        return sum;
+    }
+
+    int devices() {
+        return slots.size();
+    }
+
+    String deviceId(int slot) {
+        return deviceIds[slot];
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Writes the device's window start and samples, oldest first (snapshots and changelog values)
+     */
+    void write(int slot, DataOutput out) throws IOException {
+        int base = slot * capacity;
+        int size = sizes[slot];
+        out.writeLong(windowStarts[slot]);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            int index = base + (heads[slot] + i) % capacity;
+            out.writeLong(times[index]);
+            out.writeDouble(values[index]);
+        }
+    }
+
+    /**
+     * Replaces the device's samples with ones written by {@link #write}
+     */
+    void read(int slot, DataInput in) throws IOException {
+        clear(slot);
+        windowStarts[slot] = in.readLong();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            add(slot, in.readLong(), in.readDouble());
+        }
+    }
+
+    private double slopePerMinute(int base, int head, int size) {
+        if (size < 2) {
+            return 0;
+        }
+        // время относительно первой точки, в минутах - без потери точности на epoch millis
+        long origin = times[base + head];
+        double sumT = 0;
+        double sumV = 0;
+        double sumTT = 0;
+        double sumTV = 0;
+        for (int i = 0; i < size; i++) {
+            int index = base + (head + i) % capacity;
+            double t = (times[index] - origin) / 60_000d;
+            double v = values[index];
+            sumT += t;
+            sumV += v;
+            sumTT += t * t;
+            sumTV += t * v;
+        }
+        double denominator = size * sumTT - sumT * sumT;
+        return denominator == 0 ? 0 : (size * sumTV - sumT * sumV) / denominator;
+    }
+
+    private void allocate(int devices) {
+        deviceIds = deviceIds == null ? new String[devices] : Arrays.copyOf(deviceIds, devices);
+        times = times == null ? new long[devices * capacity] : Arrays.copyOf(times, devices * capacity);
+        values = values == null ? new double[devices * capacity] : Arrays.copyOf(values, devices * capacity);
+        heads = heads == null ? new int[devices] : Arrays.copyOf(heads, devices);
+        sizes = sizes == null ? new int[devices] : Arrays.copyOf(sizes, devices);
+        windowStarts = windowStarts == null ? new long[devices] : Arrays.copyOf(windowStarts, devices);
+    }
+}
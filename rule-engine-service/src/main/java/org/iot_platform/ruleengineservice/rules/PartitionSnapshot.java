@@ -0,0 +1,90 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local snapshot of one partition's window state, written to a temp file and moved into place.
+ * <p>
+ * file:   int magic | int version | long changelogOffset | int seriesCount | series...
+ * series: utf windowKey | int capacity | int devices | (utf deviceId | device samples)...
+ * The changelog offset is the last changelog entry already contained in the snapshot.
+ */
+final class PartitionSnapshot {
+
+    private static final int MAGIC = 0x52534e50; // "RSNP"
+    private static final int VERSION = 1;
+
+    final long changelogOffset;
+    final Map<String, DeviceSeries> series;
+
+    PartitionSnapshot(long changelogOffset, Map<String, DeviceSeries> series) {
+        this.changelogOffset = changelogOffset;
+        this.series = series;
+    }
+
+    /**
+     * @return bytes written
+     */
+    static long write(Path file, long changelogOffset, Map<String, DeviceSeries> series) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(changelogOffset);
+            out.writeInt(series.size());
+            for (Map.Entry<String, DeviceSeries> entry : series.entrySet()) {
+                DeviceSeries deviceSeries = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeInt(deviceSeries.capacity());
+                out.writeInt(deviceSeries.devices());
+                for (int slot = 0; slot < deviceSeries.devices(); slot++) {
+                    out.writeUTF(deviceSeries.deviceId(slot));
+                    deviceSeries.write(slot, out);
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(file);
+    }
+
+    /**
+     * @return the snapshot, null if there is none
+     */
+    static PartitionSnapshot read(Path file, int maxDevices) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a state snapshot of this version: " + file);
+            }
+            long changelogOffset = in.readLong();
+            int count = in.readInt();
+            Map<String, DeviceSeries> series = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                DeviceSeries deviceSeries = new DeviceSeries(in.readInt(), maxDevices);
+                int devices = in.readInt();
+                for (int d = 0; d < devices; d++) {
+                    int slot = deviceSeries.slot(in.readUTF());
+                    if (slot < 0) {
+                        throw new IOException("Snapshot " + file + " has more devices than max-devices-per-partition");
+                    }
+                    deviceSeries.read(slot, in);
+                }
+                series.put(key, deviceSeries);
+            }
+            return new PartitionSnapshot(changelogOffset, series);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import org.iot_platform.protos.alert.AlertSeverity;
+
+import java.util.List;
+
+/**
+ * Rule over the joined latest readings of one room (rooms section of the rules file).
+ * Condition fields are topic-qualified: motion_data.room_status, energy_data.current_power_w, ...
+ * A reading older than rule-engine.rooms.ttl counts as missing and fails its comparison.
+ *
+ * @param holdFor  the condition must hold continuously this long before the rule fires, e.g. 20m
+ * @param message  alert text; {hotel}, {room} and {topic.field} placeholders
+ * @param cooldown minimal time between two alerts of the rule for one room
+ */
+public record RoomRuleDefinition(
+        String id,
+        Boolean enabled,
+        List<String> hotels,
+        AlertSeverity severity,
+        RuleDefinition.Condition when,
+        String holdFor,
+        String message,
+        String cooldown
+) {
+}
@@ -0,0 +1,52 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled rooms section: the signals joined per room and the rules over them.
+ * Only the topics some room rule reads are joined at all.
+ */
+final class RoomRules {
+
+    static final RoomRules EMPTY = new RoomRules(List.of(), List.of());
+
+    private final RoomSignal[] signals;
+    private final CompiledRoomRule[] rules;
+    private final Map<String, int[]> byTopic = new HashMap<>();
+
+    RoomRules(List<RoomSignal> signals, List<CompiledRoomRule> rules) {
+        this.signals = signals.toArray(RoomSignal[]::new);
+        this.rules = rules.toArray(CompiledRoomRule[]::new);
+        Map<String, List<Integer>> indexes = new HashMap<>();
+        for (int i = 0; i < this.signals.length; i++) {
+            indexes.computeIfAbsent(this.signals[i].topic(), topic -> new ArrayList<>()).add(i);
+        }
+        indexes.forEach((topic, list) -> byTopic.put(topic, list.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * @return indexes of the topic's signals, null if no room rule reads the topic
+     */
+    int[] signals(String topic) {
+        return byTopic.get(topic);
+    }
+
+    RoomSignal signal(int index) {
+        return signals[index];
+    }
+
+    int signalCount() {
+        return signals.length;
+    }
+
+    CompiledRoomRule[] rules() {
+        return rules;
+    }
+
+    int size() {
+        return rules.length;
+    }
+}
@@ -0,0 +1,26 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+/**
+ * One joined value of a room: a numeric field of one sensor topic, e.g. energy_data.current_power_w
+ *
+ * @param slot the field's slot in the topic's TopicSchema
+ */
+record RoomSignal(String name, String topic, FieldDescriptor field, int slot) {
+
+    Object format(double value) {
+        if (Double.isNaN(value)) {
+            return "n/a";
+        }
+        if (field.getJavaType() == FieldDescriptor.JavaType.ENUM) {
+            EnumValueDescriptor enumValue = field.getEnumType().findValueByNumber((int) value);
+            return enumValue != null ? enumValue.getName() : (int) value;
+        }
+        if (field.getJavaType() == FieldDescriptor.JavaType.BOOLEAN) {
+            return value != 0;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,95 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import java.util.Arrays;
+
+/**
+ * Latest value of every joined signal of one room plus, per room rule, since when its condition holds
+ * and when it last alerted.
+ * Readings of one room arrive from several topic containers, callers synchronize on the state.
+ * The clock is the newest reading time (header.timestamp), so replays evaluate like live traffic.
+ */
+final class RoomState {
+
+    private static final long NOT_HELD = Long.MIN_VALUE;
+    private static final long NEVER = Long.MIN_VALUE;
+
+    final RoomRules rules;
+    final String key;
+    final String hotelId;
+    final String roomNumber;
+    private final long ttlMillis;
+    private final double[] values;
+    private final long[] times;
+    private final long[] heldSince;
+    private final long[] lastAlert;
+    private long clock;
+    private volatile long lastSeen;
+
+    RoomState(RoomRules rules, String key, String hotelId, String roomNumber, long ttlMillis) {
+        this.rules = rules;
+        this.key = key;
+        this.hotelId = hotelId;
+        this.roomNumber = roomNumber;
+        this.ttlMillis = ttlMillis;
+        this.values = new double[rules.signalCount()];
+        this.times = new long[rules.signalCount()];
+        this.heldSince = new long[rules.size()];
+        this.lastAlert = new long[rules.size()];
+        Arrays.fill(times, Long.MIN_VALUE);
+        Arrays.fill(heldSince, NOT_HELD);
+        Arrays.fill(lastAlert, NEVER);
+        this.lastSeen = System.currentTimeMillis();
+    }
+
+    void update(int[] signals, SensorView view, long time, long now) {
+        for (int signal : signals) {
+            values[signal] = view.number(rules.signal(signal).slot());
+            times[signal] = time;
+        }
+        clock = Math.max(clock, time);
+        lastSeen = now;
+    }
+
+    /**
+     * @return the signal's latest value, NaN if it was never seen or is older than the ttl
+     */
+    double value(int signal) {
+        long time = times[signal];
+        return time != Long.MIN_VALUE && clock - time <= ttlMillis ? values[signal] : Double.NaN;
+    }
+
+    /**
+     * Evaluates the rule at the current clock
+     *
+     * @return for how long the condition has held, -1 if it does not hold
+     */
+    long hold(CompiledRoomRule rule) {
+        if (!rule.condition.test(this)) {
+            heldSince[rule.index] = NOT_HELD;
+            return -1;
+        }
+        if (heldSince[rule.index] == NOT_HELD) {
+            heldSince[rule.index] = clock;
+        }
+        return clock - heldSince[rule.index];
+    }
+
+    /**
+     * @return false while the room is within the cooldown of the rule's previous alert
+     */
+    boolean tryFire(CompiledRoomRule rule, long now) {
+        if (rule.cooldownMillis <= 0) {
+            return true;
+        }
+        long previous = lastAlert[rule.index];
+        if (previous != NEVER && now - previous < rule.cooldownMillis) {
+            return false;
+        }
+        lastAlert[rule.index] = now;
+        return true;
+    }
+
+    long lastSeen() {
+        return lastSeen;
+    }
+}
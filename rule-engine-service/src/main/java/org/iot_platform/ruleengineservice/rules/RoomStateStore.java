@@ -0,0 +1,109 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Join state of the room rules, one RoomState per hotelId/roomNumber. Bounded two ways:
+ * rooms without readings for the ttl are swept out, and beyond max-rooms new rooms are not joined
+ * (rule.engine.rooms.rejected) until the sweep frees space.
+ * <p>
+ * Sensor topics are consumed by different containers, so unlike window state this map is shared
+ * between listener threads; each room is locked only for its own update.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RoomStateStore {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rule-engine.rooms.max-rooms:20000}")
+    private int maxRooms;
+
+    @Value("${rule-engine.rooms.ttl:15m}") // also the age after which a signal counts as missing
+    private Duration ttl;
+
+    @Value("${rule-engine.rooms.sweep-interval:1m}")
+    private Duration sweepInterval;
+
+    private final ConcurrentMap<String, RoomState> rooms = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+    private Counter rejected;
+    private Counter evicted;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("rule.engine.rooms", rooms, ConcurrentMap::size)
+                .description("Rooms with join state")
+                .register(meterRegistry);
+        rejected = Counter.builder("rule.engine.rooms.rejected")
+                .description("Readings of new rooms not joined because max-rooms was reached")
+                .register(meterRegistry);
+        evicted = Counter.builder("rule.engine.rooms.evicted")
+                .description("Rooms dropped after the ttl without readings")
+                .register(meterRegistry);
+        sweeper = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("rooms-sweep-"));
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * State of the reading's room for the current room rules, null if the room can't be joined
+     */
+    RoomState state(String hotelId, String roomNumber, RoomRules rules) {
+        if (hotelId.isEmpty() || roomNumber.isEmpty()) {
+            return null;
+        }
+        String key = hotelId + "/" + roomNumber;
+        RoomState state = rooms.get(key);
+        if (state != null && state.rules == rules) {
+            return state;
+        }
+        if (state == null && rooms.size() >= maxRooms) {
+            rejected.increment();
+            return null;
+        }
+        // новая комната или правила перезагружены - состояние под новую схему сигналов
+        return rooms.compute(key, (k, current) -> current != null && current.rules == rules
+                ? current
+                : new RoomState(rules, k, hotelId, roomNumber, ttl.toMillis()));
+    }
+
+    private void sweep() {
+        long deadline = System.currentTimeMillis() - ttl.toMillis();
+        int removed = 0;
+        for (Iterator<RoomState> it = rooms.values().iterator(); it.hasNext(); ) {
+            if (it.next().lastSeen() < deadline) {
+                it.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            evicted.increment(removed);
+            log.debug("Evicted {} idle rooms, {} left", removed, rooms.size());
+        }
+    }
+}
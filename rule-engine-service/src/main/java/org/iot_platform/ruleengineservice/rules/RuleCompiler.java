@@ -0,0 +1,338 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import org.iot_platform.protos.alert.AlertSeverity;
+import org.iot_platform.protos.support.FieldAccessors;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.DoublePredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns rule definitions into CompiledRule: field paths are resolved to slots of the topic's
+ * TopicSchema and enum names to numbers once, here. A definition that does not fit its message type
+ * fails the whole load.
+ */
+final class RuleCompiler {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([a-z0-9_.]+)}");
+
+    private RuleCompiler() {
+    }
+
+    /**
+     * @param schemas schema per sensor topic, the fields the rule reads are added to its topic's one
+     */
+    static CompiledRule compile(RuleDefinition definition, Map<String, TopicSchema> schemas) {
+        if (definition.id() == null || definition.id().isBlank()) {
+            throw new IllegalArgumentException("Rule without id");
+        }
+        try {
+            TopicSchema schema = schema(definition.sensor(), schemas);
+            Class<? extends Message> type = schema.type();
+            if (definition.when() == null && definition.window() == null) {
+                throw new IllegalArgumentException("no 'when' condition");
+            }
+            Predicate<SensorView> condition = definition.when() != null
+                    ? condition(definition.when(), part -> leaf(schema, part))
+                    : view -> true;
+            CompiledWindow window = definition.window() != null ? window(schema, definition) : null;
+
+            List<String> text = new ArrayList<>();
+            List<Function<Message, Object>> values = new ArrayList<>();
+            String template = definition.message() != null ? definition.message() : definition.id();
+            Matcher matcher = PLACEHOLDER.matcher(template);
+            int last = 0;
+            while (matcher.find()) {
+                text.add(template.substring(last, matcher.start()));
+                values.add(FieldAccessors.object(type, matcher.group(1)));
+                last = matcher.end();
+            }
+            text.add(template.substring(last));
+
+            return new CompiledRule(
+                    definition.id(),
+                    definition.sensor(),
+                    definition.hotels() != null ? List.copyOf(definition.hotels()) : List.of(),
+                    definition.severity() != null ? definition.severity() : AlertSeverity.WARNING,
+                    condition,
+                    text.toArray(String[]::new),
+                    toArray(values),
+                    definition.cooldown() != null ? DurationStyle.detectAndParse(definition.cooldown()).toMillis() : 0,
+                    window);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Rule " + definition.id() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Room rule: leaves read the room's joined signals, every topic.field used becomes a signal
+     *
+     * @param index   position of the rule in RoomRules
+     * @param signals signals of the rules compiled so far, new ones are appended
+     */
+    static CompiledRoomRule compileRoom(RoomRuleDefinition definition, int index, List<RoomSignal> signals,
+                                        Map<String, TopicSchema> schemas) {
+        if (definition.id() == null || definition.id().isBlank()) {
+            throw new IllegalArgumentException("Room rule without id");
+        }
+        try {
+            if (definition.when() == null) {
+                throw new IllegalArgumentException("no 'when' condition");
+            }
+            Predicate<RoomState> condition = condition(definition.when(), part -> roomLeaf(part, signals, schemas));
+
+            List<String> text = new ArrayList<>();
+            List<Function<RoomState, Object>> values = new ArrayList<>();
+            String template = definition.message() != null ? definition.message() : definition.id();
+            Matcher matcher = PLACEHOLDER.matcher(template);
+            int last = 0;
+            while (matcher.find()) {
+                text.add(template.substring(last, matcher.start()));
+                values.add(roomPlaceholder(matcher.group(1), signals, schemas));
+                last = matcher.end();
+            }
+            text.add(template.substring(last));
+
+            return new CompiledRoomRule(
+                    definition.id(),
+                    index,
+                    definition.hotels() != null ? List.copyOf(definition.hotels()) : List.of(),
+                    definition.severity() != null ? definition.severity() : AlertSeverity.WARNING,
+                    condition,
+                    definition.holdFor() != null ? DurationStyle.detectAndParse(definition.holdFor()).toMillis() : 0,
+                    text.toArray(String[]::new),
+                    toArray(values),
+                    definition.cooldown() != null ? DurationStyle.detectAndParse(definition.cooldown()).toMillis() : 0);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Room rule " + definition.id() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static <T> Predicate<T> condition(RuleDefinition.Condition condition,
+                                              Function<RuleDefinition.Condition, Predicate<T>> leaves) {
+        if (condition.all() != null) {
+            Predicate<T>[] parts = children(condition.all(), leaves);
+            return value -> {
+                for (Predicate<T> part : parts) {
+                    if (!part.test(value)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        if (condition.any() != null) {
+            Predicate<T>[] parts = children(condition.any(), leaves);
+            return value -> {
+                for (Predicate<T> part : parts) {
+                    if (part.test(value)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+        if (condition.not() != null) {
+            return condition(condition.not(), leaves).negate();
+        }
+        if (condition.field() == null || condition.op() == null) {
+            throw new IllegalArgumentException("condition needs all / any / not or field + op");
+        }
+        return leaves.apply(condition);
+    }
+
+    private static Predicate<SensorView> leaf(TopicSchema schema, RuleDefinition.Condition condition) {
+        FieldDescriptor field = schema.field(condition.field());
+        int slot = schema.slot(condition.field());
+        if (field.getJavaType() == FieldDescriptor.JavaType.STRING) {
+            return switch (condition.op()) {
+                case EQ -> {
+                    String value = String.valueOf(condition.value());
+                    yield view -> value.equals(view.string(slot));
+                }
+                case NE -> {
+                    String value = String.valueOf(condition.value());
+                    yield view -> !value.equals(view.string(slot));
+                }
+                case IN -> {
+                    List<String> values = requireValues(condition).stream().map(String::valueOf).toList();
+                    yield view -> values.contains(view.string(slot));
+                }
+                default -> throw new IllegalArgumentException(condition.op() + " is not applicable to string field " + condition.field());
+            };
+        }
+        if (!isNumeric(field)) {
+            throw new IllegalArgumentException("Field " + condition.field() + " is not numeric: " + field.getJavaType());
+        }
+        DoublePredicate test = numericTest(field, condition);
+        return view -> test.test(view.number(slot));
+    }
+
+    private static Predicate<RoomState> roomLeaf(RuleDefinition.Condition condition, List<RoomSignal> signals,
+                                                 Map<String, TopicSchema> schemas) {
+        int index = signal(condition.field(), signals, schemas);
+        DoublePredicate test = numericTest(signals.get(index).field(), condition);
+        return state -> {
+            double value = state.value(index);
+            // нет свежего значения - сравнение не выполняется
+            return !Double.isNaN(value) && test.test(value);
+        };
+    }
+
+    private static Function<RoomState, Object> roomPlaceholder(String name, List<RoomSignal> signals,
+                                                               Map<String, TopicSchema> schemas) {
+        if (name.equals("hotel")) {
+            return state -> state.hotelId;
+        }
+        if (name.equals("room")) {
+            return state -> state.roomNumber;
+        }
+        int index = signal(name, signals, schemas);
+        RoomSignal signal = signals.get(index);
+        return state -> signal.format(state.value(index));
+    }
+
+    /**
+     * @return index of the topic.field signal, appended to the list when first used
+     */
+    private static int signal(String name, List<RoomSignal> signals, Map<String, TopicSchema> schemas) {
+        for (int i = 0; i < signals.size(); i++) {
+            if (signals.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        int dot = name.indexOf('.');
+        TopicSchema schema = dot > 0 ? schemas.get(name.substring(0, dot)) : null;
+        if (schema == null) {
+            throw new IllegalArgumentException("room field " + name + " must start with a sensor topic, e.g. energy_data.current_power_w");
+        }
+        String path = name.substring(dot + 1);
+        FieldDescriptor field = schema.field(path);
+        if (!isNumeric(field)) {
+            throw new IllegalArgumentException(field.getJavaType() + " field " + name + " can't be joined per room");
+        }
+        signals.add(new RoomSignal(name, schema.topic, field, schema.slot(path)));
+        return signals.size() - 1;
+    }
+
+    private static DoublePredicate numericTest(FieldDescriptor field, RuleDefinition.Condition condition) {
+        if (condition.op() == RuleDefinition.Operator.IN) {
+            double[] values = requireValues(condition).stream().mapToDouble(value -> number(field, value)).toArray();
+            return v -> {
+                for (double value : values) {
+                    if (v == value) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+        return compare(condition.op(), number(field, Objects.requireNonNull(condition.value(), "value of " + condition.field())));
+    }
+
+    private static CompiledWindow window(TopicSchema schema, RuleDefinition definition) {
+        RuleDefinition.Window window = definition.window();
+        if (window.field() == null || window.size() == null || window.aggregate() == null
+                || window.op() == null || window.value() == null) {
+            throw new IllegalArgumentException("window needs field, size, aggregate, op and value");
+        }
+        if (window.op() == RuleDefinition.Operator.IN) {
+            throw new IllegalArgumentException("'in' is not applicable to a window aggregate");
+        }
+        RuleDefinition.WindowType windowType = window.type() != null ? window.type() : RuleDefinition.WindowType.SLIDING;
+        long size = DurationStyle.detectAndParse(window.size()).toMillis();
+        long minSpan = window.minSpan() != null ? DurationStyle.detectAndParse(window.minSpan()).toMillis() : 0;
+        int capacity = window.capacity() != null ? window.capacity() : 64;
+        if (size <= 0 || capacity < 2) {
+            throw new IllegalArgumentException("window size must be positive and capacity at least 2");
+        }
+        long bucket = CompiledWindow.bucketMillis(size, capacity);
+        if (windowType == RuleDefinition.WindowType.SLIDING && minSpan > size - bucket) {
+            throw new IllegalArgumentException("min-span " + window.minSpan() + " is never reached: readings are kept in "
+                    + (capacity - 1) + " buckets of " + bucket + " ms, raise capacity or lower min-span");
+        }
+        if (!isNumeric(schema.field(window.field()))) {
+            throw new IllegalArgumentException("window field " + window.field() + " is not numeric");
+        }
+        // разрешение сэмплов тоже часть состояния: state со старым разрешением не подхватывается
+        String key = definition.id() + "|" + window + "|" + bucket + "ms";
+        return new CompiledWindow(key, schema.slot(window.field()), size, windowType,
+                window.aggregate(), compare(window.op(), window.value()), minSpan, capacity);
+    }
+
+    private static TopicSchema schema(String topic, Map<String, TopicSchema> schemas) {
+        TopicSchema schema = topic != null ? schemas.get(topic) : null;
+        if (schema == null) {
+            throw new IllegalArgumentException("unknown sensor topic " + topic);
+        }
+        return schema;
+    }
+
+    /**
+     * Same set as FieldAccessors.numeric: numbers, bool and enums
+     */
+    private static boolean isNumeric(FieldDescriptor field) {
+        return switch (field.getJavaType()) {
+            case INT, LONG, FLOAT, DOUBLE, BOOLEAN, ENUM -> true;
+            default -> false;
+        };
+    }
+
+    private static DoublePredicate compare(RuleDefinition.Operator op, double value) {
+        return switch (op) {
+            case LT -> v -> v < value;
+            case LE -> v -> v <= value;
+            case GT -> v -> v > value;
+            case GE -> v -> v >= value;
+            case EQ -> v -> v == value;
+            case NE -> v -> v != value;
+            case IN -> throw new IllegalArgumentException("'in' needs a list of values");
+        };
+    }
+
+    private static double number(FieldDescriptor field, Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof Boolean bool) {
+            return bool ? 1 : 0;
+        }
+        String text = String.valueOf(value);
+        if (field.getJavaType() == FieldDescriptor.JavaType.ENUM) {
+            EnumValueDescriptor enumValue = field.getEnumType().findValueByName(text);
+            if (enumValue == null) {
+                throw new IllegalArgumentException("unknown " + field.getEnumType().getName() + " value " + text);
+            }
+            return enumValue.getNumber();
+        }
+        return Double.parseDouble(text);
+    }
+
+    private static List<Object> requireValues(RuleDefinition.Condition condition) {
+        if (condition.values() == null || condition.values().isEmpty()) {
+            throw new IllegalArgumentException("'in' on " + condition.field() + " needs values");
+        }
+        return condition.values();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Predicate<T>[] children(List<RuleDefinition.Condition> conditions,
+                                               Function<RuleDefinition.Condition, Predicate<T>> leaves) {
+        return conditions.stream().map(child -> condition(child, leaves)).toArray(Predicate[]::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Function<T, Object>[] toArray(List<Function<T, Object>> values) {
+        return values.toArray(Function[]::new);
+    }
+}
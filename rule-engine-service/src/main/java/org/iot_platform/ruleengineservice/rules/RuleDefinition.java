@@ -0,0 +1,93 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import org.iot_platform.protos.alert.AlertSeverity;
+
+import java.util.List;
+
+/**
+ * Rules file model (YAML, kebab-case keys).
+ *
+ * @param sensor   topic of the sensor messages the rule applies to (climate_data, energy_data, ...)
+ * @param hotels   hotel ids the rule is limited to, empty - every hotel
+ * @param message  alert text, {field.path} placeholders are replaced with the reading's values
+ * @param cooldown minimal time between two alerts of the rule for one device, e.g. 5m
+ * @param window   makes the rule stateful: 'when' only filters which readings enter the window
+ */
+public record RuleDefinition(
+        String id,
+        Boolean enabled,
+        String sensor,
+        List<String> hotels,
+        AlertSeverity severity,
+        Condition when,
+        String message,
+        String cooldown,
+        Window window
+) {
+
+    public record RulesFile(List<RuleDefinition> rules, List<RoomRuleDefinition> rooms) {
+    }
+
+    /**
+     * Either a group (all / any / not) or a leaf comparing one field: field + op + value(s).
+     * Bool fields compare as 0/1, enum fields by number or by value name.
+     */
+    public record Condition(
+            List<Condition> all,
+            List<Condition> any,
+            Condition not,
+            String field,
+            Operator op,
+            Object value,
+            List<Object> values
+    ) {
+    }
+
+    /**
+     * Per-device window over one numeric field, timed by header.timestamp.
+     *
+     * @param size     window length, e.g. 10m
+     * @param type     sliding (evaluated on every reading) or tumbling (evaluated once per closed window)
+     * @param minSpan  sliding: the window must already cover this much time, e.g. 29m for "above X for 30 minutes"
+     * @param capacity samples kept per device (default 64); readings are downsampled into time buckets
+     *                 of size / (capacity - 1), so the samples always cover the window
+     */
+    public record Window(
+            String field,
+            String size,
+            WindowType type,
+            Aggregate aggregate,
+            Operator op,
+            Double value,
+            String minSpan,
+            Integer capacity
+    ) {
+    }
+
+    public enum WindowType {
+        SLIDING,
+        TUMBLING
+    }
+
+    /**
+     * SLOPE - least squares trend per minute, DELTA - last minus first reading
+     */
+    public enum Aggregate {
+        COUNT,
+        MIN,
+        MAX,
+        AVG,
+        SLOPE,
+        DELTA
+    }
+
+    public enum Operator {
+        LT,
+        LE,
+        GT,
+        GE,
+        EQ,
+        NE,
+        IN
+    }
+}
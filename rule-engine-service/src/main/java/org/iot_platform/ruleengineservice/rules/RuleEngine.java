@@ -0,0 +1,306 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.iot_platform.protos.alert.Alert;
+import org.iot_platform.ruleengineservice.alert.AlertPublisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Declarative alert rules (rule-engine.rules.file). The file is compiled into a RuleSet and
+ * swapped in atomically; it is re-read whenever its modification time changes, so rules change
+ * without restarting the consumers. A file that fails to compile leaves the current rules active.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RuleEngine {
+
+    private static final ObjectMapper YAML = JsonMapper.builder(new YAMLFactory())
+            .propertyNamingStrategy(PropertyNamingStrategies.KEBAB_CASE)
+            .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+            .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private final AlertPublisher alertPublisher;
+    private final WindowStateStore windowStateStore;
+    private final RoomStateStore roomStateStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rule-engine.rules.file:classpath:rules/rules.yml}")
+    private Resource rulesFile;
+
+    @Value("${rule-engine.rules.reload-interval:10s}") // 0 - no hot reload
+    private Duration reloadInterval;
+
+    @Value("${rule-engine.rules.cooldown-sweep-interval:1m}")
+    private Duration cooldownSweepInterval;
+
+    // topic -> sensor time to evaluation
+    private final Map<String, Timer> latency = new ConcurrentHashMap<>();
+
+    private volatile RuleSet rules = RuleSet.EMPTY;
+    private long loadedModified = -1;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() throws IOException {
+        publish(load());
+        loadedModified = lastModified();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("rules-"));
+        if (!reloadInterval.isZero()) {
+            scheduler.scheduleWithFixedDelay(this::reloadIfChanged,
+                    reloadInterval.toMillis(), reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::expireCooldowns,
+                cooldownSweepInterval.toMillis(), cooldownSweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Evaluates the rules of the topic and the message's hotel, publishing an alert per matching rule.
+     * Window rules need the partition (state is owned per partition) and are skipped without it.
+     */
+    public void evaluate(String topic, int partition, Message message) {
+        RuleSet current = rules;
+        RuleSet.TopicRules topicRules = current.forTopic(topic);
+        if (topicRules != null) {
+            evaluate(current, topicRules, topic, partition, topicRules.schema().view(message));
+        }
+    }
+
+    /**
+     * Header-first decoding of a raw record: only the header, the constrained fields and the fields the
+     * topic's rules read. Every sensor topic has a schema, with or without rules, so the constraints
+     * and malformed records are checked the same way whatever the rules file holds.
+     *
+     * @throws InvalidProtocolBufferException when the decoded part of the record is malformed
+     */
+    public DecodedReading decode(String topic, byte[] data) throws InvalidProtocolBufferException {
+        RuleSet current = rules;
+        TopicSchema schema = current.schema(topic);
+        if (schema == null) {
+            throw new IllegalArgumentException("unknown sensor topic " + topic);
+        }
+        return new DecodedReading(current, schema, schema.decode(data));
+    }
+
+    /**
+     * @return index of the first violated ProtoValidator constraint of the reading's message, -1 when valid
+     */
+    public int violation(DecodedReading reading) {
+        return reading.schema.violation(reading.view);
+    }
+
+    /**
+     * The parsed message of a decoded reading, for checks the schema cannot express
+     *
+     * @throws InvalidProtocolBufferException when the part of the record the decoding skipped is malformed
+     */
+    public Message message(DecodedReading reading) throws InvalidProtocolBufferException {
+        try {
+            return reading.view.message();
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof InvalidProtocolBufferException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Evaluates a decoded reading (validated by the caller); the message is parsed just for a rule that fires
+     */
+    public void evaluate(DecodedReading reading, int partition) {
+        RuleSet.TopicRules topicRules = reading.rules.forTopic(reading.topic());
+        if (topicRules != null) {
+            evaluate(reading.rules, topicRules, reading.topic(), partition, reading.view);
+        }
+    }
+
+    private void evaluate(RuleSet current, RuleSet.TopicRules topicRules, String topic, int partition, SensorView view) {
+        evaluate(topicRules.common(), topicRules.schema(), topic, partition, view);
+        evaluate(topicRules.forHotel(view.hotelId()), topicRules.schema(), topic, partition, view);
+        if (topicRules.roomSignals() != null) {
+            correlate(current.rooms(), topicRules.roomSignals(), topicRules.schema(), topic, view);
+        }
+        long timestamp = view.timestamp();
+        if (timestamp > 0) {
+            latency(topic).record(Math.max(0, System.currentTimeMillis() - timestamp), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Timer latency(String topic) {
+        return latency.computeIfAbsent(topic, t -> Timer.builder("rule.engine.reading.latency")
+                .description("End-to-end latency: reading time on the device (header.timestamp) to rule evaluation")
+                .tag("topic", t)
+                .register(meterRegistry));
+    }
+
+    private void evaluate(CompiledRule[] candidates, TopicSchema schema, String topic, int partition, SensorView view) {
+        for (CompiledRule rule : candidates) {
+            if (!rule.condition.test(view)) {
+                continue;
+            }
+            if (rule.window != null && !updateWindow(rule.window, topic, partition, view)) {
+                continue;
+            }
+            long now = System.currentTimeMillis();
+            if (!rule.tryFire(view.deviceId(), now)) {
+                continue;
+            }
+            alertPublisher.publish(Alert.newBuilder()
+                    .setRuleId(rule.id)
+                    .setSeverity(rule.severity)
+                    .setHeader(schema.header(view.message()))
+                    .setSourceTopic(topic)
+                    .setMessage(rule.message(view))
+                    .setTriggeredAt(now)
+                    .build());
+        }
+    }
+
+    /**
+     * Joins the reading into its room and evaluates the room rules of the hotel at the room's clock
+     */
+    private void correlate(RoomRules rooms, int[] signals, TopicSchema schema, String topic, SensorView view) {
+        RoomState state = roomStateStore.state(view.hotelId(), view.roomNumber(), rooms);
+        if (state == null) {
+            return;
+        }
+        List<Alert> alerts = null;
+        synchronized (state) {
+            state.update(signals, view, view.timestamp(), System.currentTimeMillis());
+            for (CompiledRoomRule rule : rooms.rules()) {
+                if (!rule.appliesTo(state.hotelId) || state.hold(rule) < rule.holdForMillis) {
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                if (!state.tryFire(rule, now)) {
+                    continue;
+                }
+                if (alerts == null) {
+                    alerts = new ArrayList<>(1);
+                }
+                alerts.add(Alert.newBuilder()
+                        .setRuleId(rule.id)
+                        .setSeverity(rule.severity)
+                        .setHeader(schema.header(view.message()))
+                        .setSourceTopic(topic)
+                        .setMessage(rule.message(state))
+                        .setTriggeredAt(now)
+                        .build());
+            }
+        }
+        if (alerts != null) {
+            alerts.forEach(alertPublisher::publish);
+        }
+    }
+
+    private boolean updateWindow(CompiledWindow window, String topic, int partition, SensorView view) {
+        return partition >= 0
+                && windowStateStore.update(topic, partition, window, view.deviceId(), view.timestamp(), view);
+    }
+
+    /**
+     * Per-device cooldowns of the rules; room cooldowns live in RoomState and go with the room
+     */
+    private void expireCooldowns() {
+        long now = System.currentTimeMillis();
+        for (CompiledRule rule : rules.rules()) {
+            rule.expireCooldowns(now);
+        }
+    }
+
+    private void reloadIfChanged() {
+        try {
+            long modified = lastModified();
+            if (modified == loadedModified) {
+                return;
+            }
+            loadedModified = modified;
+            publish(load());
+        } catch (Exception e) {
+            log.error("Failed to reload rules from {}, keeping {} active rules", rulesFile, rules.size(), e);
+        }
+    }
+
+    private void publish(RuleSet loaded) {
+        rules = loaded;
+        // окна изменённых и удалённых правил больше не нужны
+        windowStateStore.retainWindows(loaded.windowKeys());
+    }
+
+    private RuleSet load() throws IOException {
+        RuleDefinition.RulesFile file;
+        try (InputStream in = rulesFile.getInputStream()) {
+            file = YAML.readValue(in, RuleDefinition.RulesFile.class);
+        }
+        Map<String, TopicSchema> schemas = new HashMap<>();
+        SensorMessages.topics().forEach(topic -> schemas.put(topic, new TopicSchema(topic)));
+        List<CompiledRule> compiled = new ArrayList<>();
+        if (file != null && file.rules() != null) {
+            for (RuleDefinition definition : file.rules()) {
+                if (definition.enabled() == null || definition.enabled()) {
+                    compiled.add(RuleCompiler.compile(definition, schemas));
+                }
+            }
+        }
+        List<RoomSignal> signals = new ArrayList<>();
+        List<CompiledRoomRule> roomRules = new ArrayList<>();
+        if (file != null && file.rooms() != null) {
+            for (RoomRuleDefinition definition : file.rooms()) {
+                if (definition.enabled() == null || definition.enabled()) {
+                    roomRules.add(RuleCompiler.compileRoom(definition, roomRules.size(), signals, schemas));
+                }
+            }
+        }
+        log.info("Loaded {} rules and {} room rules over {} joined signals from {}",
+                compiled.size(), roomRules.size(), signals.size(), rulesFile);
+        schemas.values().forEach(TopicSchema::freeze);
+        return new RuleSet(compiled, roomRules.isEmpty() ? RoomRules.EMPTY : new RoomRules(signals, roomRules), schemas);
+    }
+
+    private long lastModified() {
+        try {
+            return rulesFile.lastModified();
+        } catch (IOException e) {
+            // например ресурс внутри jar - перезагрузки нет
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable rule index: topic -> rules for every hotel + rules per hotel id.
+ * A message only evaluates the rules of its topic and its own hotel, plus the room rules
+ * when its topic is one of the joined ones.
+ */
+final class RuleSet {
+
+    static final RuleSet EMPTY = new RuleSet(List.of(), RoomRules.EMPTY, Map.of());
+
+    private static final CompiledRule[] NONE = new CompiledRule[0];
+
+    private final CompiledRule[] all;
+    private final Map<String, TopicRules> topics = new HashMap<>();
+    private final Map<String, TopicSchema> schemas;
+    private final RoomRules rooms;
+    private final int size;
+
+    /**
+     * @param schemas frozen schema per topic the rules were compiled against, for every sensor topic
+     */
+    RuleSet(List<CompiledRule> rules, RoomRules rooms, Map<String, TopicSchema> schemas) {
+        Map<String, List<CompiledRule>> common = new HashMap<>();
+        Map<String, Map<String, List<CompiledRule>>> byHotel = new HashMap<>();
+        for (CompiledRule rule : rules) {
+            if (rule.hotels.isEmpty()) {
+                common.computeIfAbsent(rule.topic, topic -> new ArrayList<>()).add(rule);
+            } else {
+                for (String hotel : rule.hotels) {
+                    byHotel.computeIfAbsent(rule.topic, topic -> new HashMap<>())
+                            .computeIfAbsent(hotel, h -> new ArrayList<>())
+                            .add(rule);
+                }
+            }
+        }
+        for (String topic : SensorMessages.topics()) {
+            List<CompiledRule> commonRules = common.getOrDefault(topic, List.of());
+            Map<String, List<CompiledRule>> hotelRules = byHotel.getOrDefault(topic, Map.of());
+            int[] roomSignals = rooms.signals(topic);
+            if (commonRules.isEmpty() && hotelRules.isEmpty() && roomSignals == null) {
+                continue;
+            }
+            Map<String, CompiledRule[]> hotels = new HashMap<>();
+            hotelRules.forEach((hotel, list) -> hotels.put(hotel, list.toArray(CompiledRule[]::new)));
+            topics.put(topic, new TopicRules(schemas.get(topic), commonRules.toArray(CompiledRule[]::new), hotels, roomSignals));
+        }
+        this.all = rules.toArray(CompiledRule[]::new);
+        this.schemas = Map.copyOf(schemas);
+        this.rooms = rooms;
+        this.size = rules.size() + rooms.size();
+    }
+
+    TopicRules forTopic(String topic) {
+        return topics.get(topic);
+    }
+
+    /**
+     * @return schema of the topic, also for a topic without rules
+     */
+    TopicSchema schema(String topic) {
+        return schemas.get(topic);
+    }
+
+    CompiledRule[] rules() {
+        return all;
+    }
+
+    /**
+     * @return keys of the windows the rules keep state for
+     */
+    Set<String> windowKeys() {
+        Set<String> keys = new HashSet<>();
+        for (CompiledRule rule : all) {
+            if (rule.window != null) {
+                keys.add(rule.window.key());
+            }
+        }
+        return keys;
+    }
+
+    RoomRules rooms() {
+        return rooms;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param roomSignals signals of the room join read from this topic, null if none
+     */
+    record TopicRules(TopicSchema schema, CompiledRule[] common, Map<String, CompiledRule[]> byHotel,
+                      int[] roomSignals) {
+
+        CompiledRule[] forHotel(String hotelId) {
+            return byHotel.getOrDefault(hotelId, NONE);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.google.protobuf.Message;
+import org.iot_platform.protos.air_quality_sensor.AirQualityData;
+import org.iot_platform.protos.climate_data.ClimateData;
+import org.iot_platform.protos.energy_meter_data.EnergyMeterData;
+import org.iot_platform.protos.motion_sensor_data.MotionSensorData;
+import org.iot_platform.protos.water_leak_data.WaterLeakData;
+import org.iot_platform.protos.water_meter_data.WaterMeterData;
+
+import java.util.Map;
+
+/**
+ * Sensor topics consumed by the rule engine and the protobuf message each one carries
+ */
+public final class SensorMessages {
+
+    private static final Map<String, Message> BY_TOPIC = Map.of(
+            "climate_data", ClimateData.getDefaultInstance(),
+            "air_quality_data", AirQualityData.getDefaultInstance(),
+            "motion_data", MotionSensorData.getDefaultInstance(),
+            "energy_data", EnergyMeterData.getDefaultInstance(),
+            "water_leak_data", WaterLeakData.getDefaultInstance(),
+            "water_meter_data", WaterMeterData.getDefaultInstance()
+    );
+
+    private SensorMessages() {
+    }
+
+    /**
+     * @return message class of the topic, null for an unknown topic
+     */
+    public static Class<? extends Message> typeOf(String topic) {
+        Message message = BY_TOPIC.get(topic);
+        return message != null ? message.getClass() : null;
+    }
+
+    /**
+     * @return default instance of the topic's message (parser, descriptor), null for an unknown topic
+     */
+    public static Message prototypeOf(String topic) {
+        return BY_TOPIC.get(topic);
+    }
+
+    public static Iterable<String> topics() {
+        return BY_TOPIC.keySet();
+    }
+}
@@ -0,0 +1,33 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.google.protobuf.Message;
+
+/**
+ * What the rules read of a reading: the fields of the topic's TopicSchema by slot. Backed either by
+ * a parsed message or by the projection decoded from the raw bytes; in the second case the message
+ * itself is only parsed if something needs it (a rule fired and renders its alert).
+ */
+interface SensorView {
+
+    double number(int slot);
+
+    String string(int slot);
+
+    default String hotelId() {
+        return string(TopicSchema.HOTEL_ID);
+    }
+
+    default String deviceId() {
+        return string(TopicSchema.DEVICE_ID);
+    }
+
+    default String roomNumber() {
+        return string(TopicSchema.ROOM_NUMBER);
+    }
+
+    default long timestamp() {
+        return (long) number(TopicSchema.TIMESTAMP);
+    }
+
+    Message message();
+}
@@ -0,0 +1,103 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Compacted changelog of the window state: one topic per sensor topic (&lt;topic&gt;&lt;suffix&gt;),
+ * partition N holds the state of source partition N. Key - window key + device id, value - the
+ * device's series; compaction keeps the latest series of every device.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "rule-engine.state.durable", havingValue = "true", matchIfMissing = true)
+public class StateChangelog {
+
+    static final char KEY_SEPARATOR = '\u0000';
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+
+    @Value("${rule-engine.state.changelog-suffix:-rule-state-changelog}")
+    private String suffix;
+
+    @Value("${rule-engine.state.restore-poll-timeout:500ms}")
+    private Duration pollTimeout;
+
+    public String topic(String sourceTopic) {
+        return sourceTopic + suffix;
+    }
+
+    /**
+     * Sends one entry; acked tracks the highest offset written for the partition
+     */
+    void send(TopicPartition source, String key, byte[] value, AtomicLong acked) {
+        kafkaTemplate.send(topic(source.topic()), source.partition(), key, value)
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        log.warn("Failed to write state changelog of {}", source, ex);
+                    } else {
+                        acked.accumulateAndGet(result.getRecordMetadata().offset(), Math::max);
+                    }
+                });
+    }
+
+    /**
+     * Blocks until every sent entry is acknowledged
+     */
+    void flush() {
+        kafkaTemplate.flush();
+    }
+
+    /**
+     * Reads the changelog partition of the source partition from the offset to its current end
+     *
+     * @param from    first offset to read (the one after the snapshot)
+     * @param discard called before reading from the beginning when from is past the end -
+     *                the changelog was recreated and the snapshot does not belong to it
+     * @return offset of the last entry read, from - 1 if there was nothing new
+     */
+    long restore(TopicPartition source, long from, Runnable discard, BiConsumer<String, byte[]> apply) {
+        TopicPartition changelog = new TopicPartition(topic(source.topic()), source.partition());
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 5000);
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(null, "rule-engine-restore-", source.toString(), overrides)) {
+            List<TopicPartition> partitions = List.of(changelog);
+            consumer.assign(partitions);
+            long begin = consumer.beginningOffsets(partitions).get(changelog);
+            long end = consumer.endOffsets(partitions).get(changelog);
+            long start = Math.max(from, begin);
+            if (from > end) {
+                discard.run();
+                start = begin;
+            }
+            consumer.seek(changelog, start);
+            long last = start - 1;
+            while (consumer.position(changelog) < end) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(pollTimeout)) {
+                    if (record.value() != null) {
+                        apply.accept(record.key(), record.value());
+                    }
+                    last = record.offset();
+                }
+            }
+            return last;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.iot_platform.protos.sensor_common.SensorHeader;
+import org.iot_platform.protos.support.FieldAccessors;
+import org.iot_platform.protos.support.ProtoProjection;
+import org.iot_platform.protos.support.ProtoValidator;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Fields of one topic the loaded rules read, each under a slot: the header fields every reading
+ * needs (fixed slots), the fields with validation constraints (ProtoValidator) and the fields of the
+ * conditions, windows and room signals, added while the rules compile. Frozen before the RuleSet is
+ * published; then it decodes raw records header-first (ProtoProjection) or reads the same slots of an
+ * already parsed message.
+ */
+final class TopicSchema {
+
+    static final int HOTEL_ID = 0;
+    static final int DEVICE_ID = 1;
+    static final int ROOM_NUMBER = 2;
+    static final int TIMESTAMP = 3;
+
+    private static final List<String> HEADER = List.of(
+            "header.hotel_id", "header.device_id", "header.room_number", "header.timestamp");
+    private static final int MAX_SLOTS = 64;
+
+    final String topic;
+    private final Class<? extends Message> type;
+    private final Message prototype;
+    private final List<String> paths = new ArrayList<>(HEADER);
+    private final Function<Message, Object> header;
+    private final ProtoValidator validator;
+    private final int[] constraintSlots;
+
+    // после freeze()
+    private ProtoProjection projection;
+    private ToDoubleFunction<Message>[] numbers;
+    private Function<Message, Object>[] strings;
+
+    TopicSchema(String topic) {
+        this.topic = topic;
+        this.prototype = SensorMessages.prototypeOf(topic);
+        if (prototype == null) {
+            throw new IllegalArgumentException("unknown sensor topic " + topic);
+        }
+        this.type = prototype.getClass();
+        this.header = FieldAccessors.object(type, "header");
+        this.validator = ProtoValidator.of(type);
+        this.constraintSlots = new int[validator.size()];
+        for (int i = 0; i < constraintSlots.length; i++) {
+            constraintSlots[i] = slot(validator.path(i));
+        }
+    }
+
+    Class<? extends Message> type() {
+        return type;
+    }
+
+    FieldDescriptor field(String path) {
+        return FieldAccessors.field(type, path);
+    }
+
+    /**
+     * @return slot of the field, added when first used; only while the rules are compiled
+     */
+    int slot(String path) {
+        int slot = paths.indexOf(path);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (projection != null) {
+            throw new IllegalStateException("Schema of " + topic + " is frozen");
+        }
+        field(path); // неизвестное или repeated поле - ошибка компиляции правила
+        if (paths.size() == MAX_SLOTS) {
+            throw new IllegalArgumentException("rules read more than " + MAX_SLOTS + " fields of " + topic);
+        }
+        paths.add(path);
+        return paths.size() - 1;
+    }
+
+    int size() {
+        return paths.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    TopicSchema freeze() {
+        projection = ProtoProjection.of(FieldAccessors.descriptor(type), paths);
+        numbers = new ToDoubleFunction[paths.size()];
+        strings = new Function[paths.size()];
+        for (int slot = 0; slot < paths.size(); slot++) {
+            if (projection.isString(slot)) {
+                strings[slot] = FieldAccessors.object(type, paths.get(slot));
+            } else {
+                numbers[slot] = FieldAccessors.numeric(type, paths.get(slot));
+            }
+        }
+        return this;
+    }
+
+    SensorView view(Message message) {
+        return new MessageView(message);
+    }
+
+    /**
+     * Reads only the schema's fields of the record; the message is parsed on the view's first message() call
+     */
+    SensorView decode(byte[] data) throws InvalidProtocolBufferException {
+        DecodedView view = new DecodedView(data, new double[paths.size()], new String[paths.size()]);
+        projection.decode(data, view.numbers, view.strings);
+        return view;
+    }
+
+    /**
+     * Checks the view against the constraints of the topic's message
+     *
+     * @return index of the first violated ProtoValidator constraint, -1 when valid
+     */
+    int violation(SensorView view) {
+        for (int i = 0; i < constraintSlots.length; i++) {
+            int slot = constraintSlots[i];
+            boolean valid = validator.isString(i)
+                    ? validator.test(i, view.string(slot))
+                    : validator.test(i, view.number(slot));
+            if (!valid) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    SensorHeader header(Message message) {
+        return (SensorHeader) header.apply(message);
+    }
+
+    private final class MessageView implements SensorView {
+
+        private final Message message;
+
+        private MessageView(Message message) {
+            this.message = message;
+        }
+
+        @Override
+        public double number(int slot) {
+            return numbers[slot].applyAsDouble(message);
+        }
+
+        @Override
+        public String string(int slot) {
+            return (String) strings[slot].apply(message);
+        }
+
+        @Override
+        public Message message() {
+            return message;
+        }
+    }
+
+    private final class DecodedView implements SensorView {
+
+        private final byte[] data;
+        private final double[] numbers;
+        private final String[] strings;
+        private Message message;
+
+        private DecodedView(byte[] data, double[] numbers, String[] strings) {
+            this.data = data;
+            this.numbers = numbers;
+            this.strings = strings;
+        }
+
+        @Override
+        public double number(int slot) {
+            return numbers[slot];
+        }
+
+        @Override
+        public String string(int slot) {
+            return strings[slot];
+        }
+
+        @Override
+        public Message message() {
+            if (message == null) {
+                try {
+                    message = prototype.getParserForType().parseFrom(data);
+                } catch (InvalidProtocolBufferException e) {
+                    // начало записи было корректным, испорчен пропущенный хвост
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return message;
+        }
+    }
+}
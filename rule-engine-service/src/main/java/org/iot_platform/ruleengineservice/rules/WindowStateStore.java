@@ -0,0 +1,333 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Window rule state partitioned like the input: one PartitionState per assigned topic partition.
+ * A partition is consumed by one listener thread, or by several workers at once in key-parallel mode
+ * (different devices), so each state is locked for its update; the lock is uncontended otherwise.
+ * The map itself is only touched to look the partition up and on rebalance.
+ * <p>
+ * With rule-engine.state.durable the state survives restarts and rebalances: changed devices are
+ * written to the compacted changelog (StateChangelog) every flush-interval and the whole partition
+ * to a local snapshot every snapshot-interval. An assigned partition is restored from its snapshot
+ * plus the changelog entries written after it, so only the tail is replayed. Offsets of the input
+ * are committed independently, so after a crash a few readings may enter a window twice.
+ * Without it the state of revoked partitions is dropped and the new owner starts from scratch.
+ * <p>
+ * Series of windows no longer in the active RuleSet (a rule changed or removed) are dropped on restore
+ * and before every snapshot, so they are neither restored nor carried from snapshot to snapshot.
+ * <p>
+ * Flushes and snapshots run on the listener thread: inside update() when it processes the records itself,
+ * in checkpoint() once the poll is done in key-parallel mode - a snapshot under the lock would stall
+ * every worker of the partition.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WindowStateStore implements ConsumerRebalanceListener {
+
+    private final ObjectProvider<StateChangelog> changelogProvider;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<TopicPartition, PartitionState> partitions = new ConcurrentHashMap<>();
+
+    @Value("${rule-engine.windows.max-devices-per-partition:50000}")
+    private int maxDevices;
+
+    @Value("${rule-engine.state.dir:state}")
+    private String dir;
+
+    @Value("${rule-engine.state.flush-interval:5s}")
+    private Duration flushInterval;
+
+    @Value("${rule-engine.state.snapshot-interval:5m}")
+    private Duration snapshotInterval;
+
+    private StateChangelog changelog;
+    private volatile boolean deferred;
+    // ключи окон активного RuleSet; null - правила ещё не загружены, ничего не выбрасываем
+    private volatile Set<String> activeWindows;
+
+    @PostConstruct
+    public void start() {
+        changelog = changelogProvider.getIfAvailable();
+        Gauge.builder("rule.engine.state.devices", partitions,
+                        map -> map.values().stream().mapToInt(state -> state.devices).sum())
+                .description("Devices with window state in the assigned partitions (as of the last flush)")
+                .register(meterRegistry);
+        Gauge.builder("rule.engine.state.snapshot.bytes", partitions,
+                        map -> map.values().stream().mapToLong(state -> state.snapshotBytes).sum())
+                .description("Size of the local snapshots of the assigned partitions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Window state is {}", changelog != null ? "durable, snapshots in " + Path.of(dir).toAbsolutePath() : "in memory only");
+    }
+
+    /**
+     * Adds the reading to the device's window and evaluates it
+     *
+     * @return true when the window condition holds
+     */
+    boolean update(String topic, int partition, CompiledWindow window, String deviceId, long time, SensorView view) {
+        PartitionState state = partitions.computeIfAbsent(new TopicPartition(topic, partition), PartitionState::new);
+        synchronized (state) {
+            DeviceSeries series = state.series.computeIfAbsent(window.key(), key -> new DeviceSeries(window.capacity(), maxDevices));
+            int slot = series.slot(deviceId);
+            if (slot < 0) {
+                return false;
+            }
+            boolean fired = window.update(series, slot, time, view);
+            if (changelog != null) {
+                state.dirty.computeIfAbsent(window.key(), key -> new BitSet()).set(slot);
+                if (!deferred) {
+                    persistIfDue(state);
+                }
+            }
+            return fired;
+        }
+    }
+
+    /**
+     * Windows of the active rules; series of other windows are dropped on the next restore or snapshot
+     */
+    void retainWindows(Set<String> windowKeys) {
+        activeWindows = Set.copyOf(windowKeys);
+    }
+
+    /**
+     * Key-parallel mode: update() runs on the workers and leaves flushes and snapshots to checkpoint()
+     */
+    public void deferCheckpoints() {
+        deferred = true;
+    }
+
+    /**
+     * Writes the changed devices to the changelog, or a snapshot of the partition, when due.
+     * Called by the listener after the workers have finished the poll, so nobody waits for the lock.
+     */
+    public void checkpoint(String topic, int partition) {
+        if (changelog == null) {
+            return;
+        }
+        PartitionState state = partitions.get(new TopicPartition(topic, partition));
+        if (state != null) {
+            synchronized (state) {
+                persistIfDue(state);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> revoked) {
+        int dropped = 0;
+        for (TopicPartition partition : revoked) {
+            PartitionState state = partitions.remove(partition);
+            if (state == null) {
+                continue;
+            }
+            dropped++;
+            if (changelog != null) {
+                synchronized (state) {
+                    snapshot(state, System.currentTimeMillis());
+                }
+            }
+        }
+        if (dropped > 0) {
+            log.info("Released window state of {} revoked partitions", dropped);
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Collection<TopicPartition> lost) {
+        // партиция уже у другого владельца - ничего не пишем
+        lost.forEach(partitions::remove);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> assigned) {
+        if (changelog == null) {
+            return;
+        }
+        for (TopicPartition partition : assigned) {
+            if (SensorMessages.typeOf(partition.topic()) != null && !partitions.containsKey(partition)) {
+                restore(partition);
+            }
+        }
+    }
+
+    private void restore(TopicPartition partition) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        PartitionState state = new PartitionState(partition);
+        long from = 0;
+        int fromSnapshot = 0;
+        try {
+            PartitionSnapshot snapshot = PartitionSnapshot.read(file(partition), maxDevices);
+            if (snapshot != null) {
+                state.series.putAll(snapshot.series);
+                from = snapshot.changelogOffset + 1;
+                fromSnapshot = snapshot.series.values().stream().mapToInt(DeviceSeries::devices).sum();
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable window state snapshot of {}, restoring from the changelog", partition, e);
+            state.series.clear();
+        }
+
+        int[] entries = {0};
+        try {
+            long last = changelog.restore(partition, from, state.series::clear, (key, value) -> {
+                apply(state, key, value);
+                entries[0]++;
+            });
+            state.acked.set(last);
+        } catch (RuntimeException e) {
+            log.error("Failed to restore window state of {} from the changelog, continuing with the snapshot", partition, e);
+        }
+        prune(state);
+        long now = System.currentTimeMillis();
+        state.lastFlush = now;
+        // длинный хвост changelog - сразу новый снапшот, чтобы следующее восстановление было коротким
+        state.lastSnapshot = entries[0] > 0 ? 0 : now;
+        state.devices = state.series.values().stream().mapToInt(DeviceSeries::devices).sum();
+        partitions.put(partition, state);
+
+        long millis = sample.stop(Timer.builder("rule.engine.state.restore")
+                .description("Time to restore the window state of an assigned partition")
+                .tag("topic", partition.topic())
+                .register(meterRegistry)) / 1_000_000;
+        Counter.builder("rule.engine.state.restore.records")
+                .description("Changelog entries replayed on restore")
+                .tag("topic", partition.topic())
+                .register(meterRegistry)
+                .increment(entries[0]);
+        log.info("Restored window state of {} in {} ms: {} devices from snapshot, {} changelog entries",
+                partition, millis, fromSnapshot, entries[0]);
+    }
+
+    private void apply(PartitionState state, String key, byte[] value) {
+        int separator = key.indexOf(StateChangelog.KEY_SEPARATOR);
+        if (separator < 0) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+            int capacity = in.readInt();
+            DeviceSeries series = state.series.computeIfAbsent(key.substring(0, separator),
+                    windowKey -> new DeviceSeries(capacity, maxDevices));
+            int slot = series.slot(key.substring(separator + 1));
+            if (slot >= 0) {
+                series.read(slot, in);
+            }
+        } catch (IOException e) {
+            log.warn("Skipping malformed changelog entry of {}", state.partition, e);
+        }
+    }
+
+    private void persistIfDue(PartitionState state) {
+        long now = System.currentTimeMillis();
+        if (now - state.lastSnapshot >= snapshotInterval.toMillis()) {
+            snapshot(state, now);
+        } else if (now - state.lastFlush >= flushInterval.toMillis()) {
+            flush(state, now);
+        }
+    }
+
+    private void flush(PartitionState state, long now) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            for (Map.Entry<String, BitSet> entry : state.dirty.entrySet()) {
+                DeviceSeries series = state.series.get(entry.getKey());
+                BitSet slots = entry.getValue();
+                for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+                    bytes.reset();
+                    out.writeInt(series.capacity());
+                    series.write(slot, out);
+                    String key = entry.getKey() + StateChangelog.KEY_SEPARATOR + series.deviceId(slot);
+                    changelog.send(state.partition, key, bytes.toByteArray(), state.acked);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream не бросает
+        }
+        state.dirty.clear();
+        state.devices = state.series.values().stream().mapToInt(DeviceSeries::devices).sum();
+        state.lastFlush = now;
+    }
+
+    private void snapshot(PartitionState state, long now) {
+        prune(state);
+        flush(state, now);
+        changelog.flush();
+        try {
+            state.snapshotBytes = PartitionSnapshot.write(file(state.partition), state.acked.get(), state.series);
+        } catch (IOException e) {
+            log.warn("Failed to write window state snapshot of {}", state.partition, e);
+        }
+        state.lastSnapshot = now;
+    }
+
+    private void prune(PartitionState state) {
+        Set<String> active = activeWindows;
+        if (active == null) {
+            return;
+        }
+        int before = state.series.size();
+        if (state.series.keySet().retainAll(active)) {
+            state.dirty.keySet().retainAll(active);
+            state.devices = state.series.values().stream().mapToInt(DeviceSeries::devices).sum();
+            log.info("Dropped window state of {} inactive windows in {}", before - state.series.size(), state.partition);
+        }
+    }
+
+    private Path file(TopicPartition partition) {
+        return Path.of(dir, partition.topic() + "-" + partition.partition() + ".snapshot");
+    }
+
+    private static final class PartitionState {
+
+        private final TopicPartition partition;
+        // window key -> series; под замком состояния
+        private final Map<String, DeviceSeries> series = new HashMap<>();
+        // window key -> slots changed since the last flush
+        private final Map<String, BitSet> dirty = new HashMap<>();
+        // last changelog offset acknowledged for this partition (written by the producer thread)
+        private final AtomicLong acked = new AtomicLong(-1);
+        private long lastFlush = System.currentTimeMillis();
+        private long lastSnapshot = System.currentTimeMillis();
+        private volatile int devices;
+        private volatile long snapshotBytes;
+
+        private PartitionState(TopicPartition partition) {
+            this.partition = partition;
+        }
+    }
+}
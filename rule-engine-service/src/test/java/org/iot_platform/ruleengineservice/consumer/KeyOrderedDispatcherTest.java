@@ -0,0 +1,190 @@
+package org.iot_platform.ruleengineservice.consumer;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.iot_platform.ruleengineservice.handler.common.BatchOutcome;
+import org.iot_platform.ruleengineservice.handler.common.SensorDataHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ordering per key and the failure / malformed positions the listener commits and dead-letters by.
+ * Record values are "&lt;id&gt;" or "&lt;id&gt;|bad" (malformed) or "&lt;id&gt;|fail" (processing error).
+ */
+class KeyOrderedDispatcherTest {
+
+    private final RecordingHandler handler = new RecordingHandler();
+    private KeyOrderedDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.stop();
+    }
+
+    @Test
+    void recordsOfOneKeyKeepTheirOrder() {
+        dispatcher = dispatcher("key");
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String key = "h1/10" + (i % 8) + "/dev";
+            records.add(record(i, key, key + "#" + (i / 8)));
+        }
+
+        BatchOutcome outcome = dispatcher.dispatch(records, handler);
+
+        assertThat(outcome.isFailed()).isFalse();
+        assertThat(outcome.processed()).isEqualTo(400);
+        Map<String, List<Integer>> byKey = new HashMap<>();
+        for (String id : handler.handled) {
+            String[] parts = id.split("#");
+            byKey.computeIfAbsent(parts[0], key -> new ArrayList<>()).add(Integer.parseInt(parts[1]));
+        }
+        assertThat(byKey).hasSize(8);
+        byKey.values().forEach(sequence -> assertThat(sequence).isSorted().hasSize(50));
+    }
+
+    @Test
+    void failureStopsItsKeyAndReportsTheLowestPosition() {
+        dispatcher = dispatcher("key");
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, "a", "a0"),
+                record(1, "b", "b1"),
+                record(2, "a", "a2|fail"),
+                record(3, "b", "b3"),
+                record(4, "a", "a4"),
+                record(5, "b", "b5|fail"),
+                record(6, "c", "c6"));
+
+        BatchOutcome outcome = dispatcher.dispatch(records, handler);
+
+        assertThat(outcome.failedIndex()).isEqualTo(2);
+        assertThat(outcome.failure()).hasMessage("a2");
+        assertThat(outcome.processed()).isEqualTo(4);
+        // a4 стоит за упавшей a2 - не обрабатывается; b и c идут своим ходом
+        assertThat(handler.handled).containsExactlyInAnyOrder("a0", "b1", "b3", "c6");
+    }
+
+    @Test
+    void malformedAfterTheFailurePositionIsLeftToTheRedelivery() {
+        dispatcher = dispatcher("key");
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, "a", "a0|bad"),
+                record(1, "b", "b1|fail"),
+                record(2, "c", "c2|bad"),
+                record(3, "a", "a3"));
+
+        BatchOutcome outcome = dispatcher.dispatch(records, handler);
+
+        assertThat(outcome.failedIndex()).isEqualTo(1);
+        assertThat(outcome.malformed()).containsExactly(0);
+        assertThat(outcome.skipped()).isEqualTo(1);
+    }
+
+    @Test
+    void malformedOfAllKeysComeBackInPollOrder() {
+        dispatcher = dispatcher("key");
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, "a", "a0"),
+                record(1, "b", "b1|bad"),
+                record(2, "a", "a2|bad"),
+                record(3, "c", "c3"),
+                record(4, "b", "b4"));
+
+        BatchOutcome outcome = dispatcher.dispatch(records, handler);
+
+        assertThat(outcome.isFailed()).isFalse();
+        assertThat(outcome.malformed()).containsExactly(1, 2);
+        assertThat(outcome.processed()).isEqualTo(3);
+        // битая запись не останавливает свой ключ
+        assertThat(handler.handled).contains("b4");
+    }
+
+    @Test
+    void roomOrderingGroupsTheDevicesOfARoom() throws InterruptedException {
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, "h1/101/dev-1", "dev1|fail"),
+                record(1, "h1/101/dev-2", "dev2"),
+                record(2, "h1/102/dev-3", "dev3"));
+
+        dispatcher = dispatcher("room");
+        BatchOutcome byRoom = dispatcher.dispatch(records, handler);
+
+        assertThat(byRoom.failedIndex()).isZero();
+        assertThat(handler.handled).containsExactly("dev3");
+
+        handler.handled.clear();
+        dispatcher.stop();
+        dispatcher = dispatcher("key");
+        dispatcher.dispatch(records, handler);
+
+        assertThat(handler.handled).containsExactlyInAnyOrder("dev2", "dev3");
+    }
+
+    @Test
+    void recordsWithoutKeyAreOrderedPerPartition() {
+        dispatcher = dispatcher("key");
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                new ConsumerRecord<>("climate_data", 0, 0, null, bytes("p0|fail")),
+                new ConsumerRecord<>("climate_data", 0, 1, null, bytes("p0-next")),
+                new ConsumerRecord<>("climate_data", 1, 0, null, bytes("p1")));
+
+        BatchOutcome outcome = dispatcher.dispatch(records, handler);
+
+        assertThat(outcome.failedIndex()).isZero();
+        assertThat(handler.handled).containsExactly("p1");
+    }
+
+    private static KeyOrderedDispatcher dispatcher(String orderBy) {
+        KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dispatcher, "workers", 4);
+        ReflectionTestUtils.setField(dispatcher, "orderBy", orderBy);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    private static ConsumerRecord<String, byte[]> record(long offset, String key, String value) {
+        return new ConsumerRecord<>("climate_data", 0, offset, key, bytes(value));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class RecordingHandler implements SensorDataHandler<Object> {
+
+        private final Queue<String> handled = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void handle(byte[] data) throws InvalidProtocolBufferException {
+            String[] value = new String(data, StandardCharsets.UTF_8).split("\\|");
+            if (value.length > 1 && value[1].equals("bad")) {
+                throw new InvalidProtocolBufferException(value[0]);
+            }
+            if (value.length > 1 && value[1].equals("fail")) {
+                throw new IllegalStateException(value[0]);
+            }
+            handled.add(value[0]);
+        }
+
+        @Override
+        public void process(Object sensorData) {
+        }
+
+        @Override
+        public String getTopicName() {
+            return "climate_data";
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.google.protobuf.Message;
+import org.iot_platform.ruleengineservice.rules.RuleDefinition.Aggregate;
+import org.iot_platform.ruleengineservice.rules.RuleDefinition.WindowType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.function.DoublePredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * DeviceSeries ring buffers and the sliding / tumbling evaluation of CompiledWindow, timed by reading time
+ */
+class CompiledWindowTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void ringKeepsTheNewestSamples() {
+        DeviceSeries series = new DeviceSeries(3, 10);
+        int slot = series.slot("dev-1");
+        for (int i = 1; i <= 4; i++) {
+            series.add(slot, i * MINUTE, i * 10);
+        }
+
+        assertThat(series.size(slot)).isEqualTo(3);
+        assertThat(series.aggregate(slot, Aggregate.COUNT)).isEqualTo(3);
+        assertThat(series.aggregate(slot, Aggregate.MIN)).isEqualTo(20);
+        assertThat(series.aggregate(slot, Aggregate.MAX)).isEqualTo(40);
+        assertThat(series.aggregate(slot, Aggregate.AVG)).isEqualTo(30);
+        assertThat(series.aggregate(slot, Aggregate.DELTA)).isEqualTo(20);
+        assertThat(series.span(slot)).isEqualTo(2 * MINUTE);
+    }
+
+    @Test
+    void evictionDropsOlderSamplesFromTheHead() {
+        DeviceSeries series = new DeviceSeries(4, 10);
+        int slot = series.slot("dev-1");
+        for (int i = 0; i < 6; i++) {
+            series.add(slot, i * MINUTE, i);
+        }
+
+        series.evictBefore(slot, 4 * MINUTE);
+
+        assertThat(series.size(slot)).isEqualTo(2);
+        assertThat(series.aggregate(slot, Aggregate.MIN)).isEqualTo(4);
+        series.evictBefore(slot, 10 * MINUTE);
+        assertThat(series.size(slot)).isZero();
+        assertThat(series.aggregate(slot, Aggregate.MAX)).isNaN();
+        assertThat(series.span(slot)).isZero();
+    }
+
+    @Test
+    void slopeIsPerMinute() {
+        DeviceSeries series = new DeviceSeries(16, 10);
+        int slot = series.slot("dev-1");
+        long origin = 1_700_000_000_000L;
+        for (int i = 0; i < 10; i++) {
+            series.add(slot, origin + i * 30_000, 20 + i * 0.25);
+        }
+
+        assertThat(series.aggregate(slot, Aggregate.SLOPE)).isCloseTo(0.5, within(1e-9));
+    }
+
+    @Test
+    void devicesBeyondTheLimitGetNoSlot() {
+        DeviceSeries series = new DeviceSeries(2, 100);
+        for (int i = 0; i < 100; i++) {
+            int slot = series.slot("dev-" + i);
+            assertThat(slot).isEqualTo(i);
+            series.add(slot, MINUTE, i);
+        }
+
+        assertThat(series.slot("dev-100")).isEqualTo(-1);
+        assertThat(series.slot("dev-7")).isEqualTo(7);
+        assertThat(series.devices()).isEqualTo(100);
+        // рост массивов не перемешал устройства
+        for (int i = 0; i < 100; i++) {
+            assertThat(series.aggregate(i, Aggregate.MAX)).isEqualTo(i);
+            assertThat(series.deviceId(i)).isEqualTo("dev-" + i);
+        }
+    }
+
+    @Test
+    void writeAndReadRoundTripAWrappedRing() throws IOException {
+        DeviceSeries series = new DeviceSeries(3, 10);
+        int slot = series.slot("dev-1");
+        series.windowStart(slot, 42);
+        for (int i = 0; i < 5; i++) {
+            series.add(slot, i * MINUTE, i);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        series.write(slot, new DataOutputStream(bytes));
+        DeviceSeries restored = new DeviceSeries(3, 10);
+        int restoredSlot = restored.slot("dev-1");
+        restored.add(restoredSlot, 0, 100); // read() заменяет, а не дописывает
+        restored.read(restoredSlot, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(restored.windowStart(restoredSlot)).isEqualTo(42);
+        assertThat(restored.size(restoredSlot)).isEqualTo(3);
+        assertThat(restored.aggregate(restoredSlot, Aggregate.DELTA)).isEqualTo(2);
+        assertThat(restored.span(restoredSlot)).isEqualTo(2 * MINUTE);
+    }
+
+    @Test
+    void slidingWindowForgetsReadingsOlderThanItsSize() {
+        CompiledWindow window = window(WindowType.SLIDING, Aggregate.DELTA, value -> value >= 5, 0);
+        DeviceSeries series = new DeviceSeries(window.capacity(), 10);
+        int slot = series.slot("dev-1");
+
+        assertThat(window.update(series, slot, 0, reading(20))).isFalse();
+        assertThat(window.update(series, slot, 5 * MINUTE, reading(23))).isFalse();
+        assertThat(window.update(series, slot, 9 * MINUTE, reading(26))).isTrue();
+        // 20 и 23 выпали из окна, рост 26 -> 27 меньше порога
+        assertThat(window.update(series, slot, 16 * MINUTE, reading(27))).isFalse();
+    }
+
+    @Test
+    void slidingWindowWaitsForTheMinimumSpan() {
+        CompiledWindow window = window(WindowType.SLIDING, Aggregate.MIN, value -> value > 30, 9 * MINUTE);
+        DeviceSeries series = new DeviceSeries(window.capacity(), 10);
+        int slot = series.slot("dev-1");
+
+        assertThat(window.update(series, slot, 0, reading(35))).isFalse();
+        assertThat(window.update(series, slot, 8 * MINUTE, reading(36))).isFalse();
+        assertThat(window.update(series, slot, 9 * MINUTE, reading(37))).isTrue();
+        assertThat(window.update(series, slot, 10 * MINUTE, reading(29))).isFalse();
+    }
+
+    @Test
+    void tumblingWindowFiresOnceItCloses() {
+        CompiledWindow window = window(WindowType.TUMBLING, Aggregate.MAX, value -> value > 30, 0);
+        DeviceSeries series = new DeviceSeries(window.capacity(), 10);
+        int slot = series.slot("dev-1");
+
+        assertThat(window.update(series, slot, MINUTE, reading(35))).isFalse();
+        assertThat(window.update(series, slot, 5 * MINUTE, reading(20))).isFalse();
+        // первое показание следующего окна закрывает [0, 10m)
+        assertThat(window.update(series, slot, 12 * MINUTE, reading(10))).isTrue();
+        assertThat(series.windowStart(slot)).isEqualTo(10 * MINUTE);
+        // опоздавшее показание закрытого окна не учитывается
+        assertThat(window.update(series, slot, 8 * MINUTE, reading(99))).isFalse();
+        assertThat(window.update(series, slot, 25 * MINUTE, reading(40))).isFalse();
+        assertThat(window.update(series, slot, 31 * MINUTE, reading(0))).isTrue();
+    }
+
+    @Test
+    void frequentReadingsAreDownsampledSoTheWindowCoversItsSize() {
+        // 16 сэмплов на 10 минут при показании раз в 1.5 с: без корзин кольцо покрыло бы 24 с
+        CompiledWindow rise = window(WindowType.SLIDING, Aggregate.DELTA, value -> value >= 3.5, 0);
+        // 400 показаний окна плюс не больше одной корзины (40 с) на старом краю
+        CompiledWindow count = window(WindowType.SLIDING, Aggregate.COUNT, value -> value >= 400 && value <= 427, 0);
+        CompiledWindow peak = window(WindowType.SLIDING, Aggregate.MAX, value -> value == 50, 0);
+        DeviceSeries riseSeries = new DeviceSeries(rise.capacity(), 10);
+        DeviceSeries countSeries = new DeviceSeries(count.capacity(), 10);
+        DeviceSeries peakSeries = new DeviceSeries(peak.capacity(), 10);
+        int slot = riseSeries.slot("dev-1");
+        countSeries.slot("dev-1");
+        peakSeries.slot("dev-1");
+
+        boolean rose = false;
+        boolean counted = false;
+        boolean peaked = false;
+        for (int i = 0; i < 480; i++) {
+            long time = i * 1_500L;
+            // +0.01 за показание, 4 градуса за 10 минут; один выброс 50 на 9-й минуте
+            double value = i == 360 ? 50 : i * 0.01;
+            rose = rise.update(riseSeries, slot, time, reading(value));
+            counted = count.update(countSeries, slot, time, reading(value));
+            peaked = peak.update(peakSeries, slot, time, reading(value));
+        }
+
+        assertThat(riseSeries.size(slot)).isEqualTo(16);
+        assertThat(riseSeries.span(slot)).isEqualTo(10 * MINUTE);
+        assertThat(rose).isTrue();
+        assertThat(counted).isTrue();
+        // максимум корзины не теряет выброс, пока он в окне
+        assertThat(peaked).isTrue();
+    }
+
+    private static CompiledWindow window(WindowType type, Aggregate aggregate, DoublePredicate test, long minSpanMillis) {
+        return new CompiledWindow("rule|window", 0, 10 * MINUTE, type, aggregate, test, minSpanMillis, 16);
+    }
+
+    private static SensorView reading(double value) {
+        return new SensorView() {
+            @Override
+            public double number(int slot) {
+                return value;
+            }
+
+            @Override
+            public String string(int slot) {
+                return "";
+            }
+
+            @Override
+            public Message message() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import org.iot_platform.ruleengineservice.rules.RuleDefinition.Aggregate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+class PartitionSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripKeepsEveryWindowAndDevice() throws IOException {
+        Map<String, DeviceSeries> series = new HashMap<>();
+        series.put("rise|10m", series(4, "dev-1", "dev-2"));
+        series.put("avg|1h", series(2, "dev-3"));
+        Path file = dir.resolve("climate_data-0.snapshot");
+
+        long bytes = PartitionSnapshot.write(file, 41, series);
+        PartitionSnapshot snapshot = PartitionSnapshot.read(file, 100);
+
+        assertThat(bytes).isEqualTo(Files.size(file));
+        assertThat(Files.exists(dir.resolve("climate_data-0.snapshot.tmp"))).isFalse();
+        assertThat(snapshot.changelogOffset).isEqualTo(41);
+        assertThat(snapshot.series).containsOnlyKeys("rise|10m", "avg|1h");
+        DeviceSeries rise = snapshot.series.get("rise|10m");
+        assertThat(rise.capacity()).isEqualTo(4);
+        assertThat(rise.devices()).isEqualTo(2);
+        int slot = rise.slot("dev-2");
+        assertThat(rise.size(slot)).isEqualTo(4);
+        assertThat(rise.aggregate(slot, Aggregate.MIN)).isEqualTo(102);
+        assertThat(rise.aggregate(slot, Aggregate.MAX)).isEqualTo(105);
+        assertThat(rise.windowStart(slot)).isEqualTo(7);
+    }
+
+    @Test
+    void newerSnapshotReplacesTheOldOne() throws IOException {
+        Path file = dir.resolve("climate_data-1.snapshot");
+        PartitionSnapshot.write(file, 10, Map.of("rise|10m", series(4, "dev-1")));
+
+        PartitionSnapshot.write(file, 20, Map.of());
+
+        PartitionSnapshot snapshot = PartitionSnapshot.read(file, 100);
+        assertThat(snapshot.changelogOffset).isEqualTo(20);
+        assertThat(snapshot.series).isEmpty();
+    }
+
+    @Test
+    void missingSnapshotIsNull() throws IOException {
+        assertThat(PartitionSnapshot.read(dir.resolve("none.snapshot"), 100)).isNull();
+    }
+
+    @Test
+    void foreignOrOversizedSnapshotIsRejected() throws IOException {
+        Path foreign = dir.resolve("foreign.snapshot");
+        Files.write(foreign, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThatIOException().isThrownBy(() -> PartitionSnapshot.read(foreign, 100))
+                .withMessageContaining("Not a state snapshot");
+
+        Path large = dir.resolve("large.snapshot");
+        PartitionSnapshot.write(large, 0, Map.of("rise|10m", series(2, "dev-1", "dev-2", "dev-3")));
+        assertThatIOException().isThrownBy(() -> PartitionSnapshot.read(large, 2))
+                .withMessageContaining("max-devices-per-partition");
+    }
+
+    /**
+     * Every device gets capacity + 2 samples (the ring wraps), values 100 * device + sample index
+     */
+    private static DeviceSeries series(int capacity, String... devices) {
+        DeviceSeries series = new DeviceSeries(capacity, 100);
+        for (int d = 0; d < devices.length; d++) {
+            int slot = series.slot(devices[d]);
+            series.windowStart(slot, 7);
+            for (int i = 0; i < capacity + 2; i++) {
+                series.add(slot, 1_000L * i, 100 * d + i);
+            }
+        }
+        return series;
+    }
+}
@@ -0,0 +1,224 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import org.iot_platform.protos.alert.AlertSeverity;
+import org.iot_platform.protos.climate_data.ClimateData;
+import org.iot_platform.protos.climate_data.ComfortLevel;
+import org.iot_platform.protos.sensor_common.SensorHeader;
+import org.iot_platform.ruleengineservice.rules.RuleDefinition.Condition;
+import org.iot_platform.ruleengineservice.rules.RuleDefinition.Operator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Rule definitions compiled against real topic schemas and evaluated on parsed and header-first views
+ */
+class RuleCompilerTest {
+
+    private static final String CLIMATE = "climate_data";
+
+    private Map<String, TopicSchema> schemas;
+
+    @BeforeEach
+    void setUp() {
+        schemas = new HashMap<>();
+        SensorMessages.topics().forEach(topic -> schemas.put(topic, new TopicSchema(topic)));
+    }
+
+    @Test
+    void leafComparesTheFieldOfItsSlot() {
+        CompiledRule rule = compile(rule("overheat", leaf("temperature_c", Operator.GT, 35)));
+        TopicSchema schema = schemas.get(CLIMATE).freeze();
+
+        assertThat(rule.condition.test(schema.view(climate(36, 40, ComfortLevel.COMFORTABLE)))).isTrue();
+        assertThat(rule.condition.test(schema.view(climate(35, 40, ComfortLevel.COMFORTABLE)))).isFalse();
+        assertThat(rule.severity).isEqualTo(AlertSeverity.WARNING);
+        assertThat(rule.hotels).isEmpty();
+    }
+
+    @Test
+    void groupsCombineTheirChildren() {
+        Condition when = new Condition(
+                List.of(leaf("comfort_level", Operator.EQ, "DANGEROUS"),
+                        new Condition(null, List.of(leaf("humidity_percent", Operator.GT, 70), leaf("heating_required", Operator.EQ, true)),
+                                null, null, null, null, null)),
+                null, null, null, null, null, null);
+        CompiledRule rule = compile(rule("dangerous", when));
+        TopicSchema schema = schemas.get(CLIMATE).freeze();
+
+        assertThat(rule.condition.test(schema.view(climate(20, 80, ComfortLevel.DANGEROUS)))).isTrue();
+        assertThat(rule.condition.test(schema.view(climate(20, 50, ComfortLevel.DANGEROUS)))).isFalse();
+        assertThat(rule.condition.test(schema.view(climate(20, 80, ComfortLevel.UNCOMFORTABLE)))).isFalse();
+        assertThat(rule.condition.test(schema.view(climate(20, 50, ComfortLevel.DANGEROUS).toBuilder()
+                .setHeatingRequired(true).build()))).isTrue();
+    }
+
+    @Test
+    void notAndInOnStrings() {
+        Condition when = new Condition(null, null,
+                new Condition(null, null, null, "header.hotel_id", Operator.IN, null, List.of("h1", "h2")),
+                null, null, null, null);
+        CompiledRule rule = compile(rule("other-hotels", when));
+        TopicSchema schema = schemas.get(CLIMATE).freeze();
+
+        assertThat(rule.condition.test(schema.view(climate(20, 40, ComfortLevel.COMFORTABLE)))).isFalse();
+        assertThat(rule.condition.test(schema.view(climate(20, 40, ComfortLevel.COMFORTABLE).toBuilder()
+                .setHeader(SensorHeader.newBuilder().setHotelId("h3")).build()))).isTrue();
+    }
+
+    @Test
+    void headerFirstViewAgreesWithTheParsedMessage() throws Exception {
+        CompiledRule rule = compile(rule("overheat", new Condition(
+                List.of(leaf("temperature_c", Operator.GE, 30), leaf("header.room_number", Operator.EQ, "101")),
+                null, null, null, null, null, null)));
+        TopicSchema schema = schemas.get(CLIMATE).freeze();
+
+        for (float temperature : new float[]{29.5f, 30, 31}) {
+            ClimateData reading = climate(temperature, 40, ComfortLevel.COMFORTABLE);
+            SensorView decoded = schema.decode(reading.toByteArray());
+
+            assertThat(rule.condition.test(decoded)).isEqualTo(rule.condition.test(schema.view(reading)));
+            assertThat(decoded.deviceId()).isEqualTo("dev-1");
+            assertThat(decoded.timestamp()).isEqualTo(1_700_000_000_000L);
+        }
+    }
+
+    @Test
+    void templateRendersPlaceholders() {
+        RuleDefinition definition = new RuleDefinition("overheat", null, CLIMATE, List.of("h1"), AlertSeverity.CRITICAL,
+                leaf("temperature_c", Operator.GT, 35), "Temperature {temperature_c} in room {header.room_number}", null, null);
+        CompiledRule rule = RuleCompiler.compile(definition, schemas);
+        TopicSchema schema = schemas.get(CLIMATE).freeze();
+
+        assertThat(rule.message(schema.view(climate(36.5f, 40, ComfortLevel.COMFORTABLE))))
+                .isEqualTo("Temperature 36.5 in room 101");
+        assertThat(rule.hotels).containsExactly("h1");
+        assertThat(rule.severity).isEqualTo(AlertSeverity.CRITICAL);
+    }
+
+    @Test
+    void cooldownIsPerDevice() {
+        RuleDefinition definition = new RuleDefinition("overheat", null, CLIMATE, null, null,
+                leaf("temperature_c", Operator.GT, 35), null, "10s", null);
+        CompiledRule rule = RuleCompiler.compile(definition, schemas);
+
+        assertThat(rule.tryFire("dev-1", 0)).isTrue();
+        assertThat(rule.tryFire("dev-1", 9_999)).isFalse();
+        assertThat(rule.tryFire("dev-2", 9_999)).isTrue();
+        assertThat(rule.tryFire("dev-1", 10_000)).isTrue();
+    }
+
+    @Test
+    void fieldsTakeSlotsAfterTheHeader() {
+        compile(rule("overheat", leaf("temperature_c", Operator.GT, 35)));
+        compile(rule("overheat-again", leaf("temperature_c", Operator.GT, 40)));
+        TopicSchema schema = schemas.get(CLIMATE);
+
+        assertThat(schema.slot("header.device_id")).isEqualTo(TopicSchema.DEVICE_ID);
+        assertThat(schema.slot("temperature_c")).isGreaterThan(TopicSchema.TIMESTAMP);
+        assertThat(schema.freeze().size()).isEqualTo(schema.size());
+        assertThatIllegalArgumentException().isThrownBy(() -> compile(rule("late", leaf("dew_point", Operator.GT, 1))))
+                .withMessageContaining("frozen");
+    }
+
+    @Test
+    void invalidDefinitionsFailTheLoad() {
+        assertThatIllegalArgumentException().isThrownBy(() -> compile(rule("unknown-field", leaf("no_such_field", Operator.GT, 1))))
+                .withMessageStartingWith("Rule unknown-field:");
+        assertThatIllegalArgumentException().isThrownBy(() -> compile(rule("string-gt", leaf("header.hotel_id", Operator.GT, 1))))
+                .withMessageContaining("not applicable to string field");
+        assertThatIllegalArgumentException().isThrownBy(() -> compile(rule("bad-enum", leaf("comfort_level", Operator.EQ, "HOT"))))
+                .withMessageContaining("unknown ComfortLevel value HOT");
+        assertThatIllegalArgumentException().isThrownBy(() -> compile(rule("no-values", leaf("temperature_c", Operator.IN, null))))
+                .withMessageContaining("needs values");
+        assertThatIllegalArgumentException().isThrownBy(() -> compile(rule("no-when", null)))
+                .withMessageContaining("no 'when' condition");
+        assertThatIllegalArgumentException().isThrownBy(() -> RuleCompiler.compile(
+                        new RuleDefinition("unknown-topic", null, "door_data", null, null, leaf("open", Operator.EQ, true), null, null, null), schemas))
+                .withMessageContaining("unknown sensor topic door_data");
+        assertThatIllegalArgumentException().isThrownBy(() -> compile(rule(" ", leaf("temperature_c", Operator.GT, 1))))
+                .withMessage("Rule without id");
+    }
+
+    @Test
+    void windowNeedsANumericFieldAndAComparison() {
+        RuleDefinition.Window in = new RuleDefinition.Window("temperature_c", "10m", null, RuleDefinition.Aggregate.DELTA,
+                Operator.IN, 5.0, null, null);
+        RuleDefinition.Window text = new RuleDefinition.Window("header.room_number", "10m", null, RuleDefinition.Aggregate.MAX,
+                Operator.GT, 5.0, null, null);
+        RuleDefinition.Window tiny = new RuleDefinition.Window("temperature_c", "10m", null, RuleDefinition.Aggregate.MAX,
+                Operator.GT, 5.0, null, 1);
+
+        for (RuleDefinition.Window window : List.of(in, text, tiny)) {
+            assertThatIllegalArgumentException().isThrownBy(() -> RuleCompiler.compile(
+                    new RuleDefinition("window", null, CLIMATE, null, null, null, null, null, window), schemas));
+        }
+    }
+
+    @Test
+    void minSpanMustLeaveABucketOfTheWindow() {
+        // 30m / 63 корзины = 28.6 с: 29m достижимо, 29.9m - нет
+        RuleDefinition.Window reachable = new RuleDefinition.Window("temperature_c", "30m", null, RuleDefinition.Aggregate.MIN,
+                Operator.GT, 0.5, "29m", null);
+        RuleDefinition.Window unreachable = new RuleDefinition.Window("temperature_c", "30m", null, RuleDefinition.Aggregate.MIN,
+                Operator.GT, 0.5, "1790s", null);
+
+        CompiledRule rule = RuleCompiler.compile(new RuleDefinition("sustained", null, CLIMATE, null, null, null, null, null, reachable), schemas);
+
+        assertThat(rule.window.bucketMillis()).isEqualTo(28_572);
+        assertThat(rule.window.key()).endsWith("|28572ms");
+        assertThatIllegalArgumentException().isThrownBy(() -> RuleCompiler.compile(
+                        new RuleDefinition("sustained", null, CLIMATE, null, null, null, null, null, unreachable), schemas))
+                .withMessageContaining("min-span 1790s is never reached");
+    }
+
+    @Test
+    void roomRuleSignalsAreSharedByName() {
+        List<RoomSignal> signals = new ArrayList<>();
+        RoomRuleDefinition hot = new RoomRuleDefinition("hot", null, null, null,
+                leaf("climate_data.temperature_c", Operator.GT, 28), "5m", "Room {room} of {hotel}: {climate_data.temperature_c}", null);
+        RoomRuleDefinition busy = new RoomRuleDefinition("busy", null, null, null,
+                new Condition(List.of(leaf("climate_data.temperature_c", Operator.GT, 25), leaf("energy_data.current_power_w", Operator.GT, 3000)),
+                        null, null, null, null, null, null), null, null, "1m");
+
+        CompiledRoomRule first = RuleCompiler.compileRoom(hot, 0, signals, schemas);
+        CompiledRoomRule second = RuleCompiler.compileRoom(busy, 1, signals, schemas);
+
+        assertThat(signals).extracting(RoomSignal::name)
+                .containsExactly("climate_data.temperature_c", "energy_data.current_power_w");
+        assertThat(first.holdForMillis).isEqualTo(300_000);
+        assertThat(second.cooldownMillis).isEqualTo(60_000);
+        assertThatIllegalArgumentException().isThrownBy(() -> RuleCompiler.compileRoom(new RoomRuleDefinition("bare", null, null, null,
+                        leaf("temperature_c", Operator.GT, 28), null, null, null), 2, signals, schemas))
+                .withMessageContaining("must start with a sensor topic");
+    }
+
+    private CompiledRule compile(RuleDefinition definition) {
+        return RuleCompiler.compile(definition, schemas);
+    }
+
+    private static RuleDefinition rule(String id, Condition when) {
+        return new RuleDefinition(id, null, CLIMATE, null, null, when, null, null, null);
+    }
+
+    private static Condition leaf(String field, Operator op, Object value) {
+        return new Condition(null, null, null, field, op, value, null);
+    }
+
+    private static ClimateData climate(float temperature, float humidity, ComfortLevel comfort) {
+        return ClimateData.newBuilder()
+                .setHeader(SensorHeader.newBuilder()
+                        .setHotelId("h1").setRoomNumber("101").setDeviceId("dev-1").setTimestamp(1_700_000_000_000L))
+                .setTemperatureC(temperature)
+                .setHumidityPercent(humidity)
+                .setComfortLevel(comfort)
+                .build();
+    }
+}
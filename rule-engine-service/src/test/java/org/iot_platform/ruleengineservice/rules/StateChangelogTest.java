@@ -0,0 +1,103 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Changelog replay against a MockConsumer holding offsets 10..14 of the partition
+ */
+class StateChangelogTest {
+
+    private static final TopicPartition SOURCE = new TopicPartition("climate_data", 2);
+    private static final TopicPartition CHANGELOG = new TopicPartition("climate_data-rule-state-changelog", 2);
+    private static final long BEGIN = 10;
+    private static final long END = 15;
+
+    private MockConsumer<String, byte[]> consumer;
+    private StateChangelog changelog;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updateBeginningOffsets(Map.of(CHANGELOG, BEGIN));
+        consumer.updateEndOffsets(Map.of(CHANGELOG, END));
+        // записи можно добавить только в назначенную партицию - на первом poll
+        consumer.schedulePollTask(() -> {
+            for (long offset = BEGIN; offset < END; offset++) {
+                byte[] value = offset == 12 ? null : new byte[]{(byte) offset}; // 12 - tombstone
+                consumer.addRecord(new ConsumerRecord<>(CHANGELOG.topic(), CHANGELOG.partition(), offset, "key-" + offset, value));
+            }
+        });
+
+        ConsumerFactory<String, byte[]> consumerFactory = mock(ConsumerFactory.class);
+        when(consumerFactory.createConsumer(any(), any(), any(), any(Properties.class))).thenReturn(consumer);
+        changelog = new StateChangelog(null, consumerFactory);
+        ReflectionTestUtils.setField(changelog, "suffix", "-rule-state-changelog");
+        ReflectionTestUtils.setField(changelog, "pollTimeout", Duration.ofMillis(10));
+    }
+
+    @Test
+    void replaysTheTailAfterTheSnapshot() {
+        List<String> applied = new ArrayList<>();
+        boolean[] discarded = {false};
+
+        long last = changelog.restore(SOURCE, 13, () -> discarded[0] = true, (key, value) -> applied.add(key));
+
+        assertThat(applied).containsExactly("key-13", "key-14");
+        assertThat(last).isEqualTo(14);
+        assertThat(discarded[0]).isFalse();
+    }
+
+    @Test
+    void skipsTombstonesButCountsTheirOffsets() {
+        List<String> applied = new ArrayList<>();
+
+        long last = changelog.restore(SOURCE, 0, () -> {
+        }, (key, value) -> applied.add(key));
+
+        // с начала лога, а не с 0 - ранние записи уже удалены compaction'ом
+        assertThat(applied).containsExactly("key-10", "key-11", "key-13", "key-14");
+        assertThat(last).isEqualTo(14);
+    }
+
+    @Test
+    void snapshotAheadOfTheChangelogIsDiscarded() {
+        List<String> applied = new ArrayList<>();
+        boolean[] discarded = {false};
+
+        long last = changelog.restore(SOURCE, 100, () -> discarded[0] = true, (key, value) -> applied.add(key));
+
+        assertThat(discarded[0]).isTrue();
+        assertThat(applied).hasSize(4);
+        assertThat(last).isEqualTo(14);
+    }
+
+    @Test
+    void nothingNewReturnsTheOffsetBeforeFrom() {
+        List<String> applied = new ArrayList<>();
+
+        long last = changelog.restore(SOURCE, END, () -> {
+        }, (key, value) -> applied.add(key));
+
+        assertThat(applied).isEmpty();
+        assertThat(last).isEqualTo(END - 1);
+    }
+}
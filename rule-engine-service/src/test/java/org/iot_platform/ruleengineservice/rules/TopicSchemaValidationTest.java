@@ -0,0 +1,143 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.iot_platform.protos.climate_data.ClimateData;
+import org.iot_platform.protos.climate_data.ComfortLevel;
+import org.iot_platform.protos.sensor_common.SensorHeader;
+import org.iot_platform.protos.support.ProtoValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ProtoValidator constraints of climate_data, checked on a parsed message, on a header-first decoded
+ * record (TopicSchema.violation) and on the parsed view of the same record
+ */
+class TopicSchemaValidationTest {
+
+    private static final ProtoValidator VALIDATOR = ProtoValidator.of(ClimateData.class);
+
+    private TopicSchema schema;
+
+    @BeforeEach
+    void setUp() {
+        schema = new TopicSchema("climate_data").freeze();
+    }
+
+    @Test
+    void constraintsFollowTheDeclarationOrderHeaderFirst() {
+        List<String> constraints = new ArrayList<>();
+        for (int i = 0; i < VALIDATOR.size(); i++) {
+            constraints.add(VALIDATOR.kind(i) + " " + VALIDATOR.path(i));
+        }
+
+        assertThat(constraints).containsExactly(
+                "required header.device_id",
+                "required header.timestamp",
+                "range header.battery_level",
+                "range temperature_c",
+                "range humidity_percent",
+                "defined_enum comfort_level");
+        assertThat(VALIDATOR.isString(0)).isTrue();
+        assertThat(VALIDATOR.isString(1)).isFalse();
+        assertThat(VALIDATOR.describe(3)).isEqualTo("temperature_c in [-50.0, 80.0]");
+    }
+
+    @Test
+    void validReadingPassesEveryView() throws InvalidProtocolBufferException {
+        ClimateData reading = valid().build();
+
+        assertThat(VALIDATOR.firstViolation(reading)).isEqualTo(-1);
+        assertThat(schema.violation(schema.view(reading))).isEqualTo(-1);
+        assertThat(schema.violation(schema.decode(reading.toByteArray()))).isEqualTo(-1);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("violations")
+    void everyViewReportsTheSameConstraint(String path, Consumer<ClimateData.Builder> change)
+            throws InvalidProtocolBufferException {
+        ClimateData.Builder builder = valid();
+        change.accept(builder);
+        ClimateData reading = builder.build();
+
+        int violation = VALIDATOR.firstViolation(reading);
+
+        assertThat(violation).isNotNegative();
+        assertThat(VALIDATOR.path(violation)).isEqualTo(path);
+        assertThat(schema.violation(schema.view(reading))).isEqualTo(violation);
+        assertThat(schema.violation(schema.decode(reading.toByteArray()))).isEqualTo(violation);
+    }
+
+    @Test
+    void rangeBoundsAreInclusive() throws InvalidProtocolBufferException {
+        ClimateData reading = valid().setTemperatureC(-50).setHumidityPercent(100)
+                .setHeader(header().setBatteryLevel(0)).build();
+
+        assertThat(VALIDATOR.firstViolation(reading)).isEqualTo(-1);
+        assertThat(schema.violation(schema.decode(reading.toByteArray()))).isEqualTo(-1);
+    }
+
+    @Test
+    void firstViolationWinsWhenSeveralFieldsAreBroken() throws InvalidProtocolBufferException {
+        ClimateData reading = valid().setHumidityPercent(-1).setComfortLevelValue(42)
+                .setHeader(header().setTimestamp(0)).build();
+
+        int violation = schema.violation(schema.decode(reading.toByteArray()));
+
+        assertThat(VALIDATOR.path(violation)).isEqualTo("header.timestamp");
+    }
+
+    @Test
+    void missingHeaderBreaksItsRequiredFields() throws InvalidProtocolBufferException {
+        ClimateData reading = valid().clearHeader().build();
+
+        assertThat(VALIDATOR.path(VALIDATOR.firstViolation(reading))).isEqualTo("header.device_id");
+        assertThat(VALIDATOR.path(schema.violation(schema.decode(reading.toByteArray())))).isEqualTo("header.device_id");
+    }
+
+    static Stream<Arguments> violations() {
+        return Stream.of(
+                violation("header.device_id", builder -> builder.setHeader(header().setDeviceId(""))),
+                violation("header.timestamp", builder -> builder.setHeader(header().setTimestamp(0))),
+                violation("header.battery_level", builder -> builder.setHeader(header().setBatteryLevel(100.5f))),
+                violation("header.battery_level", builder -> builder.setHeader(header().setBatteryLevel(-1))),
+                violation("temperature_c", builder -> builder.setTemperatureC(80.01f)),
+                violation("temperature_c", builder -> builder.setTemperatureC(-51)),
+                // NaN не проходит ни одно сравнение
+                violation("temperature_c", builder -> builder.setTemperatureC(Float.NaN)),
+                violation("humidity_percent", builder -> builder.setHumidityPercent(Float.POSITIVE_INFINITY)),
+                // номер, которого нет в enum, - UNRECOGNIZED при разборе
+                violation("comfort_level", builder -> builder.setComfortLevelValue(4)),
+                violation("comfort_level", builder -> builder.setComfortLevelValue(-1)));
+    }
+
+    private static Arguments violation(String path, Consumer<ClimateData.Builder> change) {
+        return Arguments.of(path, change);
+    }
+
+    private static ClimateData.Builder valid() {
+        return ClimateData.newBuilder()
+                .setHeader(header())
+                .setTemperatureC(22.5f)
+                .setHumidityPercent(45)
+                .setComfortLevel(ComfortLevel.DANGEROUS);
+    }
+
+    private static SensorHeader.Builder header() {
+        return SensorHeader.newBuilder()
+                .setDeviceId("dev-1")
+                .setHotelId("h1")
+                .setRoomNumber("101")
+                .setTimestamp(1_700_000_000_000L)
+                .setBatteryLevel(87);
+    }
+}
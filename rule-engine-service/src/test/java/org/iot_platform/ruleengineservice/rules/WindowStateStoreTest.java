@@ -0,0 +1,199 @@
+package org.iot_platform.ruleengineservice.rules;
+
+import com.google.protobuf.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.iot_platform.ruleengineservice.rules.RuleDefinition.Aggregate;
+import org.iot_platform.ruleengineservice.rules.RuleDefinition.WindowType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Restore of an assigned partition: the local snapshot plus the changelog entries written after it
+ */
+class WindowStateStoreTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("climate_data", 0);
+    private static final CompiledWindow WINDOW = new CompiledWindow("rise|10m", 0, 600_000, WindowType.SLIDING,
+            Aggregate.MAX, value -> value > 30, 0, 8);
+
+    @TempDir
+    Path dir;
+
+    private StateChangelog changelog;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        changelog = mock(StateChangelog.class);
+    }
+
+    @Test
+    void revokedPartitionIsRestoredFromItsSnapshotAndTheChangelogTail() throws IOException {
+        WindowStateStore first = store();
+        changelogUpTo(4);
+        first.onPartitionsAssigned(List.of(PARTITION));
+        first.update(PARTITION.topic(), 0, WINDOW, "dev-1", 1_000, reading(20));
+        first.update(PARTITION.topic(), 0, WINDOW, "dev-2", 1_000, reading(25));
+        first.onPartitionsRevoked(List.of(PARTITION));
+        assertThat(Files.exists(dir.resolve("climate_data-0.snapshot"))).isTrue();
+
+        // после снапшота в changelog попала ещё dev-3 с показанием 31
+        restoreEntries(entry(WINDOW, "dev-3", 2_000, 31));
+        WindowStateStore second = store();
+        second.onPartitionsAssigned(List.of(PARTITION));
+
+        verify(changelog).restore(eq(PARTITION), eq(5L), any(), any()); // снапшот покрывает changelog до 4
+        assertThat(devices()).isEqualTo(3);
+        assertThat(registry.get("rule.engine.state.restore.records").counter().count()).isEqualTo(1);
+        // dev-1 продолжает окно из снапшота, dev-3 - из changelog
+        assertThat(second.update(PARTITION.topic(), 0, WINDOW, "dev-1", 3_000, reading(22))).isFalse();
+        assertThat(second.update(PARTITION.topic(), 0, WINDOW, "dev-3", 3_000, reading(10))).isTrue();
+    }
+
+    @Test
+    void snapshotOfAnotherChangelogIsDropped() throws IOException {
+        WindowStateStore first = store();
+        changelogUpTo(4);
+        first.onPartitionsAssigned(List.of(PARTITION));
+        first.update(PARTITION.topic(), 0, WINDOW, "dev-1", 1_000, reading(40));
+        first.onPartitionsRevoked(List.of(PARTITION));
+
+        // changelog пересоздан: restore сбрасывает состояние из снапшота и читает лог с начала
+        Entry entry = entry(WINDOW, "dev-2", 2_000, 5);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            invocation.<BiConsumer<String, byte[]>>getArgument(3).accept(entry.key(), entry.value());
+            return 0L;
+        }).when(changelog).restore(any(), anyLong(), any(), any());
+        WindowStateStore second = store();
+        second.onPartitionsAssigned(List.of(PARTITION));
+
+        assertThat(devices()).isEqualTo(1);
+        assertThat(second.update(PARTITION.topic(), 0, WINDOW, "dev-1", 3_000, reading(20))).isFalse();
+    }
+
+    @Test
+    void windowsOfChangedOrRemovedRulesAreDropped() throws IOException {
+        CompiledWindow removed = new CompiledWindow("old|10m", 0, 600_000, WindowType.SLIDING,
+                Aggregate.MAX, value -> value > 30, 0, 8);
+        WindowStateStore first = store();
+        changelogUpTo(4);
+        first.onPartitionsAssigned(List.of(PARTITION));
+        first.update(PARTITION.topic(), 0, WINDOW, "dev-1", 1_000, reading(20));
+        first.update(PARTITION.topic(), 0, removed, "dev-2", 1_000, reading(20));
+
+        // reload без правила "old": его окно не попадает в снапшот
+        first.retainWindows(Set.of(WINDOW.key()));
+        first.onPartitionsRevoked(List.of(PARTITION));
+        assertThat(PartitionSnapshot.read(dir.resolve("climate_data-0.snapshot"), 100).series).containsOnlyKeys(WINDOW.key());
+
+        // и не восстанавливается из changelog
+        restoreEntries(entry(removed, "dev-3", 2_000, 31));
+        WindowStateStore second = store();
+        second.retainWindows(Set.of(WINDOW.key()));
+        second.onPartitionsAssigned(List.of(PARTITION));
+
+        assertThat(devices()).isEqualTo(1);
+    }
+
+    @Test
+    void unassignedTopicsAreNotRestored() {
+        WindowStateStore store = store();
+
+        store.onPartitionsAssigned(List.of(new TopicPartition("alerts", 0)));
+
+        assertThat(devices()).isZero();
+        assertThat(registry.find("rule.engine.state.restore").timer()).isNull();
+    }
+
+    @SuppressWarnings("unchecked")
+    private WindowStateStore store() {
+        ObjectProvider<StateChangelog> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(changelog);
+        registry = new SimpleMeterRegistry();
+        WindowStateStore store = new WindowStateStore(provider, registry);
+        ReflectionTestUtils.setField(store, "maxDevices", 100);
+        ReflectionTestUtils.setField(store, "dir", dir.toString());
+        ReflectionTestUtils.setField(store, "flushInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(store, "snapshotInterval", Duration.ofHours(1));
+        store.start();
+        return store;
+    }
+
+    private double devices() {
+        return registry.get("rule.engine.state.devices").gauge().value();
+    }
+
+    /**
+     * Changelog already read up to the offset, nothing to apply
+     */
+    private void changelogUpTo(long offset) {
+        when(changelog.restore(any(), anyLong(), any(), any())).thenReturn(offset);
+    }
+
+    private void restoreEntries(Entry entry) {
+        doAnswer(invocation -> {
+            invocation.<BiConsumer<String, byte[]>>getArgument(3).accept(entry.key(), entry.value());
+            return 7L;
+        }).when(changelog).restore(any(), anyLong(), any(), any());
+    }
+
+    /**
+     * Changelog entry of one device with a single sample
+     */
+    private static Entry entry(CompiledWindow window, String deviceId, long time, double value) throws IOException {
+        DeviceSeries series = new DeviceSeries(window.capacity(), 1);
+        int slot = series.slot(deviceId);
+        series.add(slot, time, value);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(series.capacity());
+        series.write(slot, out);
+        return new Entry(window.key() + StateChangelog.KEY_SEPARATOR + deviceId, bytes.toByteArray());
+    }
+
+    private static SensorView reading(double value) {
+        return new SensorView() {
+            @Override
+            public double number(int slot) {
+                return value;
+            }
+
+            @Override
+            public String string(int slot) {
+                return "";
+            }
+
+            @Override
+            public Message message() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private record Entry(String key, byte[] value) {
+    }
+}